@@ -77,6 +77,10 @@ public class ThrottlePolicyGenerator {
         List<GenSrcFile> sourceFiles = new ArrayList<>();
         for (ApplicationThrottlePolicyDTO applicationPolicy : applicationPolicies) {
             policyContext = new ThrottlePolicy().buildContext(applicationPolicy);
+            if (policyContext.isLocal()) {
+                // evaluated in process by the gateway, registered by the policy initializer
+                continue;
+            }
             sourceFiles.add(generatePolicy(policyContext));
         }
         return sourceFiles;
@@ -95,6 +99,10 @@ public class ThrottlePolicyGenerator {
         List<GenSrcFile> sourceFiles = new ArrayList<>();
         for (SubscriptionThrottlePolicyDTO subscriptionPolicy : subscriptionPolicies) {
             policyContext = new ThrottlePolicy().buildContext(subscriptionPolicy);
+            if (policyContext.isLocal()) {
+                // evaluated in process by the gateway, registered by the policy initializer
+                continue;
+            }
             sourceFiles.add(generatePolicy(policyContext));
         }
         return sourceFiles;
@@ -113,7 +121,7 @@ public class ThrottlePolicyGenerator {
             List<SubscriptionThrottlePolicyDTO> subscriptionPolicies) throws IOException {
         ThrottlePolicyInitializer context = new ThrottlePolicyInitializer().buildAppContext(applicationPolicies)
                 .buildSubsContext(subscriptionPolicies);
-        return generateInitBalFile(context);
+        return generateInitBal(context);
     }
 
     /**
@@ -163,7 +171,14 @@ public class ThrottlePolicyGenerator {
         return sourceFiles;
     }
 
-    private GenSrcFile generateInitBalFile(ThrottlePolicyInitializer context) throws IOException {
+    /**
+     * Generate init ballerina source for the policies of an initializer
+     *
+     * @param context initializer holding the policies
+     * @return GenSrcFile
+     * @throws IOException when file operations fail
+     */
+    public GenSrcFile generateInitBal(ThrottlePolicyInitializer context) throws IOException {
         String concatTitle = GeneratorConstants.THROTTLE_POLICY_INITIALIZER;
         String srcFile = concatTitle + GeneratorConstants.BALLERINA_EXTENSION;
 
@@ -44,6 +44,12 @@ public class GeneratorConstants {
     public static final String SUBSCRIPTION_TIER_TYPE = "subscriptionTier";
     public static final String INIT_FUNC_SUFFIX = "Policy";
     public static final String THROTTLE_POLICY_INITIALIZER = "throttle_policy_initializer";
+    public static final String FIXED_WINDOW_ALGORITHM = "fixedWindow";
+    public static final String SLIDING_WINDOW_ALGORITHM = "slidingWindow";
+    public static final String TOKEN_BUCKET_ALGORITHM = "tokenBucket";
+    public static final String FIXED_WINDOW_PROCESSOR = "counterBatch";
+    public static final String SLIDING_WINDOW_PROCESSOR = "slidingCounter";
+    public static final String TOKEN_BUCKET_PROCESSOR = "tokenBucket";
     public static final String UTF_8 = "UTF-8";
 
 }
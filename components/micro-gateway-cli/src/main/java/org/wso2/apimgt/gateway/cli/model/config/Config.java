@@ -23,6 +23,7 @@ public class Config {
     private Client client;
     private Token token;
     private APICorsConfigurationDTO corsConfiguration;
+    private Throttling throttling;
 
     public Token getToken() {
         return token;
@@ -47,4 +48,12 @@ public class Config {
     public void setCorsConfiguration(APICorsConfigurationDTO corsConfiguration) {
         this.corsConfiguration = corsConfiguration;
     }
+
+    public Throttling getThrottling() {
+        return throttling;
+    }
+
+    public void setThrottling(Throttling throttling) {
+        this.throttling = throttling;
+    }
 }
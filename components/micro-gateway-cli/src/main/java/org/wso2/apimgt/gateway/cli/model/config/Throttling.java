@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.apimgt.gateway.cli.model.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Throttling related configurations of the toolkit.
+ */
+public class Throttling {
+    private String algorithm;
+    private boolean localThrottling = true;
+    private Map<String, String> policyAlgorithms = new HashMap<>();
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public boolean isLocalThrottling() {
+        return localThrottling;
+    }
+
+    public void setLocalThrottling(boolean localThrottling) {
+        this.localThrottling = localThrottling;
+    }
+
+    public Map<String, String> getPolicyAlgorithms() {
+        return policyAlgorithms;
+    }
+
+    public void setPolicyAlgorithms(Map<String, String> policyAlgorithms) {
+        this.policyAlgorithms = policyAlgorithms;
+    }
+
+    /**
+     * Returns the throttling algorithm configured for the given policy, falling back to the default algorithm.
+     *
+     * @param policyName name of the throttle policy
+     * @return configured algorithm name or null if nothing is configured
+     */
+    public String getAlgorithm(String policyName) {
+        if (policyAlgorithms != null && policyAlgorithms.containsKey(policyName)) {
+            return policyAlgorithms.get(policyName);
+        }
+        return algorithm;
+    }
+}
@@ -18,9 +18,11 @@
 package org.wso2.apimgt.gateway.cli.model.template.policy;
 
 import org.wso2.apimgt.gateway.cli.constants.GeneratorConstants;
+import org.wso2.apimgt.gateway.cli.model.config.Config;
 import org.wso2.apimgt.gateway.cli.model.rest.policy.ApplicationThrottlePolicyDTO;
 import org.wso2.apimgt.gateway.cli.model.rest.policy.RequestCountLimitDTO;
 import org.wso2.apimgt.gateway.cli.model.rest.policy.SubscriptionThrottlePolicyDTO;
+import org.wso2.apimgt.gateway.cli.utils.GatewayCmdUtils;
 
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +39,10 @@ public class ThrottlePolicy {
     private long count;
     private String tierType;
     private boolean stopOnQuotaReach;
+    //name of the throttler stream processor implementing the throttling algorithm of the policy
+    private String algorithm;
+    //whether the policy is evaluated in process by the gateway instead of a generated stream function
+    private boolean local;
 
     public String getPolicyType() {
         return policyType;
@@ -118,6 +124,26 @@ public class ThrottlePolicy {
         this.stopOnQuotaReach = stopOnQuotaReach;
     }
 
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
+    public void setLocal(boolean local) {
+        this.local = local;
+    }
+
+    public boolean isFixedWindow() {
+        return GeneratorConstants.FIXED_WINDOW_PROCESSOR.equals(algorithm);
+    }
+
     public ThrottlePolicy buildContext(ApplicationThrottlePolicyDTO applicationPolicy) {
         this.policyType = GeneratorConstants.APPLICATION_POLICY_TYPE;
         this.name = applicationPolicy.getPolicyName();
@@ -129,6 +155,8 @@ public class ThrottlePolicy {
         this.policyKey = GeneratorConstants.APPLICATION_KEY;
         this.tierType = GeneratorConstants.APPLICATION_TIER_TYPE;
         this.stopOnQuotaReach = true;
+        this.algorithm = getAlgorithmProcessor(applicationPolicy.getPolicyName());
+        this.local = isLocalThrottlingEnabled() && isFixedWindow();
         return this;
     }
 
@@ -143,6 +171,8 @@ public class ThrottlePolicy {
         this.policyKey = GeneratorConstants.SUBSCRIPTION_KEY;
         this.tierType = GeneratorConstants.SUBSCRIPTION_TIER_TYPE;
         this.stopOnQuotaReach = applicationPolicy.getStopOnQuotaReach();
+        this.algorithm = getAlgorithmProcessor(applicationPolicy.getPolicyName());
+        this.local = isLocalThrottlingEnabled() && isFixedWindow();
         return this;
     }
 
@@ -160,6 +190,42 @@ public class ThrottlePolicy {
         return this;
     }
 
+    /**
+     * Resolve the throttler stream processor for the algorithm configured for the given policy. Policies without a
+     * configured algorithm use fixed windows.
+     *
+     * @param policyName name of the policy
+     * @return name of the throttler stream processor
+     */
+    private String getAlgorithmProcessor(String policyName) {
+        String algorithmName = null;
+        Config config = GatewayCmdUtils.getConfig();
+        if (config != null && config.getThrottling() != null) {
+            algorithmName = config.getThrottling().getAlgorithm(policyName);
+        }
+        if (algorithmName == null || GeneratorConstants.FIXED_WINDOW_ALGORITHM.equalsIgnoreCase(algorithmName)) {
+            return GeneratorConstants.FIXED_WINDOW_PROCESSOR;
+        } else if (GeneratorConstants.SLIDING_WINDOW_ALGORITHM.equalsIgnoreCase(algorithmName)) {
+            return GeneratorConstants.SLIDING_WINDOW_PROCESSOR;
+        } else if (GeneratorConstants.TOKEN_BUCKET_ALGORITHM.equalsIgnoreCase(algorithmName)) {
+            return GeneratorConstants.TOKEN_BUCKET_PROCESSOR;
+        } else {
+            throw new RuntimeException("Unsupported throttling algorithm " + algorithmName + " provided for policy "
+                    + policyName);
+        }
+    }
+
+    /**
+     * Plain request count policies using fixed windows are evaluated in process by the gateway, unless disabled in
+     * the toolkit configuration. Conditional and bandwidth policies are not generated by the toolkit yet.
+     *
+     * @return true if local throttling is enabled
+     */
+    private boolean isLocalThrottlingEnabled() {
+        Config config = GatewayCmdUtils.getConfig();
+        return config == null || config.getThrottling() == null || config.getThrottling().isLocalThrottling();
+    }
+
     private long getTimeInMilliSeconds(int unitTime, String timeUnit) {
         long milliSeconds;
         if ("min".equalsIgnoreCase(timeUnit)) {
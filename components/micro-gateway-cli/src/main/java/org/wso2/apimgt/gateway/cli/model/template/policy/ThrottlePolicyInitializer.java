@@ -17,7 +17,6 @@
  */
 package org.wso2.apimgt.gateway.cli.model.template.policy;
 
-import org.wso2.apimgt.gateway.cli.constants.GeneratorConstants;
 import org.wso2.apimgt.gateway.cli.model.rest.policy.ApplicationThrottlePolicyDTO;
 import org.wso2.apimgt.gateway.cli.model.rest.policy.SubscriptionThrottlePolicyDTO;
 
@@ -26,12 +25,14 @@ import java.util.List;
 
 public class ThrottlePolicyInitializer {
     private List<String> policyInitNames;
+    private List<ThrottlePolicy> localPolicies;
     private List<StopOnQutaInfo> stopOnQutaInfo;
     private String srcPackage;
     private String modelPackage;
 
     public ThrottlePolicyInitializer() {
         policyInitNames = new ArrayList<>();
+        localPolicies = new ArrayList<>();
         stopOnQutaInfo = new ArrayList<>();
     }
 
@@ -43,18 +44,34 @@ public class ThrottlePolicyInitializer {
         this.policyInitNames = policyInitNames;
     }
 
+    public List<ThrottlePolicy> getLocalPolicies() {
+        return localPolicies;
+    }
+
+    public void setLocalPolicies(List<ThrottlePolicy> localPolicies) {
+        this.localPolicies = localPolicies;
+    }
+
     public ThrottlePolicyInitializer buildAppContext(List<ApplicationThrottlePolicyDTO> applicationPolicies) {
         for (ApplicationThrottlePolicyDTO policyDTO : applicationPolicies) {
-            policyInitNames.add(GeneratorConstants.APPLICATION_INIT_FUNC_PREFIX + policyDTO.getPolicyName()
-                    + GeneratorConstants.INIT_FUNC_SUFFIX);
+            ThrottlePolicy policy = new ThrottlePolicy().buildContext(policyDTO);
+            if (policy.isLocal()) {
+                localPolicies.add(policy);
+            } else {
+                policyInitNames.add(policy.getFuncName());
+            }
         }
         return this;
     }
 
     public ThrottlePolicyInitializer buildSubsContext(List<SubscriptionThrottlePolicyDTO> subscriptionPolicies) {
         for (SubscriptionThrottlePolicyDTO policyDTO : subscriptionPolicies) {
-            policyInitNames.add(GeneratorConstants.SUBSCRIPTION_INIT_FUNC_PREFIX + policyDTO.getPolicyName()
-                    + GeneratorConstants.INIT_FUNC_SUFFIX);
+            ThrottlePolicy policy = new ThrottlePolicy().buildContext(policyDTO);
+            if (policy.isLocal()) {
+                localPolicies.add(policy);
+            } else {
+                policyInitNames.add(policy.getFuncName());
+            }
             stopOnQutaInfo.add(new StopOnQutaInfo(policyDTO.getPolicyName(), policyDTO.getStopOnQuotaReach()));
         }
         return this;
@@ -0,0 +1,123 @@
+// Copyright (c)  WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file   except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+import ballerina/http;
+import ballerina/log;
+
+// requests are authenticated with the admin credentials configured at startup, every request is rejected if no
+// admin password is configured
+@Description {value:"Admin service which adds and removes block conditions and sets the IP lists at runtime"}
+@http:ServiceConfig {
+    basePath:"/blockConditions"
+}
+service<http:Service> blockConditionService bind tokenListenerEndpoint {
+
+    @http:ResourceConfig {
+        methods:["POST"],
+        path:"/"
+    }
+    addBlockConditionResource(endpoint caller, http:Request req) {
+        http:Response response = new;
+        if (!isBlockConditionAdminRequest(req)) {
+            response.statusCode = 401;
+            response.setJsonPayload({ "error": "Invalid admin credentials" });
+            _ = caller->respond(response);
+            done;
+        }
+        match req.getJsonPayload() {
+            json condition => {
+                if (condition["id"] == null || condition["type"] == null || condition["value"] == null) {
+                    response.statusCode = 400;
+                    response.setJsonPayload({ "error": "Block condition should have an id, a type and a value" });
+                } else {
+                    string conditionId = condition["id"].toString();
+                    boolean invert = condition["invert"] != null && condition["invert"].toString() == "true";
+                    if (conditionId.hasPrefix("file:")) {
+                        // the next reload of the conditions file would remove the condition
+                        response.statusCode = 400;
+                        response.setJsonPayload({ "error": "Block condition ids starting with file: are reserved" });
+                    } else if (addBlockCondition(conditionId, condition["type"].toString(),
+                            condition["value"].toString(), invert)) {
+                        log:printInfo("Block condition " + conditionId + " is added");
+                        response.setJsonPayload({ "id": conditionId });
+                    } else {
+                        response.statusCode = 400;
+                        response.setJsonPayload({ "error": "Invalid block condition" });
+                    }
+                }
+            }
+            error err => {
+                response.statusCode = 400;
+                response.setJsonPayload({ "error": "Block condition should be a JSON object" });
+            }
+        }
+        _ = caller->respond(response);
+    }
+
+    @http:ResourceConfig {
+        methods:["DELETE"],
+        path:"/{conditionId}"
+    }
+    removeBlockConditionResource(endpoint caller, http:Request req, string conditionId) {
+        http:Response response = new;
+        if (!isBlockConditionAdminRequest(req)) {
+            response.statusCode = 401;
+            response.setJsonPayload({ "error": "Invalid admin credentials" });
+        } else if (removeBlockCondition(conditionId)) {
+            log:printInfo("Block condition " + conditionId + " is removed");
+            response.setJsonPayload({ "id": conditionId });
+        } else {
+            response.statusCode = 404;
+            response.setJsonPayload({ "error": "No block condition with the id " + conditionId });
+        }
+        _ = caller->respond(response);
+    }
+
+    // the CIDR blocks of the list are separated by commas or white space, an empty body empties the list
+    @http:ResourceConfig {
+        methods:["PUT"],
+        path:"/ipLists/{listName}"
+    }
+    setIpListResource(endpoint caller, http:Request req, string listName) {
+        http:Response response = new;
+        if (!isBlockConditionAdminRequest(req)) {
+            response.statusCode = 401;
+            response.setJsonPayload({ "error": "Invalid admin credentials" });
+            _ = caller->respond(response);
+            done;
+        }
+        match req.getTextPayload() {
+            string cidrs => {
+                if (setIpList(listName, cidrs.split("[,\\s]+"))) {
+                    log:printInfo("IP list " + listName + " is updated");
+                    response.setJsonPayload({ "listName": listName });
+                } else {
+                    response.statusCode = 400;
+                    response.setJsonPayload({ "error": "Invalid CIDR block in the IP list" });
+                }
+            }
+            error err => {
+                response.statusCode = 400;
+                response.setJsonPayload({ "error": "IP list should be a list of CIDR blocks" });
+            }
+        }
+        _ = caller->respond(response);
+    }
+}
+
+function isBlockConditionAdminRequest(http:Request req) returns boolean {
+    return req.hasHeader(AUTH_HEADER) && isBlockConditionAdmin(req.getHeader(AUTH_HEADER));
+}
@@ -14,21 +14,139 @@
 // specific language governing permissions and limitations
 // under the License.
 
-import ballerina/cache;
-
-
-cache:Cache gatewayKeyValidationCache;
-cache:Cache invalidTokenCache;
-
 public function initGatewayCaches() {
-    gatewayKeyValidationCache = new(expiryTimeMillis = getConfigIntValue(CACHING_ID, TOKEN_CACHE_EXPIRY,
-            900000), capacity = getConfigIntValue(CACHING_ID, TOKEN_CACHE_CAPACITY, 100),
-        evictionFactor = getConfigFloatValue(CACHING_ID, TOKEN_CACHE_EVICTION_FACTOR, 0.25));
-    invalidTokenCache = new(expiryTimeMillis = getConfigIntValue(CACHING_ID, TOKEN_CACHE_EXPIRY, 900000),
-        capacity = getConfigIntValue(CACHING_ID, TOKEN_CACHE_CAPACITY, 100),
-        evictionFactor = getConfigFloatValue(CACHING_ID, TOKEN_CACHE_EVICTION_FACTOR, 0.25));
+    // results which left the cache are kept in a shadow tier to be served while the key manager is unavailable
+    int staleCapacity = getConfigIntValue(CACHING_ID, TOKEN_CACHE_STALE_CAPACITY,
+        getConfigIntValue(CACHING_ID, TOKEN_CACHE_CAPACITY, 100));
+    int maxStaleness = getConfigIntValue(CACHING_ID, TOKEN_CACHE_MAX_STALENESS, 0);
+    initKeyValidationResultStore(getConfigIntValue(CACHING_ID, TOKEN_CACHE_CAPACITY, 100),
+        getConfigIntValue(CACHING_ID, TOKEN_CACHE_EXPIRY, 900000),
+        getConfigFloatValue(CACHING_ID, TOKEN_CACHE_EVICTION_FACTOR, 0.25),
+        getConfigBooleanValue(CACHING_ID, TOKEN_CACHE_OFF_HEAP, false), staleCapacity, maxStaleness);
+    // the invalid token cache is sized apart, so that a flood of invalid tokens does not evict the valid ones
+    initInvalidTokenStore(getConfigIntValue(CACHING_ID, INVALID_TOKEN_CACHE_CAPACITY,
+            getConfigIntValue(CACHING_ID, TOKEN_CACHE_CAPACITY, 100)),
+        getConfigIntValue(CACHING_ID, INVALID_TOKEN_CACHE_EXPIRY,
+            getConfigIntValue(CACHING_ID, TOKEN_CACHE_EXPIRY, 900000)));
+    initResourceAuthorizationStore(getConfigIntValue(CACHING_ID, TOKEN_CACHE_CAPACITY, 100) + staleCapacity,
+        getConfigIntValue(CACHING_ID, TOKEN_CACHE_EXPIRY, 900000) + maxStaleness);
+    if (getConfigBooleanValue(CACHING_ID, JWT_CACHE_ENABLED, true)) {
+        initVerifiedJwtStore(getConfigIntValue(CACHING_ID, JWT_CACHE_CAPACITY,
+                getConfigIntValue(CACHING_ID, TOKEN_CACHE_CAPACITY, 100)),
+            getConfigIntValue(CACHING_ID, JWT_CACHE_CLOCK_SKEW, 0));
+    }
+    if (getConfigBooleanValue(CACHING_ID, TOKEN_CACHE_REFRESH_AHEAD_ENABLED, false)) {
+        initKeyValidationRefresher(getConfigFloatValue(CACHING_ID, TOKEN_CACHE_REFRESH_AHEAD_FACTOR, 0.75),
+            getConfigIntValue(CACHING_ID, TOKEN_CACHE_EXPIRY, 900000));
+    }
+    if (getConfigBooleanValue(KM_CONF_INSTANCE_ID, KM_CIRCUIT_BREAKER_ENABLED, false)) {
+        initKeyManagerCircuitBreaker(getConfigFloatValue(KM_CONF_INSTANCE_ID, KM_CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+                0.5), getConfigIntValue(KM_CONF_INSTANCE_ID, KM_CIRCUIT_BREAKER_REQUEST_VOLUME_THRESHOLD, 10),
+            getConfigIntValue(KM_CONF_INSTANCE_ID, KM_CIRCUIT_BREAKER_ROLLING_WINDOW, 60000),
+            getConfigIntValue(KM_CONF_INSTANCE_ID, KM_CIRCUIT_BREAKER_RESET_TIME, 30000));
+    }
 }
 
+@Description {value:"Creates the cache of key validation results"}
+@Param {value:"capacity: Maximum number of results kept"}
+@Param {value:"expiryTime: Time in milliseconds after which a result which has not been read expires"}
+@Param {value:"evictionFactor: Fraction of the capacity evicted when the cache is full"}
+@Param {value:"offHeap: Whether the results are kept outside the heap"}
+@Param {value:"staleCapacity: Maximum number of expired or evicted results kept to be served stale"}
+@Param {value:"maxStaleness: Time in milliseconds after leaving the cache for which a result can be served stale"}
+public native function initKeyValidationResultStore(int capacity, int expiryTime, float evictionFactor,
+                                                    boolean offHeap, int staleCapacity, int maxStaleness);
+
+@Description {value:"Returns the fields of a key validation result, even if it left the cache within the maximum
+staleness"}
+@Param {value:"cacheKey: Key validation cache key"}
+@Return {value:"string[]: Fields in the order of the APIKeyValidationDto record, or an empty array if not kept"}
+public native function getStaleKeyValidationResult(string cacheKey) returns string[];
+
+@Description {value:"Returns the fields of a cached key validation result"}
+@Param {value:"cacheKey: Key validation cache key"}
+@Return {value:"string[]: Fields in the order of the APIKeyValidationDto record, or an empty array if not cached"}
+public native function getKeyValidationResult(string cacheKey) returns string[];
+
+@Description {value:"Caches a key validation result"}
+@Param {value:"cacheKey: Key validation cache key"}
+@Param {value:"result: Key validation result"}
+public native function putKeyValidationResult(string cacheKey, APIKeyValidationDto result);
+
+@Description {value:"Removes a key validation result from the cache"}
+@Param {value:"cacheKey: Key validation cache key"}
+public native function removeKeyValidationResult(string cacheKey);
+
+@Description {value:"Creates the cache of the tokens rejected by the key manager"}
+@Param {value:"capacity: Maximum number of rejected tokens kept"}
+@Param {value:"expiryTime: Time in milliseconds for which a rejected token is kept"}
+public native function initInvalidTokenStore(int capacity, int expiryTime);
+
+@Description {value:"Checks whether a token has recently been rejected by the key manager"}
+@Param {value:"cacheKey: Key validation cache key of the token and resource"}
+@Return {value:"boolean: true if the token has been rejected within the expiry time"}
+public native function isInvalidToken(string cacheKey) returns boolean;
+
+@Description {value:"Records that a token has been rejected by the key manager"}
+@Param {value:"cacheKey: Key validation cache key of the token and resource"}
+public native function putInvalidToken(string cacheKey);
+
+@Description {value:"Forgets that a token has been rejected by the key manager"}
+@Param {value:"cacheKey: Key validation cache key of the token and resource"}
+public native function removeInvalidToken(string cacheKey);
+
+@Description {value:"Creates the store of the resources the tokens of the key validation cache are authorized for"}
+@Param {value:"capacity: Maximum number of tokens kept"}
+@Param {value:"expiryTime: Time in milliseconds after which the resources of an unused token are forgotten"}
+public native function initResourceAuthorizationStore(int capacity, int expiryTime);
+
+@Description {value:"Digests an access token and the API or resource it is used on into a cache key"}
+@Param {value:"value: Access token followed by the API or resource"}
+@Return {value:"string: Base64 encoded 128 bit digest of the value"}
+public native function digestCacheKey(string value) returns string;
+
+@Description {value:"Returns the number of a resource within its API, numbering it if it is used for the first time"}
+@Param {value:"apiKey: Context and version of the API"}
+@Param {value:"resourceKey: Path and HTTP verb of the resource"}
+@Return {value:"int: Number of the resource"}
+public native function getResourceIndex(string apiKey, string resourceKey) returns int;
+
+@Description {value:"Checks whether a cached token has been authorized for a resource"}
+@Param {value:"cacheKey: Token level key validation cache key"}
+@Param {value:"resourceIndex: Number of the resource"}
+@Return {value:"boolean: true if the token has been authorized for the resource"}
+public native function isResourceAuthorized(string cacheKey, int resourceIndex) returns boolean;
+
+@Description {value:"Records that a cached token has been authorized for a resource"}
+@Param {value:"cacheKey: Token level key validation cache key"}
+@Param {value:"resourceIndex: Number of the resource"}
+@Param {value:"reset: Whether the resources authorized earlier are forgotten"}
+public native function authorizeResource(string cacheKey, int resourceIndex, boolean reset);
+
+@Description {value:"Forgets the resources a token has been authorized for"}
+@Param {value:"cacheKey: Token level key validation cache key"}
+public native function removeResourceAuthorizations(string cacheKey);
+
+@Description {value:"Enables refresh ahead for the key validation cache"}
+@Param {value:"refreshFactor: Fraction of the expiry time after which a cached result is refreshed in the background"}
+@Param {value:"expiryTime: Expiry time in milliseconds of the key validation cache"}
+public native function initKeyValidationRefresher(float refreshFactor, int expiryTime);
+
+@Description {value:"Records that the key validation result of a cache key was cached or removed from the cache"}
+@Param {value:"cacheKey: Key validation cache key"}
+@Param {value:"cached: true if the result was cached, false if it was removed"}
+public native function recordKeyValidation(string cacheKey, boolean cached);
+
+@Description {value:"Claims the refresh of a cached key validation result if it is due to be refreshed"}
+@Param {value:"cacheKey: Key validation cache key"}
+@Return {value:"boolean: true if the caller has to refresh the result and complete the refresh"}
+public native function claimKeyValidationRefresh(string cacheKey) returns boolean;
+
+@Description {value:"Completes the refresh of a cached key validation result"}
+@Param {value:"cacheKey: Key validation cache key"}
+@Param {value:"success: Whether the key was revalidated"}
+public native function completeKeyValidationRefresh(string cacheKey, boolean success);
+
 public type APIGatewayCache object {
 
 
@@ -38,6 +156,8 @@ public type APIGatewayCache object {
 
    public function removeFromGatewayKeyValidationCache (string tokenCacheKey);
 
+   public function retrieveStaleFromGatewayKeyValidationCache(string tokenCacheKey) returns (APIKeyValidationDto|());
+
    public function retrieveFromInvalidTokenCache(string tokenCacheKey) returns (boolean|());
 
    public function removeFromInvalidTokenCache (string tokenCacheKey);
@@ -46,40 +166,45 @@ public type APIGatewayCache object {
 };
 
 public function APIGatewayCache::authenticateFromGatewayKeyValidationCache(string tokenCacheKey) returns (APIKeyValidationDto|()) {
-    match <APIKeyValidationDto> gatewayKeyValidationCache.get(tokenCacheKey){
-        APIKeyValidationDto apikeyValidationDto => {
-            return apikeyValidationDto;
-        }
-        error err => {
-            return ();
-        }
+    string[] values = getKeyValidationResult(tokenCacheKey);
+    if (lengthof values == 0) {
+        return ();
+    }
+    return createKeyValidationDto(values);
+}
+
+public function APIGatewayCache::retrieveStaleFromGatewayKeyValidationCache(string tokenCacheKey) returns
+                                                                                        (APIKeyValidationDto|()) {
+    string[] values = getStaleKeyValidationResult(tokenCacheKey);
+    if (lengthof values == 0) {
+        return ();
     }
+    return createKeyValidationDto(values);
 }
 
 public function APIGatewayCache::addToGatewayKeyValidationCache (string tokenCacheKey, APIKeyValidationDto
     apiKeyValidationDto) {
-    gatewayKeyValidationCache.put(tokenCacheKey, apiKeyValidationDto);
+    putKeyValidationResult(tokenCacheKey, apiKeyValidationDto);
+    recordKeyValidation(tokenCacheKey, true);
 }
 
 public function APIGatewayCache::removeFromGatewayKeyValidationCache (string tokenCacheKey) {
-    gatewayKeyValidationCache.remove(tokenCacheKey);
+    removeKeyValidationResult(tokenCacheKey);
+    recordKeyValidation(tokenCacheKey, false);
+    removeResourceAuthorizations(tokenCacheKey);
 }
 
 public function APIGatewayCache::retrieveFromInvalidTokenCache(string tokenCacheKey) returns (boolean|()) {
-    match <boolean> invalidTokenCache.get(tokenCacheKey){
-        boolean authorize => {
-            return authorize;
-        }
-        error err => {
-            return ();
-        }
+    if (isInvalidToken(tokenCacheKey)) {
+        return true;
     }
+    return ();
 }
 
 public function APIGatewayCache::addToInvalidTokenCache (string tokenCacheKey, boolean authorize) {
-    invalidTokenCache.put(tokenCacheKey, authorize);
+    putInvalidToken(tokenCacheKey);
 }
 
 public function APIGatewayCache::removeFromInvalidTokenCache (string tokenCacheKey) {
-    invalidTokenCache.remove(tokenCacheKey);
+    removeInvalidToken(tokenCacheKey);
 }
\ No newline at end of file
@@ -59,6 +59,11 @@
 @final public  int INVALID_SCOPE = 900910;
 @final public  string INVALID_SCOPE_MESSAGE = "The access token does not allow you to access the requested resource";
 
+@final public  int REQUEST_BLOCKED_BY_CONDITION = 900805;
+@final public  string REQUEST_BLOCKED_BY_CONDITION_MESSAGE = "Message blocked";
+@final public  string REQUEST_BLOCKED_BY_CONDITION_DESCRIPTION =
+"You have been blocked from accessing the resource";
+
 @final public  string DESCRIPTION_SEPARATOR = ". ";
 
 
@@ -86,6 +91,8 @@ public function getAuthenticationFailureMessage(int errorCode) returns string {
         errorMessage = SUBSCRIPTION_INACTIVE_MESSAGE;
     } else if(errorCode == INVALID_SCOPE) {
         errorMessage = INVALID_SCOPE_MESSAGE;
+    } else if(errorCode == REQUEST_BLOCKED_BY_CONDITION) {
+        errorMessage = REQUEST_BLOCKED_BY_CONDITION_MESSAGE;
     } else {
         errorMessage = API_AUTH_GENERAL_ERROR_MESSAGE;
     }
@@ -104,6 +111,8 @@ public function getFailureMessageDetailDescription(int errorCode, string errorMe
         errorDescription += DESCRIPTION_SEPARATOR + API_AUTH_ACCESS_TOKEN_EXPIRED_DESCRIPTION;
     } else if( API_AUTH_INVALID_CREDENTIALS == errorCode) {
         errorDescription += DESCRIPTION_SEPARATOR + API_AUTH_INVALID_CREDENTIALS_DESCRIPTION;
+    } else if( REQUEST_BLOCKED_BY_CONDITION == errorCode) {
+        errorDescription += DESCRIPTION_SEPARATOR + REQUEST_BLOCKED_BY_CONDITION_DESCRIPTION;
     }
     return errorDescription;
 }
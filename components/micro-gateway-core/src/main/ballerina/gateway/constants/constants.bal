@@ -57,6 +57,25 @@
 @final public string KEY_VALIDATION_RESPONSE = "KEY_VALIDATION_RESPONSE";
 @Description {value:"Authentication context attribute"}
 @final public string AUTHENTICATION_CONTEXT = "AUTHENTICATION_CONTEXT";
+@Description {value:"Attribute holding the verified JWT cache key of a JWT authenticated request"}
+@final public string JWT_CACHE_KEY = "JWT_CACHE_KEY";
+@Description {value:"Indexes of the claims of a verified JWT, in the order of the JwtField enum of the gateway"}
+@final public int JWT_CLAIM_SUBJECT = 0;
+@final public int JWT_CLAIM_ISSUER = 1;
+@final public int JWT_CLAIM_END_USER = 2;
+@final public int JWT_CLAIM_CONSUMER_KEY = 3;
+@final public int JWT_CLAIM_API_TIER = 4;
+@final public int JWT_CLAIM_PUBLISHER = 5;
+@final public int JWT_CLAIM_SUBSCRIBER_TENANT_DOMAIN = 6;
+@final public int JWT_CLAIM_APPLICATION_ID = 7;
+@final public int JWT_CLAIM_APPLICATION_NAME = 8;
+@final public int JWT_CLAIM_APPLICATION_TIER = 9;
+@Description {value:"Number of claims of a verified JWT, the length of JwtField.values()"}
+@final public int JWT_CLAIM_COUNT = 10;
+@Description {value:"Index of the subscription tier following the claims returned by getVerifiedJwtSubscription"}
+@final public int JWT_CLAIM_SUBSCRIPTION_TIER = 10;
+@Description {value:"Index of the subscriber following the claims returned by getVerifiedJwtSubscription"}
+@final public int JWT_CLAIM_SUBSCRIBER = 11;
 @Description {value:"carbon.super Tenant Domain"}
 @final public string SUPER_TENANT_DOMAIN_NAME = "carbon.super";
 @Description {value:"Super Tenant Domain Tenant Id"}
@@ -69,6 +88,10 @@
 @final public string RESOURCE_TIER_ANN_NAME = "ResourceTier";
 @Description { value: "Unlimited Tier" }
 @final public string UNLIMITED_TIER = "Unlimited";
+@Description { value: "Application throttle policy type" }
+@final public string APPLICATION_THROTTLE_POLICY = "application";
+@Description { value: "Subscription throttle policy type" }
+@final public string SUBSCRIPTION_THROTTLE_POLICY = "subscription";
 @Description { value: "Un authenticated tier level" }
 @final public string UNAUTHENTICATED_TIER = "Unauthenticated";
 @Description { value: "Anonymous user name" }
@@ -114,10 +137,59 @@
 @final public string KM_CONF_INSTANCE_ID = "keyManager";
 @Description { value: "Throttling related configs"}
 @final public string THROTTLE_CONF_INSTANCE_ID = "Throttling";
+@Description { value: "Maximum number of throttled keys kept in memory"}
+@final public string THROTTLE_DATA_CAPACITY = "throttleData.capacity";
+@Description { value: "Interval in milliseconds at which expired throttled keys are removed"}
+@final public string THROTTLE_DATA_SWEEP_INTERVAL = "throttleData.sweepInterval";
+@Description { value: "Maximum number of interned application and subscription throttle keys"}
+@final public string THROTTLE_KEYS_CAPACITY = "throttleKeys.capacity";
+@Description { value: "File the block conditions are loaded from, reloaded whenever it is modified"}
+@final public string BLOCK_CONDITIONS_FILE = "blockConditions.file";
+@Description { value: "Interval in milliseconds at which the block conditions file is checked for modifications"}
+@final public string BLOCK_CONDITIONS_RELOAD_INTERVAL = "blockConditions.reloadInterval";
+@Description { value: "Credentials of the block condition admin service, which is disabled without a password"}
+@final public string BLOCK_CONDITIONS_ADMIN_USERNAME = "blockConditions.adminUsername";
+@final public string BLOCK_CONDITIONS_ADMIN_PASSWORD = "blockConditions.adminPassword";
+@Description { value: "Whether the counts of the local throttle policies are synchronized with the other replicas"}
+@final public string THROTTLE_SYNC_ENABLED = "throttleSync.enabled";
+@Description { value: "Transport of the throttle counts, udp or the class name of a custom transport"}
+@final public string THROTTLE_SYNC_TRANSPORT = "throttleSync.transport";
+@Description { value: "Host and port the throttle counts of the other replicas are received on"}
+@final public string THROTTLE_SYNC_LOCAL_ADDRESS = "throttleSync.localAddress";
+@Description { value: "Comma separated hosts and ports of the other replicas"}
+@final public string THROTTLE_SYNC_PEERS = "throttleSync.peers";
+@Description { value: "Secret shared by the replicas, which the throttle counts are signed with"}
+@final public string THROTTLE_SYNC_SECRET = "throttleSync.secret";
+@Description { value: "Interval in milliseconds at which the throttle counts are sent to the other replicas"}
+@final public string THROTTLE_SYNC_INTERVAL = "throttleSync.interval";
 @Description { value: "Key manager server URL parameter"}
 @final public string KM_SERVER_URL = "serverUrl";
 @Description { value: "Key manager oauth2 endpoint contexs"}
 @final public string KM_TOKEN_CONTEXT = "/oauth2";
+@Description { value: "Maximum time in milliseconds a request waits for the key validation of a concurrent request"}
+@final public string KM_VALIDATION_WAIT_TIMEOUT = "validationWaitTimeout";
+@Description { value: "Protocol of the key validation service, soap, json or the class name of a custom protocol"}
+@final public string KM_VALIDATION_PROTOCOL = "validationProtocol";
+@Description { value: "Path of the key validation service, if not the default path of the protocol"}
+@final public string KM_VALIDATION_PATH = "validationPath";
+@Description { value: "HTTP version of the key manager connections, 1.1 or 2.0 to multiplex the calls"}
+@final public string KM_HTTP_VERSION = "httpVersion";
+@Description { value: "Time in milliseconds after which a call to the key manager times out"}
+@final public string KM_TIMEOUT = "timeoutMillis";
+@Description { value: "Maximum number of connections to the key manager, or -1 for no limit"}
+@final public string KM_MAX_ACTIVE_CONNECTIONS = "maxActiveConnections";
+@Description { value: "Maximum time in milliseconds a call waits for a connection to the key manager"}
+@final public string KM_CONNECTION_WAIT_TIME = "connectionWaitTime";
+@Description { value: "Whether the calls to the key manager go through a circuit breaker"}
+@final public string KM_CIRCUIT_BREAKER_ENABLED = "circuitBreaker.enabled";
+@Description { value: "Fraction of failed calls within the rolling window which opens the circuit breaker"}
+@final public string KM_CIRCUIT_BREAKER_FAILURE_THRESHOLD = "circuitBreaker.failureThreshold";
+@Description { value: "Minimum number of calls within the rolling window before the circuit breaker can open"}
+@final public string KM_CIRCUIT_BREAKER_REQUEST_VOLUME_THRESHOLD = "circuitBreaker.requestVolumeThreshold";
+@Description { value: "Time in milliseconds over which the calls to the key manager are counted"}
+@final public string KM_CIRCUIT_BREAKER_ROLLING_WINDOW = "circuitBreaker.rollingWindow";
+@Description { value: "Time in milliseconds after which an open circuit breaker lets a trial call through"}
+@final public string KM_CIRCUIT_BREAKER_RESET_TIME = "circuitBreaker.resetTime";
 @Description { value: "time stamp skew for auth caches"}
 @final public string TIMESTAMP_SKEW = "timestampSkew";
 
@@ -143,6 +215,8 @@
 @final public string LISTENER_CONF_KEY_STORE_PASSWORD = "keyStore.password";
 @Description { value: "The port which exposes /token,/revoke, /authorize and etc endpoints"}
 @final public string TOKEN_LISTENER_PORT = "tokenListenerPort";
+@Description { value: "Comma separated addresses or CIDR blocks of the proxies trusted to set X-Forwarded-For"}
+@final public string LISTENER_CONF_TRUSTED_PROXIES = "trustedProxies";
 @Description { value: "Set of filters to be enabled"}
 @final public string FILTERS = "filters";
 
@@ -174,6 +248,66 @@
 @final public string TOKEN_CACHE_CAPACITY = "tokenCache.capacity";
 @Description { value: "Token cache eviction factor"}
 @final public string TOKEN_CACHE_EVICTION_FACTOR = "tokenCache.evictionFactor";
+@Description { value: "Whether cached key validation results are kept outside the heap"}
+@final public string TOKEN_CACHE_OFF_HEAP = "tokenCache.offHeap";
+@Description { value: "Whether cached key validation results are refreshed ahead of their expiry"}
+@final public string TOKEN_CACHE_REFRESH_AHEAD_ENABLED = "tokenCache.refreshAhead.enabled";
+@Description { value: "Fraction of the token cache expiry time after which a cached result is refreshed"}
+@final public string TOKEN_CACHE_REFRESH_AHEAD_FACTOR = "tokenCache.refreshAhead.factor";
+@Description { value: "Whether JWTs whose signature has been verified are cached until they expire"}
+@final public string JWT_CACHE_ENABLED = "jwtCache.enabled";
+@Description { value: "Maximum number of JWTs kept in the verified JWT cache"}
+@final public string JWT_CACHE_CAPACITY = "jwtCache.capacity";
+@Description { value: "Time in milliseconds a cached JWT is accepted ahead of its nbf claim"}
+@final public string JWT_CACHE_CLOCK_SKEW = "jwtCache.clockSkew";
+@Description { value: "Maximum number of tokens rejected by the key manager kept in the invalid token cache"}
+@final public string INVALID_TOKEN_CACHE_CAPACITY = "invalidTokenCache.capacity";
+@Description { value: "Time in milliseconds for which a token rejected by the key manager is kept"}
+@final public string INVALID_TOKEN_CACHE_EXPIRY = "invalidTokenCache.expiryTime";
+@Description { value: "Maximum number of expired or evicted key validation results kept to be served stale"}
+@final public string TOKEN_CACHE_STALE_CAPACITY = "tokenCache.stale.capacity";
+@Description { value: "Time in milliseconds after leaving the token cache for which a result is served while the key
+manager is unavailable, or 0 to never serve stale results"}
+@final public string TOKEN_CACHE_MAX_STALENESS = "tokenCache.stale.maxStaleness";
+
+@Description { value: "Analytics configs"}
+@final public string ANALYTICS = "analytics";
+@Description { value: "Usage data file name"}
+@final public string ANALYTICS_FILE_NAME = "fileName";
+@Description { value: "Maximum number of analytics events waiting to be written"}
+@final public string ANALYTICS_BUFFER_SIZE = "bufferSize";
+@Description { value: "Maximum number of analytics events written at once"}
+@final public string ANALYTICS_BATCH_SIZE = "batchSize";
+@Description { value: "Maximum time in milliseconds an analytics event waits to be written"}
+@final public string ANALYTICS_FLUSH_INTERVAL = "flushInterval";
+@Description { value: "Time in milliseconds after which the usage data file is rotated"}
+@final public string ANALYTICS_ROTATING_PERIOD = "rotatingPeriod";
+@Description { value: "Compressed size in bytes after which the usage data file is rotated"}
+@final public string ANALYTICS_MAX_FILE_SIZE = "maxFileSize";
+@Description { value: "Time in milliseconds a request waits for space in a full analytics buffer"}
+@final public string ANALYTICS_OVERFLOW_TIMEOUT = "overflowTimeout";
+@Description { value: "Analytics server URL the usage data files are uploaded to"}
+@final public string ANALYTICS_UPLOADING_URL = "uploadingUrl";
+@Description { value: "User name used to upload the usage data files"}
+@final public string ANALYTICS_UPLOADING_USERNAME = "uploadingUsername";
+@Description { value: "Password used to upload the usage data files"}
+@final public string ANALYTICS_UPLOADING_PASSWORD = "uploadingPassword";
+@Description { value: "Interval in milliseconds at which the usage data files are looked up for uploading"}
+@final public string ANALYTICS_UPLOADING_INTERVAL = "uploadingInterval";
+@Description { value: "Maximum number of usage data files uploaded at once"}
+@final public string ANALYTICS_UPLOADING_PARALLELISM = "uploadingParallelism";
+@Description { value: "Time in milliseconds before a failed usage data upload is retried for the first time"}
+@final public string ANALYTICS_UPLOADING_INITIAL_RETRY_INTERVAL = "uploadingInitialRetryInterval";
+@Description { value: "Maximum time in milliseconds between retries of a failed usage data upload"}
+@final public string ANALYTICS_UPLOADING_MAX_RETRY_INTERVAL = "uploadingMaxRetryInterval";
+@Description { value: "File the state of the pending usage data uploads is kept in"}
+@final public string ANALYTICS_UPLOADING_MANIFEST = "uploadingManifest";
+@Description { value: "Maximum total size in bytes of the usage data files waiting to be uploaded"}
+@final public string ANALYTICS_MAX_BACKLOG_SIZE = "maxBacklogSize";
+@Description { value: "Default usage data file name"}
+@final public string API_USAGE_FILE = "api-usage-data.dat";
+@Description { value: "Default usage data upload manifest file name"}
+@final public string API_USAGE_UPLOAD_MANIFEST = "api-usage-upload.manifest";
 
 @Description { value: "JWT  related configs"}
 @final public string JWT_CONFIG_INSTANCE_ID = "jwtConfig";
@@ -16,33 +16,10 @@
 
 import ballerina/io;
 import ballerina/http;
+import ballerina/log;
 
-@final
-public string KVT = "--KVS--";
-public string EVS = "--EVT--";
-public string OBJ = "--OBJ--";
-
-int initializingTime = 0;
 //streams associated with DTOs
-stream<EventDTO> eventStream;
-
-function getPayload(AnalyticsRequestStream requestStream) returns (string) {
-    return requestStream.consumerKey + OBJ + requestStream.context + OBJ + requestStream.apiVersion + OBJ +
-        requestStream.api + OBJ + requestStream.resourcePath + OBJ +requestStream.resourceTemplate + OBJ +
-        requestStream.method + OBJ + requestStream.apiVersion + OBJ + requestStream.requestCount + OBJ +
-        requestStream.requestTime + OBJ + requestStream.username + OBJ + requestStream.tenantDomain + OBJ +
-        requestStream.hostName + OBJ + requestStream.apiPublisher + OBJ + requestStream.applicationName + OBJ
-        + requestStream.applicationId + OBJ + requestStream.userAgent + OBJ + requestStream.tier +
-        OBJ + requestStream.continuedOnThrottleOut + OBJ + requestStream.clientIp + requestStream.applicationOwner;
-}
-
-function getMetaData(AnalyticsRequestStream requestStream) returns (string) {
-    return "{\"keyType\":\"" + requestStream.keyType + "\",\"correlationID\":\"" + requestStream.correlationID + "\"}";
-}
-
-function getCorrelationData(AnalyticsRequestStream request) returns (string) {
-    return request.correlationID;
-}
+stream<AnalyticsRequestStream> eventStream;
 
 function generateRequestEvent(http:Request request, http:FilterContext context) returns (AnalyticsRequestStream){
     //ready authentication context to get values
@@ -64,16 +41,14 @@ function generateRequestEvent(http:Request request, http:FilterContext context)
     requestStream.context = getContext(context);
     requestStream.tenantDomain = getTenantDomain(context);
     requestStream.api = getApiName(context);
-    requestStream.apiVersion = getAPIDetailsFromServiceAnnotation(reflect:getServiceAnnotations(context.serviceType)).
-    apiVersion;
+    requestStream.apiVersion = getResourceMetadata(context).apiVersion;
 
     //todo: hostname verify
     requestStream.hostName = "localhost";   //todo:get the host properl
     requestStream.method = request.method;
     //todo:verify resourcepath and resourceTemplate
     requestStream.resourceTemplate = "resourcePath";
-    requestStream.resourcePath = getResourceConfigAnnotation
-    (reflect:getResourceAnnotations(context.serviceType, context.resourceName)).path;
+    requestStream.resourcePath = getResourceMetadata(context).resourcePath;
     //todo:random uuid taken from throttle filter
     requestStream.correlationID = "71c60dbd-b2be-408d-9e2e-4fd11f60cfbc";
     requestStream.requestCount = 1;
@@ -85,61 +60,26 @@ function generateRequestEvent(http:Request request, http:FilterContext context)
 
 }
 
-function generateEventFromRequest(AnalyticsRequestStream requestStream) returns EventDTO {
-    EventDTO eventDTO;
-    eventDTO.streamId = "org.wso2.apimgt.statistics.request:1.1.0";
-    eventDTO.timeStamp = getCurrentTime();
-    eventDTO.metaData = getMetaData(requestStream);
-    eventDTO.correlationData = getCorrelationData(requestStream);
-    eventDTO.payloadData = getPayload(requestStream);
-    return eventDTO;
-}
-
-function getEventData(EventDTO dto) returns string {
-    string output = "streamId" + KVT + dto.streamId + EVS + "timestamp" + KVT + dto.timeStamp + EVS +
-        "metadata" + KVT + dto.metaData + EVS + "correlationData" + KVT + dto.correlationData + EVS +
-        "payLoadData" + KVT + dto.payloadData + "\n";
-    return output;
+@Description {value:"Queues an analytics event to be written to the usage data file"}
+@Param {value:"requestStream: Analytics event"}
+function writeEventToFile(AnalyticsRequestStream requestStream) {
+    if (!writeAnalyticsEvent(requestStream)) {
+        log:printDebug("Analytics event buffer is full, dropped event " + requestStream.correlationID);
+    }
 }
 
-function writeEventToFile(EventDTO eventDTO) {
-    //todo:batch events to reduce IO cost
-    int currentTime = getCurrentTime();
-    if (initializingTime == 0) {
-        initializingTime = getCurrentTime();
-    }
-    if (currentTime - initializingTime > 60*1000*10) {
-        var result = rotateFile("api-usage-data.dat");
-        initializingTime = getCurrentTime();
-        match result {
-            string name => {
-                log:printInfo("File rotated successfully.");
-            }
-            error err => {
-                log:printError("Error occurred while rotating the file: ", err = err);
-            }
-        }
-    }
-    io:ByteChannel channel = io:openFile("api-usage-data.dat", io:APPEND);
-    io:CharacterChannel  charChannel = new(channel,  "UTF-8");
-    try {
-        match charChannel.write(getEventData(eventDTO),0) {
-            int numberOfCharsWritten => {
-                log:printInfo("Event is getting written");
-            }
-            error err => {
-                throw err;
-            }
-        }
+@Description {value:"Starts the asynchronous writer of the usage data file"}
+@Param {value:"fileName: File the events are written to"}
+@Param {value:"bufferSize: Maximum number of events waiting to be written"}
+@Param {value:"batchSize: Maximum number of events written at once"}
+@Param {value:"flushInterval: Maximum time in milliseconds an event waits to be written"}
+@Param {value:"rotatingPeriod: Time in milliseconds after which the file is rotated for uploading"}
+@Param {value:"maxFileSize: Compressed size in bytes after which the file is rotated, 0 to rotate only by time"}
+@Param {value:"overflowTimeout: Time in milliseconds a request waits for space in a full buffer, 0 to drop events"}
+public native function initAnalyticsEventWriter(string fileName, int bufferSize, int batchSize, int flushInterval,
+                                                int rotatingPeriod, int maxFileSize, int overflowTimeout);
 
-    } finally {
-        match charChannel.close() {
-            error sourceCloseError => {
-                log:printError("Error occured while closing the channel: ", err = sourceCloseError);
-            }
-            () => {
-                log:printDebug("Source channel closed successfully.");
-            }
-        }
-    }
-}
\ No newline at end of file
+@Description {value:"Queues an event to be written to the usage data file"}
+@Param {value:"event: Analytics event"}
+@Return {value:"boolean: false if the event was dropped"}
+public native function writeAnalyticsEvent(AnalyticsRequestStream event) returns boolean;
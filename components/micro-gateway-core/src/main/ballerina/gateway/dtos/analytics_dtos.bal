@@ -42,12 +42,4 @@ public type AnalyticsRequestStream  {
     boolean continuedOnThrottleOut;
     int requestCount;
 
-};
-
-public type EventDTO {
-    string streamId;
-    int timeStamp;
-    string metaData;
-    string correlationData;
-    string payloadData;
 };
\ No newline at end of file
@@ -51,6 +51,7 @@ public type APIRequestMetaDataDto {
     string clientDomain;
     string matchingResource;
     string httpVerb;
+    int resourceIndex;
 };
 
 public type AuthenticationContext {
@@ -85,3 +86,33 @@ public type Credentials {
    string password;
 };
 
+
+@Description {value:"Metadata of a resource resolved from the annotations of the resource and its service"}
+@Field {value:"basePath: Base path of the service"}
+@Field {value:"apiContext: Context of the API, which is the base path with the API version"}
+@Field {value:"apiVersion: Version of the API"}
+@Field {value:"apiName: Name of the API"}
+@Field {value:"authorizationHeader: Name of the header carrying the credentials"}
+@Field {value:"tenantDomain: Tenant domain of the API"}
+@Field {value:"resourcePath: Path template of the resource"}
+@Field {value:"httpVerb: HTTP method of the resource"}
+@Field {value:"resourceTier: Resource level throttle tier"}
+@Field {value:"isSecured: Whether authentication is enabled for the resource"}
+@Field {value:"authProviders: Auth provider ids of the resource"}
+@Field {value:"resourceIndex: Number of the resource within its API, used by the key validation cache"}
+public type ResourceMetadata {
+    string basePath;
+    string apiContext;
+    string apiVersion;
+    string apiName;
+    string apiKey;
+    string resourceKey;
+    string authorizationHeader;
+    string tenantDomain;
+    string resourcePath;
+    string httpVerb;
+    string resourceTier;
+    boolean isSecured;
+    string[] authProviders;
+    int resourceIndex;
+};
@@ -31,6 +31,10 @@ public type RequestStreamDTO {
     string apiTenant;
     string appId;
     string apiName;
+    int ip;
+    // the client address as a 128 bit number, so that IPv6 clients are carried as well, IPv4 ones being IPv4-mapped
+    int ipHigh;
+    int ipLow;
     string properties;
 };
 
@@ -23,7 +23,13 @@ endpoint http:Client conditionRetrievalEndpoint {
     }
 };
 endpoint http:Client keyValidationEndpoint {
-    url:getConfigValue(KM_CONF_INSTANCE_ID, KM_SERVER_URL, "https://localhost:9443")
+    url:getConfigValue(KM_CONF_INSTANCE_ID, KM_SERVER_URL, "https://localhost:9443"),
+    httpVersion:getConfigValue(KM_CONF_INSTANCE_ID, KM_HTTP_VERSION, "1.1"),
+    timeoutMillis:getConfigIntValue(KM_CONF_INSTANCE_ID, KM_TIMEOUT, 10000),
+    connectionThrottling:{
+        maxActiveConnections:getConfigIntValue(KM_CONF_INSTANCE_ID, KM_MAX_ACTIVE_CONNECTIONS, -1),
+        waitTime:getConfigIntValue(KM_CONF_INSTANCE_ID, KM_CONNECTION_WAIT_TIME, 60000)
+    }
 };
 
 endpoint http:Listener tokenListenerEndpoint {
@@ -33,8 +33,7 @@ public type AnalyticsRequestFilter object {
         }
         http:FilterResult requestFilterResult;
         AnalyticsRequestStream requestStream = generateRequestEvent(request, context);
-        EventDTO eventDto = generateEventFromRequest(requestStream);
-        eventStream.publish(eventDto);
+        eventStream.publish(requestStream);
         requestFilterResult = { canProceed: true, statusCode: 200, message: "Analytics filter processed." };
         return requestFilterResult;
 
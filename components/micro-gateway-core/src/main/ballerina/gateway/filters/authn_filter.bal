@@ -43,6 +43,15 @@ public type AuthnFilter object {
         //Setting UUID
         context.attributes[MESSAGE_ID] = system:uuid();
         context.attributes[FILTER_FAILED] = false;
+        // requests blocked by their API or client IP are rejected before their keys are validated, the application
+        // and user conditions are checked by the throttle filter once the request is authenticated
+        if (hasBlockConditions() && isRequestBlocked(getResourceMetadata(context).apiContext, "", "",
+                getClientIp(request))) {
+            log:printDebug("Request is blocked by a block condition");
+            setErrorMessageToFilterContext(context, REQUEST_BLOCKED_BY_CONDITION);
+            return createFilterResult(true, 200, "Request is blocked. But continuing in order to provide error
+                                    details");
+        }
         // get auth config for this resource
         boolean authenticated;
         APIRequestMetaDataDto apiKeyValidationRequestDto = getKeyValidationRequestObject(context);
@@ -52,7 +61,7 @@ public type AuthnFilter object {
         boolean isAuthorized;
         if (isSecured) {
             string authHeader;
-            string authHeaderName = getAuthorizationHeader(reflect:getServiceAnnotations(context.serviceType));
+            string authHeaderName = getResourceMetadata(context).authorizationHeader;
             if (request.hasHeader(authHeaderName)) {
                 authHeader = request.getHeader(authHeaderName);
             } else {
@@ -66,6 +75,26 @@ public type AuthnFilter object {
             if(providerId != AUTH_SCHEME_OAUTH2) {
                 log:printDebug("Non oauth token found. Hence calling the auth scheme : " + providerId );
                 string[] providerIds = [providerId];
+                string jwtToken;
+                string jwtCacheKey;
+                if (providerId == AUTH_SCHEME_JWT) {
+                    match extractAccessToken(request, authHeaderName) {
+                        string token => {
+                            jwtToken = token;
+                            jwtCacheKey = digestCacheKey(token);
+                        }
+                        error err => {}
+                    }
+                }
+                // a JWT verified by an earlier request is authenticated from its cached claims, without verifying
+                // its signature again
+                if (jwtCacheKey != "" && authenticateFromVerifiedJwtCache(jwtCacheKey, jwtToken)) {
+                    log:printDebug("JWT found in the verified JWT cache.");
+                    context.attributes[JWT_CACHE_KEY] = jwtCacheKey;
+                    isAuthorized = true;
+                    checkAndRemoveAuthHeaders(request, authHeaderName);
+                    return createAuthnResult(isAuthorized);
+                }
                 // if authorization header is not default auth header we need to set it to the default header in
                 // order for jwt to work. If there is an already default auth header we back up it to a temp auth
                 // header and set the default authentication header.
@@ -80,6 +109,9 @@ public type AuthnFilter object {
                 }
                 isAuthorized = self.authnHandlerChain.handleWithSpecificAuthnHandlers(providerIds, request);
                 log:printDebug("Authentication handler chain returned with value : " + isAuthorized);
+                if (isAuthorized && jwtCacheKey != "" && putVerifiedJwt(jwtCacheKey, jwtToken)) {
+                    context.attributes[JWT_CACHE_KEY] = jwtCacheKey;
+                }
                 checkAndRemoveAuthHeaders(request, authHeaderName);
             } else {
                 match extractAccessToken(request, authHeaderName) {
@@ -176,41 +208,75 @@ public type AuthnFilter object {
 @Param {value:"context: FilterContext object"}
 @Return {value:"boolean, string[]: tuple of whether the resource is secured and the list of auth provider ids "}
 function getResourceAuthConfig (http:FilterContext context) returns (boolean, string[]) {
-    boolean resourceSecured;
-    string[] authProviderIds = [];
-    // get authn details from the resource level
-    http:ListenerAuthConfig? resourceLevelAuthAnn = getAuthAnnotation(ANN_PACKAGE,
-    RESOURCE_ANN_NAME,
-    reflect:getResourceAnnotations(context.serviceType, context.resourceName));
-    http:ListenerAuthConfig? serviceLevelAuthAnn = getAuthAnnotation(ANN_PACKAGE,
-    SERVICE_ANN_NAME,
-    reflect:getServiceAnnotations(context.serviceType));
-    // check if authentication is enabled
-    resourceSecured = isResourceSecured(resourceLevelAuthAnn, serviceLevelAuthAnn);
-    // if resource is not secured, no need to check further
-    if (!resourceSecured) {
-        return (resourceSecured, authProviderIds);
-    }
-    // check if auth providers are given at resource level
-    match resourceLevelAuthAnn.authProviders {
-        string[] providers => {
-            authProviderIds = providers;
-        }
-        () => {
-            // no auth providers found in resource level, try in rest level
-            match serviceLevelAuthAnn.authProviders {
-                string[] providers => {
-                    authProviderIds = providers;
-                }
-                () => {
-                    // no auth providers found
-                }
-            }
-        }
+    ResourceMetadata metadata = getResourceMetadata(context);
+    return (metadata.isSecured, metadata.authProviders);
+}
+
+@Description {value:"Authenticates a JWT verified by an earlier request from its cached claims, setting the
+authentication context and the user principal as the JWT authentication handler does"}
+@Param {value:"cacheKey: Verified JWT cache key of the token"}
+@Param {value:"jwtToken: JWT of the request"}
+@Return {value:"boolean: true if the token is cached and has not expired"}
+function authenticateFromVerifiedJwtCache(string cacheKey, string jwtToken) returns boolean {
+    // claims indexed by the JWT_CLAIM_ constants
+    string[] claims = getVerifiedJwt(cacheKey);
+    if (lengthof claims == 0) {
+        return false;
     }
-    return (resourceSecured, authProviderIds);
+    runtime:UserPrincipal userPrincipal = runtime:getInvocationContext().userPrincipal;
+    userPrincipal.userId = claims[JWT_CLAIM_ISSUER] + ":" + claims[JWT_CLAIM_SUBJECT];
+    userPrincipal.username = claims[JWT_CLAIM_SUBJECT];
+    userPrincipal.scopes = getVerifiedJwtScopes(cacheKey);
+    userPrincipal.claims = getVerifiedJwtClaims(cacheKey);
+    runtime:AuthContext authContext = runtime:getInvocationContext().authContext;
+    authContext.scheme = AUTH_SCHEME_JWT;
+    authContext.authToken = jwtToken;
+    return true;
 }
 
+@Description {value:"Creates the cache of the JWTs whose signature has been verified"}
+@Param {value:"capacity: Maximum number of tokens kept"}
+@Param {value:"clockSkew: Time in milliseconds a cached token is accepted ahead of its nbf claim"}
+public native function initVerifiedJwtStore(int capacity, int clockSkew);
+
+@Description {value:"Returns the claims of a JWT verified by an earlier request"}
+@Param {value:"cacheKey: Verified JWT cache key of the token"}
+@Return {value:"string[]: Claims of the token, or an empty array if it is not cached or has expired"}
+public native function getVerifiedJwt(string cacheKey) returns string[];
+
+@Description {value:"Returns the scopes of a JWT verified by an earlier request"}
+@Param {value:"cacheKey: Verified JWT cache key of the token"}
+@Return {value:"string[]: Scopes of the token"}
+public native function getVerifiedJwtScopes(string cacheKey) returns string[];
+
+@Description {value:"Returns the custom claims of a JWT verified by an earlier request"}
+@Param {value:"cacheKey: Verified JWT cache key of the token"}
+@Return {value:"map: Custom claims of the token with scalar values"}
+public native function getVerifiedJwtClaims(string cacheKey) returns map;
+
+@Description {value:"Returns the subscription of a JWT verified by an earlier request to an API"}
+@Param {value:"cacheKey: Verified JWT cache key of the token"}
+@Param {value:"apiName: Name of the API"}
+@Param {value:"apiVersion: Version of the API"}
+@Return {value:"string[]: Claims of the token followed by the subscription tier and subscriber if it is subscribed to
+the API, or an empty array if the token is not cached or has expired"}
+public native function getVerifiedJwtSubscription(string cacheKey, string apiName, string apiVersion)
+                           returns string[];
+
+@Description {value:"Returns the subscription of a JWT which is not cached to an API, parsing its payload"}
+@Param {value:"jwtToken: JWT of the request"}
+@Param {value:"apiName: Name of the API"}
+@Param {value:"apiVersion: Version of the API"}
+@Return {value:"string[]: Claims of the token followed by the subscription tier and subscriber if it is subscribed to
+the API, or an empty array if the payload of the token cannot be parsed"}
+public native function getJwtSubscription(string jwtToken, string apiName, string apiVersion) returns string[];
+
+@Description {value:"Caches a JWT whose signature has been verified"}
+@Param {value:"cacheKey: Verified JWT cache key of the token"}
+@Param {value:"jwtToken: JWT of the request"}
+@Return {value:"boolean: true if the token was cached"}
+public native function putVerifiedJwt(string cacheKey, string jwtToken) returns boolean;
+
 function getAuthenticationProviderType(string authHeader) returns (string) {
     if(authHeader.contains(AUTH_SCHEME_BASIC)){
         return AUTHN_SCHEME_BASIC;
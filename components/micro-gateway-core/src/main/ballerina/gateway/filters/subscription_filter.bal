@@ -42,57 +42,76 @@ public type SubscriptionFilter object {
         if(authScheme == AUTH_SCHEME_JWT ){
             string jwtToken = runtime:getInvocationContext().authContext.authToken;
             string currentAPIContext = getContext(filterContext);
-            AuthenticationContext authenticationContext;
-            match getEncodedJWTPayload(jwtToken) {
-                string  jwtPayload => {
-                    match getDecodedJWTPayload(jwtPayload) {
-                        json decodedPayload => {
-                            json subscribedAPIList = decodedPayload.subscribedAPIs;
-                            APIConfiguration apiConfig = getAPIDetailsFromServiceAnnotation(reflect:
-                                getServiceAnnotations(filterContext.serviceType));
-                            foreach subscription in subscribedAPIList {
-                                if (subscription.name.toString() == apiConfig.name &&
-                                    subscription["version"].toString() == apiConfig.apiVersion) {
-                                    authenticationContext.authenticated = true;
-                                    authenticationContext.tier = subscription.subscriptionTier.toString();
-                                    authenticationContext.apiKey = jwtToken;
-                                    authenticationContext.username = decodedPayload.endUser.toString();
-                                    authenticationContext.callerToken = jwtToken    ;
-                                    authenticationContext.applicationId = decodedPayload.application.id.toString();
-                                    authenticationContext.applicationName = decodedPayload.application.name.toString();
-                                    authenticationContext.applicationTier = decodedPayload.application.tier.toString();
-                                    authenticationContext.subscriber = subscription.subscriber.toString();
-                                    authenticationContext.consumerKey = decodedPayload.consumerKey.toString();
-                                    authenticationContext.apiTier = decodedPayload.apiTier.toString();
-                                    authenticationContext.apiPublisher = decodedPayload.publisher.toString();
-                                    authenticationContext.subscriberTenantDomain = decodedPayload
-                                    .subscriberTenantDomain.toString();
-                                    filterContext.attributes[AUTHENTICATION_CONTEXT] = authenticationContext;
-                                    return createFilterResult(true, 200, "Successfully validated subscriptions");
-                                }
-                            }
-                            setErrorMessageToFilterContext(filterContext, API_AUTH_FORBIDDEN);
-                            return createFilterResult(true, 200, "Subscription filter has failed. But
-                                    continuing in order to  provide error details");
-                        }
-                        error err => {
-                            log:printError("Error while decoding jwt token with payload : " +
-                                    jwtPayload, err = err);
-                            setErrorMessageToFilterContext(filterContext, API_AUTH_GENERAL_ERROR);
-                            return createFilterResult(true, 200, "Subscription filter has failed. But
-                                    continuing in order to  provide error details");
+            // the claims of a JWT cached by the authentication filter are read without decoding its payload again
+            match <string> filterContext.attributes[JWT_CACHE_KEY] {
+                string jwtCacheKey => {
+                    match validateSubscriptionFromVerifiedJwtCache(filterContext, jwtCacheKey, jwtToken) {
+                        http:FilterResult filterResult => {
+                            return filterResult;
                         }
+                        () => {}
                     }
                 }
-                error err => {
-                    log:printError(err.message, err = err);
-                    setErrorMessageToFilterContext(filterContext, API_AUTH_GENERAL_ERROR);
-                    return createFilterResult(true, 200, "Subscription filter has failed. But
+                error err => {}
+            }
+            // a token which is not cached is parsed into the same subscription index
+            ResourceMetadata metadata = getResourceMetadata(filterContext);
+            string[] claims = getJwtSubscription(jwtToken, metadata.apiName, metadata.apiVersion);
+            if (lengthof claims == 0) {
+                setErrorMessageToFilterContext(filterContext, API_AUTH_GENERAL_ERROR);
+                return createFilterResult(true, 200, "Subscription filter has failed. But
                                     continuing in order to  provide error details");
-                }
             }
+            return validateSubscriptionFromClaims(filterContext, claims, jwtToken);
         }
         return createFilterResult(true, 200, "Successfully validated subscriptions");
     }
 
 };
+
+@Description {value:"Validates the subscription of a JWT to the API from the claims cached when it was verified"}
+@Param {value:"filterContext: FilterContext instance"}
+@Param {value:"jwtCacheKey: Verified JWT cache key of the token"}
+@Param {value:"jwtToken: JWT of the request"}
+@Return {value:"FilterResult: Result of the subscription validation, or () if the token is no longer cached"}
+function validateSubscriptionFromVerifiedJwtCache(http:FilterContext filterContext, string jwtCacheKey,
+                                                  string jwtToken) returns http:FilterResult|() {
+    ResourceMetadata metadata = getResourceMetadata(filterContext);
+    string[] claims = getVerifiedJwtSubscription(jwtCacheKey, metadata.apiName, metadata.apiVersion);
+    if (lengthof claims == 0) {
+        return ();
+    }
+    return validateSubscriptionFromClaims(filterContext, claims, jwtToken);
+}
+
+@Description {value:"Validates the subscription of a JWT to the API from its claims"}
+@Param {value:"filterContext: FilterContext instance"}
+@Param {value:"claims: Claims indexed by the JWT_CLAIM_ constants, followed by the subscription tier and subscriber if
+the token is subscribed to the API"}
+@Param {value:"jwtToken: JWT of the request"}
+@Return {value:"FilterResult: Result of the subscription validation"}
+function validateSubscriptionFromClaims(http:FilterContext filterContext, string[] claims, string jwtToken)
+             returns http:FilterResult {
+    // only the claims of the token are returned when it is not subscribed to the API
+    if (lengthof claims == JWT_CLAIM_COUNT) {
+        setErrorMessageToFilterContext(filterContext, API_AUTH_FORBIDDEN);
+        return createFilterResult(true, 200, "Subscription filter has failed. But
+                                    continuing in order to  provide error details");
+    }
+    AuthenticationContext authenticationContext;
+    authenticationContext.authenticated = true;
+    authenticationContext.tier = claims[JWT_CLAIM_SUBSCRIPTION_TIER];
+    authenticationContext.apiKey = jwtToken;
+    authenticationContext.username = claims[JWT_CLAIM_END_USER];
+    authenticationContext.callerToken = jwtToken;
+    authenticationContext.applicationId = claims[JWT_CLAIM_APPLICATION_ID];
+    authenticationContext.applicationName = claims[JWT_CLAIM_APPLICATION_NAME];
+    authenticationContext.applicationTier = claims[JWT_CLAIM_APPLICATION_TIER];
+    authenticationContext.subscriber = claims[JWT_CLAIM_SUBSCRIBER];
+    authenticationContext.consumerKey = claims[JWT_CLAIM_CONSUMER_KEY];
+    authenticationContext.apiTier = claims[JWT_CLAIM_API_TIER];
+    authenticationContext.apiPublisher = claims[JWT_CLAIM_PUBLISHER];
+    authenticationContext.subscriberTenantDomain = claims[JWT_CLAIM_SUBSCRIBER_TENANT_DOMAIN];
+    filterContext.attributes[AUTHENTICATION_CONTEXT] = authenticationContext;
+    return createFilterResult(true, 200, "Successfully validated subscriptions");
+}
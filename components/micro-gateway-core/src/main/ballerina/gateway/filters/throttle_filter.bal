@@ -19,6 +19,7 @@ import ballerina/log;
 import ballerina/cache;
 import ballerina/config;
 import ballerina/time;
+import ballerina/runtime;
 
 @Description { value: "Representation of the Throttle filter" }
 @Field { value: "filterRequest: request filter method which attempts to throttle the request" }
@@ -47,25 +48,36 @@ public type ThrottleFilter object {
         //Throttle Tiers
         string applicationLevelTier;
         string subscriptionLevelTier;
-        TierConfiguration tier = getResourceLevelTier(reflect:getResourceAnnotations(context.serviceType,
-                context.resourceName));
-        string resourceLevelTier = tier.policy;
+        ResourceMetadata metadata = getResourceMetadata(context);
+        string resourceLevelTier = metadata.resourceTier;
         string apiLevelTier;
         //Throttled decisions
         boolean isThrottled = false;
         boolean isResourceLevelThrottled = false;
         boolean apiLevelThrottledTriggered = false;
         boolean stopOnQuotaReach = true;
-        string apiContext = getContext(context);
-        string apiVersion = getAPIDetailsFromServiceAnnotation(reflect:getServiceAnnotations(context.serviceType)).
-        apiVersion;
+        string apiContext = metadata.basePath;
+        string apiVersion = metadata.apiVersion;
         if (context.attributes.hasKey(AUTHENTICATION_CONTEXT)) {
             AuthenticationContext keyvalidationResult = check <AuthenticationContext>context.attributes[
             AUTHENTICATION_CONTEXT];
             requestFilterResult = {canProceed:true};
+            if (hasBlockConditions() && isRequestBlocked("", keyvalidationResult.subscriber + ":"
+                    + keyvalidationResult.applicationName, keyvalidationResult.username, getClientIp(request))) {
+                requestFilterResult = {canProceed:false, statusCode:403, message:
+                REQUEST_BLOCKED_BY_CONDITION_MESSAGE};
+                publishThrottleAnalyticsEvent(request, context, keyvalidationResult, REQUEST_BLOCKED);
+                return requestFilterResult;
+            }
+            // keys are interned once per request and passed on as their ids
+            string[] throttleKeys = getThrottleKeys(keyvalidationResult.applicationId, keyvalidationResult.username,
+                metadata.apiKey);
+            string applicationLevelThrottleKey = throttleKeys[0];
+            string subscriptionLevelThrottleKey = throttleKeys[1];
             boolean isThrottled;
             boolean stopOnQuata;
-            (isThrottled, stopOnQuata) = isSubscriptionLevelThrottled(context, keyvalidationResult);
+            (isThrottled, stopOnQuata) = isSubscriptionLevelThrottled(keyvalidationResult,
+                subscriptionLevelThrottleKey);
             if (isThrottled) {
                 if (stopOnQuata) {
                     requestFilterResult = {canProceed:false, statusCode:429, message:
@@ -79,7 +91,7 @@ public type ThrottleFilter object {
                     context.attributes[IS_THROTTLE_OUT] = true;
                 }
             }
-            if (isApplicationLevelThrottled(keyvalidationResult)){
+            if (isApplicationLevelThrottled(keyvalidationResult, applicationLevelThrottleKey)){
                 requestFilterResult = {canProceed:false, statusCode:429, message:
                 "You have exceeded your quota"};
                 publishThrottleAnalyticsEvent(request, context, keyvalidationResult,
@@ -87,10 +99,15 @@ public type ThrottleFilter object {
                 return requestFilterResult;
             }
 
-            //Publish throttle event to internal policies
-            RequestStreamDTO throttleEvent = generateThrottleEvent(request, context,
-                keyvalidationResult);
-            publishNonThrottleEvent(throttleEvent);
+            // Count the request against the local policies and publish it to the throttle streams only if any of
+            // the policies are evaluated there
+            if (!countLocalThrottleEvent(keyvalidationResult, applicationLevelThrottleKey,
+                    subscriptionLevelThrottleKey)) {
+                //Publish throttle event to internal policies
+                RequestStreamDTO throttleEvent = generateThrottleEvent(request, context, metadata,
+                    keyvalidationResult, applicationLevelThrottleKey, subscriptionLevelThrottleKey);
+                publishNonThrottleEvent(throttleEvent);
+            }
         } else {
             requestFilterResult = {canProceed:false, statusCode:500, message:"Internal Error Occurred"};
         }
@@ -114,109 +131,104 @@ function isHardlimitThrottled(string context, string apiVersion) returns (boolea
 }
 
 
-function isSubscriptionLevelThrottled(http:FilterContext context, AuthenticationContext keyValidationDto) returns (
-            boolean, boolean) {
-    string subscriptionLevelThrottleKey = keyValidationDto.applicationId + ":" + getContext
-        (context) + ":" + getAPIDetailsFromServiceAnnotation(reflect:getServiceAnnotations(context.serviceType)).apiVersion
-    ;
+function isSubscriptionLevelThrottled(AuthenticationContext keyValidationDto, string subscriptionLevelThrottleKey)
+             returns (boolean, boolean) {
+    if (hasLocalThrottlePolicy(SUBSCRIPTION_THROTTLE_POLICY, keyValidationDto.tier)) {
+        if (isLocallyThrottled(SUBSCRIPTION_THROTTLE_POLICY, keyValidationDto.tier, subscriptionLevelThrottleKey)) {
+            return (true, isLocalThrottlePolicyStopOnQuotaReach(SUBSCRIPTION_THROTTLE_POLICY, keyValidationDto.tier));
+        }
+        return (false, false);
+    }
     return isThrottled(subscriptionLevelThrottleKey);
 }
 
-function isApplicationLevelThrottled(AuthenticationContext keyValidationDto) returns (boolean) {
-    string applicationLevelThrottleKey = keyValidationDto.applicationId + ":" + keyValidationDto.username;
+function isApplicationLevelThrottled(AuthenticationContext keyValidationDto, string applicationLevelThrottleKey)
+             returns (boolean) {
+    if (hasLocalThrottlePolicy(APPLICATION_THROTTLE_POLICY, keyValidationDto.applicationTier)) {
+        return isLocallyThrottled(APPLICATION_THROTTLE_POLICY, keyValidationDto.applicationTier,
+            applicationLevelThrottleKey);
+    }
     boolean throttled;
     boolean stopOnQuata;
     (throttled, stopOnQuata) = isThrottled(applicationLevelThrottleKey);
     return throttled;
 }
-function generateThrottleEvent(http:Request req, http:FilterContext context, AuthenticationContext keyValidationDto)
-             returns (
-                     RequestStreamDTO) {
+@Description {value:"Counts the request against the application and subscription policies evaluated in process"}
+@Param {value:"keyValidationDto: Authentication context of the request"}
+@Param {value:"applicationLevelThrottleKey: Id of the application throttle key of the request"}
+@Param {value:"subscriptionLevelThrottleKey: Id of the subscription throttle key of the request"}
+@Return {value:"boolean: true if both policies are local, hence the request need not be published to the streams"}
+function countLocalThrottleEvent(AuthenticationContext keyValidationDto, string applicationLevelThrottleKey,
+                                 string subscriptionLevelThrottleKey) returns boolean {
+    boolean subscriptionPolicyCounted = incrementLocalThrottleCount(SUBSCRIPTION_THROTTLE_POLICY,
+        keyValidationDto.tier, subscriptionLevelThrottleKey);
+    boolean applicationPolicyCounted = incrementLocalThrottleCount(APPLICATION_THROTTLE_POLICY,
+        keyValidationDto.applicationTier, applicationLevelThrottleKey);
+    return subscriptionPolicyCounted && applicationPolicyCounted;
+}
+
+function generateThrottleEvent(http:Request req, http:FilterContext context, ResourceMetadata metadata,
+                               AuthenticationContext keyValidationDto, string applicationLevelThrottleKey,
+                               string subscriptionLevelThrottleKey) returns (RequestStreamDTO) {
     RequestStreamDTO requestStreamDto;
-    string apiVersion = getAPIDetailsFromServiceAnnotation(reflect:getServiceAnnotations
-        (context.serviceType)).apiVersion;
+    string apiVersion = metadata.apiVersion;
     requestStreamDto.messageID = <string>context.attributes[MESSAGE_ID];
-    requestStreamDto.apiKey = getContext(context) + ":" + apiVersion;
-    requestStreamDto.appKey = keyValidationDto.applicationId + ":" + keyValidationDto.username;
-    requestStreamDto.subscriptionKey = keyValidationDto.applicationId + ":" + getContext(context) + ":" +
-        apiVersion;
+    requestStreamDto.apiKey = metadata.apiKey;
+    requestStreamDto.appKey = applicationLevelThrottleKey;
+    requestStreamDto.subscriptionKey = subscriptionLevelThrottleKey;
     requestStreamDto.appTier = keyValidationDto.applicationTier;
     requestStreamDto.apiTier = keyValidationDto.apiTier;
     requestStreamDto.subscriptionTier = keyValidationDto.tier;
-    requestStreamDto.resourceKey = getContext(context) + "/" + getAPIDetailsFromServiceAnnotation(reflect:
-            getServiceAnnotations(context.serviceType)).apiVersion;
-    TierConfiguration tier = getResourceLevelTier(reflect:getResourceAnnotations(context.serviceType,
-            context.resourceName));
-    requestStreamDto.resourceTier = tier.policy;
+    requestStreamDto.resourceKey = metadata.resourceKey;
+    requestStreamDto.resourceTier = metadata.resourceTier;
     requestStreamDto.userId = keyValidationDto.username;
-    requestStreamDto.apiContext = getContext(context);
+    requestStreamDto.apiContext = metadata.basePath;
     requestStreamDto.apiVersion = apiVersion;
     requestStreamDto.appTenant = keyValidationDto.subscriberTenantDomain;
-    requestStreamDto.apiTenant = getTenantDomain(context);
+    requestStreamDto.apiTenant = metadata.tenantDomain;
     requestStreamDto.apiName = getApiName(context);
 
-    json properties = {};
-    string remoteAddr = getClientIp(req);
-    if(remoteAddr != "") {
-        properties.ip = ipToLong(remoteAddr);
+    // ip holds the IPv4 address, -1 for IPv6 clients, and ipHigh and ipLow hold the address of either kind
+    int[] ip = ipToLongs(getClientIp(req));
+    if (lengthof ip == 3) {
+        requestStreamDto.ip = ip[0];
+        requestStreamDto.ipHigh = ip[1];
+        requestStreamDto.ipLow = ip[2];
+    }
+    ThrottleConf throttleConf = getGatewayConfInstance().getThrottleConf();
+    // no policy matches on request attributes unless one of the condition kinds is enabled, so the attributes are
+    // neither collected nor serialized then
+    if (throttleConf.enabledHeaderConditions || throttleConf.enabledQueryParamConditions
+            || throttleConf.enabledJWTClaimConditions) {
+        requestStreamDto.properties = extractConditionAttributes(req, throttleConf).toString();
+    } else {
+        requestStreamDto.properties = "{}";
     }
-    if (getGatewayConfInstance().getThrottleConf().enabledHeaderConditions){
-        string[] headerNames = req.getHeaderNames();
-        foreach headerName in headerNames {
-            string headerValue = untaint req.getHeader(headerName);
-            properties[headerName] = headerValue;
+    return requestStreamDto;
+}
+
+@Description {value:"Extracts the request headers, query parameters and JWT claims of the enabled kinds of conditions"}
+@Param {value:"req: Request instance"}
+@Param {value:"throttleConf: Throttle configuration, telling which kinds of conditions are enabled"}
+@Return {value:"json: values of the attributes of the request, by name"}
+function extractConditionAttributes(http:Request req, ThrottleConf throttleConf) returns json {
+    json properties = {};
+    if (throttleConf.enabledHeaderConditions){
+        foreach headerName in req.getHeaderNames() {
+            properties[headerName] = untaint req.getHeader(headerName);
         }
     }
-    if (getGatewayConfInstance().getThrottleConf().enabledQueryParamConditions){
+    if (throttleConf.enabledQueryParamConditions){
         foreach k, v in req.getQueryParams() {
             properties[k] = v;
         }
     }
-    if (getGatewayConfInstance().getThrottleConf().enabledJWTClaimConditions){
+    if (throttleConf.enabledJWTClaimConditions){
         foreach k, v in runtime:getInvocationContext().userPrincipal.claims {
             properties[k] = <string>v;
         }
     }
-
-    requestStreamDto.properties = properties.toString();
-    return requestStreamDto;
-}
-
-function ipToLong(string ipAddress) returns (int) {
-    int result = 0;
-    string[] ipAddressInArray = ipAddress.split("\\.");
-    int i = 3;
-    while (i >= 0 && (3-i) < lengthof ipAddressInArray) {
-        match <int>ipAddressInArray[3 - i] {
-            int ip => {
-                result = result + shiftLeft(ip, i * 8);
-                i = i - 1;
-                //left shifting 24,16,8,0 and bitwise OR
-                //1. 192 << 24
-                //1. 168 << 16
-                //1. 1   << 8
-                //1. 2   << 0
-            }
-            error e => {
-                log:printError("Error while converting Ip address to long");
-                i = i - 1;
-            }
-        }
-    }
-    return result;
-}
-
-function shiftLeft(int a, int b) returns (int) {
-    if (b == 0) {
-        return a;
-    }
-    int i = b;
-    int result = a;
-    while (i > 0) {
-        result = result * 2;
-        i = i - 1;
-    }
-    return result;
+    return properties;
 }
 
 function getMessageSize() returns (int) {
@@ -232,7 +244,8 @@ function publishThrottleAnalyticsEvent(http:Request req, http:FilterContext cont
 function populateThrottleAnalyticdDTO(http:Request req, http:FilterContext context, AuthenticationContext authConext,
     string reason) returns (ThrottleAnalyticsEventDTO) {
     ThrottleAnalyticsEventDTO eventDto;
-    string apiVersion = getAPIDetailsFromServiceAnnotation(reflect:getServiceAnnotations(context.serviceType)).apiVersion;
+    ResourceMetadata metadata = getResourceMetadata(context);
+    string apiVersion = metadata.apiVersion;
     time:Time time = time:currentTime();
     int currentTimeMills = time.time;
 
@@ -242,10 +255,10 @@ function populateThrottleAnalyticdDTO(http:Request req, http:FilterContext conte
     eventDto.clientType = metaInfo.toString();
     eventDto.accessToken = "-";
     eventDto.userId = authConext.username;
-    eventDto.tenantDomain = getTenantDomain(context);
+    eventDto.tenantDomain = metadata.tenantDomain;
     eventDto.api = getApiName(context);
     eventDto.api_version = apiVersion;
-    eventDto.context = getContext(context);
+    eventDto.context = metadata.basePath;
     eventDto.apiPublisher = authConext.apiPublisher;
     eventDto.throttledTime = currentTimeMills;
     eventDto.applicationName = authConext.applicationName;
@@ -225,6 +225,7 @@ function initiateGatewayConfigurations(EndpointConfiguration config) {
     }
     // default should bind to 0.0.0.0, not localhost. Else will not work in dockerized environments.
     config.host = getConfigValue(LISTENER_CONF_INSTANCE_ID, LISTENER_CONF_HOST, "0.0.0.0");
+    initTrustedProxies(getConfigValue(LISTENER_CONF_INSTANCE_ID, LISTENER_CONF_TRUSTED_PROXIES, ""));
     intitateKeyManagerConfigurations();
     initGatewayCaches();
     initiateThrottleConfigs();
@@ -236,6 +237,24 @@ function initiateThrottleConfigs() {
     config.enabledJWTClaimConditions = getConfigBooleanValue(THROTTLE_CONF_INSTANCE_ID, "enabledJWTClaimConditions", false);
     config.enabledQueryParamConditions = getConfigBooleanValue(THROTTLE_CONF_INSTANCE_ID, "enabledQueryParamConditions", false);
     getGatewayConfInstance().setThrottleConf(config);
+    initThrottleDataStore(getConfigIntValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_DATA_CAPACITY, 100000),
+        getConfigIntValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_DATA_SWEEP_INTERVAL, 60000));
+    initThrottleKeyRegistry(getConfigIntValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_KEYS_CAPACITY, 100000));
+    initBlockConditions(getConfigValue(THROTTLE_CONF_INSTANCE_ID, BLOCK_CONDITIONS_FILE, ""),
+        getConfigIntValue(THROTTLE_CONF_INSTANCE_ID, BLOCK_CONDITIONS_RELOAD_INTERVAL, 10000));
+    // the admin credentials are read once, the admin service rejects every request if no password is configured
+    string blockConditionAdminPassword = getConfigValue(THROTTLE_CONF_INSTANCE_ID, BLOCK_CONDITIONS_ADMIN_PASSWORD, "");
+    if (blockConditionAdminPassword != "") {
+        initBlockConditionAdmin(getBasicAuthHeaderValue(getConfigValue(THROTTLE_CONF_INSTANCE_ID,
+                    BLOCK_CONDITIONS_ADMIN_USERNAME, "admin"), blockConditionAdminPassword));
+    }
+    if (getConfigBooleanValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_SYNC_ENABLED, false)) {
+        initThrottleCounterSync(getConfigValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_SYNC_TRANSPORT, "udp"),
+            getConfigValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_SYNC_LOCAL_ADDRESS, "127.0.0.1:9097"),
+            getConfigValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_SYNC_PEERS, ""),
+            getConfigValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_SYNC_SECRET, ""),
+            getConfigIntValue(THROTTLE_CONF_INSTANCE_ID, THROTTLE_SYNC_INTERVAL, 1000));
+    }
 }
 
 function initiateAuthProviders(EndpointConfiguration config) {
@@ -266,6 +285,8 @@ function intitateKeyManagerConfigurations() {
     credentials.password = getConfigValue(KM_CONF_INSTANCE_ID, "password", "admin");
     keyManagerConf.credentials = credentials;
     getGatewayConfInstance().setKeyManagerConf(keyManagerConf);
+    initKeyValidationProtocol(getConfigValue(KM_CONF_INSTANCE_ID, KM_VALIDATION_PROTOCOL, "soap"),
+        getConfigValue(KM_CONF_INSTANCE_ID, KM_VALIDATION_PATH, ""));
 }
 
 
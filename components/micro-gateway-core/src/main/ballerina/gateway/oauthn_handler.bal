@@ -78,8 +78,19 @@ public function OAuthnAuthenticator::handle (http:Request req, APIRequestMetaDat
 
 
 
+@Description {value:"Key of the token level key validation cache, shared by all the resources of an API"}
+@Param {value:"dto: Key validation request"}
+@Return {value:"string: digest of the access token and the API context and version"}
 function  getAccessTokenCacheKey(APIRequestMetaDataDto dto) returns string {
-    return dto.accessToken + ":" + dto.context + "/" + dto.apiVersion + dto.matchingResource + ":" + dto.httpVerb;
+    return digestCacheKey(dto.accessToken + ":" + dto.context + "/" + dto.apiVersion);
+}
+
+@Description {value:"Key of a resource level key validation, used for the invalid token cache"}
+@Param {value:"cacheKey: Token level cache key"}
+@Param {value:"dto: Key validation request"}
+@Return {value:"string: digest of the token level cache key and the resource and HTTP verb"}
+function getResourceCacheKey(string cacheKey, APIRequestMetaDataDto dto) returns string {
+    return digestCacheKey(cacheKey + dto.matchingResource + ":" + dto.httpVerb);
 }
 
 
@@ -94,7 +105,16 @@ public type OAuthAuthProvider object {
 
     public function authenticate (APIRequestMetaDataDto apiRequestMetaDataDto) returns (APIKeyValidationDto);
 
-    public function doKeyValidation(APIRequestMetaDataDto apiRequestMetaDataDto) returns (json);
+    public function authenticateFromCache (string cacheKey, APIRequestMetaDataDto apiRequestMetaDataDto) returns
+                                                                                        (APIKeyValidationDto|());
+
+    public function authenticateFromKeyManager (string cacheKey, APIRequestMetaDataDto apiRequestMetaDataDto) returns
+                                                                                        (APIKeyValidationDto);
+
+    public function authenticateFromStaleCache (string cacheKey, APIRequestMetaDataDto apiRequestMetaDataDto) returns
+                                                                                        (APIKeyValidationDto|());
+
+    public function doKeyValidation(APIRequestMetaDataDto apiRequestMetaDataDto) returns (APIKeyValidationDto|error);
 
 };
 
@@ -105,115 +125,224 @@ public type OAuthAuthProvider object {
 public function OAuthAuthProvider::authenticate (APIRequestMetaDataDto apiRequestMetaDataDto) returns
                                                                                                               (APIKeyValidationDto) {
     string cacheKey = getAccessTokenCacheKey(apiRequestMetaDataDto);
-    boolean authorized;
+    match self.authenticateFromCache(cacheKey, apiRequestMetaDataDto) {
+        APIKeyValidationDto apiKeyValidationDtoFromCache => {
+            return apiKeyValidationDtoFromCache;
+        }
+        () => {}
+    }
+    // concurrent requests of the same token and resource wait for a single key validation call instead of calling
+    // the key manager each
+    string resourceCacheKey = getResourceCacheKey(cacheKey, apiRequestMetaDataDto);
+    boolean validating = acquireKeyValidation(resourceCacheKey, getConfigIntValue(KM_CONF_INSTANCE_ID,
+            KM_VALIDATION_WAIT_TIMEOUT, 10000));
+    if (!validating) {
+        match self.authenticateFromCache(cacheKey, apiRequestMetaDataDto) {
+            APIKeyValidationDto apiKeyValidationDtoFromCache => {
+                log:printDebug("Access token validated by a concurrent request.");
+                return apiKeyValidationDtoFromCache;
+            }
+            () => {
+                log:printDebug("Concurrent validation of the access token did not complete. Hence calling the key
+                vaidation service.");
+            }
+        }
+    }
     APIKeyValidationDto apiKeyValidationDto;
+    try {
+        apiKeyValidationDto = self.authenticateFromKeyManager(cacheKey, apiRequestMetaDataDto);
+    } finally {
+        if (validating) {
+            releaseKeyValidation(resourceCacheKey);
+        }
+    }
+    return apiKeyValidationDto;
+}
+
+@Description {value:"Authenticate with a oauth2 token from the key validation caches. A token cached for the API is
+only served for the resources it has been authorized for"}
+@Param {value:"cacheKey: Token level key validation cache key of the request"}
+@Param {value:"apiRequestMetaDataDto: Object containig data to call the key validation service"}
+@Return {value:"APIKeyValidationDto: Key validation result, or () if the token is not cached"}
+public function OAuthAuthProvider::authenticateFromCache (string cacheKey, APIRequestMetaDataDto
+    apiRequestMetaDataDto) returns (APIKeyValidationDto|()) {
+    string resourceCacheKey = getResourceCacheKey(cacheKey, apiRequestMetaDataDto);
+    // rejected tokens are answered before reading the key validation cache, mostly by the bloom filter in front of
+    // the invalid token cache
+    match self.gatewayTokenCache.retrieveFromInvalidTokenCache(resourceCacheKey) {
+        boolean cacheAuthorizedValue => {
+            APIKeyValidationDto apiKeyValidationInfoDTO = { authorized: "false", validationStatus:
+            API_AUTH_INVALID_CREDENTIALS_STRING };
+            log:printDebug("Access token found in invalid
+            token cache.");
+            return apiKeyValidationInfoDTO;
+        }
+        () => {}
+    }
     match self.gatewayTokenCache.authenticateFromGatewayKeyValidationCache(cacheKey) {
         APIKeyValidationDto apiKeyValidationDtoFromcache => {
-        if(isAccessTokenExpired(apiKeyValidationDtoFromcache)) {
-            self.gatewayTokenCache.removeFromGatewayKeyValidationCache(cacheKey);
-            self.gatewayTokenCache.addToInvalidTokenCache(cacheKey, true);
-            apiKeyValidationDtoFromcache.authorized= "false";
-            log:printDebug("Access token found in cache. But token is expired");
-            return apiKeyValidationDtoFromcache;
+            if(isAccessTokenExpired(apiKeyValidationDtoFromcache)) {
+                self.gatewayTokenCache.removeFromGatewayKeyValidationCache(cacheKey);
+                self.gatewayTokenCache.addToInvalidTokenCache(resourceCacheKey, true);
+                apiKeyValidationDtoFromcache.authorized= "false";
+                log:printDebug("Access token found in cache. But token is expired");
+                return apiKeyValidationDtoFromcache;
+            }
+            if (isResourceAuthorized(cacheKey, apiRequestMetaDataDto.resourceIndex)) {
+                log:printDebug("Access token " + apiRequestMetaDataDto.accessToken + " found in cache.");
+                // set username
+                runtime:getInvocationContext().userPrincipal.username = apiKeyValidationDtoFromcache.endUserName;
+                if (claimKeyValidationRefresh(cacheKey)) {
+                    // the cached result is served while it is revalidated in the background
+                    future refreshFuture = start refreshKeyValidation(self, cacheKey, apiRequestMetaDataDto);
+                }
+                return apiKeyValidationDtoFromcache;
+            }
+            log:printDebug("Access token found in cache. But not yet validated for the resource");
+        }
+        () => {}
+    }
+    return ();
+}
+
+@Description {value:"Authenticate with a oauth2 token by calling the key validation service, and cache the result"}
+@Param {value:"cacheKey: Token level key validation cache key of the request"}
+@Param {value:"apiRequestMetaDataDto: Object containig data to call the key validation service"}
+@Return {value:"APIKeyValidationDto: Key validation result"}
+public function OAuthAuthProvider::authenticateFromKeyManager (string cacheKey, APIRequestMetaDataDto
+    apiRequestMetaDataDto) returns (APIKeyValidationDto) {
+    APIKeyValidationDto apiKeyValidationDto;
+    if (!isKeyManagerAvailable()) {
+        match self.authenticateFromStaleCache(cacheKey, apiRequestMetaDataDto) {
+            APIKeyValidationDto staleDto => {
+                return staleDto;
+            }
+            () => {}
         }
-        authorized = < boolean > apiKeyValidationDtoFromcache.authorized;
-        apiKeyValidationDto = apiKeyValidationDtoFromcache;
-        log:printDebug("Access token " + apiRequestMetaDataDto.accessToken + " found in cache.");
+    }
+    log:printDebug("Access token not found in cache.
+    Hence calling the key vaidation service.");
+    match self.doKeyValidation(apiRequestMetaDataDto) {
+        APIKeyValidationDto dto => {
+            apiKeyValidationDto = dto;
         }
-        () => {
-            match self.gatewayTokenCache.retrieveFromInvalidTokenCache(cacheKey) {
-                boolean cacheAuthorizedValue => {
-                    APIKeyValidationDto apiKeyValidationInfoDTO = { authorized: "false", validationStatus:
-                    API_AUTH_INVALID_CREDENTIALS_STRING };
-                    log:printDebug("Access token found in invalid
-                    token cache.");
-                    return apiKeyValidationInfoDTO;
+        error err => {
+            log:printError("Error while validating the access token with the key validation service", err = err);
+            match self.authenticateFromStaleCache(cacheKey, apiRequestMetaDataDto) {
+                APIKeyValidationDto staleDto => {
+                    return staleDto;
                 }
                 () => {
-                    log:printDebug("Access token not found in cache.
-                    Hence calling the key vaidation service.");
-                    json keyValidationInfoJson = self.doKeyValidation(apiRequestMetaDataDto);
-                    match <string>keyValidationInfoJson.authorized {
-                        string authorizeValue => {
-                            boolean auth = <boolean>authorizeValue;
-                            if (auth) {
-                                match <APIKeyValidationDto>keyValidationInfoJson {
-                                    APIKeyValidationDto dto => {
-                                        apiKeyValidationDto = dto;
-                                        // specifically setting the key type since type is a keyword in ballerina.
-                                        apiKeyValidationDto.keyType = check <string>keyValidationInfoJson["type"];
-                                    }
-                                    error err => {
-                                        log:printError("Error while converting key validation response json to type APIKeyValidationDto"
-                                            , err = err);
-                                        throw err;
-                                    }
-                                }
-                                authorized = auth;
-                                self.gatewayTokenCache.addToGatewayKeyValidationCache(cacheKey, apiKeyValidationDto);
-                            } else {
-                                self.gatewayTokenCache.addToInvalidTokenCache(cacheKey, true);
-                                apiKeyValidationDto.authorized="false";
-                                apiKeyValidationDto.validationStatus = check <string>keyValidationInfoJson
-                                    .validationStatus;
-                            }
-                        }
-                        error err => {
-                            log:printError("Error while converting authorzed value from key vaidation respnse to a
-                            string value", err=err);
-                            throw err;
-                        }
-                    }
+                    throw err;
                 }
             }
-
         }
     }
-    if (authorized) {
+    if (<boolean>apiKeyValidationDto.authorized) {
+        // a token which was not cached starts over, as resources authorized earlier may no longer be
+        boolean tokenCached = false;
+        match self.gatewayTokenCache.authenticateFromGatewayKeyValidationCache(cacheKey) {
+            APIKeyValidationDto cachedDto => {
+                tokenCached = true;
+            }
+            () => {}
+        }
+        self.gatewayTokenCache.addToGatewayKeyValidationCache(cacheKey, apiKeyValidationDto);
+        authorizeResource(cacheKey, apiRequestMetaDataDto.resourceIndex, !tokenCached);
         // set username
         runtime:getInvocationContext().userPrincipal.username = apiKeyValidationDto.endUserName;
-
+    } else {
+        self.gatewayTokenCache.addToInvalidTokenCache(getResourceCacheKey(cacheKey, apiRequestMetaDataDto), true);
     }
     return apiKeyValidationDto;
 }
 
+@Description {value:"Authenticate with a oauth2 token from a key validation result which left the cache within the
+maximum staleness, while the key manager is unavailable"}
+@Param {value:"cacheKey: Token level key validation cache key of the request"}
+@Param {value:"apiRequestMetaDataDto: Object containig data to call the key validation service"}
+@Return {value:"APIKeyValidationDto: Stale key validation result, or () if none can be served for the request"}
+public function OAuthAuthProvider::authenticateFromStaleCache (string cacheKey, APIRequestMetaDataDto
+    apiRequestMetaDataDto) returns (APIKeyValidationDto|()) {
+    match self.gatewayTokenCache.retrieveStaleFromGatewayKeyValidationCache(cacheKey) {
+        APIKeyValidationDto staleDto => {
+            if (!isAccessTokenExpired(staleDto) && isResourceAuthorized(cacheKey,
+                    apiRequestMetaDataDto.resourceIndex)) {
+                log:printDebug("Key manager is unavailable. Hence serving the stale key validation result of the
+                access token.");
+                // set username
+                runtime:getInvocationContext().userPrincipal.username = staleDto.endUserName;
+                return staleDto;
+            }
+            return ();
+        }
+        () => {
+            return ();
+        }
+    }
+}
+
+@Description {value:"Revalidates a cached access token in the background, keeping the cached result on failure"}
+@Param {value:"authProvider: OAuthAuthProvider the token was authenticated with"}
+@Param {value:"cacheKey: Token level key validation cache key of the request"}
+@Param {value:"apiRequestMetaDataDto: Object containig data to call the key validation service"}
+function refreshKeyValidation(OAuthAuthProvider authProvider, string cacheKey, APIRequestMetaDataDto
+    apiRequestMetaDataDto) {
+    boolean refreshed = false;
+    match authProvider.doKeyValidation(apiRequestMetaDataDto) {
+        APIKeyValidationDto apiKeyValidationDto => {
+            if (<boolean>apiKeyValidationDto.authorized) {
+                authProvider.gatewayTokenCache.addToGatewayKeyValidationCache(cacheKey, apiKeyValidationDto);
+                // the other resources are validated again with the refreshed result
+                authorizeResource(cacheKey, apiRequestMetaDataDto.resourceIndex, true);
+            } else {
+                authProvider.gatewayTokenCache.removeFromGatewayKeyValidationCache(cacheKey);
+                authProvider.gatewayTokenCache.addToInvalidTokenCache(getResourceCacheKey(cacheKey,
+                        apiRequestMetaDataDto), true);
+            }
+            refreshed = true;
+        }
+        error err => {
+            log:printError("Error while refreshing the key validation result of a cached access token", err = err);
+        }
+    }
+    completeKeyValidationRefresh(cacheKey, refreshed);
+}
+
+@Description {value:"Starts the key validation of a cache key, or waits for the one already in flight for the key"}
+@Param {value:"cacheKey: Key validation cache key"}
+@Param {value:"timeout: Maximum time in milliseconds to wait for the key validation in flight"}
+@Return {value:"boolean: true if the caller has to validate the key and release it, false if it waited"}
+public native function acquireKeyValidation(string cacheKey, int timeout) returns boolean;
 
+@Description {value:"Completes the key validation of a cache key, releasing the requests waiting for it"}
+@Param {value:"cacheKey: Key validation cache key"}
+public native function releaseKeyValidation(string cacheKey);
+
+@Description {value:"Calls the key validation service of the key manager in the configured key validation protocol"}
+@Param {value:"apiRequestMetaDataDto: Object containig data to call the key validation service"}
+@Return {value:"APIKeyValidationDto|error: Key validation result, or an error if the service could not be called"}
 public function OAuthAuthProvider::doKeyValidation (APIRequestMetaDataDto apiRequestMetaDataDto)
-                                       returns (json) {
+                                       returns (APIKeyValidationDto|error) {
     try {
         string base64Header = getGatewayConfInstance().getKeyManagerConf().credentials.username + ":" +
             getGatewayConfInstance().getKeyManagerConf().credentials.password;
         string encodedBasicAuthHeader = check base64Header.base64Encode();
 
         http:Request keyValidationRequest = new;
-        http:Response keyValidationResponse = new;
-        xmlns "http://schemas.xmlsoap.org/soap/envelope/" as soapenv;
-        xmlns "http://org.apache.axis2/xsd" as xsd;
-        xml contextXml = xml `<xsd:context>{{apiRequestMetaDataDto.context}}</xsd:context>`;
-        xml versionXml = xml `<xsd:version>{{apiRequestMetaDataDto.apiVersion}}</xsd:version>`;
-        xml tokenXml = xml `<xsd:accessToken>{{apiRequestMetaDataDto.accessToken}}</xsd:accessToken>`;
-        xml authLevelXml = xml `<xsd:requiredAuthenticationLevel>{{apiRequestMetaDataDto
-        .requiredAuthenticationLevel}}</xsd:requiredAuthenticationLevel>`;
-        xml clientDomainXml = xml `<xsd:clientDomain>{{apiRequestMetaDataDto.clientDomain}}</xsd:clientDomain>`;
-        xml resourceXml = xml `<xsd:matchingResource>{{apiRequestMetaDataDto.matchingResource}}</xsd:matchingResource>`;
-        xml httpVerbXml = xml `<xsd:httpVerb>{{apiRequestMetaDataDto.httpVerb}}</xsd:httpVerb>`;
-        xml soapBody = xml`<soapenv:Body></soapenv:Body>`;
-        xml validateXml = xml`<xsd:validateKey></xsd:validateKey>`;
-        xml requestValuesxml = contextXml + versionXml + tokenXml + authLevelXml + clientDomainXml + resourceXml +
-            httpVerbXml;
-        validateXml.setChildren(requestValuesxml);
-        soapBody.setChildren(validateXml);
-        xml soapEnvelope = xml `<soapenv:Envelope></soapenv:Envelope>`;
-        soapEnvelope.setChildren(soapBody);
-
-        keyValidationRequest.setXmlPayload(soapEnvelope);
-        keyValidationRequest.setHeader(CONTENT_TYPE_HEADER, "text/xml");
+        keyValidationRequest.setTextPayload(createKeyValidationRequest(apiRequestMetaDataDto));
+        foreach name, value in getKeyValidationHeaders() {
+            keyValidationRequest.setHeader(name, <string>value);
+        }
         keyValidationRequest.setHeader(AUTHORIZATION_HEADER, BASIC_PREFIX_WITH_SPACE +
                 encodedBasicAuthHeader);
-        keyValidationRequest.setHeader("SOAPAction", "urn:validateKey");
+        if (!allowKeyManagerCall()) {
+            error err = {message:"Key manager circuit breaker is open"};
+            return err;
+        }
         time:Time time = time:currentTime();
         int startTimeMills = time.time;
-        var result1 = keyValidationEndpoint -> post("/services/APIKeyValidationService", keyValidationRequest);
+        var result1 = keyValidationEndpoint -> post(getKeyValidationPath(), keyValidationRequest);
         time = time:currentTime();
         int endTimeMills = time.time;
         log:printDebug("Total time taken for key validation service call : " + (endTimeMills- startTimeMills) +
@@ -222,33 +351,72 @@ public function OAuthAuthProvider::doKeyValidation (APIRequestMetaDataDto apiReq
         match result1 {
             error err => {
                 log:printError("Error occurred while reading key validation response",err =err);
-                return {};
-            }
-            http:Response prod => {
-                keyValidationResponse = prod;
+                recordKeyManagerCall(false);
+                return err;
             }
-        }
-        xml responsepayload;
-        match keyValidationResponse.getXmlPayload() {
-            error err => {
-                log:printError("Error occurred while getting key validation service xml response payload ",err=err);
-                return {};
-            }
-            xml responseXml => {
-                responsepayload = responseXml;
+            http:Response keyValidationResponse => {
+                match keyValidationResponse.getBinaryPayload() {
+                    error err => {
+                        log:printError("Error occurred while getting key validation service response payload ",
+                            err=err);
+                        recordKeyManagerCall(false);
+                        return err;
+                    }
+                    blob payload => {
+                        // the response is read straight into the fields of the result
+                        string[] values = parseKeyValidationResponse(payload);
+                        recordKeyManagerCall(true);
+                        return createKeyValidationDto(values);
+                    }
+                }
             }
         }
-        json payloadJson = responsepayload.toJSON({attributePrefix: "", preserveNamespaces: false});
-        payloadJson = payloadJson["Envelope"]["Body"]["validateKeyResponse"]["return"];
-        return(payloadJson);
-
     } catch (error err) {
         log:printError("Error occurred while validating token",err =err);
-        return {};
+        recordKeyManagerCall(false);
+        return err;
     }
-    return {};
-
 }
 
+@Description {value:"Selects the protocol the key validation service is called with"}
+@Param {value:"protocol: soap, json or the class name of a custom protocol"}
+@Param {value:"path: Path of the key validation service, or an empty string for the default path of the protocol"}
+public native function initKeyValidationProtocol(string protocol, string path);
+
+@Description {value:"Returns the path of the key validation service"}
+@Return {value:"string: Path of the key validation service"}
+public native function getKeyValidationPath() returns string;
+
+@Description {value:"Returns the HTTP headers of a key validation request, including the content type"}
+@Return {value:"map: Header values by name"}
+public native function getKeyValidationHeaders() returns map;
+
+@Description {value:"Writes the payload of a key validation request"}
+@Param {value:"request: Key validation request"}
+@Return {value:"string: Payload of the request"}
+public native function createKeyValidationRequest(APIRequestMetaDataDto request) returns string;
+
+@Description {value:"Reads a key validation response, throwing an error if it is not a key validation result"}
+@Param {value:"payload: Payload of the response"}
+@Return {value:"string[]: Fields of the result in the order of the APIKeyValidationDto record"}
+public native function parseKeyValidationResponse(blob payload) returns string[];
+
+@Description {value:"Enables the circuit breaker of the calls to the key manager"}
+@Param {value:"failureThreshold: Fraction of failed calls within the rolling window which opens the circuit breaker"}
+@Param {value:"requestVolumeThreshold: Minimum number of calls within the rolling window before it can open"}
+@Param {value:"rollingWindow: Time in milliseconds over which the calls are counted"}
+@Param {value:"resetTime: Time in milliseconds after which an open circuit breaker lets a trial call through"}
+public native function initKeyManagerCircuitBreaker(float failureThreshold, int requestVolumeThreshold,
+                                                    int rollingWindow, int resetTime);
+
+@Description {value:"Asks the circuit breaker of the key manager for a key validation call"}
+@Return {value:"boolean: true if the call can be made, false if it has to fail fast"}
+public native function allowKeyManagerCall() returns boolean;
 
+@Description {value:"Checks whether the circuit breaker of the key manager would allow a key validation call"}
+@Return {value:"boolean: true if the key manager is considered available"}
+public native function isKeyManagerAvailable() returns boolean;
 
+@Description {value:"Reports the outcome of a key validation call to the circuit breaker of the key manager"}
+@Param {value:"success: Whether the key manager returned a key validation result"}
+public native function recordKeyManagerCall(boolean success);
@@ -10,27 +10,24 @@ task:Timer? timer;
 future timerFtr = start timerTask();
 
 function searchFilesToUpload() returns error? {
-    int cnt = 0;
-    internal:Path ex = new("");
-    internal:Path[] pathList = check ex.list();
-    foreach pathEntry in pathList {
-        string fileName = pathEntry.getName();
-        if ( fileName.contains("zip")) {
-            http:Response response =  multipartSender(pathEntry.getName());
-            if (response.statusCode == 201) {
-                var result = pathEntry.delete();
-            } else {
-                log:printError("Error occurred while uploading file");
-            }
-            cnt++;
-        }
-    }
-    if ( cnt == 0 ) {
+    if (scanUsageDataFiles() == 0) {
         error er = {message: "No files present to upload."};
         return er;
-    } else {
-        return ();
     }
+    int parallelism = getConfigIntValue(ANALYTICS, ANALYTICS_UPLOADING_PARALLELISM, 2);
+    future<int>[] uploaders = [];
+    int i = 0;
+    while (i < parallelism) {
+        uploaders[i] = start uploadUsageDataFiles();
+        i = i + 1;
+    }
+    int uploadedCount = 0;
+    foreach uploader in uploaders {
+        int uploaded = await uploader;
+        uploadedCount = uploadedCount + uploaded;
+    }
+    log:printDebug("Uploaded " + uploadedCount + " usage data files");
+    return ();
 }
 
 function informError(error e) {
@@ -40,7 +37,13 @@ function informError(error e) {
 function timerTask() {
     (function() returns error?) onTriggerFunction = searchFilesToUpload;
     function(error) onErrorFunction = informError;
-    timer = new task:Timer(onTriggerFunction, onErrorFunction, 300000, delay = 5000);
+    initAnalyticsUploadScheduler(getConfigValue(ANALYTICS, ANALYTICS_UPLOADING_MANIFEST, API_USAGE_UPLOAD_MANIFEST),
+        getConfigIntValue(ANALYTICS, ANALYTICS_UPLOADING_PARALLELISM, 2),
+        getConfigIntValue(ANALYTICS, ANALYTICS_UPLOADING_INITIAL_RETRY_INTERVAL, 10000),
+        getConfigIntValue(ANALYTICS, ANALYTICS_UPLOADING_MAX_RETRY_INTERVAL, 600000),
+        getConfigIntValue(ANALYTICS, ANALYTICS_MAX_BACKLOG_SIZE, 1073741824));
+    timer = new task:Timer(onTriggerFunction, onErrorFunction,
+        getConfigIntValue(ANALYTICS, ANALYTICS_UPLOADING_INTERVAL, 60000), delay = 5000);
     timer.start();
 }
 
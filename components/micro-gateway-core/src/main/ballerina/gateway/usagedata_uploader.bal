@@ -5,9 +5,67 @@ import ballerina/mime;
 stream<string> filesToUpload;
 
 endpoint http:Client clientEP {
-    url: "https://localhost:9443"
+    url: getConfigValue(ANALYTICS, ANALYTICS_UPLOADING_URL, "https://localhost:9443")
 };
 
+@Description {value:"Creates the scheduler of the usage data uploads, restoring the pending uploads of a previous run"}
+@Param {value:"manifestFile: File the state of the pending uploads is kept in"}
+@Param {value:"parallelism: Maximum number of files uploaded at once"}
+@Param {value:"initialRetryInterval: Time in milliseconds before a failed upload is retried for the first time"}
+@Param {value:"maxRetryInterval: Maximum time in milliseconds between retries of a failed upload"}
+@Param {value:"maxBacklogSize: Maximum total size in bytes of the files waiting to be uploaded, 0 for no limit"}
+public native function initAnalyticsUploadScheduler(string manifestFile, int parallelism, int initialRetryInterval,
+                                                    int maxRetryInterval, int maxBacklogSize);
+
+@Description {value:"Adds the usage data files waiting to be uploaded to the upload manifest"}
+@Return {value:"int: Number of files waiting to be uploaded"}
+public native function scanUsageDataFiles() returns int;
+
+@Description {value:"Takes the next usage data file due to be uploaded"}
+@Return {value:"string: Name of the file, or an empty string if none is due"}
+public native function acquireUsageDataFile() returns string;
+
+@Description {value:"Converts a rotated usage data file into the format of the analytics server, unless already done"}
+@Param {value:"fileName: Name of the acquired file"}
+@Return {value:"string: Name of the file to be uploaded, or an empty string if the file could not be converted"}
+public native function prepareUsageDataFile(string fileName) returns string;
+
+@Description {value:"Records the result of the upload of a usage data file"}
+@Param {value:"fileName: Name of the file"}
+@Param {value:"success: Whether the file was uploaded"}
+public native function completeUsageDataUpload(string fileName, boolean success);
+
+@Description {value:"Uploads the usage data files which are due one after the other, until none is left"}
+@Return {value:"int: Number of files uploaded"}
+function uploadUsageDataFiles() returns int {
+    int uploadedCount = 0;
+    string fileName = acquireUsageDataFile();
+    while (fileName != "") {
+        // rotated segments are converted only once their upload is due, by the uploader which takes them
+        string uploadFile = prepareUsageDataFile(fileName);
+        boolean uploaded = false;
+        if (uploadFile != "") {
+            http:Response response = multipartSender(uploadFile);
+            uploaded = isUploadSuccessful(response);
+            if (uploaded) {
+                uploadedCount = uploadedCount + 1;
+            } else {
+                log:printError("Error occurred while uploading file " + uploadFile + ": SC " + response.statusCode);
+            }
+        }
+        completeUsageDataUpload(fileName, uploaded);
+        fileName = acquireUsageDataFile();
+    }
+    return uploadedCount;
+}
+
+@Description {value:"Checks whether the analytics server accepted an uploaded usage data file"}
+@Param {value:"response: Response of the upload request"}
+@Return {value:"boolean: true for any 2xx status code"}
+function isUploadSuccessful(http:Response response) returns boolean {
+    return response.statusCode >= 200 && response.statusCode < 300;
+}
+
 function multipartSender(string file) returns http:Response {
     mime:Entity filePart = new;
     filePart.setContentDisposition(getContentDispositionForFormData("file"));
@@ -15,7 +73,12 @@ function multipartSender(string file) returns http:Response {
     mime:Entity[] bodyParts = [filePart];
     http:Request request = new;
 
-    request.addHeader("Authorization", getBasicAuthHeaderValue("admin", "admin"));
+    // the key manager credentials are used unless the analytics section configures its own
+    string username = getConfigValue(ANALYTICS, ANALYTICS_UPLOADING_USERNAME,
+        getConfigValue(KM_CONF_INSTANCE_ID, "username", ""));
+    string password = getConfigValue(ANALYTICS, ANALYTICS_UPLOADING_PASSWORD,
+        getConfigValue(KM_CONF_INSTANCE_ID, "password", ""));
+    request.addHeader("Authorization", getBasicAuthHeaderValue(username, password));
     request.addHeader("FileName", file);
     request.addHeader("Accept", "application/json");
     request.setBodyParts(bodyParts);
@@ -31,7 +94,9 @@ function multipartSender(string file) returns http:Response {
             return response;
         }
         http:Response returnResult => {
-            log:printInfo("successfully uploaded the file: " + file);
+            if (isUploadSuccessful(returnResult)) {
+                log:printInfo("successfully uploaded the file: " + file);
+            }
             return returnResult;
         }
     }
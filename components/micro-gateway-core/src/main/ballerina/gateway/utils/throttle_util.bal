@@ -15,35 +15,174 @@
 // under the License.
 
 import ballerina/http;
-import ballerina/time;
 import ballerina/io;
 import ballerina/log;
 
-map blockConditions;
-map throttleDataMap;
 public stream<RequestStreamDTO> requestStream;
 public stream<GlobalThrottleStreamDTO> globalThrottleStream;
 public boolean isStreamsInitialized;
 future ftr = start initializeThrottleSubscription();
-boolean blockConditionExist;
 
 public function isThrottled(string key) returns (boolean, boolean) {
-    boolean isThrottled = throttleDataMap.hasKey(key);
-    if (isThrottled){
-        int currentTime = time:currentTime().time;
-        GlobalThrottleStreamDTO dto = check <GlobalThrottleStreamDTO>throttleDataMap[key];
-        int timeStamp = dto.expiryTimeStamp;
-        boolean stopOnQuata = dto.stopOnQuata;
-        if (timeStamp >= currentTime) {
-            return (isThrottled, stopOnQuata);
-        } else {
-            boolean status = throttleDataMap.remove(key);
-            return (false, stopOnQuata);
-        }
+    if (isThrottledKey(key)) {
+        return (true, isThrottledKeyStopOnQuotaReach(key));
     }
-    return (isThrottled, false);
+    return (false, false);
 }
 
+@Description {value:"Sets the capacity of the throttled key store and starts sweeping its expired keys"}
+@Param {value:"capacity: Maximum number of throttled keys kept, least recently used keys are evicted beyond that"}
+@Param {value:"sweepInterval: Interval in milliseconds at which expired keys are removed"}
+public native function initThrottleDataStore(int capacity, int sweepInterval);
+
+@Description {value:"Records a key throttled by the throttle streams"}
+@Param {value:"throttleKey: Throttled key"}
+@Param {value:"stopOnQuotaReach: Whether requests of the key are rejected"}
+@Param {value:"expiryTimeStamp: Time in milliseconds until which the key is throttled"}
+public native function addThrottledKey(string throttleKey, boolean stopOnQuotaReach, int expiryTimeStamp);
+
+@Description {value:"Checks whether a key is throttled by the throttle streams"}
+@Param {value:"throttleKey: Throttle key of the request"}
+@Return {value:"boolean: true if the key is throttled and its throttling has not expired"}
+public native function isThrottledKey(string throttleKey) returns boolean;
+
+@Description {value:"Returns whether requests of a throttled key are rejected"}
+@Param {value:"throttleKey: Throttle key of the request"}
+@Return {value:"boolean: stop on quota reach flag of the key, true for unknown keys"}
+public native function isThrottledKeyStopOnQuotaReach(string throttleKey) returns boolean;
+
+@Description {value:"Registers a request count policy which is evaluated in process instead of the throttle streams"}
+@Param {value:"policyType: Type of the policy, either application or subscription"}
+@Param {value:"policyName: Name of the policy"}
+@Param {value:"requestCount: Number of requests allowed within a unit time"}
+@Param {value:"unitTime: Unit time of the policy in milliseconds"}
+@Param {value:"stopOnQuotaReach: Whether requests are rejected once the quota is reached"}
+public native function registerLocalThrottlePolicy(string policyType, string policyName, int requestCount,
+                                                   int unitTime, boolean stopOnQuotaReach);
+
+@Description {value:"Checks whether a policy is evaluated in process"}
+@Param {value:"policyType: Type of the policy, either application or subscription"}
+@Param {value:"policyName: Name of the policy"}
+@Return {value:"boolean: true if the policy was registered as a local policy"}
+public native function hasLocalThrottlePolicy(string policyType, string policyName) returns boolean;
+
+@Description {value:"Checks whether a key has used up the quota of a local policy within the current window"}
+@Param {value:"policyType: Type of the policy, either application or subscription"}
+@Param {value:"policyName: Name of the policy"}
+@Param {value:"throttleKey: Throttle key of the request"}
+@Return {value:"boolean: true if the request should be throttled"}
+public native function isLocallyThrottled(string policyType, string policyName, string throttleKey) returns boolean;
+
+@Description {value:"Returns whether requests are rejected once the quota of a local policy is reached"}
+@Param {value:"policyType: Type of the policy, either application or subscription"}
+@Param {value:"policyName: Name of the policy"}
+@Return {value:"boolean: stop on quota reach flag of the policy, true for unknown policies"}
+public native function isLocalThrottlePolicyStopOnQuotaReach(string policyType, string policyName) returns boolean;
+
+@Description {value:"Counts a request against a local policy"}
+@Param {value:"policyType: Type of the policy, either application or subscription"}
+@Param {value:"policyName: Name of the policy"}
+@Param {value:"throttleKey: Throttle key of the request"}
+@Return {value:"boolean: false if the policy is not local and the request was not counted"}
+public native function incrementLocalThrottleCount(string policyType, string policyName, string throttleKey)
+                           returns boolean;
+
+@Description {value:"Sets the capacity of the throttle key registry"}
+@Param {value:"capacity: Maximum number of interned throttle keys, least recently used keys are evicted beyond that"}
+public native function initThrottleKeyRegistry(int capacity);
+
+@Description {value:"Interns the application and subscription throttle keys of a request"}
+@Param {value:"applicationId: Id of the application"}
+@Param {value:"username: Name of the user"}
+@Param {value:"apiKey: Context and version of the API, separated by a colon"}
+@Return {value:"string[]: Ids of the application and subscription throttle keys, in that order"}
+public native function getThrottleKeys(string applicationId, string username, string apiKey) returns string[];
+
+@Description {value:"Returns the key an interned throttle key id stands for"}
+@Param {value:"throttleKey: Id of the throttle key"}
+@Return {value:"string: the key, or the id itself if it is not known"}
+public native function getThrottleKeyName(string throttleKey) returns string;
+
+@Description {value:"Sets the proxies whose X-Forwarded-For entries are trusted"}
+@Param {value:"trustedProxies: Comma separated addresses or CIDR blocks of the proxies"}
+public native function initTrustedProxies(string trustedProxies);
+
+@Description {value:"Resolves the client address of a request"}
+@Param {value:"request: Request instance"}
+@Param {value:"forwardedFor: X-Forwarded-For header of the request, empty if there is none"}
+@Return {value:"string: the address the request was received from, or if that is a trusted proxy, the last address in
+the header which is not, an empty string if the address is not known"}
+public native function resolveClientIp(http:Request request, string forwardedFor) returns string;
+
+@Description {value:"Converts an IPv4 or IPv6 address to the numbers the throttle events carry"}
+@Param {value:"ipAddress: IPv4 or IPv6 address"}
+@Return {value:"int[]: the IPv4 address as an unsigned 32 bit number or -1 for IPv6, then the first and the last 64 bits
+of the address as a 128 bit number with IPv4 addresses IPv4-mapped, an empty array if the address is not valid"}
+public native function ipToLongs(string ipAddress) returns int[];
+
+@Description {value:"Replaces a named list of IPv4 and IPv6 CIDR blocks, which iplist block conditions match on"}
+@Param {value:"listName: Name of the list"}
+@Param {value:"cidrs: CIDR blocks or single addresses of the list"}
+@Return {value:"boolean: false if any of the blocks is not valid, in which case the list is left as it was"}
+public native function setIpList(string listName, string[] cidrs) returns boolean;
+
+@Description {value:"Checks whether an IPv4 or IPv6 address falls within a named list of CIDR blocks"}
+@Param {value:"listName: Name of the list"}
+@Param {value:"ipAddress: Address to check"}
+@Return {value:"boolean: true if the list contains the address, false for unknown lists and invalid addresses"}
+public native function isIpInList(string listName, string ipAddress) returns boolean;
+
+@Description {value:"Loads the block conditions file and reloads it whenever it is modified"}
+@Param {value:"filePath: Path of the file, no file is loaded if empty"}
+@Param {value:"reloadInterval: Interval in milliseconds at which the file is checked for modifications"}
+public native function initBlockConditions(string filePath, int reloadInterval);
+
+@Description {value:"Sets the Authorization header the block condition admin service accepts"}
+@Param {value:"authorization: Expected header value, every request is rejected if empty"}
+public native function initBlockConditionAdmin(string authorization);
+
+@Description {value:"Checks the Authorization header of a request to the block condition admin service"}
+@Param {value:"authorization: Authorization header of the request"}
+@Return {value:"boolean: true if the header is the expected one"}
+public native function isBlockConditionAdmin(string authorization) returns boolean;
+
+@Description {value:"Adds a block condition, or replaces the condition with the same id"}
+@Param {value:"conditionId: Id of the condition"}
+@Param {value:"conditionType: One of api, application, user, ip, iprange or iplist"}
+@Param {value:"conditionValue: API context, subscriber:application, username, IP address or CIDR block, range, or
+name of an IP list"}
+@Param {value:"invert: Whether an IP condition blocks the addresses outside of its address, range or list instead"}
+@Return {value:"boolean: false if the condition is not valid or its id starts with the reserved prefix file:"}
+public native function addBlockCondition(string conditionId, string conditionType, string conditionValue,
+                                         boolean invert) returns boolean;
+
+@Description {value:"Removes a block condition"}
+@Param {value:"conditionId: Id of the condition"}
+@Return {value:"boolean: false if there was no condition with the id"}
+public native function removeBlockCondition(string conditionId) returns boolean;
+
+@Description {value:"Checks whether there is any block condition"}
+@Return {value:"boolean: true if requests need to be checked against the block conditions"}
+public native function hasBlockConditions() returns boolean;
+
+@Description {value:"Checks a request against the block conditions, empty values are not checked"}
+@Param {value:"apiContext: Context of the API, including its version"}
+@Param {value:"application: Subscriber and name of the application, separated by a colon"}
+@Param {value:"username: Name of the user"}
+@Param {value:"ipAddress: IPv4 or IPv6 address of the client"}
+@Return {value:"boolean: true if any of the conditions blocks the request"}
+public native function isRequestBlocked(string apiContext, string application, string username, string ipAddress)
+                           returns boolean;
+
+@Description {value:"Starts synchronizing the counts of the local throttle policies with the other replicas"}
+@Param {value:"transport: udp or the class name of a custom transport"}
+@Param {value:"localAddress: Host and port the counts of the other replicas are received on"}
+@Param {value:"peerAddresses: Comma separated hosts and ports of the other replicas"}
+@Param {value:"secret: Secret shared by the replicas, which the counts are signed with"}
+@Param {value:"syncInterval: Interval in milliseconds at which the counts are sent to the other replicas"}
+public native function initThrottleCounterSync(string transport, string localAddress, string peerAddresses,
+                                               string secret, int syncInterval);
+
 public function publishNonThrottleEvent(RequestStreamDTO request) {
     requestStream.publish(request);
 }
@@ -52,9 +191,10 @@ function initializeThrottleSubscription() {
     isStreamsInitialized = true;
 }
 public function onReceiveThrottleEvent(GlobalThrottleStreamDTO throttleEvent) {
-    log:printDebug("Event GlobalThrottleStream: throttleKey:" + throttleEvent.throttleKey + ",isThrottled:"
+    log:printDebug("Event GlobalThrottleStream: throttleKey:" + getThrottleKeyName(throttleEvent.throttleKey)
+        + ",isThrottled:"
         + throttleEvent.isThrottled + ",expiryTimeStamp:" + throttleEvent.expiryTimeStamp);
     if (throttleEvent.isThrottled){
-        throttleDataMap[throttleEvent.throttleKey] = throttleEvent;
+        addThrottledKey(throttleEvent.throttleKey, throttleEvent.stopOnQuata, throttleEvent.expiryTimeStamp);
     }
 }
@@ -22,7 +22,9 @@ import ballerina/runtime;
 import ballerina/time;
 import ballerina/io;
 import ballerina/reflect;
-import ballerina/internal;
+
+// resource metadata keyed by service name and resource name, see getResourceMetadata
+map<ResourceMetadata> resourceMetadataMap;
 
 public function isResourceSecured(http:ListenerAuthConfig? resourceLevelAuthAnn, http:ListenerAuthConfig?
     serviceLevelAuthAnn) returns boolean {
@@ -163,34 +165,132 @@ public function getServiceConfigAnnotation(reflect:annotationData[] annData)
 @Return { value: "api key validation request dto" }
 public function getKeyValidationRequestObject(http:FilterContext context) returns APIRequestMetaDataDto {
     APIRequestMetaDataDto apiKeyValidationRequest = {};
-    http:HttpServiceConfig httpServiceConfig = getServiceConfigAnnotation(reflect:getServiceAnnotations
-        (context.serviceType));
-    http:HttpResourceConfig httpResourceConfig = getResourceConfigAnnotation
-    (reflect:getResourceAnnotations(context.serviceType, context.resourceName));
-    string apiContext = httpServiceConfig.basePath;
-    APIConfiguration apiConfig = getAPIDetailsFromServiceAnnotation(reflect:getServiceAnnotations
-        (context.serviceType));
-    string apiVersion = apiConfig.apiVersion;
-    apiKeyValidationRequest.apiVersion = apiVersion;
-    if(!apiContext.contains(apiVersion)){
-        if(apiContext.hasSuffix(PATH_SEPERATOR)) {
-            apiContext = apiContext + apiVersion;
-        } else {
-            apiContext = apiContext + PATH_SEPERATOR + apiVersion;
-        }
-    }
-    apiKeyValidationRequest.context = apiContext;
+    ResourceMetadata metadata = getResourceMetadata(context);
+    apiKeyValidationRequest.apiVersion = metadata.apiVersion;
+    apiKeyValidationRequest.context = metadata.apiContext;
     apiKeyValidationRequest.requiredAuthenticationLevel = ANY_AUTHENTICATION_LEVEL;
     apiKeyValidationRequest.clientDomain = "*";
-    apiKeyValidationRequest.matchingResource = httpResourceConfig.path;
-    apiKeyValidationRequest.httpVerb = httpResourceConfig.methods[0];
-    context.attributes[API_NAME] = apiConfig.name;
-    context.attributes[API_CONTEXT] = apiContext;
+    apiKeyValidationRequest.matchingResource = metadata.resourcePath;
+    apiKeyValidationRequest.httpVerb = metadata.httpVerb;
+    apiKeyValidationRequest.resourceIndex = metadata.resourceIndex;
+    context.attributes[API_NAME] = metadata.apiName;
+    context.attributes[API_CONTEXT] = metadata.apiContext;
     // TODO get correct verb
     return apiKeyValidationRequest;
 
 }
 
+@Description { value: "Creates a key validation result from its fields" }
+@Param { value: "values: Fields in the order of the APIKeyValidationDto record" }
+@Return { value: "APIKeyValidationDto: key validation result" }
+public function createKeyValidationDto(string[] values) returns APIKeyValidationDto {
+    APIKeyValidationDto apiKeyValidationDto = {apiName:values[0], apiPublisher:values[1], apiTier:values[2],
+        applicationId:values[3], applicationName:values[4], applicationTier:values[5], authorized:values[6],
+        authorizedDomains:values[7], consumerKey:values[8], contentAware:values[9], endUserName:values[10],
+        endUserToken:values[11], issuedTime:values[12], spikeArrestLimit:values[13], spikeArrestUnit:values[14],
+        stopOnQuotaReach:values[15], subscriber:values[16], subscriberTenantDomain:values[17],
+        throttlingDataList:values[18], tier:values[19], keyType:values[20], userType:values[21],
+        validationStatus:values[22], validityPeriod:values[23]};
+    return apiKeyValidationDto;
+}
+
+@Description { value: "Retrieve the metadata of the resource a request is dispatched to. The annotations of a resource
+are only reflected on the first request to it and the resolved metadata is reused for the requests that follow" }
+@Param { value: "context: FilterContext instance" }
+@Return { value: "ResourceMetadata: metadata of the resource" }
+public function getResourceMetadata(http:FilterContext context) returns ResourceMetadata {
+    string key = context.serviceName + ":" + context.resourceName;
+    match resourceMetadataMap[key] {
+        ResourceMetadata metadata => {
+            return metadata;
+        }
+        () => {
+            ResourceMetadata metadata = buildResourceMetadata(context);
+            resourceMetadataMap[key] = metadata;
+            return metadata;
+        }
+    }
+}
+
+function buildResourceMetadata(http:FilterContext context) returns ResourceMetadata {
+    ResourceMetadata metadata = {};
+    reflect:annotationData[] serviceAnnotations = reflect:getServiceAnnotations(context.serviceType);
+    reflect:annotationData[] resourceAnnotations = reflect:getResourceAnnotations(context.serviceType,
+        context.resourceName);
+    APIConfiguration apiConfig = getAPIDetailsFromServiceAnnotation(serviceAnnotations);
+    http:HttpResourceConfig httpResourceConfig = getResourceConfigAnnotation(resourceAnnotations);
+    string basePath = getServiceConfigAnnotation(serviceAnnotations).basePath;
+    string apiContext = basePath;
+    if(!apiContext.contains(apiConfig.apiVersion)){
+        if(apiContext.hasSuffix(PATH_SEPERATOR)) {
+            apiContext = apiContext + apiConfig.apiVersion;
+        } else {
+            apiContext = apiContext + PATH_SEPERATOR + apiConfig.apiVersion;
+        }
+    }
+    metadata.basePath = basePath;
+    metadata.apiContext = apiContext;
+    metadata.apiVersion = apiConfig.apiVersion;
+    metadata.apiName = apiConfig.name;
+    metadata.apiKey = basePath + ":" + apiConfig.apiVersion;
+    metadata.resourceKey = basePath + "/" + apiConfig.apiVersion;
+    metadata.authorizationHeader = getAuthorizationHeader(serviceAnnotations);
+    string[] splittedContext = basePath.split("/");
+    if (lengthof splittedContext > 3){
+        // this check if basepath have /t/domain in
+        metadata.tenantDomain = splittedContext[2];
+    } else {
+        metadata.tenantDomain = SUPER_TENANT_DOMAIN_NAME;
+    }
+    metadata.resourcePath = httpResourceConfig.path;
+    if (lengthof httpResourceConfig.methods > 0) {
+        metadata.httpVerb = httpResourceConfig.methods[0];
+    }
+    metadata.resourceIndex = getResourceIndex(apiContext, metadata.resourcePath + ":" + metadata.httpVerb);
+    metadata.resourceTier = getResourceLevelTier(resourceAnnotations).policy;
+    var (isSecured, authProviders) = getAuthConfig(serviceAnnotations, resourceAnnotations);
+    metadata.isSecured = isSecured;
+    metadata.authProviders = authProviders;
+    return metadata;
+}
+
+@Description {value:"Resolves the authentication config of a resource, falling back to the service level config"}
+@Param {value:"serviceAnnotations: annotations of the service"}
+@Param {value:"resourceAnnotations: annotations of the resource"}
+@Return {value:"boolean, string[]: tuple of whether the resource is secured and the list of auth provider ids "}
+function getAuthConfig(reflect:annotationData[] serviceAnnotations, reflect:annotationData[] resourceAnnotations)
+             returns (boolean, string[]) {
+    string[] authProviderIds = [];
+    http:ListenerAuthConfig? resourceLevelAuthAnn = getAuthAnnotation(ANN_PACKAGE, RESOURCE_ANN_NAME,
+        resourceAnnotations);
+    http:ListenerAuthConfig? serviceLevelAuthAnn = getAuthAnnotation(ANN_PACKAGE, SERVICE_ANN_NAME,
+        serviceAnnotations);
+    // check if authentication is enabled
+    boolean resourceSecured = isResourceSecured(resourceLevelAuthAnn, serviceLevelAuthAnn);
+    // if resource is not secured, no need to check further
+    if (!resourceSecured) {
+        return (resourceSecured, authProviderIds);
+    }
+    // check if auth providers are given at resource level
+    match resourceLevelAuthAnn.authProviders {
+        string[] providers => {
+            authProviderIds = providers;
+        }
+        () => {
+            // no auth providers found in resource level, try in rest level
+            match serviceLevelAuthAnn.authProviders {
+                string[] providers => {
+                    authProviderIds = providers;
+                }
+                () => {
+                    // no auth providers found
+                }
+            }
+        }
+    }
+    return (resourceSecured, authProviderIds);
+}
+
 @Description {value:"Creates an instance of FilterResult"}
 @Param {value:"canProceed: authorization status for the request"}
 @Param {value:"statusCode: status code for the filter request"}
@@ -261,31 +361,17 @@ public function isAccessTokenExpired(APIKeyValidationDto apiKeyValidationDto) re
     return false;
 }
 public function getContext(http:FilterContext context) returns (string) {
-    http:HttpServiceConfig httpServiceConfig = getServiceConfigAnnotation(reflect:getServiceAnnotations
-        (context.serviceType));
-    return httpServiceConfig.basePath;
+    return getResourceMetadata(context).basePath;
 
 }
 
 public function getClientIp(http:Request request) returns (string) {
-    string clientIp;
-    string header = "";
-    string[] headerNames = request.getHeaderNames();
-    foreach headerName in headerNames {
-        string headerValue = untaint request.getHeader(headerName);
-    }
-    if(request.hasHeader(X_FORWARD_FOR_HEADER)) {
-        header = request.getHeader(X_FORWARD_FOR_HEADER);
-    } else {
-        return "";
-    }
-    //TODO need to get the IP from REMOTE_ADDR
-    clientIp = header;
-    int idx = header.indexOf(",");
-    if (idx > -1) {
-        clientIp = clientIp.substring(0, idx);
+    // the X-Forwarded-For header is only trusted if the request came through one of the trusted proxies
+    string forwardedFor = "";
+    if (request.hasHeader(X_FORWARD_FOR_HEADER)) {
+        forwardedFor = request.getHeader(X_FORWARD_FOR_HEADER);
     }
-    return clientIp;
+    return resolveClientIp(request, forwardedFor);
 }
 
 public function extractAccessToken (http:Request req, string authHeaderName) returns (string|error) {
@@ -303,14 +389,7 @@ public function handleError(string message) returns (error) {
 }
 public function getTenantDomain(http:FilterContext context) returns (string) {
     // todo: need to implement to get tenantDomain
-    string apiContext = getContext(context);
-    string[] splittedContext = apiContext.split("/");
-    if (lengthof splittedContext > 3){
-        // this check if basepath have /t/domain in
-        return splittedContext[2];
-    } else {
-        return SUPER_TENANT_DOMAIN_NAME;
-    }
+    return getResourceMetadata(context).tenantDomain;
 }
 public function getApiName(http:FilterContext context) returns (string) {
     string serviceName = context.serviceName;
@@ -343,7 +422,8 @@ public function setErrorMessageToFilterContext(http:FilterContext context, int e
         status = INTERNAL_SERVER_ERROR;
     } else if (errorCode == API_AUTH_INCORRECT_API_RESOURCE ||
         errorCode == API_AUTH_FORBIDDEN ||
-        errorCode == INVALID_SCOPE) {
+        errorCode == INVALID_SCOPE ||
+        errorCode == REQUEST_BLOCKED_BY_CONDITION) {
         status = FORBIDDEN;
     } else {
         status = UNAUTHORIZED;
@@ -374,32 +454,14 @@ public function getCurrentTime() returns int {
 
 }
 
-public function rotateFile(string fileName) returns string|error  {
-    int rotatingTimeStamp = getCurrentTime();
-    string zipName = fileName + "." + rotatingTimeStamp + ".zip";
-    internal:Path zipLocation = new(zipName);
-    internal:Path fileToZip = new(fileName);
-    match internal:compress(fileToZip, zipLocation) {
-        error compressError => {
-            log:printError("Error occurred while compressing the file: ", err = compressError);
-            return compressError;
-        }
-        () => {
-            log:printInfo("File compressed successfully");
-            match fileToZip.delete() {
-                () => {
-                    log:printInfo("Existed file deleted successfully");
-                }
-                error err => {
-                    log:printError("Error occurred while deleting file: " + fileName, err = err);
-                }
-            }
-            return zipName;
-        }
-    }
-}
-
 function initStreamPublisher() {
+    initAnalyticsEventWriter(getConfigValue(ANALYTICS, ANALYTICS_FILE_NAME, API_USAGE_FILE),
+        getConfigIntValue(ANALYTICS, ANALYTICS_BUFFER_SIZE, 8192),
+        getConfigIntValue(ANALYTICS, ANALYTICS_BATCH_SIZE, 256),
+        getConfigIntValue(ANALYTICS, ANALYTICS_FLUSH_INTERVAL, 1000),
+        getConfigIntValue(ANALYTICS, ANALYTICS_ROTATING_PERIOD, 600000),
+        getConfigIntValue(ANALYTICS, ANALYTICS_MAX_FILE_SIZE, 10485760),
+        getConfigIntValue(ANALYTICS, ANALYTICS_OVERFLOW_TIMEOUT, 0));
     log:printInfo("Subscribing writing method to event stream");
     eventStream.subscribe(writeEventToFile);
 }
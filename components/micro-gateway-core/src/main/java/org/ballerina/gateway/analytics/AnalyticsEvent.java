@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import java.util.Arrays;
+
+/**
+ * A request analytics event, holding a value for each {@link AnalyticsField}.
+ */
+public class AnalyticsEvent {
+
+    public static final String REQUEST_STREAM_ID = "org.wso2.apimgt.statistics.request:1.1.0";
+
+    private final String[] stringValues = new String[AnalyticsField.values().length];
+    private final long[] longValues = new long[AnalyticsField.values().length];
+
+    public AnalyticsEvent() {
+        Arrays.fill(stringValues, "");
+        stringValues[AnalyticsField.STREAM_ID.ordinal()] = REQUEST_STREAM_ID;
+    }
+
+    public String getString(AnalyticsField field) {
+        return stringValues[field.ordinal()];
+    }
+
+    public void setString(AnalyticsField field, String value) {
+        stringValues[field.ordinal()] = value == null ? "" : value;
+    }
+
+    public long getLong(AnalyticsField field) {
+        return longValues[field.ordinal()];
+    }
+
+    public void setLong(AnalyticsField field, long value) {
+        longValues[field.ordinal()] = value;
+    }
+
+    public boolean getBoolean(AnalyticsField field) {
+        return longValues[field.ordinal()] != 0;
+    }
+
+    public void setBoolean(AnalyticsField field, boolean value) {
+        longValues[field.ordinal()] = value ? 1 : 0;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Asynchronous writer of the analytics events of the gateway.
+ * <p/>
+ * Request threads only put events into a bounded buffer. A single writer thread takes them out in batches of up to
+ * {@code batchSize} events, or whatever arrived within {@code flushInterval}, encodes the batch with an
+ * {@link AnalyticsRecordWriter} into a gzip stream which is kept open and sync flushed once per batch, so that the
+ * file is compressed as it is written and holds whole deflate blocks after every batch. When the buffer is full,
+ * because the disk can not keep up, events are either dropped right away or the request thread waits up to
+ * {@code overflowTimeout} for space before dropping the event. Once the file is older than {@code rotationInterval},
+ * or its compressed size reaches {@code maxFileSize}, it is closed and renamed to
+ * {@code <fileName>.<timestamp>.bin.gz}, to be converted and uploaded by the uploader, and a new file is started.
+ * The counters of the writer are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class AnalyticsEventWriter implements AnalyticsEventWriterMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=AnalyticsEventWriter";
+    public static final String SEGMENT_SUFFIX = ".bin.gz";
+    private static final int STREAM_BUFFER_SIZE = 65536;
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsEventWriter.class);
+
+    private static volatile AnalyticsEventWriter instance;
+
+    private final File file;
+    private final BlockingQueue<AnalyticsEvent> buffer;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long rotationInterval;
+    private final long maxFileSize;
+    private final long overflowTimeout;
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private AnalyticsRecordWriter writer;
+    private FileOutputStream fileOutputStream;
+    private long fileCreatedTime;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    /**
+     * @param fileName         file the events are written to
+     * @param bufferSize       maximum number of events waiting to be written
+     * @param batchSize        maximum number of events written per flush
+     * @param flushInterval    maximum time in milliseconds an event waits in the buffer
+     * @param rotationInterval time in milliseconds after which the file is rotated
+     * @param maxFileSize      compressed size in bytes after which the file is rotated, 0 to rotate only by time
+     * @param overflowTimeout  time in milliseconds a request waits for space in a full buffer, 0 to drop right away
+     */
+    public AnalyticsEventWriter(String fileName, int bufferSize, int batchSize, long flushInterval,
+            long rotationInterval, long maxFileSize, long overflowTimeout) {
+        if (bufferSize <= 0 || batchSize <= 0 || flushInterval <= 0 || rotationInterval <= 0 || maxFileSize < 0
+                || overflowTimeout < 0) {
+            throw new IllegalArgumentException("Invalid analytics event writer configuration, buffer size: "
+                    + bufferSize + ", batch size: " + batchSize + ", flush interval: " + flushInterval
+                    + ", rotation interval: " + rotationInterval + ", max file size: " + maxFileSize
+                    + ", overflow timeout: " + overflowTimeout);
+        }
+        this.file = new File(fileName);
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.rotationInterval = rotationInterval;
+        this.maxFileSize = maxFileSize;
+        this.overflowTimeout = overflowTimeout;
+    }
+
+    /**
+     * Creates and starts the writer of the gateway. Subsequent calls return the already started writer.
+     */
+    public static synchronized AnalyticsEventWriter init(String fileName, int bufferSize, int batchSize,
+            long flushInterval, long rotationInterval, long maxFileSize, long overflowTimeout) {
+        if (instance == null) {
+            instance = new AnalyticsEventWriter(fileName, bufferSize, batchSize, flushInterval, rotationInterval,
+                    maxFileSize, overflowTimeout);
+            instance.start();
+            instance.registerMBean();
+        }
+        return instance;
+    }
+
+    public static AnalyticsEventWriter getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queues an event to be written.
+     *
+     * @param event event to be written
+     * @return false if the event was dropped as the buffer is full
+     */
+    public boolean write(AnalyticsEvent event) {
+        boolean queued = buffer.offer(event);
+        if (!queued && overflowTimeout > 0) {
+            try {
+                queued = buffer.offer(event, overflowTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued) {
+            droppedCount.incrementAndGet();
+        }
+        return queued;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::run, "analytics-event-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer after writing the events already in the buffer.
+     */
+    public void stop() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = writerThread;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private void run() {
+        List<AnalyticsEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                AnalyticsEvent event = buffer.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    batch.add(event);
+                    buffer.drainTo(batch, batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                // stop was called, write what is left in the buffer
+                buffer.drainTo(batch);
+            }
+            try {
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                }
+                if (writer != null && isRotationDue()) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                errorCount.incrementAndGet();
+                droppedCount.addAndGet(batch.size());
+                log.error("Error while writing analytics events to " + file.getPath(), e);
+                closeQuietly();
+            }
+            batch.clear();
+        }
+        closeQuietly();
+    }
+
+    private void writeBatch(List<AnalyticsEvent> batch) throws IOException {
+        if (writer == null) {
+            open();
+        }
+        for (AnalyticsEvent event : batch) {
+            writer.write(event);
+        }
+        writer.flush();
+        writtenCount.addAndGet(batch.size());
+        flushCount.incrementAndGet();
+    }
+
+    private boolean isRotationDue() throws IOException {
+        return System.currentTimeMillis() - fileCreatedTime >= rotationInterval
+                || (maxFileSize > 0 && fileOutputStream.getChannel().position() >= maxFileSize);
+    }
+
+    private void open() throws IOException {
+        if (file.exists()) {
+            // a file left by a previous run can not be appended to, as its dictionary is not known
+            rename();
+        }
+        fileOutputStream = new FileOutputStream(file);
+        // records are buffered before the deflater, as deflating each small record separately is costly
+        writer = new AnalyticsRecordWriter(new BufferedOutputStream(
+                new GZIPOutputStream(fileOutputStream, STREAM_BUFFER_SIZE, true), STREAM_BUFFER_SIZE));
+        fileCreatedTime = System.currentTimeMillis();
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        writer = null;
+        fileOutputStream = null;
+        rename();
+    }
+
+    private void rename() throws IOException {
+        File segment = new File(file.getPath() + "." + System.currentTimeMillis() + SEGMENT_SUFFIX);
+        if (!file.renameTo(segment)) {
+            throw new IOException("Could not rotate analytics event file " + file.getPath() + " to "
+                    + segment.getPath());
+        }
+        log.info("Rotated analytics event file into " + segment.getPath());
+    }
+
+    private void closeQuietly() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Error while closing analytics event file " + file.getPath(), e);
+            }
+            writer = null;
+            fileOutputStream = null;
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the analytics event writer MBean", e);
+        }
+    }
+
+    @Override
+    public int getQueuedCount() {
+        return buffer.size();
+    }
+
+    @Override
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+/**
+ * Fields of a request analytics event, in the order they are encoded by {@link AnalyticsRecordWriter}.
+ */
+public enum AnalyticsField {
+
+    STREAM_ID("streamId", Type.DICTIONARY_STRING),
+    TIME_STAMP("timeStamp", Type.TIMESTAMP),
+    KEY_TYPE("keyType", Type.DICTIONARY_STRING),
+    CORRELATION_ID("correlationID", Type.STRING),
+    CONSUMER_KEY("consumerKey", Type.DICTIONARY_STRING),
+    CONTEXT("context", Type.DICTIONARY_STRING),
+    API_VERSION("apiVersion", Type.DICTIONARY_STRING),
+    API("api", Type.DICTIONARY_STRING),
+    RESOURCE_PATH("resourcePath", Type.DICTIONARY_STRING),
+    RESOURCE_TEMPLATE("resourceTemplate", Type.DICTIONARY_STRING),
+    METHOD("method", Type.DICTIONARY_STRING),
+    REQUEST_COUNT("requestCount", Type.LONG),
+    REQUEST_TIME("requestTime", Type.TIMESTAMP),
+    USERNAME("username", Type.DICTIONARY_STRING),
+    TENANT_DOMAIN("tenantDomain", Type.DICTIONARY_STRING),
+    HOST_NAME("hostName", Type.DICTIONARY_STRING),
+    API_PUBLISHER("apiPublisher", Type.DICTIONARY_STRING),
+    APPLICATION_NAME("applicationName", Type.DICTIONARY_STRING),
+    APPLICATION_ID("applicationId", Type.DICTIONARY_STRING),
+    USER_AGENT("userAgent", Type.DICTIONARY_STRING),
+    TIER("tier", Type.DICTIONARY_STRING),
+    CONTINUED_ON_THROTTLE_OUT("continuedOnThrottleOut", Type.BOOLEAN),
+    CLIENT_IP("clientIp", Type.STRING),
+    APPLICATION_OWNER("applicationOwner", Type.DICTIONARY_STRING);
+
+    private final String fieldName;
+    private final Type type;
+
+    AnalyticsField(String fieldName, Type type) {
+        this.fieldName = fieldName;
+        this.type = type;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the field with the given name.
+     *
+     * @param fieldName name of the field
+     * @return the field, or null if there is no such field
+     */
+    public static AnalyticsField fromFieldName(String fieldName) {
+        for (AnalyticsField field : values()) {
+            if (field.fieldName.equals(fieldName)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encoding of a field value.
+     */
+    public enum Type {
+        // length prefixed UTF-8 string
+        STRING(0),
+        // string which is written once per file and referred by its index in the file dictionary afterwards
+        DICTIONARY_STRING(1),
+        // zig-zag encoded variable length integer
+        LONG(2),
+        // zig-zag encoded variable length difference to the value of the same field in the previous record
+        TIMESTAMP(3),
+        // single byte, 0 or 1
+        BOOLEAN(4);
+
+        private final int id;
+
+        Type(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public static Type fromId(int id) {
+            for (Type type : values()) {
+                if (type.id == id) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Converts binary analytics files into the delimited text format expected by the analytics server, where each event
+ * is a line of the form {@code streamId--KVS--<id>--EVT--timestamp--KVS--<time>--EVT--metadata--KVS--<json>--EVT--
+ * correlationData--KVS--<id>--EVT--payLoadData--KVS--<payload>}, and the payload fields are separated by
+ * {@code --OBJ--}. Both plain and gzip compressed binary files are accepted.
+ */
+public class AnalyticsFileConverter {
+
+    public static final String KVT = "--KVS--";
+    public static final String EVS = "--EVT--";
+    public static final String OBJ = "--OBJ--";
+    // name of the file within the zip files uploaded to the analytics server
+    public static final String UPLOAD_ENTRY_NAME = "api-usage-data.dat";
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsFileConverter.class);
+
+    private AnalyticsFileConverter() {
+    }
+
+    /**
+     * Converts a binary analytics file into a plain text file, as used to inspect the events of a segment.
+     *
+     * @param binaryFile binary analytics file
+     * @param textFile   text file to be written
+     * @return true if the file was converted
+     */
+    public static boolean convertToText(File binaryFile, File textFile) {
+        try (InputStream in = open(binaryFile);
+                Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(textFile),
+                        StandardCharsets.UTF_8))) {
+            long count = convert(in, out);
+            log.info("Converted " + count + " analytics events of " + binaryFile.getPath() + " into "
+                    + textFile.getPath());
+            return true;
+        } catch (IOException e) {
+            log.error("Error while converting analytics file " + binaryFile.getPath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Opens a binary analytics file, decompressing it if it is gzip compressed.
+     *
+     * @param binaryFile binary analytics file
+     * @return stream of the binary records
+     * @throws IOException if the file can not be opened
+     */
+    public static InputStream open(File binaryFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(binaryFile));
+        try {
+            in.mark(2);
+            int magic = in.read() | (in.read() << 8);
+            in.reset();
+            if (magic == GZIPInputStream.GZIP_MAGIC) {
+                return new BufferedInputStream(new GZIPInputStream(in));
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Converts a binary analytics stream into text. A stream cut short, as left behind when the gateway stops while
+     * writing, is converted up to its last complete event.
+     *
+     * @param in  binary analytics stream
+     * @param out writer the text events are written to
+     * @return number of events converted
+     * @throws IOException if reading or writing fails
+     */
+    public static long convert(InputStream in, Writer out) throws IOException {
+        AnalyticsRecordReader reader = new AnalyticsRecordReader(in);
+        StringBuilder builder = new StringBuilder(1024);
+        long count = 0;
+        AnalyticsEvent event;
+        while ((event = readEvent(reader)) != null) {
+            builder.setLength(0);
+            appendEvent(event, builder);
+            out.append(builder);
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Converts a binary analytics file into a zip file holding the text events, as uploaded to the analytics server.
+     * The zip file is written under a temporary name first, so that it is never picked up half written.
+     *
+     * @param binaryFile binary analytics file
+     * @param zipFile    zip file to be created
+     * @return number of events converted
+     * @throws IOException if reading or writing fails
+     */
+    public static long convertToZip(File binaryFile, File zipFile) throws IOException {
+        File tempFile = new File(zipFile.getPath() + ".tmp");
+        long count;
+        try (InputStream in = open(binaryFile);
+                ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(tempFile))) {
+            zipOutputStream.putNextEntry(new ZipEntry(UPLOAD_ENTRY_NAME));
+            Writer out = new BufferedWriter(new OutputStreamWriter(zipOutputStream, StandardCharsets.UTF_8));
+            count = convert(in, out);
+            zipOutputStream.closeEntry();
+        }
+        if (!tempFile.renameTo(zipFile)) {
+            throw new IOException("Could not rename " + tempFile.getPath() + " to " + zipFile.getPath());
+        }
+        return count;
+    }
+
+    private static AnalyticsEvent readEvent(AnalyticsRecordReader reader) throws IOException {
+        try {
+            return reader.read();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Appends an event in the text format, terminated by a new line.
+     *
+     * @param event   event to be converted
+     * @param builder builder the text is appended to
+     */
+    public static void appendEvent(AnalyticsEvent event, StringBuilder builder) {
+        String correlationId = event.getString(AnalyticsField.CORRELATION_ID);
+        builder.append("streamId").append(KVT).append(event.getString(AnalyticsField.STREAM_ID)).append(EVS)
+                .append("timestamp").append(KVT).append(event.getLong(AnalyticsField.TIME_STAMP)).append(EVS)
+                .append("metadata").append(KVT).append("{\"keyType\":\"")
+                .append(event.getString(AnalyticsField.KEY_TYPE)).append("\",\"correlationID\":\"")
+                .append(correlationId).append("\"}").append(EVS)
+                .append("correlationData").append(KVT).append(correlationId).append(EVS)
+                .append("payLoadData").append(KVT)
+                .append(event.getString(AnalyticsField.CONSUMER_KEY)).append(OBJ)
+                .append(event.getString(AnalyticsField.CONTEXT)).append(OBJ)
+                .append(event.getString(AnalyticsField.API_VERSION)).append(OBJ)
+                .append(event.getString(AnalyticsField.API)).append(OBJ)
+                .append(event.getString(AnalyticsField.RESOURCE_PATH)).append(OBJ)
+                .append(event.getString(AnalyticsField.RESOURCE_TEMPLATE)).append(OBJ)
+                .append(event.getString(AnalyticsField.METHOD)).append(OBJ)
+                .append(event.getString(AnalyticsField.API_VERSION)).append(OBJ)
+                .append(event.getLong(AnalyticsField.REQUEST_COUNT)).append(OBJ)
+                .append(event.getLong(AnalyticsField.REQUEST_TIME)).append(OBJ)
+                .append(event.getString(AnalyticsField.USERNAME)).append(OBJ)
+                .append(event.getString(AnalyticsField.TENANT_DOMAIN)).append(OBJ)
+                .append(event.getString(AnalyticsField.HOST_NAME)).append(OBJ)
+                .append(event.getString(AnalyticsField.API_PUBLISHER)).append(OBJ)
+                .append(event.getString(AnalyticsField.APPLICATION_NAME)).append(OBJ)
+                .append(event.getString(AnalyticsField.APPLICATION_ID)).append(OBJ)
+                .append(event.getString(AnalyticsField.USER_AGENT)).append(OBJ)
+                .append(event.getString(AnalyticsField.TIER)).append(OBJ)
+                .append(event.getBoolean(AnalyticsField.CONTINUED_ON_THROTTLE_OUT)).append(OBJ)
+                // the client ip and the application owner have never been separated in the text format
+                .append(event.getString(AnalyticsField.CLIENT_IP))
+                .append(event.getString(AnalyticsField.APPLICATION_OWNER))
+                .append('\n');
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes analytics events written by {@link AnalyticsRecordWriter}.
+ * <p/>
+ * Fields are decoded according to the schema in the file header. Fields unknown to this reader are decoded and
+ * skipped, and fields missing in the file keep their default values, so files of older or newer schemas can be read
+ * as long as the format version is supported.
+ * <p/>
+ * Instances are not thread safe.
+ */
+public class AnalyticsRecordReader implements Closeable {
+
+    private final InputStream in;
+    private final int version;
+    // field of each schema entry, null if the field is unknown to this reader
+    private final AnalyticsField[] fields;
+    private final AnalyticsField.Type[] types;
+    private final long[] previousValues;
+    private final List<String> dictionary = new ArrayList<>();
+    private byte[] buffer = new byte[512];
+    private int position;
+    private int limit;
+
+    /**
+     * @param in stream positioned at the start of an analytics file
+     * @throws IOException if the header is not valid or can not be read
+     */
+    public AnalyticsRecordReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] magic = new byte[AnalyticsRecordWriter.MAGIC.length];
+        readFully(magic, magic.length);
+        for (int i = 0; i < magic.length; i++) {
+            if (magic[i] != AnalyticsRecordWriter.MAGIC[i]) {
+                throw new IOException("Not an analytics file, invalid magic bytes");
+            }
+        }
+        version = in.read();
+        if (version < 0) {
+            throw new EOFException("Unexpected end of analytics file header");
+        }
+        if (version > AnalyticsRecordWriter.VERSION) {
+            throw new IOException("Unsupported analytics file version " + version + ", maximum supported version is "
+                    + AnalyticsRecordWriter.VERSION);
+        }
+        int fieldCount = (int) readStreamVarLong(false);
+        fields = new AnalyticsField[fieldCount];
+        types = new AnalyticsField.Type[fieldCount];
+        previousValues = new long[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            int nameLength = (int) readStreamVarLong(false);
+            byte[] name = new byte[nameLength];
+            readFully(name, nameLength);
+            int typeId = in.read();
+            types[i] = AnalyticsField.Type.fromId(typeId);
+            if (types[i] == null) {
+                throw new IOException("Unknown type " + typeId + " of analytics field "
+                        + new String(name, StandardCharsets.UTF_8));
+            }
+            fields[i] = AnalyticsField.fromFieldName(new String(name, StandardCharsets.UTF_8));
+            if (fields[i] != null && fields[i].getType() != types[i]) {
+                throw new IOException("Analytics field " + fields[i].getFieldName() + " is of type " + types[i]
+                        + " while " + fields[i].getType() + " is expected");
+            }
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the next event, or null at the end of the file
+     * @throws IOException if the record is corrupted or can not be read
+     */
+    public AnalyticsEvent read() throws IOException {
+        long length = readStreamVarLong(true);
+        if (length < 0) {
+            return null;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid analytics record length " + length);
+        }
+        limit = (int) length;
+        if (buffer.length < limit) {
+            buffer = new byte[Math.max(limit, buffer.length * 2)];
+        }
+        readFully(buffer, limit);
+        position = 0;
+        AnalyticsEvent event = new AnalyticsEvent();
+        for (int i = 0; i < types.length; i++) {
+            AnalyticsField field = fields[i];
+            switch (types[i]) {
+                case STRING:
+                    String value = getString();
+                    if (field != null) {
+                        event.setString(field, value);
+                    }
+                    break;
+                case DICTIONARY_STRING:
+                    String dictionaryValue = getDictionaryString();
+                    if (field != null) {
+                        event.setString(field, dictionaryValue);
+                    }
+                    break;
+                case LONG:
+                    long longValue = unZigZag(getVarLong());
+                    if (field != null) {
+                        event.setLong(field, longValue);
+                    }
+                    break;
+                case TIMESTAMP:
+                    previousValues[i] += unZigZag(getVarLong());
+                    if (field != null) {
+                        event.setLong(field, previousValues[i]);
+                    }
+                    break;
+                case BOOLEAN:
+                    boolean booleanValue = getByte() != 0;
+                    if (field != null) {
+                        event.setBoolean(field, booleanValue);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown analytics field type " + types[i]);
+            }
+        }
+        if (position != limit) {
+            throw new IOException("Corrupted analytics record, " + (limit - position) + " bytes left undecoded");
+        }
+        return event;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String getDictionaryString() throws IOException {
+        long marker = getVarLong();
+        if (marker == AnalyticsRecordWriter.NEW_ENTRY) {
+            String value = getString();
+            dictionary.add(value);
+            return value;
+        } else if (marker == AnalyticsRecordWriter.LITERAL) {
+            return getString();
+        }
+        long index = marker - AnalyticsRecordWriter.ENTRY_OFFSET;
+        if (index >= dictionary.size()) {
+            throw new IOException("Corrupted analytics record, unknown dictionary entry " + index);
+        }
+        return dictionary.get((int) index);
+    }
+
+    private String getString() throws IOException {
+        long length = getVarLong();
+        if (length > limit - position) {
+            throw new IOException("Corrupted analytics record, string exceeds the record");
+        }
+        String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+        position += (int) length;
+        return value;
+    }
+
+    private int getByte() throws IOException {
+        if (position >= limit) {
+            throw new IOException("Corrupted analytics record, unexpected end of record");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = getByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted analytics record, malformed variable length integer");
+    }
+
+    /**
+     * Reads a variable length integer from the stream.
+     *
+     * @param eofAllowed whether the stream may end before the integer
+     * @return the value, or -1 if the stream ended before the integer and {@code eofAllowed} is set
+     */
+    private long readStreamVarLong(boolean eofAllowed) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (eofAllowed && shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Unexpected end of analytics file");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer in analytics file");
+    }
+
+    private void readFully(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(bytes, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of analytics file");
+            }
+            offset += read;
+        }
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
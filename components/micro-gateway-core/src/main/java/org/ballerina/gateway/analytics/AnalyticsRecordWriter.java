@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes analytics events into the binary analytics file format.
+ * <p/>
+ * A file starts with a header made of the magic bytes {@code MGWA}, the format version and the schema, which is the
+ * number of fields followed by the name and the {@link AnalyticsField.Type} of each field. The header is followed by
+ * records, each prefixed with its length in bytes as a variable length integer and holding the values of the fields
+ * in the order of the schema. Strings of dictionary fields are written once per file, and referred by their index in
+ * the file dictionary afterwards, so a record of a known consumer mostly consists of small integers. Records are
+ * encoded into a reusable buffer, hence writing does not allocate per event once the dictionary is warmed up.
+ * <p/>
+ * Instances are not thread safe.
+ */
+public class AnalyticsRecordWriter implements Closeable, Flushable {
+
+    static final byte[] MAGIC = { 'M', 'G', 'W', 'A' };
+    static final int VERSION = 1;
+    // markers of a dictionary string value, indexes of dictionary entries are offset by ENTRY_OFFSET
+    static final int NEW_ENTRY = 0;
+    static final int LITERAL = 1;
+    static final int ENTRY_OFFSET = 2;
+    public static final int DEFAULT_DICTIONARY_CAPACITY = 65536;
+
+    private static final AnalyticsField[] FIELDS = AnalyticsField.values();
+
+    private final OutputStream out;
+    private final int dictionaryCapacity;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final long[] previousValues = new long[FIELDS.length];
+    private final byte[] lengthBuffer = new byte[10];
+    private byte[] buffer = new byte[512];
+    private int position;
+    private long recordCount;
+
+    public AnalyticsRecordWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_DICTIONARY_CAPACITY);
+    }
+
+    /**
+     * @param out                stream the records are written to
+     * @param dictionaryCapacity maximum number of strings kept in the dictionary, strings seen after the dictionary
+     *                           is full are written in place
+     * @throws IOException if the header can not be written
+     */
+    public AnalyticsRecordWriter(OutputStream out, int dictionaryCapacity) throws IOException {
+        this.out = out;
+        this.dictionaryCapacity = dictionaryCapacity;
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        position = 0;
+        ensureCapacity(MAGIC.length + 1);
+        System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+        position = MAGIC.length;
+        buffer[position++] = (byte) VERSION;
+        putVarLong(FIELDS.length);
+        for (AnalyticsField field : FIELDS) {
+            putString(field.getFieldName());
+            ensureCapacity(1);
+            buffer[position++] = (byte) field.getType().getId();
+        }
+        out.write(buffer, 0, position);
+    }
+
+    /**
+     * Encodes an event as a single record.
+     *
+     * @param event event to be written
+     * @throws IOException if writing to the underlying stream fails
+     */
+    public void write(AnalyticsEvent event) throws IOException {
+        position = 0;
+        for (AnalyticsField field : FIELDS) {
+            switch (field.getType()) {
+                case STRING:
+                    putString(event.getString(field));
+                    break;
+                case DICTIONARY_STRING:
+                    putDictionaryString(event.getString(field));
+                    break;
+                case LONG:
+                    putVarLong(zigZag(event.getLong(field)));
+                    break;
+                case TIMESTAMP:
+                    long value = event.getLong(field);
+                    putVarLong(zigZag(value - previousValues[field.ordinal()]));
+                    previousValues[field.ordinal()] = value;
+                    break;
+                case BOOLEAN:
+                    ensureCapacity(1);
+                    buffer[position++] = (byte) (event.getBoolean(field) ? 1 : 0);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown type of analytics field " + field);
+            }
+        }
+        int lengthSize = writeVarLong(position, lengthBuffer);
+        out.write(lengthBuffer, 0, lengthSize);
+        out.write(buffer, 0, position);
+        recordCount++;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void putDictionaryString(String value) {
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            putVarLong(index + ENTRY_OFFSET);
+        } else if (dictionary.size() < dictionaryCapacity) {
+            dictionary.put(value, dictionary.size());
+            putVarLong(NEW_ENTRY);
+            putString(value);
+        } else {
+            putVarLong(LITERAL);
+            putString(value);
+        }
+    }
+
+    /**
+     * Writes the UTF-8 encoded length and bytes of a string straight into the buffer, without encoding it into an
+     * intermediate byte array.
+     */
+    private void putString(String value) {
+        int length = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length++;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        putVarLong(utf8Length);
+        ensureCapacity(utf8Length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // unpaired surrogates are written as is, like the three byte form of any other char
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void putVarLong(long value) {
+        ensureCapacity(10);
+        position += writeVarLong(value, buffer, position);
+    }
+
+    private static int writeVarLong(long value, byte[] bytes) {
+        return writeVarLong(value, bytes, 0);
+    }
+
+    private static int writeVarLong(long value, byte[] bytes, int offset) {
+        int index = offset;
+        while ((value & ~0x7FL) != 0) {
+            bytes[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[index++] = (byte) value;
+        return index - offset;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensureCapacity(int size) {
+        if (position + size > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + size)];
+            System.arraycopy(buffer, 0, newBuffer, 0, position);
+            buffer = newBuffer;
+        }
+    }
+}
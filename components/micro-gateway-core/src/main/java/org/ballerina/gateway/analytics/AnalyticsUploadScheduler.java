@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Schedules the upload of the usage data files to the analytics server.
+ * <p/>
+ * Rotated analytics segments and zip files found in the directory are kept in a manifest, oldest first, which is
+ * written to disk on every change so that pending uploads, failed attempts and uploads in flight survive a restart. An
+ * upload in flight at the time of a restart is attempted again. Uploaders take files with {@link #acquire()} until none
+ * is due, at most {@code parallelism} at a time, get the file to be sent with {@link #prepare(String)} and report the
+ * result with {@link #complete(String, boolean)}. A segment is converted into the zip file expected by the analytics
+ * server only by the uploader which takes it, and the zip file is kept along with the segment until the upload
+ * succeeds. A failed upload is retried after an exponential backoff, starting at {@code initialRetryInterval} and
+ * capped at {@code maxRetryInterval}, of which a random half is taken so that gateways do not retry in lock step. When
+ * the files waiting exceed {@code maxBacklogSize} bytes, the oldest ones which are not in flight are deleted. The
+ * metrics of the scheduler are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class AnalyticsUploadScheduler implements AnalyticsUploadSchedulerMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=AnalyticsUploadScheduler";
+    public static final String UPLOAD_FILE_SUFFIX = ".zip";
+    private static final String SEPARATOR = "\t";
+    private static final String PENDING = "PENDING";
+    private static final String IN_FLIGHT = "IN_FLIGHT";
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsUploadScheduler.class);
+
+    private static volatile AnalyticsUploadScheduler instance;
+
+    private final File directory;
+    private final File manifestFile;
+    private final int parallelism;
+    private final long initialRetryInterval;
+    private final long maxRetryInterval;
+    private final long maxBacklogSize;
+    private final Map<String, Segment> segments = new LinkedHashMap<>();
+    private int inFlightCount;
+    private long backlogSize;
+    private long uploadedCount;
+    private long uploadedBytes;
+    private long failedCount;
+    private long droppedCount;
+    private double uploadThroughput;
+
+    /**
+     * @param directory            directory the files to be uploaded are placed in
+     * @param manifestFile         file the manifest is persisted to
+     * @param parallelism          maximum number of uploads in flight
+     * @param initialRetryInterval time in milliseconds before the first retry of a failed upload
+     * @param maxRetryInterval     maximum time in milliseconds between retries of a failed upload
+     * @param maxBacklogSize       maximum total size in bytes of the files waiting to be uploaded, 0 for no limit
+     */
+    public AnalyticsUploadScheduler(File directory, File manifestFile, int parallelism, long initialRetryInterval,
+            long maxRetryInterval, long maxBacklogSize) {
+        if (parallelism <= 0 || initialRetryInterval <= 0 || maxRetryInterval < initialRetryInterval
+                || maxBacklogSize < 0) {
+            throw new IllegalArgumentException("Invalid analytics upload configuration, parallelism: " + parallelism
+                    + ", initial retry interval: " + initialRetryInterval + ", max retry interval: "
+                    + maxRetryInterval + ", max backlog size: " + maxBacklogSize);
+        }
+        this.directory = directory;
+        this.manifestFile = manifestFile;
+        this.parallelism = parallelism;
+        this.initialRetryInterval = initialRetryInterval;
+        this.maxRetryInterval = maxRetryInterval;
+        this.maxBacklogSize = maxBacklogSize;
+    }
+
+    /**
+     * Creates the scheduler of the gateway for the files in the directory of the manifest, restoring the manifest left
+     * by a previous run. Subsequent calls return the already created scheduler.
+     */
+    public static synchronized AnalyticsUploadScheduler init(String manifestFile, int parallelism,
+            long initialRetryInterval, long maxRetryInterval, long maxBacklogSize) {
+        if (instance == null) {
+            File manifest = new File(manifestFile).getAbsoluteFile();
+            AnalyticsUploadScheduler scheduler = new AnalyticsUploadScheduler(manifest.getParentFile(), manifest,
+                    parallelism, initialRetryInterval, maxRetryInterval, maxBacklogSize);
+            scheduler.load();
+            scheduler.registerMBean();
+            instance = scheduler;
+        }
+        return instance;
+    }
+
+    public static AnalyticsUploadScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Adds the files of the directory which are not known yet to the manifest, forgets the ones which no longer
+     * exist, and enforces the backlog limit.
+     *
+     * @return number of files waiting to be uploaded, including the ones in flight
+     */
+    public synchronized int scan() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(AnalyticsEventWriter.SEGMENT_SUFFIX)
+                || name.endsWith(UPLOAD_FILE_SUFFIX));
+        List<File> newFiles = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (!segments.containsKey(file.getName()) && !isConvertedSegment(file.getName())) {
+                    newFiles.add(file);
+                }
+            }
+        }
+        newFiles.sort((file1, file2) -> Long.compare(file1.lastModified(), file2.lastModified()));
+        boolean changed = !newFiles.isEmpty();
+        for (File file : newFiles) {
+            Segment segment = new Segment(file.getName(), file.lastModified());
+            segments.put(segment.name, segment);
+        }
+        Iterator<Segment> iterator = segments.values().iterator();
+        backlogSize = 0;
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            File file = new File(directory, segment.name);
+            if (!segment.inFlight && !file.exists()) {
+                iterator.remove();
+                changed = true;
+            } else {
+                File uploadFile = getUploadFile(segment.name);
+                segment.size = file.length() + (uploadFile != null ? uploadFile.length() : 0);
+                backlogSize += segment.size;
+            }
+        }
+        if (maxBacklogSize > 0 && backlogSize > maxBacklogSize) {
+            dropOldest();
+            changed = true;
+        }
+        if (changed) {
+            save();
+        }
+        return segments.size();
+    }
+
+    /**
+     * Takes the oldest file which is due to be uploaded.
+     *
+     * @param currentTime current time in milliseconds
+     * @return name of the file, or null if none is due or the maximum number of uploads is in flight
+     */
+    public synchronized String acquire(long currentTime) {
+        if (inFlightCount >= parallelism) {
+            return null;
+        }
+        for (Segment segment : segments.values()) {
+            if (!segment.inFlight && segment.nextAttemptTime <= currentTime) {
+                segment.inFlight = true;
+                segment.startTime = currentTime;
+                inFlightCount++;
+                save();
+                return segment.name;
+            }
+        }
+        return null;
+    }
+
+    public String acquire() {
+        return acquire(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the file to be sent for an acquired file. A rotated segment is converted into a zip file in the format
+     * of the analytics server, unless an earlier attempt already did so. The conversion is done by the calling
+     * uploader outside the lock of the scheduler, as no one else works on a file in flight.
+     *
+     * @param name name of the acquired file
+     * @return name of the file to be uploaded
+     * @throws IOException if the segment can not be converted
+     */
+    public String prepare(String name) throws IOException {
+        File uploadFile = getUploadFile(name);
+        if (uploadFile == null) {
+            return name;
+        }
+        if (!uploadFile.exists()) {
+            File file = new File(directory, name);
+            long count = AnalyticsFileConverter.convertToZip(file, uploadFile);
+            if (log.isDebugEnabled()) {
+                log.debug("Converted " + count + " analytics events of " + file.getPath());
+            }
+        }
+        return uploadFile.getName();
+    }
+
+    /**
+     * Records the result of an upload. A uploaded file is deleted, a failed one is scheduled to be retried.
+     *
+     * @param name        name of the file
+     * @param success     whether the file was uploaded
+     * @param currentTime current time in milliseconds
+     */
+    public synchronized void complete(String name, boolean success, long currentTime) {
+        Segment segment = segments.get(name);
+        if (segment == null || !segment.inFlight) {
+            log.warn("Upload of unknown usage data file " + name + " completed");
+            return;
+        }
+        segment.inFlight = false;
+        inFlightCount--;
+        if (success) {
+            segments.remove(name);
+            backlogSize -= segment.size;
+            uploadedCount++;
+            uploadedBytes += segment.size;
+            uploadThroughput = segment.size * 1000d / Math.max(1, currentTime - segment.startTime);
+            if (!delete(segment.name)) {
+                log.warn("Could not delete uploaded usage data file " + segment.name);
+            }
+        } else {
+            failedCount++;
+            segment.attempts++;
+            segment.nextAttemptTime = currentTime + getRetryInterval(segment.attempts);
+            log.warn("Upload of usage data file " + name + " failed " + segment.attempts + " time(s), retrying in "
+                    + (segment.nextAttemptTime - currentTime) + "ms");
+        }
+        save();
+    }
+
+    public void complete(String name, boolean success) {
+        complete(name, success, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the time to wait before the next attempt, a random value between the half and the full exponential
+     * backoff for the number of failed attempts.
+     */
+    long getRetryInterval(int attempts) {
+        long backoff = maxRetryInterval;
+        // stop doubling before overflowing
+        if (attempts <= 32) {
+            backoff = Math.min(maxRetryInterval, initialRetryInterval << (attempts - 1));
+        }
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    private void dropOldest() {
+        Iterator<Segment> iterator = segments.values().iterator();
+        while (backlogSize > maxBacklogSize && iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.inFlight) {
+                continue;
+            }
+            if (delete(segment.name)) {
+                iterator.remove();
+                backlogSize -= segment.size;
+                droppedCount++;
+                log.warn("Dropped usage data file " + segment.name + " as the upload backlog exceeds "
+                        + maxBacklogSize + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Returns the zip file a segment is converted into, or null for a file which is uploaded as it is.
+     */
+    private File getUploadFile(String name) {
+        return name.endsWith(AnalyticsEventWriter.SEGMENT_SUFFIX) ? new File(directory, name + UPLOAD_FILE_SUFFIX)
+                : null;
+    }
+
+    /**
+     * Whether a zip file is the conversion of a segment which is still in the directory or in the manifest.
+     */
+    private boolean isConvertedSegment(String name) {
+        if (!name.endsWith(AnalyticsEventWriter.SEGMENT_SUFFIX + UPLOAD_FILE_SUFFIX)) {
+            return false;
+        }
+        String segmentName = name.substring(0, name.length() - UPLOAD_FILE_SUFFIX.length());
+        return segments.containsKey(segmentName) || new File(directory, segmentName).exists();
+    }
+
+    /**
+     * Deletes a file along with the zip file it was converted into.
+     *
+     * @return false if either file is left behind
+     */
+    private boolean delete(String name) {
+        File file = new File(directory, name);
+        File uploadFile = getUploadFile(name);
+        boolean deleted = file.delete() || !file.exists();
+        return (uploadFile == null || uploadFile.delete() || !uploadFile.exists()) && deleted;
+    }
+
+    /**
+     * Reads the manifest written by a previous run. Uploads which were in flight become pending again.
+     */
+    synchronized void load() {
+        if (!manifestFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(SEPARATOR);
+                if (values.length != 5) {
+                    log.warn("Ignoring invalid entry of the usage data upload manifest: " + line);
+                    continue;
+                }
+                Segment segment = new Segment(values[0], Long.parseLong(values[1]));
+                segment.attempts = Integer.parseInt(values[2]);
+                segment.nextAttemptTime = Long.parseLong(values[3]);
+                if (IN_FLIGHT.equals(values[4])) {
+                    log.info("Resuming the upload of usage data file " + segment.name
+                            + " which was interrupted by a restart");
+                }
+                segments.put(segment.name, segment);
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.error("Error while reading the usage data upload manifest " + manifestFile.getPath(), e);
+        }
+    }
+
+    /**
+     * Writes the manifest under a temporary name first, so that a crash never leaves a partially written manifest.
+     */
+    private void save() {
+        File tempFile = new File(manifestFile.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile),
+                StandardCharsets.UTF_8))) {
+            for (Segment segment : segments.values()) {
+                writer.write(segment.name + SEPARATOR + segment.createdTime + SEPARATOR + segment.attempts
+                        + SEPARATOR + segment.nextAttemptTime + SEPARATOR + (segment.inFlight ? IN_FLIGHT : PENDING)
+                        + "\n");
+            }
+        } catch (IOException e) {
+            log.error("Error while writing the usage data upload manifest " + manifestFile.getPath(), e);
+            return;
+        }
+        if (!tempFile.renameTo(manifestFile)) {
+            // renaming over an existing file is not supported on every platform
+            if (!manifestFile.delete() || !tempFile.renameTo(manifestFile)) {
+                log.error("Could not replace the usage data upload manifest " + manifestFile.getPath());
+            }
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the analytics upload scheduler MBean", e);
+        }
+    }
+
+    @Override
+    public synchronized int getPendingCount() {
+        return segments.size() - inFlightCount;
+    }
+
+    @Override
+    public synchronized int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    @Override
+    public synchronized long getBacklogSize() {
+        return backlogSize;
+    }
+
+    /**
+     * @return time in milliseconds the oldest file has been waiting to be uploaded
+     */
+    @Override
+    public synchronized long getUploadLag() {
+        Iterator<Segment> iterator = segments.values().iterator();
+        return iterator.hasNext() ? Math.max(0, System.currentTimeMillis() - iterator.next().createdTime) : 0;
+    }
+
+    @Override
+    public synchronized long getUploadedCount() {
+        return uploadedCount;
+    }
+
+    @Override
+    public synchronized long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    @Override
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    @Override
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return bytes per second of the last upload
+     */
+    @Override
+    public synchronized double getUploadThroughput() {
+        return uploadThroughput;
+    }
+
+    /**
+     * A file waiting to be uploaded.
+     */
+    private static final class Segment {
+        private final String name;
+        private final long createdTime;
+        private long size;
+        private int attempts;
+        private long nextAttemptTime;
+        private long startTime;
+        private boolean inFlight;
+
+        Segment(String name, long createdTime) {
+            this.name = name;
+            this.createdTime = createdTime;
+        }
+    }
+}
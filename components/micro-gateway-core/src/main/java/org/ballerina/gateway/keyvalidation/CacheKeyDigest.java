@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Fixed size key of the key validation caches, made of the first 128 bits of the SHA-256 digest of the access token
+ * and the API it is used on. Keys are handed to Ballerina as {@value #ENCODED_LENGTH} character url safe base64
+ * strings and are held by the Java stores as two longs, so that no cache retains the access token itself.
+ */
+public final class CacheKeyDigest {
+
+    public static final int ENCODED_LENGTH = 22;
+    private static final int DIGEST_LENGTH = 16;
+    private static final ThreadLocal<MessageDigest> messageDigest = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+    });
+
+    private final long high;
+    private final long low;
+
+    CacheKeyDigest(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Digests a value into a cache key.
+     *
+     * @param value value to digest, ex: access token followed by the API context and version
+     * @return digest of the value
+     */
+    public static CacheKeyDigest digest(String value) {
+        byte[] hash = messageDigest.get().digest(value.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new CacheKeyDigest(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Returns the digest a cache key stands for. Keys created with {@link #toString()} are decoded, any other key is
+     * digested.
+     *
+     * @param cacheKey cache key
+     * @return digest of the key
+     */
+    public static CacheKeyDigest fromCacheKey(String cacheKey) {
+        if (cacheKey.length() == ENCODED_LENGTH) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cacheKey));
+                return new CacheKeyDigest(buffer.getLong(), buffer.getLong());
+            } catch (IllegalArgumentException e) {
+                // not an encoded digest, falls back to digesting the key
+            }
+        }
+        return digest(cacheKey);
+    }
+
+    long getHigh() {
+        return high;
+    }
+
+    long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKeyDigest)) {
+            return false;
+        }
+        CacheKeyDigest other = (CacheKeyDigest) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // the bits of a digest are already uniformly distributed
+        return (int) low;
+    }
+
+    /**
+     * @return url safe base64 encoding of the digest, without padding
+     */
+    @Override
+    public String toString() {
+        ByteBuffer buffer = ByteBuffer.allocate(DIGEST_LENGTH);
+        buffer.putLong(high).putLong(low);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of {@link CacheKeyDigest}s. As the bits of a digest are already uniformly distributed, the bit
+ * positions are derived from its two halves by double hashing instead of hashing the key again. Bits are set with
+ * atomic updates, so that the filter can be added to and read concurrently without locking.
+ */
+final class DigestBloomFilter {
+
+    static final int BITS_PER_ENTRY = 10;
+    // optimal for 10 bits per entry, giving a false positive rate below 1% at the expected number of entries
+    static final int HASH_COUNT = 7;
+
+    private final AtomicLongArray words;
+    private final long bitMask;
+
+    /**
+     * @param expectedEntries number of entries the filter is sized for
+     */
+    DigestBloomFilter(int expectedEntries) {
+        // the number of bits is rounded up to a power of two, so that positions are masked instead of divided
+        long bits = Long.highestOneBit(Math.max(64L, (long) expectedEntries * BITS_PER_ENTRY) - 1) << 1;
+        words = new AtomicLongArray((int) (bits >>> 6));
+        bitMask = bits - 1;
+    }
+
+    void add(CacheKeyDigest key) {
+        long hash = key.getHigh();
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long position = hash & bitMask;
+            long bit = 1L << position;
+            int index = (int) (position >>> 6);
+            long word = words.get(index);
+            while ((word & bit) == 0 && !words.compareAndSet(index, word, word | bit)) {
+                word = words.get(index);
+            }
+            hash += key.getLow();
+        }
+    }
+
+    /**
+     * @return false if the key has not been added, true if it may have been
+     */
+    boolean mightContain(CacheKeyDigest key) {
+        long hash = key.getHigh();
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long position = hash & bitMask;
+            if ((words.get((int) (position >>> 6)) & (1L << position)) == 0) {
+                return false;
+            }
+            hash += key.getLow();
+        }
+        return true;
+    }
+
+    int getBitCount() {
+        return words.length() << 6;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Negative cache of the key validation, holding the cache keys of the tokens the key manager rejected.
+ * <p/>
+ * The store is sized and expired independently of the key validation result store, so that a flood of invalid
+ * tokens does not evict valid ones. Each key is kept for the expiry time from when it was rejected, and the oldest
+ * keys are evicted above the capacity. As all keys live equally long, they expire in the order they were added and
+ * are kept in a queue in that order instead of being sorted or swept.
+ * <p/>
+ * Lookups are fronted by bloom filters of the keys rejected within the current and previous expiry periods, so that
+ * the tokens which were never rejected, which are most of them, are answered without reading the map. The filter of
+ * the current period is started afresh every expiry time, by when every key of the one it replaces has expired. The
+ * counters are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class InvalidTokenStore implements InvalidTokenStoreMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=InvalidTokenStore";
+    private static final Logger log = LoggerFactory.getLogger(InvalidTokenStore.class);
+
+    private static volatile InvalidTokenStore instance;
+
+    private final int capacity;
+    private final long expiryTime;
+    private final ConcurrentHashMap<CacheKeyDigest, Entry> entryMap = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> entryQueue = new ConcurrentLinkedQueue<>();
+    private volatile DigestBloomFilter currentFilter;
+    private volatile DigestBloomFilter previousFilter;
+    private volatile long filterStartTime;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong filteredCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param capacity    maximum number of rejected tokens kept
+     * @param expiryTime  time in milliseconds for which a rejected token is kept
+     * @param currentTime current time in milliseconds
+     */
+    public InvalidTokenStore(int capacity, long expiryTime, long currentTime) {
+        if (capacity <= 0 || expiryTime <= 0) {
+            throw new IllegalArgumentException("Invalid configuration of the invalid token store, capacity: "
+                    + capacity + ", expiry time: " + expiryTime);
+        }
+        this.capacity = capacity;
+        this.expiryTime = expiryTime;
+        currentFilter = new DigestBloomFilter(capacity);
+        previousFilter = new DigestBloomFilter(capacity);
+        filterStartTime = currentTime;
+    }
+
+    /**
+     * Creates the store of the gateway. Subsequent calls return the already created store.
+     */
+    public static synchronized InvalidTokenStore init(int capacity, long expiryTime) {
+        if (instance == null) {
+            InvalidTokenStore store = new InvalidTokenStore(capacity, expiryTime, System.currentTimeMillis());
+            store.registerMBean();
+            instance = store;
+        }
+        return instance;
+    }
+
+    public static InvalidTokenStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Checks whether a token has been rejected within the expiry time.
+     *
+     * @param cacheKey    cache key of the token
+     * @param currentTime current time in milliseconds
+     * @return true if the token has been rejected
+     */
+    public boolean isInvalid(String cacheKey, long currentTime) {
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        if (!currentFilter.mightContain(key) && !previousFilter.mightContain(key)) {
+            filteredCount.incrementAndGet();
+            return false;
+        }
+        Entry entry = entryMap.get(key);
+        if (entry == null || currentTime - entry.rejectedTime >= expiryTime) {
+            missCount.incrementAndGet();
+            return false;
+        }
+        hitCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records that a token has been rejected.
+     *
+     * @param cacheKey    cache key of the token
+     * @param currentTime current time in milliseconds
+     */
+    public void put(String cacheKey, long currentTime) {
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        Entry entry = new Entry(key, currentTime);
+        entryMap.put(key, entry);
+        entryQueue.add(entry);
+        if (currentTime - filterStartTime >= expiryTime) {
+            startFilter(currentTime);
+        }
+        currentFilter.add(key);
+        removeExpired(currentTime);
+    }
+
+    public void remove(String cacheKey) {
+        // the key stays in the bloom filters until they are replaced, and is only looked up in the map in vain
+        entryMap.remove(CacheKeyDigest.fromCacheKey(cacheKey));
+    }
+
+    private synchronized void startFilter(long currentTime) {
+        if (currentTime - filterStartTime < expiryTime) {
+            return;
+        }
+        previousFilter = currentFilter;
+        currentFilter = new DigestBloomFilter(capacity);
+        filterStartTime = currentTime;
+    }
+
+    private void removeExpired(long currentTime) {
+        Entry head;
+        while ((head = entryQueue.peek()) != null) {
+            boolean expired = currentTime - head.rejectedTime >= expiryTime;
+            if (!expired && entryMap.size() <= capacity) {
+                return;
+            }
+            if (entryQueue.remove(head) && entryMap.remove(head.key, head) && !expired) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the invalid token store MBean", e);
+        }
+    }
+
+    @Override
+    public int getEntryCount() {
+        return entryMap.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of lookups which passed the bloom filters but were not found, or had expired
+     */
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of lookups answered by the bloom filters alone
+     */
+    @Override
+    public long getFilteredCount() {
+        return filteredCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Cache key of a rejected token and the time it was rejected. Entries are compared by identity, so that an entry
+     * replaced by a later rejection of the same token is not removed in its place.
+     */
+    private static final class Entry {
+        final CacheKeyDigest key;
+        final long rejectedTime;
+
+        Entry(CacheKeyDigest key, long rejectedTime) {
+            this.key = key;
+            this.rejectedTime = rejectedTime;
+        }
+    }
+}
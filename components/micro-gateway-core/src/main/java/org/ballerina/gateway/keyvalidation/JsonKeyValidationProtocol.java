@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * JSON protocol for key managers which validate keys over REST. The request is a JSON object with the parameters of
+ * the validateKey operation of the SOAP service, and the response a JSON object with the fields of the result named
+ * as in the SOAP response, ex: {"authorized":true,"type":"PRODUCTION",...}. Responses are read with a streaming
+ * tokenizer; array values are joined with commas and nested objects are skipped.
+ */
+public class JsonKeyValidationProtocol implements KeyValidationProtocol {
+
+    public static final String DEFAULT_PATH = "/keymanager/validate";
+
+    private final String path;
+    private final Map<String, String> headers = Collections.singletonMap("Content-Type", "application/json");
+
+    public JsonKeyValidationProtocol(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public String createRequest(KeyValidationRequest request) {
+        StringBuilder builder = new StringBuilder(256).append('{');
+        appendMember(builder, "context", request.getContext()).append(',');
+        appendMember(builder, "version", request.getVersion()).append(',');
+        appendMember(builder, "accessToken", request.getAccessToken()).append(',');
+        appendMember(builder, "requiredAuthenticationLevel", request.getRequiredAuthenticationLevel()).append(',');
+        appendMember(builder, "clientDomain", request.getClientDomain()).append(',');
+        appendMember(builder, "matchingResource", request.getMatchingResource()).append(',');
+        appendMember(builder, "httpVerb", request.getHttpVerb());
+        return builder.append('}').toString();
+    }
+
+    @Override
+    public String[] parseResponse(InputStream payload) throws KeyValidationException {
+        String[] values = new String[KeyValidationField.values().length];
+        try {
+            JsonTokenizer tokenizer = new JsonTokenizer(new BufferedReader(new InputStreamReader(payload,
+                    StandardCharsets.UTF_8)));
+            tokenizer.expect('{');
+            if (tokenizer.peek() == '}') {
+                return KeyValidationProtocols.complete(values);
+            }
+            do {
+                String name = tokenizer.readString();
+                tokenizer.expect(':');
+                KeyValidationField field = KeyValidationField.fromElementName(name);
+                int next = tokenizer.peek();
+                if (next == '[') {
+                    tokenizer.expect('[');
+                    if (tokenizer.peek() == ']') {
+                        tokenizer.expect(']');
+                        if (field != null) {
+                            KeyValidationProtocols.addValue(values, field, "");
+                        }
+                        continue;
+                    }
+                    do {
+                        String value = tokenizer.readValue();
+                        if (field != null && value != null) {
+                            KeyValidationProtocols.addValue(values, field, value);
+                        }
+                    } while (tokenizer.next(',', ']'));
+                } else {
+                    String value = tokenizer.readValue();
+                    if (field != null) {
+                        KeyValidationProtocols.addValue(values, field, value == null ? "" : value);
+                    }
+                }
+            } while (tokenizer.next(',', '}'));
+            return KeyValidationProtocols.complete(values);
+        } catch (IOException e) {
+            throw new KeyValidationException("Invalid key validation response", e);
+        }
+    }
+
+    private static StringBuilder appendMember(StringBuilder builder, String name, String value) {
+        builder.append('"').append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"');
+    }
+}
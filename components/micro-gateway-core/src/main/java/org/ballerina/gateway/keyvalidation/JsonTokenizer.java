@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the tokens of a JSON document one character at a time, so that the values of interest are picked out of a
+ * document without building a tree of it.
+ */
+final class JsonTokenizer {
+
+    private final Reader reader;
+    private int lookahead = -2;
+
+    JsonTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next character which is not white space, without consuming it
+     */
+    int peek() throws IOException {
+        if (lookahead == -2) {
+            lookahead = reader.read();
+        }
+        while (lookahead == ' ' || lookahead == '\t' || lookahead == '\n' || lookahead == '\r') {
+            lookahead = reader.read();
+        }
+        return lookahead;
+    }
+
+    int read() throws IOException {
+        int c = lookahead == -2 ? reader.read() : lookahead;
+        lookahead = -2;
+        if (c < 0) {
+            throw new IOException("Unexpected end of the JSON document");
+        }
+        return c;
+    }
+
+    void expect(char expected) throws IOException {
+        int c = peek();
+        if (c != expected) {
+            throw new IOException("Expected '" + expected + "' but found " + describe(c));
+        }
+        read();
+    }
+
+    /**
+     * Reads the separator after a member or an element.
+     *
+     * @return true if another member or element follows, false at the end of the object or array
+     */
+    boolean next(char separator, char end) throws IOException {
+        int c = peek();
+        if (c != separator && c != end) {
+            throw new IOException("Expected '" + separator + "' or '" + end + "' but found " + describe(c));
+        }
+        read();
+        return c == separator;
+    }
+
+    String readString() throws IOException {
+        expect('"');
+        StringBuilder builder = new StringBuilder();
+        for (int c = read(); c != '"'; c = read()) {
+            if (c != '\\') {
+                builder.append((char) c);
+                continue;
+            }
+            c = read();
+            switch (c) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    char[] hex = {(char) read(), (char) read(), (char) read(), (char) read()};
+                    try {
+                        builder.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid unicode escape \\u" + new String(hex), e);
+                    }
+                    break;
+                default:
+                    builder.append((char) c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads a value, skipping nested objects and arrays.
+     *
+     * @return the value as text, or null for null, objects and arrays
+     */
+    String readValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            skipNested();
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        while (c == '-' || c == '+' || c == '.' || Character.isLetterOrDigit(c)) {
+            builder.append((char) read());
+            c = reader.read();
+            lookahead = c;
+        }
+        String value = builder.toString();
+        if (value.isEmpty()) {
+            throw new IOException("Expected a value but found " + describe(c));
+        }
+        return "null".equals(value) ? null : value;
+    }
+
+    private void skipNested() throws IOException {
+        int depth = 0;
+        do {
+            int c = peek();
+            if (c == '"') {
+                readString();
+                continue;
+            }
+            read();
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private static String describe(int c) {
+        return c < 0 ? "the end of the document" : "'" + (char) c + "'";
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+/**
+ * Claims of a verified JWT handed to Ballerina, in order. The application claims are members of the application
+ * object of the token. Ballerina reads the claims by the JWT_CLAIM_ constants of constants.bal, which have to be
+ * changed along with the order of this enum.
+ */
+public enum JwtField {
+
+    SUBJECT("sub", false),
+    ISSUER("iss", false),
+    END_USER("endUser", false),
+    CONSUMER_KEY("consumerKey", false),
+    API_TIER("apiTier", false),
+    PUBLISHER("publisher", false),
+    SUBSCRIBER_TENANT_DOMAIN("subscriberTenantDomain", false),
+    APPLICATION_ID("id", true),
+    APPLICATION_NAME("name", true),
+    APPLICATION_TIER("tier", true);
+
+    private final String claimName;
+    private final boolean applicationClaim;
+
+    JwtField(String claimName, boolean applicationClaim) {
+        this.claimName = claimName;
+        this.applicationClaim = applicationClaim;
+    }
+
+    public String getClaimName() {
+        return claimName;
+    }
+
+    public boolean isApplicationClaim() {
+        return applicationClaim;
+    }
+}
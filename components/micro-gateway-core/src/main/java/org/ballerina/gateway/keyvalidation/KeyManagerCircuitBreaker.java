@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Circuit breaker of the key validation calls to the key manager.
+ * <p/>
+ * The outcomes of the calls are counted in buckets over a rolling window. Once the window holds at least
+ * {@code requestVolumeThreshold} calls and the failed fraction of them reaches {@code failureThreshold}, the breaker
+ * opens and calls are rejected without reaching the key manager. After the reset time a single trial call is let
+ * through: the breaker closes if it succeeds and opens again if it fails. Calls are few compared to requests, as most
+ * requests are served from the key validation cache, so the state is guarded by the breaker itself. The state and
+ * counters are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class KeyManagerCircuitBreaker implements KeyManagerCircuitBreakerMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=KeyManagerCircuitBreaker";
+    private static final int BUCKET_COUNT = 10;
+    private static final Logger log = LoggerFactory.getLogger(KeyManagerCircuitBreaker.class);
+
+    private static volatile KeyManagerCircuitBreaker instance;
+
+    /**
+     * States of the breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final double failureThreshold;
+    private final int requestVolumeThreshold;
+    private final long rollingWindow;
+    private final long resetTime;
+    private final long bucketTime;
+    private final long[] bucketStartTimes = new long[BUCKET_COUNT];
+    private final int[] bucketSuccesses = new int[BUCKET_COUNT];
+    private final int[] bucketFailures = new int[BUCKET_COUNT];
+    private State state = State.CLOSED;
+    private long openedTime;
+    private boolean trialInFlight;
+    private long successCount;
+    private long failureCount;
+    private long rejectedCount;
+    private long openCount;
+
+    /**
+     * @param failureThreshold       fraction of failed calls within the rolling window which opens the breaker
+     * @param requestVolumeThreshold minimum number of calls within the rolling window before the breaker opens
+     * @param rollingWindow          time in milliseconds over which the calls are counted
+     * @param resetTime              time in milliseconds the breaker stays open before a trial call
+     */
+    public KeyManagerCircuitBreaker(double failureThreshold, int requestVolumeThreshold, long rollingWindow,
+                                    long resetTime) {
+        if (failureThreshold <= 0 || failureThreshold > 1 || requestVolumeThreshold <= 0
+                || rollingWindow < BUCKET_COUNT || resetTime <= 0) {
+            throw new IllegalArgumentException("Invalid key manager circuit breaker configuration, failure "
+                    + "threshold: " + failureThreshold + ", request volume threshold: " + requestVolumeThreshold
+                    + ", rolling window: " + rollingWindow + ", reset time: " + resetTime);
+        }
+        this.failureThreshold = failureThreshold;
+        this.requestVolumeThreshold = requestVolumeThreshold;
+        this.rollingWindow = rollingWindow;
+        this.resetTime = resetTime;
+        this.bucketTime = rollingWindow / BUCKET_COUNT;
+    }
+
+    /**
+     * Enables the circuit breaker of the key manager. Subsequent calls return the already created breaker.
+     */
+    public static synchronized KeyManagerCircuitBreaker init(double failureThreshold, int requestVolumeThreshold,
+                                                             long rollingWindow, long resetTime) {
+        if (instance == null) {
+            KeyManagerCircuitBreaker breaker = new KeyManagerCircuitBreaker(failureThreshold,
+                    requestVolumeThreshold, rollingWindow, resetTime);
+            breaker.registerMBean();
+            instance = breaker;
+        }
+        return instance;
+    }
+
+    /**
+     * @return the breaker, or null if the circuit breaker is not enabled
+     */
+    public static KeyManagerCircuitBreaker getInstance() {
+        return instance;
+    }
+
+    /**
+     * Asks for a call to the key manager. A call which is allowed has to be reported with
+     * {@link #recordResult(boolean, long)}.
+     *
+     * @param currentTime current time in milliseconds
+     * @return true if the call can be made, false if it is rejected
+     */
+    public synchronized boolean allowRequest(long currentTime) {
+        if (state == State.OPEN && currentTime - openedTime >= resetTime) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.CLOSED || (state == State.HALF_OPEN && !trialInFlight)) {
+            trialInFlight = state == State.HALF_OPEN;
+            return true;
+        }
+        rejectedCount++;
+        return false;
+    }
+
+    /**
+     * Checks whether a call would be allowed now, without asking for it.
+     *
+     * @param currentTime current time in milliseconds
+     * @return false if calls are being rejected
+     */
+    public synchronized boolean isAvailable(long currentTime) {
+        switch (state) {
+            case OPEN:
+                return currentTime - openedTime >= resetTime;
+            case HALF_OPEN:
+                return !trialInFlight;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Reports the outcome of a call allowed with {@link #allowRequest(long)}.
+     *
+     * @param success     false if the call failed or its response could not be read
+     * @param currentTime current time in milliseconds
+     */
+    public synchronized void recordResult(boolean success, long currentTime) {
+        if (success) {
+            successCount++;
+        } else {
+            failureCount++;
+        }
+        if (state == State.HALF_OPEN && trialInFlight) {
+            trialInFlight = false;
+            if (success) {
+                close();
+            } else {
+                open(currentTime);
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            // a call made before the breaker opened
+            return;
+        }
+        long bucketStartTime = currentTime - currentTime % bucketTime;
+        int bucket = (int) ((currentTime / bucketTime) % BUCKET_COUNT);
+        if (bucketStartTimes[bucket] != bucketStartTime) {
+            bucketStartTimes[bucket] = bucketStartTime;
+            bucketSuccesses[bucket] = 0;
+            bucketFailures[bucket] = 0;
+        }
+        if (success) {
+            bucketSuccesses[bucket]++;
+            return;
+        }
+        bucketFailures[bucket]++;
+        int calls = 0;
+        int failures = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (currentTime - bucketStartTimes[i] < rollingWindow) {
+                calls += bucketSuccesses[i] + bucketFailures[i];
+                failures += bucketFailures[i];
+            }
+        }
+        if (calls >= requestVolumeThreshold && failures >= failureThreshold * calls) {
+            open(currentTime);
+        }
+    }
+
+    private void open(long currentTime) {
+        state = State.OPEN;
+        openedTime = currentTime;
+        openCount++;
+        log.warn("Key manager circuit breaker opened, key validation calls are rejected for " + resetTime + "ms");
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketStartTimes[i] = 0;
+            bucketSuccesses[i] = 0;
+            bucketFailures[i] = 0;
+        }
+        log.info("Key manager circuit breaker closed");
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the key manager circuit breaker MBean", e);
+        }
+    }
+
+    @Override
+    public synchronized String getState() {
+        return state.name();
+    }
+
+    @Override
+    public synchronized long getSuccessCount() {
+        return successCount;
+    }
+
+    @Override
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    @Override
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return number of times the breaker has opened
+     */
+    @Override
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Coalesces concurrent key validation calls of the same cache key, so that a single call per key is in flight.
+ * <p/>
+ * The first request of a key becomes the one validating it and has to {@link #release(String)} the key once the
+ * result is cached. Other requests of the key wait up to a timeout for that, and then look the result up in the cache.
+ * A validation which has been in flight for longer than the timeout is considered lost, and the next request of the
+ * key takes it over, so that a failed request can not hold the key. The counters are registered over JMX as
+ * {@value #MBEAN_NAME}.
+ */
+public class KeyValidationCoalescer implements KeyValidationCoalescerMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=KeyValidationCoalescer";
+    private static final Logger log = LoggerFactory.getLogger(KeyValidationCoalescer.class);
+
+    private static volatile KeyValidationCoalescer instance;
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong validationCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicInteger maxWaiterCount = new AtomicInteger();
+
+    KeyValidationCoalescer() {
+    }
+
+    public static KeyValidationCoalescer getInstance() {
+        if (instance == null) {
+            synchronized (KeyValidationCoalescer.class) {
+                if (instance == null) {
+                    KeyValidationCoalescer coalescer = new KeyValidationCoalescer();
+                    coalescer.registerMBean();
+                    instance = coalescer;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the validation of a key, or waits for the one already in flight.
+     *
+     * @param key     cache key of the validation
+     * @param timeout maximum time in milliseconds to wait for the validation in flight
+     * @return true if the caller has to validate the key and release it afterwards, false if the validation in flight
+     * completed or the wait timed out
+     */
+    public boolean acquire(String key, long timeout) {
+        Flight flight = new Flight(System.currentTimeMillis());
+        while (true) {
+            Flight current = flights.putIfAbsent(key, flight);
+            if (current == null) {
+                validationCount.incrementAndGet();
+                return true;
+            }
+            if (flight.startTime - current.startTime > timeout) {
+                // the request validating the key did not release it in time, take the validation over
+                if (flights.replace(key, current, flight)) {
+                    current.latch.countDown();
+                    validationCount.incrementAndGet();
+                    log.warn("Key validation in flight for " + (flight.startTime - current.startTime)
+                            + "ms was taken over");
+                    return true;
+                }
+                continue;
+            }
+            await(current, timeout);
+            return false;
+        }
+    }
+
+    /**
+     * Completes the validation of a key started with {@link #acquire(String, long)}, releasing the requests waiting
+     * for it.
+     *
+     * @param key cache key of the validation
+     */
+    public void release(String key) {
+        Flight flight = flights.remove(key);
+        if (flight != null) {
+            flight.latch.countDown();
+            int waiters = flight.waiterCount.get();
+            if (waiters > 0 && log.isDebugEnabled()) {
+                log.debug("Key validation completed in " + (System.currentTimeMillis() - flight.startTime)
+                        + "ms for " + waiters + " waiting request(s)");
+            }
+        }
+    }
+
+    private void await(Flight flight, long timeout) {
+        int waiters = flight.waiterCount.incrementAndGet();
+        maxWaiterCount.accumulateAndGet(waiters, Math::max);
+        coalescedCount.incrementAndGet();
+        long startTime = System.nanoTime();
+        try {
+            if (!flight.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            totalWaitTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the key validation coalescer MBean", e);
+        }
+    }
+
+    @Override
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    @Override
+    public long getValidationCount() {
+        return validationCount.get();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return highest number of requests which waited for the validation of a single key
+     */
+    @Override
+    public int getMaxWaiterCount() {
+        return maxWaiterCount.get();
+    }
+
+    @Override
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    /**
+     * A key validation in flight.
+     */
+    private static final class Flight {
+        private final long startTime;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicInteger waiterCount = new AtomicInteger();
+
+        Flight(long startTime) {
+            this.startTime = startTime;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fields of a key validation result, in the order they are passed to and returned from the
+ * {@link KeyValidationResultStore}. Fields which take a few distinct values over all the tokens, such as tiers,
+ * applications and publishers, are interned and stored as dictionary references. The element name is the name of the
+ * field in the key validation responses of the key manager.
+ */
+public enum KeyValidationField {
+
+    API_NAME("apiName", true),
+    API_PUBLISHER("apiPublisher", true),
+    API_TIER("apiTier", true),
+    APPLICATION_ID("applicationId", true),
+    APPLICATION_NAME("applicationName", true),
+    APPLICATION_TIER("applicationTier", true),
+    AUTHORIZED("authorized", true),
+    AUTHORIZED_DOMAINS("authorizedDomains", true),
+    CONSUMER_KEY("consumerKey", false),
+    CONTENT_AWARE("contentAware", true),
+    END_USER_NAME("endUserName", false),
+    END_USER_TOKEN("endUserToken", false),
+    ISSUED_TIME("issuedTime", false),
+    SPIKE_ARREST_LIMIT("spikeArrestLimit", true),
+    SPIKE_ARREST_UNIT("spikeArrestUnit", true),
+    STOP_ON_QUOTA_REACH("stopOnQuotaReach", true),
+    SUBSCRIBER("subscriber", true),
+    SUBSCRIBER_TENANT_DOMAIN("subscriberTenantDomain", true),
+    THROTTLING_DATA_LIST("throttlingDataList", true),
+    TIER("tier", true),
+    KEY_TYPE("keyType", "type", true),
+    USER_TYPE("userType", true),
+    VALIDATION_STATUS("validationStatus", true),
+    VALIDITY_PERIOD("validityPeriod", true);
+
+    private static final Map<String, KeyValidationField> elementMap = new HashMap<>();
+
+    static {
+        for (KeyValidationField field : values()) {
+            elementMap.put(field.elementName, field);
+        }
+    }
+
+    private final String fieldName;
+    private final String elementName;
+    private final boolean interned;
+
+    KeyValidationField(String fieldName, boolean interned) {
+        this(fieldName, fieldName, interned);
+    }
+
+    KeyValidationField(String fieldName, String elementName, boolean interned) {
+        this.fieldName = fieldName;
+        this.elementName = elementName;
+        this.interned = interned;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public String getElementName() {
+        return elementName;
+    }
+
+    public boolean isInterned() {
+        return interned;
+    }
+
+    /**
+     * Returns the field with the given element name.
+     *
+     * @param elementName name of the field in a key validation response
+     * @return the field, or null if the element is not a field of the result
+     */
+    public static KeyValidationField fromElementName(String elementName) {
+        return elementMap.get(elementName);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Message format of the key validation service of a key manager. The call itself is made by the key validation
+ * endpoint of the gateway, a protocol only writes the request and reads the response straight into the fields of
+ * the key validation result.
+ * <p/>
+ * Protocols other than the ones of {@link KeyValidationProtocols} are plugged in by class name, and need a public
+ * constructor taking the path of the service.
+ */
+public interface KeyValidationProtocol {
+
+    /**
+     * @return path of the key validation service on the key manager
+     */
+    String getPath();
+
+    /**
+     * @return HTTP headers of a key validation request, including the content type
+     */
+    Map<String, String> getHeaders();
+
+    /**
+     * Writes a key validation request.
+     *
+     * @param request parameters of the request
+     * @return payload of the request
+     */
+    String createRequest(KeyValidationRequest request);
+
+    /**
+     * Reads a key validation response.
+     *
+     * @param payload payload of the response
+     * @return values of the result in the order of {@link KeyValidationField}, empty for the fields not in the
+     * response
+     * @throws KeyValidationException if the payload is not a key validation result
+     */
+    String[] parseResponse(InputStream payload) throws KeyValidationException;
+}
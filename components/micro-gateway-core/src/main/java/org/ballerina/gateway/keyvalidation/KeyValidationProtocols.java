@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Holds the key validation protocol the gateway talks to its key manager with.
+ */
+public final class KeyValidationProtocols {
+
+    public static final String SOAP = "soap";
+    public static final String JSON = "json";
+
+    private static volatile KeyValidationProtocol instance;
+
+    private KeyValidationProtocols() {
+    }
+
+    /**
+     * Selects the protocol of the gateway. Subsequent calls return the already selected protocol.
+     *
+     * @param name {@value #SOAP}, {@value #JSON} or the class name of a {@link KeyValidationProtocol}
+     * @param path path of the key validation service, or an empty string for the default path of the protocol
+     */
+    public static synchronized KeyValidationProtocol init(String name, String path) {
+        if (instance == null) {
+            instance = create(name, path);
+        }
+        return instance;
+    }
+
+    public static KeyValidationProtocol getInstance() {
+        return instance;
+    }
+
+    static KeyValidationProtocol create(String name, String path) {
+        if (SOAP.equals(name)) {
+            return new SoapKeyValidationProtocol(path.isEmpty() ? SoapKeyValidationProtocol.DEFAULT_PATH : path);
+        }
+        if (JSON.equals(name)) {
+            return new JsonKeyValidationProtocol(path.isEmpty() ? JsonKeyValidationProtocol.DEFAULT_PATH : path);
+        }
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("The path of the key validation service is required for " + name);
+        }
+        try {
+            return Class.forName(name).asSubclass(KeyValidationProtocol.class).getConstructor(String.class)
+                    .newInstance(path);
+        } catch (ClassNotFoundException | ClassCastException | NoSuchMethodException | InstantiationException
+                | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException("Invalid key validation protocol: " + name, e);
+        }
+    }
+
+    /**
+     * Completes the values read from a response, checking that the response was a key validation result.
+     */
+    static String[] complete(String[] values) throws KeyValidationException {
+        if (values[KeyValidationField.AUTHORIZED.ordinal()] == null) {
+            throw new KeyValidationException("Key validation response does not contain the authorized field");
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                values[i] = "";
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds a value read from a response, joining the values of a repeated field with commas.
+     */
+    static void addValue(String[] values, KeyValidationField field, String value) {
+        int index = field.ordinal();
+        values[index] = values[index] == null ? value : values[index] + "," + value;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Decides when a cached key validation result is refreshed ahead of its expiry.
+ * <p/>
+ * The time each cache key was validated is recorded. Once a result is older than {@code refreshFactor} of the cache
+ * expiry time, the first request which reads it claims its refresh and revalidates the key in the background, while
+ * the cached result is still served. Only one refresh of a key runs at a time. Records older than the expiry time are
+ * swept, as their results have either been refreshed or left the cache, and a key without a record is due for a
+ * refresh. The counters are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class KeyValidationRefresher implements KeyValidationRefresherMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=KeyValidationRefresher";
+    private static final Logger log = LoggerFactory.getLogger(KeyValidationRefresher.class);
+
+    private static volatile KeyValidationRefresher instance;
+
+    private final long expiryTime;
+    private final long refreshAge;
+    private final ConcurrentHashMap<String, Long> validationTimes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> refreshStartTimes = new ConcurrentHashMap<>();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshFailureCount = new AtomicLong();
+    private final AtomicLong totalRefreshLatency = new AtomicLong();
+    private final AtomicLong maxRefreshLatency = new AtomicLong();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile long lastSweepTime;
+
+    /**
+     * @param refreshFactor fraction of the expiry time after which a result is refreshed, between 0 and 1
+     * @param expiryTime    expiry time in milliseconds of the key validation cache
+     */
+    public KeyValidationRefresher(double refreshFactor, long expiryTime) {
+        if (refreshFactor <= 0 || refreshFactor >= 1 || expiryTime <= 0) {
+            throw new IllegalArgumentException("Invalid key validation refresh configuration, refresh factor: "
+                    + refreshFactor + ", expiry time: " + expiryTime);
+        }
+        this.expiryTime = expiryTime;
+        this.refreshAge = (long) (expiryTime * refreshFactor);
+    }
+
+    /**
+     * Enables refresh ahead for the key validation cache. Subsequent calls return the already created refresher.
+     */
+    public static synchronized KeyValidationRefresher init(double refreshFactor, long expiryTime) {
+        if (instance == null) {
+            KeyValidationRefresher refresher = new KeyValidationRefresher(refreshFactor, expiryTime);
+            refresher.registerMBean();
+            instance = refresher;
+        }
+        return instance;
+    }
+
+    /**
+     * @return the refresher, or null if refresh ahead is not enabled
+     */
+    public static KeyValidationRefresher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records that the result of a key has been cached.
+     *
+     * @param key         cache key
+     * @param currentTime current time in milliseconds
+     */
+    public void validated(String key, long currentTime) {
+        validationTimes.put(key, currentTime);
+        sweep(currentTime);
+    }
+
+    public void remove(String key) {
+        validationTimes.remove(key);
+    }
+
+    /**
+     * Claims the refresh of a key if its cached result is due to be refreshed and no refresh of it is running.
+     *
+     * @param key         cache key
+     * @param currentTime current time in milliseconds
+     * @return true if the caller has to refresh the key and report it with {@link #refreshed(String, boolean, long)}
+     */
+    public boolean claimRefresh(String key, long currentTime) {
+        Long validationTime = validationTimes.get(key);
+        if (validationTime != null && currentTime - validationTime < refreshAge) {
+            return false;
+        }
+        return refreshStartTimes.putIfAbsent(key, currentTime) == null;
+    }
+
+    /**
+     * Completes the refresh of a key claimed with {@link #claimRefresh(String, long)}. A refreshed result is recorded
+     * with {@link #validated(String, long)} when it is cached.
+     *
+     * @param key         cache key
+     * @param success     whether the key was revalidated
+     * @param currentTime current time in milliseconds
+     */
+    public void refreshed(String key, boolean success, long currentTime) {
+        Long startTime = refreshStartTimes.remove(key);
+        if (startTime == null) {
+            return;
+        }
+        long latency = currentTime - startTime;
+        refreshCount.incrementAndGet();
+        totalRefreshLatency.addAndGet(latency);
+        maxRefreshLatency.accumulateAndGet(latency, Math::max);
+        if (!success) {
+            // the cached result is served until it expires, the next request after the failure tries again
+            refreshFailureCount.incrementAndGet();
+        }
+    }
+
+    private void sweep(long currentTime) {
+        if (currentTime - lastSweepTime < expiryTime || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lastSweepTime = currentTime;
+            Iterator<Long> iterator = validationTimes.values().iterator();
+            while (iterator.hasNext()) {
+                if (currentTime - iterator.next() >= expiryTime) {
+                    iterator.remove();
+                }
+            }
+            // refreshes which never completed, as the request refreshing the key failed
+            for (Map.Entry<String, Long> entry : refreshStartTimes.entrySet()) {
+                if (currentTime - entry.getValue() >= expiryTime) {
+                    refreshStartTimes.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the key validation refresher MBean", e);
+        }
+    }
+
+    @Override
+    public int getTrackedCount() {
+        return validationTimes.size();
+    }
+
+    @Override
+    public int getRefreshingCount() {
+        return refreshStartTimes.size();
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    @Override
+    public long getRefreshFailureCount() {
+        return refreshFailureCount.get();
+    }
+
+    /**
+     * @return average time in milliseconds taken by a refresh
+     */
+    @Override
+    public double getAverageRefreshLatency() {
+        long count = refreshCount.get();
+        return count == 0 ? 0 : (double) totalRefreshLatency.get() / count;
+    }
+
+    @Override
+    public long getMaxRefreshLatency() {
+        return maxRefreshLatency.get();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+/**
+ * Parameters of a key validation call, as sent to the key validation service of the key manager.
+ */
+public class KeyValidationRequest {
+
+    private final String context;
+    private final String version;
+    private final String accessToken;
+    private final String requiredAuthenticationLevel;
+    private final String clientDomain;
+    private final String matchingResource;
+    private final String httpVerb;
+
+    public KeyValidationRequest(String context, String version, String accessToken,
+                                String requiredAuthenticationLevel, String clientDomain, String matchingResource,
+                                String httpVerb) {
+        this.context = context;
+        this.version = version;
+        this.accessToken = accessToken;
+        this.requiredAuthenticationLevel = requiredAuthenticationLevel;
+        this.clientDomain = clientDomain;
+        this.matchingResource = matchingResource;
+        this.httpVerb = httpVerb;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public String getRequiredAuthenticationLevel() {
+        return requiredAuthenticationLevel;
+    }
+
+    public String getClientDomain() {
+        return clientDomain;
+    }
+
+    public String getMatchingResource() {
+        return matchingResource;
+    }
+
+    public String getHttpVerb() {
+        return httpVerb;
+    }
+}
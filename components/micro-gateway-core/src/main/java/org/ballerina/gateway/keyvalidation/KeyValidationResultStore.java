@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cache of key validation results, keyed by {@link CacheKeyDigest} and holding each result as a compact byte
+ * encoding of its {@link KeyValidationField}s.
+ * <p/>
+ * Interned fields are written as references to a dictionary shared by all the results, so that the tiers,
+ * applications and publishers repeated over many tokens are kept once, and the rest of the fields are written as
+ * UTF-8. When off heap storage is enabled the encoded results are kept in direct buffers, which count against
+ * -XX:MaxDirectMemorySize instead of the heap. As with the Ballerina caches, a result expires when it has not been
+ * read within the expiry time, and the least recently used results are evicted by the eviction factor above the
+ * capacity.
+ * <p/>
+ * Results which expire or are evicted move to a shadow tier of their own capacity instead of being dropped. They are
+ * no longer returned by {@link #get(String, long)}, but are served by {@link #getStale(String, long)} while the key
+ * manager is unavailable, for up to the maximum staleness after they left the cache. The counters are registered
+ * over JMX as {@value #MBEAN_NAME}.
+ */
+public class KeyValidationResultStore implements KeyValidationResultStoreMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=KeyValidationResultStore";
+    // once the dictionary is full, new values of interned fields are written inline
+    static final int MAX_DICTIONARY_SIZE = 65536;
+    private static final KeyValidationField[] FIELDS = KeyValidationField.values();
+    private static final Logger log = LoggerFactory.getLogger(KeyValidationResultStore.class);
+
+    private static volatile KeyValidationResultStore instance;
+
+    private final int capacity;
+    private final long expiryTime;
+    private final float evictionFactor;
+    private final boolean offHeap;
+    private final long maxStaleness;
+    private final ConcurrentHashMap<CacheKeyDigest, Entry> entryMap = new ConcurrentHashMap<>();
+    // insertion ordered, so that the results which left the cache first are dropped first when it is full
+    private final LinkedHashMap<CacheKeyDigest, StaleEntry> staleMap;
+    private final ConcurrentHashMap<String, Integer> dictionaryIndex = new ConcurrentHashMap<>();
+    private volatile String[] dictionary = new String[64];
+    private int dictionarySize;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong valueBytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile long lastSweepTime;
+
+    /**
+     * @param capacity       maximum number of results kept
+     * @param expiryTime     time in milliseconds after which a result which has not been read expires
+     * @param evictionFactor fraction of the capacity evicted when the store is full
+     * @param offHeap        whether the encoded results are kept in direct buffers
+     */
+    public KeyValidationResultStore(int capacity, long expiryTime, float evictionFactor, boolean offHeap) {
+        this(capacity, expiryTime, evictionFactor, offHeap, 0, 0);
+    }
+
+    /**
+     * @param capacity       maximum number of results kept
+     * @param expiryTime     time in milliseconds after which a result which has not been read expires
+     * @param evictionFactor fraction of the capacity evicted when the store is full
+     * @param offHeap        whether the encoded results are kept in direct buffers
+     * @param staleCapacity  maximum number of expired or evicted results kept to be served while the key manager is
+     *                       unavailable, or 0 to drop them
+     * @param maxStaleness   time in milliseconds after leaving the cache for which a result can be served stale
+     */
+    public KeyValidationResultStore(int capacity, long expiryTime, float evictionFactor, boolean offHeap,
+                                    int staleCapacity, long maxStaleness) {
+        if (capacity <= 0 || expiryTime <= 0 || evictionFactor <= 0 || evictionFactor > 1 || staleCapacity < 0
+                || maxStaleness < 0) {
+            throw new IllegalArgumentException("Invalid key validation result store configuration, capacity: "
+                    + capacity + ", expiry time: " + expiryTime + ", eviction factor: " + evictionFactor
+                    + ", stale capacity: " + staleCapacity + ", max staleness: " + maxStaleness);
+        }
+        this.capacity = capacity;
+        this.expiryTime = expiryTime;
+        this.evictionFactor = evictionFactor;
+        this.offHeap = offHeap;
+        this.maxStaleness = maxStaleness;
+        this.staleMap = new LinkedHashMap<CacheKeyDigest, StaleEntry>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKeyDigest, StaleEntry> eldest) {
+                if (size() <= staleCapacity) {
+                    return false;
+                }
+                valueBytes.addAndGet(-eldest.getValue().entry.size());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates the store of the gateway. Subsequent calls return the already created store.
+     */
+    public static synchronized KeyValidationResultStore init(int capacity, long expiryTime, float evictionFactor,
+                                                             boolean offHeap, int staleCapacity,
+                                                             long maxStaleness) {
+        if (instance == null) {
+            KeyValidationResultStore store = new KeyValidationResultStore(capacity, expiryTime, evictionFactor,
+                    offHeap, staleCapacity, maxStaleness);
+            store.registerMBean();
+            instance = store;
+        }
+        return instance;
+    }
+
+    public static KeyValidationResultStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a cached key validation result.
+     *
+     * @param cacheKey    cache key of the result
+     * @param currentTime current time in milliseconds
+     * @return values of the result in the order of {@link KeyValidationField}, or null if the result is not cached
+     */
+    public String[] get(String cacheKey, long currentTime) {
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        Entry entry = entryMap.get(key);
+        if (entry != null && currentTime - entry.lastAccessTime >= expiryTime) {
+            if (entryMap.remove(key, entry)) {
+                evicted(key, entry, entry.lastAccessTime + expiryTime);
+            }
+            entry = null;
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        entry.lastAccessTime = currentTime;
+        hitCount.incrementAndGet();
+        return decode(entry.getBytes());
+    }
+
+    /**
+     * Returns a key validation result which may have left the cache within the maximum staleness, to be served while
+     * the key manager is unavailable. A result which is still cached is returned as {@link #get(String, long)} does.
+     *
+     * @param cacheKey    cache key of the result
+     * @param currentTime current time in milliseconds
+     * @return values of the result in the order of {@link KeyValidationField}, or null if the result is not kept
+     */
+    public String[] getStale(String cacheKey, long currentTime) {
+        String[] values = get(cacheKey, currentTime);
+        if (values != null) {
+            return values;
+        }
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        StaleEntry staleEntry;
+        synchronized (staleMap) {
+            staleEntry = staleMap.get(key);
+            if (staleEntry == null) {
+                return null;
+            }
+            if (currentTime - staleEntry.staleTime >= maxStaleness) {
+                staleMap.remove(key);
+                valueBytes.addAndGet(-staleEntry.entry.size());
+                return null;
+            }
+        }
+        staleHitCount.incrementAndGet();
+        return decode(staleEntry.entry.getBytes());
+    }
+
+    /**
+     * Caches a key validation result, replacing any result cached with the same key.
+     *
+     * @param cacheKey    cache key of the result
+     * @param values      values of the result in the order of {@link KeyValidationField}
+     * @param currentTime current time in milliseconds
+     */
+    public void put(String cacheKey, String[] values, long currentTime) {
+        byte[] encoded = encode(values);
+        Entry entry = offHeap ? new OffHeapEntry(encoded, currentTime) : new HeapEntry(encoded, currentTime);
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        Entry previous = entryMap.put(key, entry);
+        valueBytes.addAndGet(encoded.length);
+        removeStale(key);
+        if (previous == null) {
+            evictIfFull(currentTime);
+        } else {
+            valueBytes.addAndGet(-previous.size());
+        }
+    }
+
+    public void remove(String cacheKey) {
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        Entry entry = entryMap.remove(key);
+        if (entry != null) {
+            valueBytes.addAndGet(-entry.size());
+        }
+        removeStale(key);
+    }
+
+    private void removeStale(CacheKeyDigest key) {
+        synchronized (staleMap) {
+            StaleEntry staleEntry = staleMap.remove(key);
+            if (staleEntry != null) {
+                valueBytes.addAndGet(-staleEntry.entry.size());
+            }
+        }
+    }
+
+    private byte[] encode(String[] values) {
+        if (values.length != FIELDS.length) {
+            throw new IllegalArgumentException("Expected " + FIELDS.length + " key validation fields, found "
+                    + values.length);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        for (int i = 0; i < FIELDS.length; i++) {
+            String value = values[i] == null ? "" : values[i];
+            if (FIELDS[i].isInterned()) {
+                // 0 stands for a value written inline, any other number for a dictionary reference plus one
+                int reference = intern(value);
+                writeVarInt(out, reference + 1);
+                if (reference >= 0) {
+                    continue;
+                }
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    private String[] decode(byte[] bytes) {
+        String[] values = new String[FIELDS.length];
+        Reader reader = new Reader(bytes);
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].isInterned()) {
+                int reference = reader.readVarInt();
+                if (reference > 0) {
+                    values[i] = dictionary[reference - 1];
+                    continue;
+                }
+            }
+            values[i] = reader.readString(reader.readVarInt());
+        }
+        return values;
+    }
+
+    /**
+     * Returns the dictionary reference of a value, adding the value to the dictionary if it has room.
+     *
+     * @return reference of the value, or -1 if the dictionary is full
+     */
+    private int intern(String value) {
+        Integer reference = dictionaryIndex.get(value);
+        if (reference != null) {
+            return reference;
+        }
+        synchronized (dictionaryIndex) {
+            reference = dictionaryIndex.get(value);
+            if (reference != null) {
+                return reference;
+            }
+            if (dictionarySize == MAX_DICTIONARY_SIZE) {
+                return -1;
+            }
+            String[] strings = dictionary;
+            if (dictionarySize == strings.length) {
+                strings = Arrays.copyOf(strings, strings.length * 2);
+            }
+            // the string is in place before its reference is published, and results referring to it are only read
+            // after they are put to the entry map
+            strings[dictionarySize] = value;
+            dictionary = strings;
+            dictionaryIndex.put(value, dictionarySize);
+            return dictionarySize++;
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private void evictIfFull(long currentTime) {
+        boolean sweepDue = currentTime - lastSweepTime >= expiryTime;
+        if ((!sweepDue && entryMap.size() <= capacity) || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lastSweepTime = currentTime;
+            for (Map.Entry<CacheKeyDigest, Entry> mapEntry : entryMap.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                if (currentTime - entry.lastAccessTime >= expiryTime && entryMap.remove(mapEntry.getKey(), entry)) {
+                    evicted(mapEntry.getKey(), entry, entry.lastAccessTime + expiryTime);
+                }
+            }
+            synchronized (staleMap) {
+                for (Iterator<StaleEntry> iterator = staleMap.values().iterator(); iterator.hasNext(); ) {
+                    StaleEntry staleEntry = iterator.next();
+                    if (currentTime - staleEntry.staleTime >= maxStaleness) {
+                        iterator.remove();
+                        valueBytes.addAndGet(-staleEntry.entry.size());
+                    }
+                }
+            }
+            int target = capacity - (int) (capacity * evictionFactor);
+            if (entryMap.size() > target) {
+                List<Map.Entry<CacheKeyDigest, Entry>> entries = new ArrayList<>(entryMap.entrySet());
+                entries.sort((entry1, entry2) -> Long.compare(entry1.getValue().lastAccessTime,
+                        entry2.getValue().lastAccessTime));
+                int excess = entryMap.size() - target;
+                for (int i = 0; i < excess && i < entries.size(); i++) {
+                    if (entryMap.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+                        evicted(entries.get(i).getKey(), entries.get(i).getValue(), currentTime);
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Moves a result which expired or was evicted to the shadow tier.
+     *
+     * @param staleTime time the result left the cache
+     */
+    private void evicted(CacheKeyDigest key, Entry entry, long staleTime) {
+        evictionCount.incrementAndGet();
+        if (maxStaleness == 0) {
+            valueBytes.addAndGet(-entry.size());
+            return;
+        }
+        synchronized (staleMap) {
+            StaleEntry previous = staleMap.put(key, new StaleEntry(entry, staleTime));
+            if (previous != null) {
+                valueBytes.addAndGet(-previous.entry.size());
+            }
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the key validation result store MBean", e);
+        }
+    }
+
+    @Override
+    public int getEntryCount() {
+        return entryMap.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public int getStaleEntryCount() {
+        synchronized (staleMap) {
+            return staleMap.size();
+        }
+    }
+
+    /**
+     * @return number of results served stale while the key manager was unavailable
+     */
+    @Override
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    @Override
+    public int getDictionarySize() {
+        return dictionaryIndex.size();
+    }
+
+    /**
+     * @return total size in bytes of the encoded results, on or off heap
+     */
+    @Override
+    public long getValueBytes() {
+        return valueBytes.get();
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Reads the values of an encoded result in order.
+     */
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        String readString(int length) {
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+
+    /**
+     * Encoded key validation result.
+     */
+    private abstract static class Entry {
+        volatile long lastAccessTime;
+
+        Entry(long lastAccessTime) {
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        abstract byte[] getBytes();
+
+        abstract int size();
+    }
+
+    /**
+     * Result kept in the shadow tier.
+     */
+    private static final class StaleEntry {
+        final Entry entry;
+        final long staleTime;
+
+        StaleEntry(Entry entry, long staleTime) {
+            this.entry = entry;
+            this.staleTime = staleTime;
+        }
+    }
+
+    private static final class HeapEntry extends Entry {
+        private final byte[] bytes;
+
+        HeapEntry(byte[] bytes, long lastAccessTime) {
+            super(lastAccessTime);
+            this.bytes = bytes;
+        }
+
+        @Override
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        int size() {
+            return bytes.length;
+        }
+    }
+
+    private static final class OffHeapEntry extends Entry {
+        private final ByteBuffer buffer;
+
+        OffHeapEntry(byte[] bytes, long lastAccessTime) {
+            super(lastAccessTime);
+            buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+        }
+
+        @Override
+        byte[] getBytes() {
+            byte[] bytes = new byte[buffer.capacity()];
+            ByteBuffer reader = buffer.duplicate();
+            reader.clear();
+            reader.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        int size() {
+            return buffer.capacity();
+        }
+    }
+}
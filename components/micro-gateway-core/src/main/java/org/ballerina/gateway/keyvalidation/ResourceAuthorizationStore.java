@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Second level of the key validation cache, holding the resources of an API a cached token has been authorized for.
+ * <p/>
+ * The first level caches a single key validation result per token and API. The resources of each API are numbered
+ * with {@link #getResourceIndex(String, String)} as they are first used, and the resources a token has been authorized
+ * for are kept as a bitmap of those numbers, so that a token used on many resources of an API takes a single cached
+ * result and a few bytes per resource instead of a cached result per resource. Bitmaps which have not been read within
+ * the expiry time of the cache are swept, and the least recently used ones are evicted above the capacity. The
+ * counters are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class ResourceAuthorizationStore implements ResourceAuthorizationStoreMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=ResourceAuthorizationStore";
+    private static final float EVICTION_FACTOR = 0.25f;
+    private static final Logger log = LoggerFactory.getLogger(ResourceAuthorizationStore.class);
+
+    private static volatile ResourceAuthorizationStore instance;
+    // resources are numbered once for the life time of the gateway, independent of the store
+    private static final ConcurrentHashMap<String, ResourceIndex> resourceIndexMap = new ConcurrentHashMap<>();
+
+    private final int capacity;
+    private final long expiryTime;
+    private final ConcurrentHashMap<CacheKeyDigest, Authorizations> authorizationMap = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile long lastSweepTime;
+
+    /**
+     * @param capacity   maximum number of tokens kept
+     * @param expiryTime time in milliseconds after which a bitmap which has not been read is removed
+     */
+    public ResourceAuthorizationStore(int capacity, long expiryTime) {
+        if (capacity <= 0 || expiryTime <= 0) {
+            throw new IllegalArgumentException("Invalid resource authorization store configuration, capacity: "
+                    + capacity + ", expiry time: " + expiryTime);
+        }
+        this.capacity = capacity;
+        this.expiryTime = expiryTime;
+    }
+
+    /**
+     * Creates the store of the gateway. Subsequent calls return the already created store.
+     */
+    public static synchronized ResourceAuthorizationStore init(int capacity, long expiryTime) {
+        if (instance == null) {
+            ResourceAuthorizationStore store = new ResourceAuthorizationStore(capacity, expiryTime);
+            store.registerMBean();
+            instance = store;
+        }
+        return instance;
+    }
+
+    public static ResourceAuthorizationStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the number of a resource within its API, numbering it if it is used for the first time.
+     *
+     * @param apiKey      context and version of the API
+     * @param resourceKey path and HTTP verb of the resource
+     * @return number of the resource, starting from 0
+     */
+    public static int getResourceIndex(String apiKey, String resourceKey) {
+        ResourceIndex resourceIndex = resourceIndexMap.get(apiKey);
+        if (resourceIndex == null) {
+            resourceIndex = resourceIndexMap.computeIfAbsent(apiKey, k -> new ResourceIndex());
+        }
+        return resourceIndex.getIndex(resourceKey);
+    }
+
+    /**
+     * Checks whether a cached token has been authorized for a resource.
+     *
+     * @param cacheKey      first level cache key of the token
+     * @param resourceIndex number of the resource
+     * @param currentTime   current time in milliseconds
+     * @return true if the token has been authorized for the resource
+     */
+    public boolean isAuthorized(String cacheKey, int resourceIndex, long currentTime) {
+        Authorizations authorizations = authorizationMap.get(CacheKeyDigest.fromCacheKey(cacheKey));
+        if (authorizations != null && authorizations.isSet(resourceIndex)) {
+            authorizations.lastAccessTime = currentTime;
+            hitCount.incrementAndGet();
+            return true;
+        }
+        missCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records that a token has been authorized for a resource.
+     *
+     * @param cacheKey      first level cache key of the token
+     * @param resourceIndex number of the resource
+     * @param reset         whether the resources the token was authorized for earlier are forgotten, as the first
+     *                      level result has been replaced
+     * @param currentTime   current time in milliseconds
+     */
+    public void authorize(String cacheKey, int resourceIndex, boolean reset, long currentTime) {
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        if (reset) {
+            Authorizations authorizations = new Authorizations(currentTime);
+            authorizations.set(resourceIndex);
+            if (authorizationMap.put(key, authorizations) == null) {
+                evictIfFull(currentTime);
+            }
+            return;
+        }
+        Authorizations authorizations = authorizationMap.get(key);
+        if (authorizations == null) {
+            Authorizations newAuthorizations = new Authorizations(currentTime);
+            authorizations = authorizationMap.putIfAbsent(key, newAuthorizations);
+            if (authorizations == null) {
+                authorizations = newAuthorizations;
+                evictIfFull(currentTime);
+            }
+        }
+        authorizations.set(resourceIndex);
+        authorizations.lastAccessTime = currentTime;
+    }
+
+    public void remove(String cacheKey) {
+        authorizationMap.remove(CacheKeyDigest.fromCacheKey(cacheKey));
+    }
+
+    private void evictIfFull(long currentTime) {
+        boolean sweepDue = currentTime - lastSweepTime >= expiryTime;
+        if ((!sweepDue && authorizationMap.size() <= capacity) || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lastSweepTime = currentTime;
+            Iterator<Authorizations> iterator = authorizationMap.values().iterator();
+            while (iterator.hasNext()) {
+                if (currentTime - iterator.next().lastAccessTime >= expiryTime) {
+                    iterator.remove();
+                    evictionCount.incrementAndGet();
+                }
+            }
+            int target = capacity - (int) (capacity * EVICTION_FACTOR);
+            if (authorizationMap.size() > target) {
+                List<Map.Entry<CacheKeyDigest, Authorizations>> entries = new ArrayList<>(authorizationMap.entrySet());
+                entries.sort((entry1, entry2) -> Long.compare(entry1.getValue().lastAccessTime,
+                        entry2.getValue().lastAccessTime));
+                int excess = authorizationMap.size() - target;
+                for (int i = 0; i < excess && i < entries.size(); i++) {
+                    if (authorizationMap.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+                        evictionCount.incrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the resource authorization store MBean", e);
+        }
+    }
+
+    @Override
+    public int getTokenCount() {
+        return authorizationMap.size();
+    }
+
+    /**
+     * @return number of resources numbered over all the APIs
+     */
+    @Override
+    public int getResourceCount() {
+        int count = 0;
+        for (ResourceIndex resourceIndex : resourceIndexMap.values()) {
+            count += resourceIndex.indexMap.size();
+        }
+        return count;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Numbers of the resources of an API.
+     */
+    private static final class ResourceIndex {
+        private final ConcurrentHashMap<String, Integer> indexMap = new ConcurrentHashMap<>();
+        private final AtomicInteger nextIndex = new AtomicInteger();
+
+        int getIndex(String resourceKey) {
+            Integer index = indexMap.get(resourceKey);
+            if (index == null) {
+                index = indexMap.computeIfAbsent(resourceKey, k -> nextIndex.getAndIncrement());
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Bitmap of the resources a token has been authorized for. Bits are only ever added, by replacing the array, so
+     * that readers need no lock.
+     */
+    private static final class Authorizations {
+        private volatile long[] bits = new long[1];
+        private volatile long lastAccessTime;
+
+        Authorizations(long lastAccessTime) {
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        boolean isSet(int index) {
+            long[] current = bits;
+            int word = index >>> 6;
+            return word < current.length && (current[word] & (1L << index)) != 0;
+        }
+
+        synchronized void set(int index) {
+            if (isSet(index)) {
+                return;
+            }
+            int word = index >>> 6;
+            long[] updated = Arrays.copyOf(bits, Math.max(bits.length, word + 1));
+            updated[word] |= 1L << index;
+            bits = updated;
+        }
+    }
+}
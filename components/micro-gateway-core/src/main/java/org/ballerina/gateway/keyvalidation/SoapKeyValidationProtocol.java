@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * SOAP protocol of the APIKeyValidationService of WSO2 API Manager. Responses are read with a streaming parser,
+ * taking the text of the child elements of the validateKey return element as the fields of the result. Repeated
+ * elements are joined with commas. DTDs are not allowed in responses.
+ */
+public class SoapKeyValidationProtocol implements KeyValidationProtocol {
+
+    public static final String DEFAULT_PATH = "/services/APIKeyValidationService";
+    private static final String SOAP_ENVELOPE_START = "<soapenv:Envelope "
+            + "xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:xsd=\"http://org.apache.axis2/xsd\">"
+            + "<soapenv:Body><xsd:validateKey>";
+    private static final String SOAP_ENVELOPE_END = "</xsd:validateKey></soapenv:Body></soapenv:Envelope>";
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final String path;
+    private final Map<String, String> headers;
+
+    public SoapKeyValidationProtocol(String path) {
+        this.path = path;
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "text/xml");
+        headers.put("SOAPAction", "urn:validateKey");
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public String createRequest(KeyValidationRequest request) {
+        StringBuilder builder = new StringBuilder(512).append(SOAP_ENVELOPE_START);
+        appendElement(builder, "context", request.getContext());
+        appendElement(builder, "version", request.getVersion());
+        appendElement(builder, "accessToken", request.getAccessToken());
+        appendElement(builder, "requiredAuthenticationLevel", request.getRequiredAuthenticationLevel());
+        appendElement(builder, "clientDomain", request.getClientDomain());
+        appendElement(builder, "matchingResource", request.getMatchingResource());
+        appendElement(builder, "httpVerb", request.getHttpVerb());
+        return builder.append(SOAP_ENVELOPE_END).toString();
+    }
+
+    @Override
+    public String[] parseResponse(InputStream payload) throws KeyValidationException {
+        String[] values = new String[KeyValidationField.values().length];
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(payload);
+            int depth = 0;
+            int returnDepth = -1;
+            boolean fault = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth-- == returnDepth) {
+                        return KeyValidationProtocols.complete(values);
+                    }
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                depth++;
+                String name = reader.getLocalName();
+                if (returnDepth < 0) {
+                    if ("return".equals(name)) {
+                        returnDepth = depth;
+                    } else if ("Fault".equals(name)) {
+                        fault = true;
+                    } else if (fault && "faultstring".equals(name)) {
+                        throw new KeyValidationException("Key validation service returned a fault: "
+                                + reader.getElementText());
+                    }
+                } else if (depth == returnDepth + 1) {
+                    KeyValidationField field = KeyValidationField.fromElementName(name);
+                    if (field != null) {
+                        // reads up to the end element, which is not seen by the loop; nil elements are empty
+                        KeyValidationProtocols.addValue(values, field, reader.getElementText());
+                        depth--;
+                    }
+                }
+            }
+            throw new KeyValidationException("Key validation response does not contain a result");
+        } catch (XMLStreamException e) {
+            throw new KeyValidationException("Invalid key validation response", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nothing to release, the payload is closed by the caller
+                }
+            }
+        }
+    }
+
+    private static void appendElement(StringBuilder builder, String name, String value) {
+        builder.append("<xsd:").append(name).append('>');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        builder.append("</xsd:").append(name).append('>');
+    }
+}
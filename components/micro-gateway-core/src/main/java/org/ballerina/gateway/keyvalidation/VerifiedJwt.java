@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Claims of a JWT whose signature has been verified, parsed once from its payload.
+ * <p/>
+ * Besides the claims the gateway reads into the authentication context, the custom claims with scalar values are
+ * kept for the user principal, as the JWT authentication handler sets them, and the subscriptions of the token are
+ * indexed by API name and version for the subscription filter, so that a token subscribed to hundreds of APIs is
+ * checked without walking its subscriptions on each request. Nested custom claims are not kept.
+ */
+public final class VerifiedJwt {
+
+    private static final JwtField[] FIELDS = JwtField.values();
+    // claims registered by RFC 7519, which are not custom claims
+    private static final List<String> REGISTERED_CLAIMS = Arrays.asList("iss", "sub", "aud", "exp", "nbf", "iat",
+            "jti");
+
+    private final long expiryTime;
+    private final long notBeforeTime;
+    private final String[] values;
+    private final String[] scopes;
+    private final Map<String, String> claims;
+    // subscriptions by API name and then version, so that a lookup needs no composite key
+    private final Map<String, Map<String, Subscription>> subscriptions;
+
+    VerifiedJwt(long expiryTime, long notBeforeTime, String[] values, String[] scopes, Map<String, String> claims,
+                Map<String, Map<String, Subscription>> subscriptions) {
+        this.expiryTime = expiryTime;
+        this.notBeforeTime = notBeforeTime;
+        this.values = values;
+        this.scopes = scopes;
+        this.claims = claims;
+        this.subscriptions = subscriptions;
+    }
+
+    /**
+     * Parses the payload of a JWT to be cached.
+     *
+     * @param jwt serialized JWT, made of the base64url encoded header, payload and signature
+     * @return claims of the token
+     * @throws IllegalArgumentException if the token is malformed or does not expire
+     */
+    public static VerifiedJwt parse(String jwt) {
+        return parse(jwt, true);
+    }
+
+    /**
+     * Parses the payload of a JWT. A token without an expiry time never expires, unless the expiry is required.
+     *
+     * @param jwt            serialized JWT, made of the base64url encoded header, payload and signature
+     * @param expiryRequired whether a token without an exp claim is rejected
+     * @return claims of the token
+     * @throws IllegalArgumentException if the token is malformed, or does not expire while the expiry is required
+     */
+    public static VerifiedJwt parse(String jwt, boolean expiryRequired) {
+        int payloadStart = jwt.indexOf('.') + 1;
+        int payloadEnd = jwt.indexOf('.', payloadStart);
+        if (payloadStart == 0 || payloadEnd < 0) {
+            throw new IllegalArgumentException("Invalid JWT, expected three parts separated by dots");
+        }
+        String payload = new String(Base64.getUrlDecoder().decode(jwt.substring(payloadStart, payloadEnd)),
+                StandardCharsets.UTF_8);
+        long expiryTime = -1;
+        long notBeforeTime = 0;
+        String[] values = new String[FIELDS.length];
+        Arrays.fill(values, "");
+        String[] scopes = new String[0];
+        Map<String, String> claims = new HashMap<>();
+        Map<String, Map<String, Subscription>> subscriptions = new HashMap<>();
+        try {
+            JsonTokenizer tokenizer = new JsonTokenizer(new StringReader(payload));
+            tokenizer.expect('{');
+            if (tokenizer.peek() != '}') {
+                do {
+                    String name = tokenizer.readString();
+                    tokenizer.expect(':');
+                    if ("application".equals(name) && tokenizer.peek() == '{') {
+                        readApplication(tokenizer, values);
+                        continue;
+                    }
+                    if ("subscribedAPIs".equals(name) && tokenizer.peek() == '[') {
+                        readSubscriptions(tokenizer, subscriptions);
+                        continue;
+                    }
+                    String value = tokenizer.readValue();
+                    if (value == null) {
+                        continue;
+                    }
+                    if ("exp".equals(name)) {
+                        expiryTime = (long) (Double.parseDouble(value) * 1000);
+                    } else if ("nbf".equals(name)) {
+                        notBeforeTime = (long) (Double.parseDouble(value) * 1000);
+                    }
+                    for (JwtField field : FIELDS) {
+                        if (!field.isApplicationClaim() && field.getClaimName().equals(name)) {
+                            values[field.ordinal()] = value;
+                        }
+                    }
+                    if ("scope".equals(name)) {
+                        scopes = value.isEmpty() ? new String[0] : value.split(" ");
+                    }
+                    if (!REGISTERED_CLAIMS.contains(name)) {
+                        claims.put(name, value);
+                    }
+                } while (tokenizer.next(',', '}'));
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid JWT payload", e);
+        }
+        if (expiryTime < 0) {
+            if (expiryRequired) {
+                throw new IllegalArgumentException("JWT does not have an expiry time");
+            }
+            expiryTime = Long.MAX_VALUE;
+        }
+        return new VerifiedJwt(expiryTime, notBeforeTime, values, scopes, Collections.unmodifiableMap(claims),
+                subscriptions);
+    }
+
+    private static void readApplication(JsonTokenizer tokenizer, String[] values) throws IOException {
+        tokenizer.expect('{');
+        if (tokenizer.peek() == '}') {
+            tokenizer.expect('}');
+            return;
+        }
+        do {
+            String name = tokenizer.readString();
+            tokenizer.expect(':');
+            String value = tokenizer.readValue();
+            for (JwtField field : FIELDS) {
+                if (field.isApplicationClaim() && field.getClaimName().equals(name) && value != null) {
+                    values[field.ordinal()] = value;
+                }
+            }
+        } while (tokenizer.next(',', '}'));
+    }
+
+    private static void readSubscriptions(JsonTokenizer tokenizer, Map<String, Map<String, Subscription>> subscriptions)
+            throws IOException {
+        tokenizer.expect('[');
+        if (tokenizer.peek() == ']') {
+            tokenizer.expect(']');
+            return;
+        }
+        do {
+            if (tokenizer.peek() != '{') {
+                tokenizer.readValue();
+                continue;
+            }
+            tokenizer.expect('{');
+            String[] subscription = {"", "", "", ""};
+            if (tokenizer.peek() != '}') {
+                do {
+                    String name = tokenizer.readString();
+                    tokenizer.expect(':');
+                    String value = tokenizer.readValue();
+                    if (value == null) {
+                        continue;
+                    }
+                    switch (name) {
+                        case "name":
+                            subscription[0] = value;
+                            break;
+                        case "version":
+                            subscription[1] = value;
+                            break;
+                        case "subscriptionTier":
+                            subscription[2] = value;
+                            break;
+                        case "subscriber":
+                            subscription[3] = value;
+                            break;
+                        default:
+                    }
+                } while (tokenizer.next(',', '}'));
+            } else {
+                tokenizer.expect('}');
+            }
+            // the first subscription to an API wins, as it did when the claim was searched in order
+            subscriptions.computeIfAbsent(subscription[0], k -> new HashMap<>(2)).putIfAbsent(subscription[1],
+                    new Subscription(subscription[0], subscription[1], subscription[2], subscription[3]));
+        } while (tokenizer.next(',', ']'));
+    }
+
+    /**
+     * @return time in milliseconds at which the token expires
+     */
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    /**
+     * @return time in milliseconds before which the token must not be accepted, 0 if the token has no nbf claim
+     */
+    public long getNotBeforeTime() {
+        return notBeforeTime;
+    }
+
+    /**
+     * Whether the token may be accepted at a time, that is before its expiry and not before its nbf claim.
+     *
+     * @param currentTime current time in milliseconds
+     * @param clockSkew   time in milliseconds the clock of the issuer may be ahead of the gateway
+     */
+    public boolean isValidAt(long currentTime, long clockSkew) {
+        return currentTime < expiryTime && currentTime + clockSkew >= notBeforeTime;
+    }
+
+    /**
+     * @return claims of the token in the order of {@link JwtField}, empty if the token does not have them
+     */
+    public String[] getValues() {
+        return values.clone();
+    }
+
+    public String[] getScopes() {
+        return scopes.clone();
+    }
+
+    /**
+     * @return custom claims of the token with scalar values
+     */
+    public Map<String, String> getClaims() {
+        return claims;
+    }
+
+    /**
+     * Returns the subscription of the token to an API.
+     *
+     * @param apiName    name of the API
+     * @param apiVersion version of the API
+     * @return the subscription, or null if the token is not subscribed to the API
+     */
+    public Subscription getSubscription(String apiName, String apiVersion) {
+        Map<String, Subscription> versions = subscriptions.get(apiName);
+        return versions == null ? null : versions.get(apiVersion);
+    }
+
+    /**
+     * Returns the claims handed to the subscription filter for an API.
+     *
+     * @param apiName    name of the API
+     * @param apiVersion version of the API
+     * @return claims of the token in the order of {@link JwtField}, followed by the subscription tier and the
+     * subscriber if the token is subscribed to the API
+     */
+    public String[] getSubscriptionValues(String apiName, String apiVersion) {
+        Subscription subscription = getSubscription(apiName, apiVersion);
+        if (subscription == null) {
+            return getValues();
+        }
+        String[] subscriptionValues = Arrays.copyOf(values, values.length + 2);
+        subscriptionValues[values.length] = subscription.getSubscriptionTier();
+        subscriptionValues[values.length + 1] = subscription.getSubscriber();
+        return subscriptionValues;
+    }
+
+    /**
+     * @return number of APIs and versions the token is subscribed to
+     */
+    public int getSubscriptionCount() {
+        int count = 0;
+        for (Map<String, Subscription> versions : subscriptions.values()) {
+            count += versions.size();
+        }
+        return count;
+    }
+
+    /**
+     * Subscription of a token to an API, from the subscribedAPIs claim.
+     */
+    public static final class Subscription {
+        private final String name;
+        private final String version;
+        private final String subscriptionTier;
+        private final String subscriber;
+
+        Subscription(String name, String version, String subscriptionTier, String subscriber) {
+            this.name = name;
+            this.version = version;
+            this.subscriptionTier = subscriptionTier;
+            this.subscriber = subscriber;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getSubscriptionTier() {
+            return subscriptionTier;
+        }
+
+        public String getSubscriber() {
+            return subscriber;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cache of the JWTs whose signature has been verified, keyed by the {@link CacheKeyDigest} of the token.
+ * <p/>
+ * A token is signed as a whole, so a token with the same digest as a verified one carries the same verified claims.
+ * Requests repeating a token are authenticated from its cached claims until the token expires, without verifying
+ * its signature or parsing its payload again. As the verification does, a token is only accepted from the time of its
+ * nbf claim, less the configured clock skew. Above the capacity, expired tokens are removed and then the tokens
+ * closest to their expiry are evicted by the eviction factor. The counters are registered over JMX as
+ * {@value #MBEAN_NAME}.
+ */
+public class VerifiedJwtStore implements VerifiedJwtStoreMBean {
+
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=VerifiedJwtStore";
+    private static final float EVICTION_FACTOR = 0.25f;
+    private static final Logger log = LoggerFactory.getLogger(VerifiedJwtStore.class);
+
+    private static volatile VerifiedJwtStore instance;
+
+    private final int capacity;
+    private final long clockSkew;
+    private final ConcurrentHashMap<CacheKeyDigest, VerifiedJwt> jwtMap = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public VerifiedJwtStore(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param capacity  maximum number of tokens kept
+     * @param clockSkew time in milliseconds a token is accepted ahead of its nbf claim
+     */
+    public VerifiedJwtStore(int capacity, long clockSkew) {
+        if (capacity <= 0 || clockSkew < 0) {
+            throw new IllegalArgumentException("Invalid verified JWT store configuration, capacity: " + capacity
+                    + ", clock skew: " + clockSkew);
+        }
+        this.capacity = capacity;
+        this.clockSkew = clockSkew;
+    }
+
+    /**
+     * Creates the store of the gateway. Subsequent calls return the already created store.
+     */
+    public static synchronized VerifiedJwtStore init(int capacity, long clockSkew) {
+        if (instance == null) {
+            VerifiedJwtStore store = new VerifiedJwtStore(capacity, clockSkew);
+            store.registerMBean();
+            instance = store;
+        }
+        return instance;
+    }
+
+    public static VerifiedJwtStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the claims of a verified token.
+     *
+     * @param cacheKey    cache key of the token
+     * @param currentTime current time in milliseconds
+     * @return claims of the token, or null if the token is not cached, has expired or is not valid yet
+     */
+    public VerifiedJwt get(String cacheKey, long currentTime) {
+        VerifiedJwt jwt = lookup(cacheKey, currentTime);
+        if (jwt == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return jwt;
+    }
+
+    /**
+     * Returns the claims of a verified token as {@link #get(String, long)} does, without counting a hit or a miss.
+     * Used to read the claims again within a request.
+     */
+    public VerifiedJwt lookup(String cacheKey, long currentTime) {
+        CacheKeyDigest key = CacheKeyDigest.fromCacheKey(cacheKey);
+        VerifiedJwt jwt = jwtMap.get(key);
+        if (jwt != null && currentTime >= jwt.getExpiryTime()) {
+            jwtMap.remove(key, jwt);
+            return null;
+        }
+        // a token used before its nbf claim is kept, as it becomes valid later on
+        if (jwt != null && !jwt.isValidAt(currentTime, clockSkew)) {
+            return null;
+        }
+        return jwt;
+    }
+
+    /**
+     * Caches a token whose signature has been verified.
+     *
+     * @param cacheKey    cache key of the token
+     * @param jwt         serialized token
+     * @param currentTime current time in milliseconds
+     * @return the claims of the token, or null if it has already expired or is not valid yet
+     * @throws IllegalArgumentException if the payload of the token cannot be parsed
+     */
+    public VerifiedJwt put(String cacheKey, String jwt, long currentTime) {
+        VerifiedJwt verifiedJwt = VerifiedJwt.parse(jwt);
+        if (!verifiedJwt.isValidAt(currentTime, clockSkew)) {
+            return null;
+        }
+        if (jwtMap.put(CacheKeyDigest.fromCacheKey(cacheKey), verifiedJwt) == null) {
+            evictIfFull(currentTime);
+        }
+        return verifiedJwt;
+    }
+
+    public void remove(String cacheKey) {
+        jwtMap.remove(CacheKeyDigest.fromCacheKey(cacheKey));
+    }
+
+    private void evictIfFull(long currentTime) {
+        if (jwtMap.size() <= capacity || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Iterator<VerifiedJwt> iterator = jwtMap.values().iterator();
+            while (iterator.hasNext()) {
+                if (currentTime >= iterator.next().getExpiryTime()) {
+                    iterator.remove();
+                    evictionCount.incrementAndGet();
+                }
+            }
+            int target = capacity - (int) (capacity * EVICTION_FACTOR);
+            if (jwtMap.size() > target) {
+                List<Map.Entry<CacheKeyDigest, VerifiedJwt>> entries = new ArrayList<>(jwtMap.entrySet());
+                entries.sort((entry1, entry2) -> Long.compare(entry1.getValue().getExpiryTime(),
+                        entry2.getValue().getExpiryTime()));
+                int excess = jwtMap.size() - target;
+                for (int i = 0; i < excess && i < entries.size(); i++) {
+                    if (jwtMap.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+                        evictionCount.incrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the verified JWT store MBean", e);
+        }
+    }
+
+    @Override
+    public int getEntryCount() {
+        return jwtMap.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.analytics;
+
+import org.ballerina.gateway.analytics.AnalyticsUploadScheduler;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BString;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:acquireUsageDataFile which takes the next usage data file due to be uploaded, or returns an
+ * empty string if there is none.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "acquireUsageDataFile",
+        returnType = {@ReturnType(type = TypeKind.STRING)},
+        isPublic = true
+)
+public class AcquireUsageDataFile extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        AnalyticsUploadScheduler scheduler = AnalyticsUploadScheduler.getInstance();
+        String fileName = scheduler != null ? scheduler.acquire() : null;
+        context.setReturnValues(new BString(fileName != null ? fileName : ""));
+    }
+}
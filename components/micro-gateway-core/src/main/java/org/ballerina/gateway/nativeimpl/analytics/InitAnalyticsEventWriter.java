@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.analytics;
+
+import org.ballerina.gateway.analytics.AnalyticsEventWriter;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+/**
+ * Native function gateway:initAnalyticsEventWriter which starts the asynchronous analytics event writer.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "initAnalyticsEventWriter",
+        args = {@Argument(name = "fileName", type = TypeKind.STRING),
+                @Argument(name = "bufferSize", type = TypeKind.INT),
+                @Argument(name = "batchSize", type = TypeKind.INT),
+                @Argument(name = "flushInterval", type = TypeKind.INT),
+                @Argument(name = "rotatingPeriod", type = TypeKind.INT),
+                @Argument(name = "maxFileSize", type = TypeKind.INT),
+                @Argument(name = "overflowTimeout", type = TypeKind.INT)},
+        isPublic = true
+)
+public class InitAnalyticsEventWriter extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        AnalyticsEventWriter.init(context.getStringArgument(0), (int) context.getIntArgument(0),
+                (int) context.getIntArgument(1), context.getIntArgument(2), context.getIntArgument(3),
+                context.getIntArgument(4), context.getIntArgument(5));
+        context.setReturnValues();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.analytics;
+
+import org.ballerina.gateway.analytics.AnalyticsUploadScheduler;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BString;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Native function gateway:prepareUsageDataFile which returns the file to be sent for an acquired usage data file,
+ * converting a rotated binary analytics segment into a zip file in the format expected by the analytics server, or an
+ * empty string if the segment can not be converted.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "prepareUsageDataFile",
+        args = {@Argument(name = "fileName", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.STRING)},
+        isPublic = true
+)
+public class PrepareUsageDataFile extends BlockingNativeCallableUnit {
+
+    private static final Logger log = LoggerFactory.getLogger(PrepareUsageDataFile.class);
+
+    @Override
+    public void execute(Context context) {
+        String fileName = context.getStringArgument(0);
+        AnalyticsUploadScheduler scheduler = AnalyticsUploadScheduler.getInstance();
+        String uploadFile = "";
+        if (scheduler != null) {
+            try {
+                uploadFile = scheduler.prepare(fileName);
+            } catch (IOException e) {
+                log.error("Error while converting usage data file " + fileName, e);
+            }
+        }
+        context.setReturnValues(new BString(uploadFile));
+    }
+}
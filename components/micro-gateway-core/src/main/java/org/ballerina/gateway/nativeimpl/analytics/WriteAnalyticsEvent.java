@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.analytics;
+
+import org.ballerina.gateway.analytics.AnalyticsEvent;
+import org.ballerina.gateway.analytics.AnalyticsEventWriter;
+import org.ballerina.gateway.analytics.AnalyticsField;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BBoolean;
+import org.ballerinalang.model.values.BInteger;
+import org.ballerinalang.model.values.BMap;
+import org.ballerinalang.model.values.BValue;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:writeAnalyticsEvent which queues a request event to the analytics event writer. The fields
+ * of the event are copied from the record as they are, and encoded by the writer thread. Returns false if the event
+ * was dropped, either because the buffer is full or the writer has not been started.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "writeAnalyticsEvent",
+        args = {@Argument(name = "event", type = TypeKind.RECORD, structType = "AnalyticsRequestStream",
+                structPackage = "wso2.gateway")},
+        returnType = {@ReturnType(type = TypeKind.BOOLEAN)},
+        isPublic = true
+)
+public class WriteAnalyticsEvent extends BlockingNativeCallableUnit {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Context context) {
+        AnalyticsEventWriter writer = AnalyticsEventWriter.getInstance();
+        if (writer == null) {
+            context.setReturnValues(new BBoolean(false));
+            return;
+        }
+        BMap<String, BValue> record = (BMap<String, BValue>) context.getRefArgument(0);
+        AnalyticsEvent event = new AnalyticsEvent();
+        event.setLong(AnalyticsField.TIME_STAMP, System.currentTimeMillis());
+        for (AnalyticsField field : AnalyticsField.values()) {
+            if (field == AnalyticsField.STREAM_ID || field == AnalyticsField.TIME_STAMP) {
+                continue;
+            }
+            BValue value = record.get(field.getFieldName());
+            if (value == null) {
+                continue;
+            }
+            switch (field.getType()) {
+                case LONG:
+                case TIMESTAMP:
+                    event.setLong(field, ((BInteger) value).intValue());
+                    break;
+                case BOOLEAN:
+                    event.setBoolean(field, ((BBoolean) value).booleanValue());
+                    break;
+                default:
+                    event.setString(field, value.stringValue());
+            }
+        }
+        context.setReturnValues(new BBoolean(writer.write(event)));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.KeyValidationProtocols;
+import org.ballerina.gateway.keyvalidation.KeyValidationRequest;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BMap;
+import org.ballerinalang.model.values.BString;
+import org.ballerinalang.model.values.BValue;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:createKeyValidationRequest which writes the payload of a key validation request in the
+ * protocol of the gateway.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "createKeyValidationRequest",
+        args = {@Argument(name = "request", type = TypeKind.RECORD, structType = "APIRequestMetaDataDto",
+                structPackage = "wso2.gateway")},
+        returnType = {@ReturnType(type = TypeKind.STRING)},
+        isPublic = true
+)
+public class CreateKeyValidationRequest extends BlockingNativeCallableUnit {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Context context) {
+        BMap<String, BValue> record = (BMap<String, BValue>) context.getRefArgument(0);
+        KeyValidationRequest request = new KeyValidationRequest(getField(record, "context"),
+                getField(record, "apiVersion"), getField(record, "accessToken"),
+                getField(record, "requiredAuthenticationLevel"), getField(record, "clientDomain"),
+                getField(record, "matchingResource"), getField(record, "httpVerb"));
+        context.setReturnValues(new BString(KeyValidationProtocols.getInstance().createRequest(request)));
+    }
+
+    private static String getField(BMap<String, BValue> record, String name) {
+        BValue value = record.get(name);
+        return value == null ? "" : value.stringValue();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.VerifiedJwt;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BStringArray;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Native function gateway:getJwtSubscription which parses a JWT authenticated by the request and returns its claims
+ * as gateway:getVerifiedJwtSubscription does for a cached one, so that the subscriptions of a token which is not
+ * cached are looked up in the same index. Returns an empty array if the payload of the token cannot be parsed.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "getJwtSubscription",
+        args = {@Argument(name = "jwtToken", type = TypeKind.STRING),
+                @Argument(name = "apiName", type = TypeKind.STRING),
+                @Argument(name = "apiVersion", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.ARRAY, elementType = TypeKind.STRING)},
+        isPublic = true
+)
+public class GetJwtSubscription extends BlockingNativeCallableUnit {
+
+    private static final Logger log = LoggerFactory.getLogger(GetJwtSubscription.class);
+
+    @Override
+    public void execute(Context context) {
+        VerifiedJwt jwt;
+        try {
+            // the token has been verified by the authentication filter, which decides on a missing expiry
+            jwt = VerifiedJwt.parse(context.getStringArgument(0), false);
+        } catch (IllegalArgumentException e) {
+            log.error("Error while parsing the payload of the JWT", e);
+            context.setReturnValues(new BStringArray());
+            return;
+        }
+        context.setReturnValues(new BStringArray(jwt.getSubscriptionValues(context.getStringArgument(1),
+                context.getStringArgument(2))));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.VerifiedJwt;
+import org.ballerina.gateway.keyvalidation.VerifiedJwtStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BMap;
+import org.ballerinalang.model.values.BString;
+import org.ballerinalang.model.values.BValue;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+import java.util.Map;
+
+/**
+ * Native function gateway:getVerifiedJwtClaims which returns the custom claims of a cached JWT which have scalar
+ * values.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "getVerifiedJwtClaims",
+        args = {@Argument(name = "cacheKey", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.MAP)},
+        isPublic = true
+)
+public class GetVerifiedJwtClaims extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        VerifiedJwtStore store = VerifiedJwtStore.getInstance();
+        VerifiedJwt jwt = store == null ? null : store.lookup(context.getStringArgument(0),
+                System.currentTimeMillis());
+        BMap<String, BValue> claims = new BMap<>();
+        if (jwt != null) {
+            for (Map.Entry<String, String> claim : jwt.getClaims().entrySet()) {
+                claims.put(claim.getKey(), new BString(claim.getValue()));
+            }
+        }
+        context.setReturnValues(claims);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.VerifiedJwt;
+import org.ballerina.gateway.keyvalidation.VerifiedJwtStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BStringArray;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:getVerifiedJwtSubscription which returns the claims of a cached JWT in the order of
+ * JwtField, followed by the subscription tier and the subscriber of its subscription to an API if it is subscribed to
+ * the API. Returns an empty array if the token is not cached or has expired. The claims are read again within the
+ * request, so the lookup is not counted as a cache hit.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "getVerifiedJwtSubscription",
+        args = {@Argument(name = "cacheKey", type = TypeKind.STRING),
+                @Argument(name = "apiName", type = TypeKind.STRING),
+                @Argument(name = "apiVersion", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.ARRAY, elementType = TypeKind.STRING)},
+        isPublic = true
+)
+public class GetVerifiedJwtSubscription extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        VerifiedJwtStore store = VerifiedJwtStore.getInstance();
+        VerifiedJwt jwt = store == null ? null : store.lookup(context.getStringArgument(0),
+                System.currentTimeMillis());
+        if (jwt == null) {
+            context.setReturnValues(new BStringArray());
+            return;
+        }
+        context.setReturnValues(new BStringArray(jwt.getSubscriptionValues(context.getStringArgument(1),
+                context.getStringArgument(2))));
+    }
+}
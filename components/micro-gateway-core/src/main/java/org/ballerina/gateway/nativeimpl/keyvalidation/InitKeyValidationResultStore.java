@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.KeyValidationResultStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+/**
+ * Native function gateway:initKeyValidationResultStore which creates the cache of key validation results.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "initKeyValidationResultStore",
+        args = {@Argument(name = "capacity", type = TypeKind.INT),
+                @Argument(name = "expiryTime", type = TypeKind.INT),
+                @Argument(name = "evictionFactor", type = TypeKind.FLOAT),
+                @Argument(name = "offHeap", type = TypeKind.BOOLEAN),
+                @Argument(name = "staleCapacity", type = TypeKind.INT),
+                @Argument(name = "maxStaleness", type = TypeKind.INT)},
+        isPublic = true
+)
+public class InitKeyValidationResultStore extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        KeyValidationResultStore.init((int) context.getIntArgument(0), context.getIntArgument(1),
+                (float) context.getFloatArgument(0), context.getBooleanArgument(0),
+                (int) context.getIntArgument(2), context.getIntArgument(3));
+        context.setReturnValues();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.ResourceAuthorizationStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BBoolean;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:isResourceAuthorized which checks whether a cached token has been authorized for a resource.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "isResourceAuthorized",
+        args = {@Argument(name = "cacheKey", type = TypeKind.STRING),
+                @Argument(name = "resourceIndex", type = TypeKind.INT)},
+        returnType = {@ReturnType(type = TypeKind.BOOLEAN)},
+        isPublic = true
+)
+public class IsResourceAuthorized extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        ResourceAuthorizationStore store = ResourceAuthorizationStore.getInstance();
+        boolean authorized = store != null && store.isAuthorized(context.getStringArgument(0),
+                (int) context.getIntArgument(0), System.currentTimeMillis());
+        context.setReturnValues(new BBoolean(authorized));
+    }
+}
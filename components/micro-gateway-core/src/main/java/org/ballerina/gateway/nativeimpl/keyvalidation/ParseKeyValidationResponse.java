@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.KeyValidationException;
+import org.ballerina.gateway.keyvalidation.KeyValidationProtocols;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BStringArray;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+import org.ballerinalang.util.exceptions.BallerinaException;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Native function gateway:parseKeyValidationResponse which reads a key validation response into the fields of the
+ * APIKeyValidationDto record, in their order. Throws an error if the payload is not a key validation result.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "parseKeyValidationResponse",
+        args = {@Argument(name = "payload", type = TypeKind.BLOB)},
+        returnType = {@ReturnType(type = TypeKind.ARRAY, elementType = TypeKind.STRING)},
+        isPublic = true
+)
+public class ParseKeyValidationResponse extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        try {
+            String[] values = KeyValidationProtocols.getInstance().parseResponse(
+                    new ByteArrayInputStream(context.getBlobArgument(0)));
+            context.setReturnValues(new BStringArray(values));
+        } catch (KeyValidationException e) {
+            throw new BallerinaException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.KeyValidationField;
+import org.ballerina.gateway.keyvalidation.KeyValidationResultStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BMap;
+import org.ballerinalang.model.values.BValue;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+/**
+ * Native function gateway:putKeyValidationResult which caches a key validation result, encoding the fields of the
+ * record as they are.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "putKeyValidationResult",
+        args = {@Argument(name = "cacheKey", type = TypeKind.STRING),
+                @Argument(name = "result", type = TypeKind.RECORD, structType = "APIKeyValidationDto",
+                        structPackage = "wso2.gateway")},
+        isPublic = true
+)
+public class PutKeyValidationResult extends BlockingNativeCallableUnit {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Context context) {
+        BMap<String, BValue> record = (BMap<String, BValue>) context.getRefArgument(0);
+        KeyValidationField[] fields = KeyValidationField.values();
+        String[] values = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            BValue value = record.get(fields[i].getFieldName());
+            values[i] = value == null ? "" : value.stringValue();
+        }
+        KeyValidationResultStore.getInstance().put(context.getStringArgument(0), values, System.currentTimeMillis());
+        context.setReturnValues();
+    }
+}
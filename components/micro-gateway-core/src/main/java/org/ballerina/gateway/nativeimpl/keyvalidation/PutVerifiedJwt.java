@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.keyvalidation;
+
+import org.ballerina.gateway.keyvalidation.VerifiedJwtStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BBoolean;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Native function gateway:putVerifiedJwt which caches a JWT whose signature has been verified. Returns false if the
+ * token was not cached, either because the cache is not enabled or the payload of the token could not be parsed, in
+ * which case the token is verified again on the next request.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "putVerifiedJwt",
+        args = {@Argument(name = "cacheKey", type = TypeKind.STRING),
+                @Argument(name = "jwt", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.BOOLEAN)},
+        isPublic = true
+)
+public class PutVerifiedJwt extends BlockingNativeCallableUnit {
+
+    private static final Logger log = LoggerFactory.getLogger(PutVerifiedJwt.class);
+
+    @Override
+    public void execute(Context context) {
+        VerifiedJwtStore store = VerifiedJwtStore.getInstance();
+        if (store == null) {
+            context.setReturnValues(new BBoolean(false));
+            return;
+        }
+        boolean cached;
+        try {
+            cached = store.put(context.getStringArgument(0), context.getStringArgument(1),
+                    System.currentTimeMillis()) != null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Verified JWT is not cached", e);
+            cached = false;
+        }
+        context.setReturnValues(new BBoolean(cached));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.BlockConditionStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BBoolean;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Native function gateway:addBlockCondition which adds a block condition, or replaces the condition with the same
+ * id. Returns false and leaves the conditions as they were if the condition is not valid.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "addBlockCondition",
+        args = {@Argument(name = "conditionId", type = TypeKind.STRING),
+                @Argument(name = "conditionType", type = TypeKind.STRING),
+                @Argument(name = "conditionValue", type = TypeKind.STRING),
+                @Argument(name = "invert", type = TypeKind.BOOLEAN)},
+        returnType = {@ReturnType(type = TypeKind.BOOLEAN)},
+        isPublic = true
+)
+public class AddBlockCondition extends BlockingNativeCallableUnit {
+
+    private static final Logger log = LoggerFactory.getLogger(AddBlockCondition.class);
+
+    @Override
+    public void execute(Context context) {
+        String conditionId = context.getStringArgument(0);
+        boolean added;
+        try {
+            BlockConditionStore.getInstance().add(conditionId, context.getStringArgument(1),
+                    context.getStringArgument(2), context.getBooleanArgument(0));
+            added = true;
+        } catch (IllegalArgumentException e) {
+            log.warn("Block condition " + conditionId + " is not added. " + e.getMessage());
+            added = false;
+        }
+        context.setReturnValues(new BBoolean(added));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.ThrottleDataStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+/**
+ * Native function gateway:addThrottledKey which records a key throttled by the throttle streams.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "addThrottledKey",
+        args = {@Argument(name = "throttleKey", type = TypeKind.STRING),
+                @Argument(name = "stopOnQuotaReach", type = TypeKind.BOOLEAN),
+                @Argument(name = "expiryTimeStamp", type = TypeKind.INT)},
+        isPublic = true
+)
+public class AddThrottledKey extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        String throttleKey = context.getStringArgument(0);
+        boolean stopOnQuotaReach = context.getBooleanArgument(0);
+        long expiryTimeStamp = context.getIntArgument(0);
+        ThrottleDataStore.getInstance().put(throttleKey, stopOnQuotaReach, expiryTimeStamp,
+                System.currentTimeMillis());
+        context.setReturnValues();
+    }
+}
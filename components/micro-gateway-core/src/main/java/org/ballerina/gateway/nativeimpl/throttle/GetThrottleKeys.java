@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.ThrottleKeyRegistry;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BStringArray;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:getThrottleKeys which returns the ids of the application and subscription throttle keys of
+ * a request, in that order.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "getThrottleKeys",
+        args = {@Argument(name = "applicationId", type = TypeKind.STRING),
+                @Argument(name = "username", type = TypeKind.STRING),
+                @Argument(name = "apiKey", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.ARRAY, elementType = TypeKind.STRING)},
+        isPublic = true
+)
+public class GetThrottleKeys extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        String applicationId = context.getStringArgument(0);
+        long currentTime = System.currentTimeMillis();
+        ThrottleKeyRegistry registry = ThrottleKeyRegistry.getInstance();
+        String applicationKey = registry.getApplicationKey(applicationId, context.getStringArgument(1), currentTime)
+                .getId();
+        String subscriptionKey = registry.getSubscriptionKey(applicationId, context.getStringArgument(2),
+                currentTime).getId();
+        context.setReturnValues(new BStringArray(new String[]{applicationKey, subscriptionKey}));
+    }
+}
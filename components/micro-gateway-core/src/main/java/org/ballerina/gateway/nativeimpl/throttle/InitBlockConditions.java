@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.BlockConditionStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+import java.nio.file.Paths;
+
+/**
+ * Native function gateway:initBlockConditions which loads the block conditions file and reloads it whenever it is
+ * modified. Does nothing if no file is configured.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "initBlockConditions",
+        args = {@Argument(name = "filePath", type = TypeKind.STRING),
+                @Argument(name = "reloadInterval", type = TypeKind.INT)},
+        isPublic = true
+)
+public class InitBlockConditions extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        String filePath = context.getStringArgument(0);
+        if (!filePath.isEmpty()) {
+            BlockConditionStore.getInstance().startReloader(Paths.get(filePath), context.getIntArgument(0));
+        }
+        context.setReturnValues();
+    }
+}
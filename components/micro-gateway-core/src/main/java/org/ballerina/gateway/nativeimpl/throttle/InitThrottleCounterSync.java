@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.ThrottleCounterSync;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+/**
+ * Native function gateway:initThrottleCounterSync which starts synchronizing the counts of the policies evaluated in
+ * process with the other replicas of the gateway.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "initThrottleCounterSync",
+        args = {@Argument(name = "transport", type = TypeKind.STRING),
+                @Argument(name = "localAddress", type = TypeKind.STRING),
+                @Argument(name = "peerAddresses", type = TypeKind.STRING),
+                @Argument(name = "secret", type = TypeKind.STRING),
+                @Argument(name = "syncInterval", type = TypeKind.INT)},
+        isPublic = true
+)
+public class InitThrottleCounterSync extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        ThrottleCounterSync.init(context.getStringArgument(0), context.getStringArgument(1),
+                context.getStringArgument(2), context.getStringArgument(3), context.getIntArgument(0));
+        context.setReturnValues();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.ThrottleDataStore;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+/**
+ * Native function gateway:initThrottleDataStore which sets the capacity of the throttled key store and starts its
+ * expired entry sweeper.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "initThrottleDataStore",
+        args = {@Argument(name = "capacity", type = TypeKind.INT),
+                @Argument(name = "sweepInterval", type = TypeKind.INT)},
+        isPublic = true
+)
+public class InitThrottleDataStore extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        ThrottleDataStore store = ThrottleDataStore.getInstance();
+        store.setCapacity((int) context.getIntArgument(0));
+        store.startSweeper(context.getIntArgument(1));
+        context.setReturnValues();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.IpAddress;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BIntArray;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:ipToLongs which returns an IPv4 or IPv6 address as the numbers the throttle events carry:
+ * the IPv4 address as an unsigned 32 bit number, or -1 for an IPv6 address, followed by the first and the last 64 bits
+ * of the address as a 128 bit number, IPv4 addresses being IPv4-mapped. Returns an empty array if the address is not
+ * valid.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "ipToLongs",
+        args = {@Argument(name = "ipAddress", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.ARRAY, elementType = TypeKind.INT)},
+        isPublic = true
+)
+public class IpToLongs extends BlockingNativeCallableUnit {
+
+    private static final ThreadLocal<IpAddress> ipAddressHolder = ThreadLocal.withInitial(IpAddress::new);
+
+    @Override
+    public void execute(Context context) {
+        IpAddress address = ipAddressHolder.get();
+        if (!address.parse(context.getStringArgument(0))) {
+            context.setReturnValues(new BIntArray());
+            return;
+        }
+        long ipv4 = address.isIpv4() ? address.getLow() & 0xffffffffL : -1;
+        context.setReturnValues(new BIntArray(new long[]{ipv4, address.getHigh(), address.getLow()}));
+    }
+}
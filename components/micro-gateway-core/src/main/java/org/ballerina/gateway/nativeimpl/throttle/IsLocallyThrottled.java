@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.LocalThrottleEngine;
+import org.ballerina.gateway.throttle.LocalThrottlePolicy;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BBoolean;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+
+/**
+ * Native function gateway:isLocallyThrottled which checks whether a throttle key has used up the request count of
+ * a local policy within the current window. Policies which are not local never throttle here.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "isLocallyThrottled",
+        args = {@Argument(name = "policyType", type = TypeKind.STRING),
+                @Argument(name = "policyName", type = TypeKind.STRING),
+                @Argument(name = "throttleKey", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.BOOLEAN)},
+        isPublic = true
+)
+public class IsLocallyThrottled extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        String policyType = context.getStringArgument(0);
+        String policyName = context.getStringArgument(1);
+        String throttleKey = context.getStringArgument(2);
+        LocalThrottlePolicy policy = LocalThrottleEngine.getInstance().getPolicy(policyType, policyName);
+        boolean throttled = policy != null && policy.isThrottled(throttleKey, System.currentTimeMillis());
+        context.setReturnValues(new BBoolean(throttled));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.LocalThrottleEngine;
+import org.ballerina.gateway.throttle.LocalThrottlePolicy;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+
+/**
+ * Native function gateway:registerLocalThrottlePolicy which registers a request count policy to be evaluated in
+ * process instead of the throttle streams.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "registerLocalThrottlePolicy",
+        args = {@Argument(name = "policyType", type = TypeKind.STRING),
+                @Argument(name = "policyName", type = TypeKind.STRING),
+                @Argument(name = "requestCount", type = TypeKind.INT),
+                @Argument(name = "unitTime", type = TypeKind.INT),
+                @Argument(name = "stopOnQuotaReach", type = TypeKind.BOOLEAN)},
+        isPublic = true
+)
+public class RegisterLocalThrottlePolicy extends BlockingNativeCallableUnit {
+
+    @Override
+    public void execute(Context context) {
+        String policyType = context.getStringArgument(0);
+        String policyName = context.getStringArgument(1);
+        long requestCount = context.getIntArgument(0);
+        long unitTime = context.getIntArgument(1);
+        boolean stopOnQuotaReach = context.getBooleanArgument(0);
+        LocalThrottleEngine.getInstance().registerPolicy(policyType,
+                new LocalThrottlePolicy(policyName, requestCount, unitTime, stopOnQuotaReach));
+        context.setReturnValues();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.ClientIpResolver;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BMap;
+import org.ballerinalang.model.values.BString;
+import org.ballerinalang.model.values.BValue;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+import org.ballerinalang.net.http.HttpConstants;
+import org.ballerinalang.net.http.HttpUtil;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Native function gateway:resolveClientIp which returns the client address of a request, read from the connection
+ * the request was received on and, if that is a trusted proxy, from the X-Forwarded-For header. Returns an empty
+ * string if the address is not known.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "resolveClientIp",
+        args = {@Argument(name = "request", type = TypeKind.OBJECT, structType = "Request",
+                structPackage = "ballerina/http"),
+                @Argument(name = "forwardedFor", type = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.STRING)},
+        isPublic = true
+)
+public class ResolveClientIp extends BlockingNativeCallableUnit {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Context context) {
+        BMap<String, BValue> request = (BMap<String, BValue>) context.getRefArgument(0);
+        Object remoteAddress = HttpUtil.getCarbonMsg(request, null).getProperty(HttpConstants.REMOTE_ADDRESS);
+        String remoteIp = "";
+        if (remoteAddress instanceof InetSocketAddress
+                && ((InetSocketAddress) remoteAddress).getAddress() != null) {
+            remoteIp = ((InetSocketAddress) remoteAddress).getAddress().getHostAddress();
+        }
+        context.setReturnValues(new BString(ClientIpResolver.getInstance().resolve(remoteIp,
+                context.getStringArgument(0))));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.nativeimpl.throttle;
+
+import org.ballerina.gateway.throttle.IpListRegistry;
+import org.ballerinalang.bre.Context;
+import org.ballerinalang.bre.bvm.BlockingNativeCallableUnit;
+import org.ballerinalang.model.types.TypeKind;
+import org.ballerinalang.model.values.BBoolean;
+import org.ballerinalang.model.values.BStringArray;
+import org.ballerinalang.natives.annotations.Argument;
+import org.ballerinalang.natives.annotations.BallerinaFunction;
+import org.ballerinalang.natives.annotations.ReturnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Native function gateway:setIpList which replaces a named list of CIDR blocks. Returns false and leaves the list as
+ * it was if any of the blocks is not valid.
+ */
+@BallerinaFunction(
+        orgName = "wso2", packageName = "gateway",
+        functionName = "setIpList",
+        args = {@Argument(name = "listName", type = TypeKind.STRING),
+                @Argument(name = "cidrs", type = TypeKind.ARRAY, elementType = TypeKind.STRING)},
+        returnType = {@ReturnType(type = TypeKind.BOOLEAN)},
+        isPublic = true
+)
+public class SetIpList extends BlockingNativeCallableUnit {
+
+    private static final Logger log = LoggerFactory.getLogger(SetIpList.class);
+
+    @Override
+    public void execute(Context context) {
+        String listName = context.getStringArgument(0);
+        BStringArray cidrArray = (BStringArray) context.getRefArgument(0);
+        List<String> cidrs = new ArrayList<>((int) cidrArray.size());
+        for (int i = 0; i < cidrArray.size(); i++) {
+            cidrs.add(cidrArray.get(i));
+        }
+        boolean updated;
+        try {
+            IpListRegistry.getInstance().setList(listName, cidrs);
+            updated = true;
+        } catch (IllegalArgumentException e) {
+            log.warn("IP list " + listName + " is not updated. " + e.getMessage());
+            updated = false;
+        }
+        context.setReturnValues(new BBoolean(updated));
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.siddhi.extension;
+
+import org.ballerinalang.siddhi.annotation.Example;
+import org.ballerinalang.siddhi.annotation.Extension;
+import org.ballerinalang.siddhi.annotation.Parameter;
+import org.ballerinalang.siddhi.annotation.util.DataType;
+import org.ballerinalang.siddhi.core.config.SiddhiAppContext;
+import org.ballerinalang.siddhi.core.event.ComplexEvent;
+import org.ballerinalang.siddhi.core.event.ComplexEventChunk;
+import org.ballerinalang.siddhi.core.event.stream.StreamEvent;
+import org.ballerinalang.siddhi.core.event.stream.StreamEventCloner;
+import org.ballerinalang.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import org.ballerinalang.siddhi.core.executor.ConstantExpressionExecutor;
+import org.ballerinalang.siddhi.core.executor.ExpressionExecutor;
+import org.ballerinalang.siddhi.core.query.processor.Processor;
+import org.ballerinalang.siddhi.core.query.processor.stream.StreamProcessor;
+import org.ballerinalang.siddhi.core.util.config.ConfigReader;
+import org.ballerinalang.siddhi.query.api.definition.AbstractDefinition;
+import org.ballerinalang.siddhi.query.api.definition.Attribute;
+import org.ballerinalang.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A tumbling counting window for throttling.
+ * <p/>
+ * Unlike throttler:timeBatch, this window does not buffer or clone the incoming events. It keeps a counter per
+ * throttle key for the current window and only lets an event through when the counter of its key reaches the given
+ * limit. Hence at most one event is emitted per key per window, carrying the count and the time the window expires.
+ * Counters are updated with compare-and-set operations, so concurrent publishers never contend on a shared monitor.
+ * Counters of keys which stayed idle for a whole window are purged on the Siddhi app's scheduled executor, so the
+ * publisher which flips the window never pays for the sweep.
+ * <p/>
+ * Usage:
+ * throttler:counterBatch(windowTime, startTime, key, limit)
+ * <p/>
+ * Example on usage:
+ * from EligibilityStream[isEligible == true]#throttler:counterBatch(60000, 0, throttleKey, 100)
+ * select throttleKey, eventCount >= 100 as isThrottled, expiryTimeStamp
+ * insert into ResultStream;
+ */
+@Extension(name = "counterBatch", namespace = "throttler", description =
+        "A batch (tumbling) time window that counts the events of each throttle key arriving during window.time "
+                + "periods and emits a single event per key once its count reaches the limit.", parameters = {
+        @Parameter(name = "window.time", description = "The batch time period of the window.",
+                type = { DataType.INT, DataType.LONG, DataType.TIME }),
+        @Parameter(name = "start.time", description = "This specifies an offset in milliseconds in order to start the "
+                + "window at a time different to the standard time.", type = { DataType.INT, DataType.LONG }),
+        @Parameter(name = "throttle.key", description = "The key events are counted against.",
+                type = { DataType.STRING }),
+        @Parameter(name = "limit", description = "The count at which the event of a key is emitted.",
+                type = { DataType.INT, DataType.LONG }) }, examples = {
+        @Example(syntax = "from eligibilityStream[isEligible == true]#throttler:counterBatch(1 min, 0, throttleKey, 10)"
+                + "\nselect throttleKey, eventCount >= 10 as isThrottled, expiryTimeStamp\ninsert into resultStream;",
+                description = "This will emit one event for each throttleKey which exceeds 10 events within "
+                        + "a minute.") })
+public class CounterBatchStreamProcessor extends StreamProcessor {
+    private static final String EXPIRY_TIME_STAMP = "expiryTimeStamp";
+    private static final String EVENT_COUNT = "eventCount";
+    private static final WindowCounter PURGED = new WindowCounter(Long.MIN_VALUE);
+    private long timeInMilliSeconds;
+    private long startTime = 0;
+    private long limit;
+    private ExpressionExecutor keyExpressionExecutor;
+    private SiddhiAppContext siddhiAppContext;
+    private final AtomicLong windowEndTime = new AtomicLong(-1);
+    private final AtomicBoolean purging = new AtomicBoolean(false);
+    private ConcurrentHashMap<String, AtomicReference<WindowCounter>> counterMap = new ConcurrentHashMap<>();
+
+    @Override
+    protected List<Attribute> init(AbstractDefinition abstractDefinition, ExpressionExecutor[] expressionExecutors,
+            ConfigReader configReader, SiddhiAppContext siddhiAppContext) {
+        this.siddhiAppContext = siddhiAppContext;
+        if (attributeExpressionExecutors.length != 4) {
+            throw new SiddhiAppValidationException("Invalid no of arguments passed to throttler:counterBatch"
+                    + "(windowTime,startTime,key,limit), required 4, but found "
+                    + attributeExpressionExecutors.length);
+        }
+        timeInMilliSeconds = getConstantLongValue(0, "window time");
+        startTime = getConstantLongValue(1, "start time");
+        if (attributeExpressionExecutors[2].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppValidationException("Invalid parameter type found for the 3rd argument of "
+                    + "throttler:counterBatch, required " + Attribute.Type.STRING + ", but found "
+                    + attributeExpressionExecutors[2].getReturnType());
+        }
+        keyExpressionExecutor = attributeExpressionExecutors[2];
+        limit = getConstantLongValue(3, "limit");
+        if (timeInMilliSeconds <= 0 || limit <= 0) {
+            throw new SiddhiAppValidationException("Throttle counter batch window time and limit should be "
+                    + "positive, but found " + timeInMilliSeconds + " and " + limit);
+        }
+
+        List<Attribute> attributeList = new ArrayList<Attribute>();
+        attributeList.add(new Attribute(EVENT_COUNT, Attribute.Type.LONG));
+        attributeList.add(new Attribute(EXPIRY_TIME_STAMP, Attribute.Type.LONG));
+        return attributeList;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> complexEventChunk, Processor processor,
+            StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater) {
+        long currentTime = siddhiAppContext.getTimestampGenerator().currentTime();
+        long expireEventTime = currentWindowEnd(currentTime);
+        while (complexEventChunk.hasNext()) {
+            StreamEvent streamEvent = complexEventChunk.next();
+            if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                complexEventChunk.remove();
+                continue;
+            }
+            String key = (String) keyExpressionExecutor.execute(streamEvent);
+            long count = increment(key, expireEventTime);
+            if (count == limit) {
+                complexEventPopulater.populateComplexEvent(streamEvent, new Object[] { count, expireEventTime });
+            } else {
+                complexEventChunk.remove();
+            }
+        }
+        if (complexEventChunk.getFirst() != null) {
+            nextProcessor.process(complexEventChunk);
+        }
+    }
+
+    /**
+     * Increments the counter of the given key for the window ending at the given time. A counter belonging to an
+     * already elapsed window is swapped with a fresh one instead of being reset in place, so that a concurrent
+     * increment can never be lost or leak into the next window. A counter the purge task has already retired is
+     * replaced by a fresh entry in the map.
+     */
+    private long increment(String key, long expireEventTime) {
+        AtomicReference<WindowCounter> counterRef = counterMap.get(key);
+        if (counterRef == null) {
+            counterRef = counterMap.computeIfAbsent(key,
+                    k -> new AtomicReference<>(new WindowCounter(expireEventTime)));
+        }
+        while (true) {
+            WindowCounter counter = counterRef.get();
+            if (counter == PURGED) {
+                counterMap.remove(key, counterRef);
+                counterRef = counterMap.computeIfAbsent(key,
+                        k -> new AtomicReference<>(new WindowCounter(expireEventTime)));
+                continue;
+            }
+            if (counter.windowEndTime == expireEventTime) {
+                return counter.count.incrementAndGet();
+            }
+            if (counter.windowEndTime > expireEventTime) {
+                // a slower thread still sees the previous window, count it against the latest one
+                return counter.count.incrementAndGet();
+            }
+            counterRef.compareAndSet(counter, new WindowCounter(expireEventTime));
+        }
+    }
+
+    private long currentWindowEnd(long currentTime) {
+        long windowEnd = windowEndTime.get();
+        if (currentTime < windowEnd) {
+            return windowEnd;
+        }
+        long timePassedUntilNow = (currentTime - startTime) % timeInMilliSeconds;
+        long newWindowEnd = currentTime + (timeInMilliSeconds - timePassedUntilNow);
+        if (windowEndTime.compareAndSet(windowEnd, newWindowEnd)) {
+            // only the thread which flipped the window schedules the sweep of keys idle during the last window
+            schedulePurge(newWindowEnd - timeInMilliSeconds);
+        }
+        return windowEndTime.get();
+    }
+
+    private void schedulePurge(long lastWindowEnd) {
+        if (!purging.compareAndSet(false, true)) {
+            // the previous sweep is still running, the next window flip will pick up what it misses
+            return;
+        }
+        try {
+            siddhiAppContext.getScheduledExecutorService().execute(() -> {
+                try {
+                    purgeExpiredCounters(lastWindowEnd);
+                } finally {
+                    purging.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the Siddhi app is shutting down
+            purging.set(false);
+        }
+    }
+
+    /**
+     * Removes the counters which have not been incremented since before the given window end. A counter is first
+     * retired with a compare-and-set, so an increment racing with the purge either lands before it and keeps the
+     * counter, or sees it retired and starts a new one.
+     */
+    private void purgeExpiredCounters(long lastWindowEnd) {
+        Iterator<Map.Entry<String, AtomicReference<WindowCounter>>> iterator = counterMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, AtomicReference<WindowCounter>> entry = iterator.next();
+            AtomicReference<WindowCounter> counterRef = entry.getValue();
+            WindowCounter counter = counterRef.get();
+            if (counter.windowEndTime < lastWindowEnd && counterRef.compareAndSet(counter, PURGED)) {
+                counterMap.remove(entry.getKey(), counterRef);
+            }
+        }
+    }
+
+    private long getConstantLongValue(int index, String name) {
+        ExpressionExecutor executor = attributeExpressionExecutors[index];
+        if (!(executor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException("Throttle counter batch window " + name + " needs to be a "
+                    + "constant attribute but found a dynamic attribute " + executor.getClass().getCanonicalName());
+        }
+        if (executor.getReturnType() == Attribute.Type.INT) {
+            return (Integer) ((ConstantExpressionExecutor) executor).getValue();
+        } else if (executor.getReturnType() == Attribute.Type.LONG) {
+            return (Long) ((ConstantExpressionExecutor) executor).getValue();
+        }
+        throw new SiddhiAppValidationException("Throttle counter batch window " + name + " should be either int or "
+                + "long, but found " + executor.getReturnType());
+    }
+
+    public void start() {
+        //Do nothing
+    }
+
+    public void stop() {
+        //Do nothing
+    }
+
+    public Map<String, Object> currentState() {
+        Map<String, Object> state = new HashMap<String, Object>();
+        for (Map.Entry<String, AtomicReference<WindowCounter>> entry : counterMap.entrySet()) {
+            WindowCounter counter = entry.getValue().get();
+            state.put(entry.getKey(), new long[] { counter.windowEndTime, counter.count.get() });
+        }
+        return state;
+    }
+
+    public void restoreState(Map<String, Object> state) {
+        ConcurrentHashMap<String, AtomicReference<WindowCounter>> restoredMap = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            long[] counterState = (long[]) entry.getValue();
+            WindowCounter counter = new WindowCounter(counterState[0]);
+            counter.count.set(counterState[1]);
+            restoredMap.put(entry.getKey(), new AtomicReference<>(counter));
+        }
+        counterMap = restoredMap;
+    }
+
+    /**
+     * Event count of a single key within the window ending at {@code windowEndTime}.
+     */
+    private static class WindowCounter {
+        private final long windowEndTime;
+        private final AtomicLong count = new AtomicLong();
+
+        WindowCounter(long windowEndTime) {
+            this.windowEndTime = windowEndTime;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.ballerina.gateway.siddhi.extension;
 
+import org.ballerina.gateway.throttle.ThrottleStateStore;
 import org.ballerinalang.siddhi.annotation.Example;
 import org.ballerinalang.siddhi.annotation.Extension;
 import org.ballerinalang.siddhi.annotation.Parameter;
@@ -27,6 +28,7 @@ import org.ballerinalang.siddhi.core.event.ComplexEventChunk;
 import org.ballerinalang.siddhi.core.event.stream.StreamEvent;
 import org.ballerinalang.siddhi.core.event.stream.StreamEventCloner;
 import org.ballerinalang.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import org.ballerinalang.siddhi.core.executor.ConstantExpressionExecutor;
 import org.ballerinalang.siddhi.core.executor.ExpressionExecutor;
 import org.ballerinalang.siddhi.core.executor.VariableExpressionExecutor;
 import org.ballerinalang.siddhi.core.query.processor.Processor;
@@ -37,7 +39,6 @@ import org.ballerinalang.siddhi.query.api.definition.Attribute;
 import org.ballerinalang.siddhi.query.api.exception.SiddhiAppValidationException;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -53,12 +54,20 @@ import java.util.Map;
  * This is useful when the throttler needs to alert only when the throttling decision is changed, in contrast to
  * alerting about every decision taken.
  * <p/>
+ * The last decision of each key is kept only until the window it was taken for expires, and the number of keys
+ * kept is bounded by a capacity, hence the state does not grow with the number of distinct consumers.
+ * <p/>
  * Usage:
  * throttler:emitOnStateChange(key, isThrottled)
+ * throttler:emitOnStateChange(key, isThrottled, expiryTimeStamp)
+ * throttler:emitOnStateChange(key, isThrottled, expiryTimeStamp, capacity)
  * <p/>
  * Parameters:
  * key: The key coming in the request, based on which throttling decision was made.
  * isThrottled: The throttling decision made.
+ * expiryTimeStamp: The time the throttling decision is valid until.
+ * capacity: The maximum number of keys to keep the decision of. Defaults to the "capacity" extension config or
+ * 100000.
  * <p/>
  * Example on usage:
  * from DecisionStream#throttler:emitOnStateChange(key, isThrottled)
@@ -71,7 +80,11 @@ import java.util.Map;
         @Parameter(name = "throttle.key", description = "The priority/type of this log message.", type = {
                 DataType.STRING }),
         @Parameter(name = "is.throttled", description = "This submit the log message.", type = {
-                DataType.STRING }) }, examples = {
+                DataType.STRING }),
+        @Parameter(name = "expiry.time.stamp", description = "The time the throttle decision is valid until.",
+                type = { DataType.LONG }, optional = true, defaultValue = "no expiry"),
+        @Parameter(name = "capacity", description = "The maximum number of throttle keys to keep the state of.",
+                type = { DataType.INT }, optional = true, defaultValue = "100000") }, examples = {
         @Example(syntax = "from fooStream#log(\"INFO\", \"Sample Event :\", true)\nselect *\ninsert into barStream;",
                 description = "This will log as INFO with the message \"Sample Event :\" + fooStream:events."),
         @Example(syntax = "from fooStream#log(\"Sample Event :\", true)\nselect *\ninsert into barStream;",
@@ -85,7 +98,9 @@ import java.util.Map;
 public class EmitOnStateChange extends StreamProcessor {
     private VariableExpressionExecutor keyExpressionExecutor;
     private VariableExpressionExecutor isThrottledExpressionExecutor;
-    private Map<String, Object> throttleStateMap = new HashMap<String, Object>();
+    private ExpressionExecutor expiryTimeStampExpressionExecutor;
+    private SiddhiAppContext siddhiAppContext;
+    private ThrottleStateStore throttleStateStore;
 
     public void start() {
         //Nothing to do.
@@ -96,25 +111,34 @@ public class EmitOnStateChange extends StreamProcessor {
     }
 
     public Map<String, Object> currentState() {
-        return throttleStateMap;
+        return throttleStateStore.snapshot();
     }
 
     public void restoreState(Map<String, Object> map) {
-        throttleStateMap = map;
+        throttleStateStore.restore(map);
+    }
+
+    public ThrottleStateStore getThrottleStateStore() {
+        return throttleStateStore;
     }
 
     @Override
     protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor processor,
             StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater) {
+        long currentTime = siddhiAppContext.getTimestampGenerator().currentTime();
         while (streamEventChunk.hasNext()) {
             StreamEvent event = streamEventChunk.next();
-            Boolean currentThrottleState = (Boolean) isThrottledExpressionExecutor.execute(event);
+            boolean currentThrottleState = (Boolean) isThrottledExpressionExecutor.execute(event);
             String key = (String) keyExpressionExecutor.execute(event);
-            Boolean lastThrottleState = (Boolean) throttleStateMap.get(key);
-            if (currentThrottleState.equals(lastThrottleState) && !currentThrottleState) {
+            ThrottleStateStore.ThrottleState lastThrottleState = throttleStateStore.get(key, currentTime);
+            if (lastThrottleState != null && !lastThrottleState.isThrottled() && !currentThrottleState) {
                 streamEventChunk.remove();
             } else {
-                throttleStateMap.put(key, currentThrottleState);
+                long expiryTimeStamp = ThrottleStateStore.NO_EXPIRY;
+                if (expiryTimeStampExpressionExecutor != null) {
+                    expiryTimeStamp = (Long) expiryTimeStampExpressionExecutor.execute(event);
+                }
+                throttleStateStore.put(key, currentThrottleState, expiryTimeStamp, currentTime);
             }
         }
         nextProcessor.process(streamEventChunk);
@@ -123,9 +147,10 @@ public class EmitOnStateChange extends StreamProcessor {
     @Override
     protected List<Attribute> init(AbstractDefinition abstractDefinition, ExpressionExecutor[] expressionExecutors,
             ConfigReader configReader, SiddhiAppContext siddhiAppContext) {
-        if (attributeExpressionExecutors.length != 2) {
+        if (attributeExpressionExecutors.length < 2 || attributeExpressionExecutors.length > 4) {
             throw new SiddhiAppValidationException("Invalid no of arguments passed to throttler:emitOnStateChange"
-                    + "(key,isThrottled), required 2, but found " + attributeExpressionExecutors.length);
+                    + "(key,isThrottled[,expiryTimeStamp[,capacity]]), required 2 to 4, but found "
+                    + attributeExpressionExecutors.length);
         }
         if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
             throw new SiddhiAppValidationException("Invalid parameter type found for the argument of "
@@ -139,6 +164,26 @@ public class EmitOnStateChange extends StreamProcessor {
         }
         keyExpressionExecutor = (VariableExpressionExecutor) attributeExpressionExecutors[0];
         isThrottledExpressionExecutor = (VariableExpressionExecutor) attributeExpressionExecutors[1];
+        if (attributeExpressionExecutors.length > 2) {
+            if (attributeExpressionExecutors[2].getReturnType() != Attribute.Type.LONG) {
+                throw new SiddhiAppValidationException("Invalid parameter type found for the argument of "
+                        + "throttler:emitOnStateChange(key,isThrottled,expiryTimeStamp), " + "required "
+                        + Attribute.Type.LONG + ", but found " + attributeExpressionExecutors[2].getReturnType());
+            }
+            expiryTimeStampExpressionExecutor = attributeExpressionExecutors[2];
+        }
+        int capacity = Integer.parseInt(configReader.readConfig("capacity",
+                String.valueOf(ThrottleStateStore.DEFAULT_CAPACITY)));
+        if (attributeExpressionExecutors.length == 4) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)
+                    || attributeExpressionExecutors[3].getReturnType() != Attribute.Type.INT) {
+                throw new SiddhiAppValidationException("throttler:emitOnStateChange capacity needs to be a constant "
+                        + Attribute.Type.INT + " attribute");
+            }
+            capacity = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[3]).getValue();
+        }
+        this.siddhiAppContext = siddhiAppContext;
+        this.throttleStateStore = new ThrottleStateStore(capacity);
         return new ArrayList<Attribute>();
     }
 }
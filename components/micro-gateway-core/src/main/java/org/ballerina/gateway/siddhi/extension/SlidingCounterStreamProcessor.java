@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.siddhi.extension;
+
+import org.ballerinalang.siddhi.annotation.Example;
+import org.ballerinalang.siddhi.annotation.Extension;
+import org.ballerinalang.siddhi.annotation.Parameter;
+import org.ballerinalang.siddhi.annotation.util.DataType;
+import org.ballerinalang.siddhi.core.config.SiddhiAppContext;
+import org.ballerinalang.siddhi.core.event.ComplexEvent;
+import org.ballerinalang.siddhi.core.event.ComplexEventChunk;
+import org.ballerinalang.siddhi.core.event.stream.StreamEvent;
+import org.ballerinalang.siddhi.core.event.stream.StreamEventCloner;
+import org.ballerinalang.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import org.ballerinalang.siddhi.core.executor.ConstantExpressionExecutor;
+import org.ballerinalang.siddhi.core.executor.ExpressionExecutor;
+import org.ballerinalang.siddhi.core.query.processor.Processor;
+import org.ballerinalang.siddhi.core.query.processor.stream.StreamProcessor;
+import org.ballerinalang.siddhi.core.util.config.ConfigReader;
+import org.ballerinalang.siddhi.query.api.definition.AbstractDefinition;
+import org.ballerinalang.siddhi.query.api.definition.Attribute;
+import org.ballerinalang.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A sliding counting window for throttling.
+ * <p/>
+ * The window is split into a fixed number of sub buckets and each throttle key keeps only a count per sub bucket,
+ * so the memory used per key does not depend on the number of events. The count of the sliding window is
+ * approximated as the sum of the sub buckets inside the window plus the overlapping share of the oldest bucket.
+ * This prevents a client from sending twice the quota across the boundary of a fixed window.
+ * <p/>
+ * When the count of a key reaches the limit, the event is emitted with the count and the end time of the current
+ * sub bucket as the expiry time stamp, which is when the sliding count is re-evaluated. Other events are dropped.
+ * <p/>
+ * Usage:
+ * throttler:slidingCounter(windowTime, key, limit)
+ * throttler:slidingCounter(windowTime, key, limit, subBuckets)
+ * <p/>
+ * Example on usage:
+ * from EligibilityStream[isEligible == true]#throttler:slidingCounter(60000, throttleKey, 100)
+ * select throttleKey, eventCount >= 100 as isThrottled, expiryTimeStamp
+ * insert into ResultStream;
+ */
+@Extension(name = "slidingCounter", namespace = "throttler", description =
+        "A sliding time window, approximated with sub buckets, that counts the events of each throttle key and emits "
+                + "an event for the key once its count within the last window.time reaches the limit.", parameters = {
+        @Parameter(name = "window.time", description = "The sliding time period of the window.",
+                type = { DataType.INT, DataType.LONG, DataType.TIME }),
+        @Parameter(name = "throttle.key", description = "The key events are counted against.",
+                type = { DataType.STRING }),
+        @Parameter(name = "limit", description = "The count at which the events of a key are emitted.",
+                type = { DataType.INT, DataType.LONG }),
+        @Parameter(name = "sub.buckets", description = "The number of buckets the window is divided into. Defaults "
+                + "to 10.", type = { DataType.INT }, optional = true, defaultValue = "10") }, examples = {
+        @Example(syntax = "from eligibilityStream[isEligible == true]#throttler:slidingCounter(1 min, throttleKey, 10)"
+                + "\nselect throttleKey, eventCount >= 10 as isThrottled, expiryTimeStamp\ninsert into resultStream;",
+                description = "This will emit an event for each throttleKey which exceeds 10 events within any "
+                        + "minute.") })
+public class SlidingCounterStreamProcessor extends StreamProcessor {
+    private static final String EXPIRY_TIME_STAMP = "expiryTimeStamp";
+    private static final String EVENT_COUNT = "eventCount";
+    private static final int DEFAULT_SUB_BUCKETS = 10;
+    private long timeInMilliSeconds;
+    private long bucketTimeInMilliSeconds;
+    private int subBuckets = DEFAULT_SUB_BUCKETS;
+    private long limit;
+    private ExpressionExecutor keyExpressionExecutor;
+    private SiddhiAppContext siddhiAppContext;
+    private volatile long lastPurgeBucket = -1;
+    private ConcurrentHashMap<String, SlidingCounter> counterMap = new ConcurrentHashMap<>();
+
+    @Override
+    protected List<Attribute> init(AbstractDefinition abstractDefinition, ExpressionExecutor[] expressionExecutors,
+            ConfigReader configReader, SiddhiAppContext siddhiAppContext) {
+        this.siddhiAppContext = siddhiAppContext;
+        if (attributeExpressionExecutors.length != 3 && attributeExpressionExecutors.length != 4) {
+            throw new SiddhiAppValidationException("Invalid no of arguments passed to throttler:slidingCounter"
+                    + "(windowTime,key,limit[,subBuckets]), required 3 or 4, but found "
+                    + attributeExpressionExecutors.length);
+        }
+        timeInMilliSeconds = getConstantLongValue(0, "window time");
+        if (attributeExpressionExecutors[1].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppValidationException("Invalid parameter type found for the 2nd argument of "
+                    + "throttler:slidingCounter, required " + Attribute.Type.STRING + ", but found "
+                    + attributeExpressionExecutors[1].getReturnType());
+        }
+        keyExpressionExecutor = attributeExpressionExecutors[1];
+        limit = getConstantLongValue(2, "limit");
+        if (attributeExpressionExecutors.length == 4) {
+            subBuckets = (int) getConstantLongValue(3, "sub bucket count");
+        }
+        if (timeInMilliSeconds <= 0 || limit <= 0 || subBuckets <= 0) {
+            throw new SiddhiAppValidationException("Throttle sliding window time, limit and sub bucket count should "
+                    + "be positive, but found " + timeInMilliSeconds + ", " + limit + " and " + subBuckets);
+        }
+        bucketTimeInMilliSeconds = Math.max(1, timeInMilliSeconds / subBuckets);
+
+        List<Attribute> attributeList = new ArrayList<Attribute>();
+        attributeList.add(new Attribute(EVENT_COUNT, Attribute.Type.LONG));
+        attributeList.add(new Attribute(EXPIRY_TIME_STAMP, Attribute.Type.LONG));
+        return attributeList;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> complexEventChunk, Processor processor,
+            StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater) {
+        long currentTime = siddhiAppContext.getTimestampGenerator().currentTime();
+        long currentBucket = currentTime / bucketTimeInMilliSeconds;
+        purgeIdleCounters(currentBucket);
+        while (complexEventChunk.hasNext()) {
+            StreamEvent streamEvent = complexEventChunk.next();
+            if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                complexEventChunk.remove();
+                continue;
+            }
+            String key = (String) keyExpressionExecutor.execute(streamEvent);
+            SlidingCounter counter = counterMap.get(key);
+            if (counter == null) {
+                counter = counterMap.computeIfAbsent(key, k -> new SlidingCounter(subBuckets + 1));
+            }
+            long count = counter.incrementAndGet(currentTime, currentBucket);
+            if (count >= limit && counter.markEmitted(currentBucket)) {
+                long expireEventTime = (currentBucket + 1) * bucketTimeInMilliSeconds;
+                complexEventPopulater.populateComplexEvent(streamEvent, new Object[] { count, expireEventTime });
+            } else {
+                complexEventChunk.remove();
+            }
+        }
+        if (complexEventChunk.getFirst() != null) {
+            nextProcessor.process(complexEventChunk);
+        }
+    }
+
+    /**
+     * Drops the counters of keys without any event during the last window, at most once per sub bucket.
+     */
+    private void purgeIdleCounters(long currentBucket) {
+        if (currentBucket == lastPurgeBucket) {
+            return;
+        }
+        lastPurgeBucket = currentBucket;
+        Iterator<SlidingCounter> iterator = counterMap.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isIdle(currentBucket)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private long getConstantLongValue(int index, String name) {
+        ExpressionExecutor executor = attributeExpressionExecutors[index];
+        if (!(executor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException("Throttle sliding window " + name + " needs to be a constant "
+                    + "attribute but found a dynamic attribute " + executor.getClass().getCanonicalName());
+        }
+        if (executor.getReturnType() == Attribute.Type.INT) {
+            return (Integer) ((ConstantExpressionExecutor) executor).getValue();
+        } else if (executor.getReturnType() == Attribute.Type.LONG) {
+            return (Long) ((ConstantExpressionExecutor) executor).getValue();
+        }
+        throw new SiddhiAppValidationException("Throttle sliding window " + name + " should be either int or long, "
+                + "but found " + executor.getReturnType());
+    }
+
+    public void start() {
+        //Do nothing
+    }
+
+    public void stop() {
+        //Do nothing
+    }
+
+    public Map<String, Object> currentState() {
+        Map<String, Object> state = new HashMap<String, Object>();
+        for (Map.Entry<String, SlidingCounter> entry : counterMap.entrySet()) {
+            state.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return state;
+    }
+
+    public void restoreState(Map<String, Object> state) {
+        ConcurrentHashMap<String, SlidingCounter> restoredMap = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            restoredMap.put(entry.getKey(), new SlidingCounter((long[][]) entry.getValue()));
+        }
+        counterMap = restoredMap;
+    }
+
+    /**
+     * Ring of sub bucket counts of a single key. One extra slot is kept for the bucket that partially overlaps
+     * the sliding window.
+     */
+    private class SlidingCounter {
+        private final long[] bucketIds;
+        private final long[] counts;
+        private long lastEmittedBucket = -1;
+
+        SlidingCounter(int slots) {
+            bucketIds = new long[slots];
+            counts = new long[slots];
+            for (int i = 0; i < slots; i++) {
+                bucketIds[i] = -1;
+            }
+        }
+
+        SlidingCounter(long[][] state) {
+            bucketIds = state[0];
+            counts = state[1];
+            lastEmittedBucket = state[2][0];
+        }
+
+        synchronized long incrementAndGet(long currentTime, long currentBucket) {
+            int slot = (int) (currentBucket % bucketIds.length);
+            if (bucketIds[slot] != currentBucket) {
+                bucketIds[slot] = currentBucket;
+                counts[slot] = 0;
+            }
+            counts[slot]++;
+
+            long count = 0;
+            long oldestBucket = currentBucket - subBuckets;
+            for (int i = 0; i < bucketIds.length; i++) {
+                if (bucketIds[i] > oldestBucket && bucketIds[i] <= currentBucket) {
+                    count += counts[i];
+                } else if (bucketIds[i] == oldestBucket) {
+                    // weight the oldest bucket by the share of it which is still within the window
+                    long elapsedInBucket = currentTime - currentBucket * bucketTimeInMilliSeconds;
+                    count += counts[i] * (bucketTimeInMilliSeconds - elapsedInBucket) / bucketTimeInMilliSeconds;
+                }
+            }
+            return count;
+        }
+
+        synchronized boolean markEmitted(long currentBucket) {
+            if (lastEmittedBucket == currentBucket) {
+                return false;
+            }
+            lastEmittedBucket = currentBucket;
+            return true;
+        }
+
+        synchronized boolean isIdle(long currentBucket) {
+            for (long bucketId : bucketIds) {
+                if (bucketId >= currentBucket - subBuckets) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized long[][] snapshot() {
+            return new long[][] { bucketIds.clone(), counts.clone(), { lastEmittedBucket } };
+        }
+    }
+}
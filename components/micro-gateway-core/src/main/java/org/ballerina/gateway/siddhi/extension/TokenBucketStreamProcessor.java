@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.siddhi.extension;
+
+import org.ballerinalang.siddhi.annotation.Example;
+import org.ballerinalang.siddhi.annotation.Extension;
+import org.ballerinalang.siddhi.annotation.Parameter;
+import org.ballerinalang.siddhi.annotation.util.DataType;
+import org.ballerinalang.siddhi.core.config.SiddhiAppContext;
+import org.ballerinalang.siddhi.core.event.ComplexEvent;
+import org.ballerinalang.siddhi.core.event.ComplexEventChunk;
+import org.ballerinalang.siddhi.core.event.stream.StreamEvent;
+import org.ballerinalang.siddhi.core.event.stream.StreamEventCloner;
+import org.ballerinalang.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import org.ballerinalang.siddhi.core.executor.ConstantExpressionExecutor;
+import org.ballerinalang.siddhi.core.executor.ExpressionExecutor;
+import org.ballerinalang.siddhi.core.query.processor.Processor;
+import org.ballerinalang.siddhi.core.query.processor.stream.StreamProcessor;
+import org.ballerinalang.siddhi.core.util.config.ConfigReader;
+import org.ballerinalang.siddhi.query.api.definition.AbstractDefinition;
+import org.ballerinalang.siddhi.query.api.definition.Attribute;
+import org.ballerinalang.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A token bucket for throttling.
+ * <p/>
+ * Each throttle key owns a bucket holding up to {@code limit} tokens, refilled continuously at a rate of
+ * {@code limit} tokens per window time. Every event takes a token from the bucket of its key. When the bucket gets
+ * empty the event is emitted with the expiry time stamp set to the time the next token becomes available, so that
+ * the key stays throttled only until it can be served again. Other events are dropped. The token count of a bucket
+ * does not go below zero, so a key is released within one token interval once its events stop, however long the
+ * burst was. A bucket only holds the current token count and the last refill time, hence the memory used per key
+ * does not depend on the event rate.
+ * <p/>
+ * Usage:
+ * throttler:tokenBucket(windowTime, key, limit)
+ * <p/>
+ * Example on usage:
+ * from EligibilityStream[isEligible == true]#throttler:tokenBucket(60000, throttleKey, 100)
+ * select throttleKey, eventCount >= 100 as isThrottled, expiryTimeStamp
+ * insert into ResultStream;
+ */
+@Extension(name = "tokenBucket", namespace = "throttler", description =
+        "A token bucket per throttle key, holding up to limit tokens and refilled with limit tokens every "
+                + "window.time, which emits an event for a key once its bucket is empty.", parameters = {
+        @Parameter(name = "window.time", description = "The time period in which the bucket is fully refilled.",
+                type = { DataType.INT, DataType.LONG, DataType.TIME }),
+        @Parameter(name = "throttle.key", description = "The key events are counted against.",
+                type = { DataType.STRING }),
+        @Parameter(name = "limit", description = "The capacity of the bucket.",
+                type = { DataType.INT, DataType.LONG }) }, examples = {
+        @Example(syntax = "from eligibilityStream[isEligible == true]#throttler:tokenBucket(1 min, throttleKey, 10)"
+                + "\nselect throttleKey, eventCount >= 10 as isThrottled, expiryTimeStamp\ninsert into resultStream;",
+                description = "This will allow bursts of 10 events per throttleKey and a sustained rate of 10 events "
+                        + "per minute.") })
+public class TokenBucketStreamProcessor extends StreamProcessor {
+    private static final String EXPIRY_TIME_STAMP = "expiryTimeStamp";
+    private static final String EVENT_COUNT = "eventCount";
+    private long timeInMilliSeconds;
+    private long limit;
+    private double tokensPerMilliSecond;
+    private ExpressionExecutor keyExpressionExecutor;
+    private SiddhiAppContext siddhiAppContext;
+    private volatile long lastPurgeTime = -1;
+    private ConcurrentHashMap<String, TokenBucket> bucketMap = new ConcurrentHashMap<>();
+
+    @Override
+    protected List<Attribute> init(AbstractDefinition abstractDefinition, ExpressionExecutor[] expressionExecutors,
+            ConfigReader configReader, SiddhiAppContext siddhiAppContext) {
+        this.siddhiAppContext = siddhiAppContext;
+        if (attributeExpressionExecutors.length != 3) {
+            throw new SiddhiAppValidationException("Invalid no of arguments passed to throttler:tokenBucket"
+                    + "(windowTime,key,limit), required 3, but found " + attributeExpressionExecutors.length);
+        }
+        timeInMilliSeconds = getConstantLongValue(0, "window time");
+        if (attributeExpressionExecutors[1].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppValidationException("Invalid parameter type found for the 2nd argument of "
+                    + "throttler:tokenBucket, required " + Attribute.Type.STRING + ", but found "
+                    + attributeExpressionExecutors[1].getReturnType());
+        }
+        keyExpressionExecutor = attributeExpressionExecutors[1];
+        limit = getConstantLongValue(2, "limit");
+        if (timeInMilliSeconds <= 0 || limit <= 0) {
+            throw new SiddhiAppValidationException("Throttle token bucket window time and limit should be positive, "
+                    + "but found " + timeInMilliSeconds + " and " + limit);
+        }
+        tokensPerMilliSecond = (double) limit / timeInMilliSeconds;
+
+        List<Attribute> attributeList = new ArrayList<Attribute>();
+        attributeList.add(new Attribute(EVENT_COUNT, Attribute.Type.LONG));
+        attributeList.add(new Attribute(EXPIRY_TIME_STAMP, Attribute.Type.LONG));
+        return attributeList;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> complexEventChunk, Processor processor,
+            StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater) {
+        long currentTime = siddhiAppContext.getTimestampGenerator().currentTime();
+        purgeFullBuckets(currentTime);
+        while (complexEventChunk.hasNext()) {
+            StreamEvent streamEvent = complexEventChunk.next();
+            if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                complexEventChunk.remove();
+                continue;
+            }
+            String key = (String) keyExpressionExecutor.execute(streamEvent);
+            TokenBucket bucket = bucketMap.get(key);
+            if (bucket == null) {
+                bucket = bucketMap.computeIfAbsent(key, k -> new TokenBucket(limit, currentTime));
+            }
+            long expireEventTime = bucket.consume(currentTime);
+            if (expireEventTime > 0) {
+                complexEventPopulater.populateComplexEvent(streamEvent, new Object[] { limit, expireEventTime });
+            } else {
+                complexEventChunk.remove();
+            }
+        }
+        if (complexEventChunk.getFirst() != null) {
+            nextProcessor.process(complexEventChunk);
+        }
+    }
+
+    /**
+     * Drops buckets which have been refilled to the capacity, as they are no different to a new bucket. This is done
+     * at most once per window time.
+     */
+    private void purgeFullBuckets(long currentTime) {
+        if (currentTime - lastPurgeTime < timeInMilliSeconds) {
+            return;
+        }
+        lastPurgeTime = currentTime;
+        Iterator<TokenBucket> iterator = bucketMap.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isFull(currentTime)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private long getConstantLongValue(int index, String name) {
+        ExpressionExecutor executor = attributeExpressionExecutors[index];
+        if (!(executor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException("Throttle token bucket " + name + " needs to be a constant "
+                    + "attribute but found a dynamic attribute " + executor.getClass().getCanonicalName());
+        }
+        if (executor.getReturnType() == Attribute.Type.INT) {
+            return (Integer) ((ConstantExpressionExecutor) executor).getValue();
+        } else if (executor.getReturnType() == Attribute.Type.LONG) {
+            return (Long) ((ConstantExpressionExecutor) executor).getValue();
+        }
+        throw new SiddhiAppValidationException("Throttle token bucket " + name + " should be either int or long, "
+                + "but found " + executor.getReturnType());
+    }
+
+    public void start() {
+        //Do nothing
+    }
+
+    public void stop() {
+        //Do nothing
+    }
+
+    public Map<String, Object> currentState() {
+        Map<String, Object> state = new HashMap<String, Object>();
+        for (Map.Entry<String, TokenBucket> entry : bucketMap.entrySet()) {
+            state.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return state;
+    }
+
+    public void restoreState(Map<String, Object> state) {
+        ConcurrentHashMap<String, TokenBucket> restoredMap = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            double[] bucketState = (double[]) entry.getValue();
+            TokenBucket bucket = new TokenBucket(0, (long) bucketState[1]);
+            bucket.tokens = bucketState[0];
+            restoredMap.put(entry.getKey(), bucket);
+        }
+        bucketMap = restoredMap;
+    }
+
+    /**
+     * Available tokens of a single key.
+     */
+    private class TokenBucket {
+        private double tokens;
+        private long lastRefillTime;
+
+        TokenBucket(double tokens, long lastRefillTime) {
+            this.tokens = tokens;
+            this.lastRefillTime = lastRefillTime;
+        }
+
+        /**
+         * Takes a token from the bucket. An empty bucket is not drawn below zero, as events of keys which continue on
+         * throttle out keep arriving, and a debt built up by them would keep the key throttled long after the burst.
+         *
+         * @return the time the next token becomes available if the bucket got empty, 0 otherwise
+         */
+        synchronized long consume(long currentTime) {
+            refill(currentTime);
+            tokens = Math.max(0, tokens - 1);
+            if (tokens >= 1) {
+                return 0;
+            }
+            long timeToNextToken = (long) Math.ceil((1 - tokens) / tokensPerMilliSecond);
+            return currentTime + Math.max(1, timeToNextToken);
+        }
+
+        synchronized boolean isFull(long currentTime) {
+            refill(currentTime);
+            return tokens >= limit;
+        }
+
+        synchronized double[] snapshot() {
+            return new double[] { tokens, lastRefillTime };
+        }
+
+        private void refill(long currentTime) {
+            if (currentTime > lastRefillTime) {
+                tokens = Math.min(limit, tokens + (currentTime - lastRefillTime) * tokensPerMilliSecond);
+                lastRefillTime = currentTime;
+            }
+        }
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Conditions which block requests by API context, application, user, IP address, IP address range or named IP list.
+ * <p/>
+ * The values of the API, application and user conditions are kept in hashed sets and the IP addresses and ranges in
+ * an {@link IpPrefixTrie}, all of them making up an immutable snapshot which requests are checked against. Conditions
+ * are added and removed one by one, or a batch at a time when the conditions file is reloaded; either way a new
+ * snapshot is built, reusing the parts of the old one the change does not touch, and swapped in at once, so a request
+ * never sees half of an update. An IP list condition names a list of the {@link IpListRegistry} instead, which is
+ * looked up on each request, so that the list can be replaced without rebuilding the snapshot; a list which is not
+ * set yet contains no address. An inverted IP condition blocks the addresses outside of its address, range or list,
+ * and any request whose client address is unknown or not valid, since it cannot be told to be within the range. The
+ * gauges of the store are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class BlockConditionStore implements BlockConditionStoreMBean {
+
+    public static final String API = "api";
+    public static final String APPLICATION = "application";
+    public static final String USER = "user";
+    public static final String IP = "ip";
+    public static final String IP_RANGE = "iprange";
+    public static final String IP_LIST = "iplist";
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=BlockConditionStore";
+    // ids of the conditions read from the conditions file, which are replaced on each reload
+    private static final String FILE_CONDITION_PREFIX = "file:";
+    private static final String INVERT = "invert";
+    private static final Logger log = LoggerFactory.getLogger(BlockConditionStore.class);
+    private static final ThreadLocal<IpAddress> ipAddressHolder = ThreadLocal.withInitial(IpAddress::new);
+
+    private static BlockConditionStore instance;
+
+    private final IpListRegistry ipListRegistry;
+    private final Map<String, BlockCondition> conditionMap = new HashMap<>();
+    private final AtomicLong blockedCount = new AtomicLong();
+    private final AtomicLong reloadCount = new AtomicLong();
+    private volatile Snapshot snapshot;
+    // digest of the Authorization header of the admin service, null while the service is disabled
+    private volatile byte[] adminAuthorizationDigest;
+    private long lastModifiedTime;
+    private ScheduledExecutorService reloader;
+    private ScheduledFuture<?> reloadTask;
+
+    BlockConditionStore(IpListRegistry ipListRegistry) {
+        this.ipListRegistry = ipListRegistry;
+        this.snapshot = Snapshot.empty(ipListRegistry);
+    }
+
+    public static BlockConditionStore getInstance() {
+        synchronized (BlockConditionStore.class) {
+            if (instance == null) {
+                instance = new BlockConditionStore(IpListRegistry.getInstance());
+                instance.registerMBean();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Checks a request against the conditions. Empty API contexts, applications and user names are not checked. The
+     * IP address is always checked, so an empty or invalid address is blocked if there is any inverted IP condition.
+     *
+     * @param apiContext  context of the API, including its version
+     * @param application application, as the subscriber and the name of the application separated by a colon
+     * @param username    name of the user
+     * @param ipAddress   IPv4 or IPv6 address of the client, or an empty string if it is not known
+     * @return true if any of the conditions blocks the request
+     */
+    public boolean isBlocked(String apiContext, String application, String username, String ipAddress) {
+        Snapshot current = snapshot;
+        if (current.isEmpty()) {
+            return false;
+        }
+        boolean blocked = (!apiContext.isEmpty() && current.apiContexts.contains(apiContext))
+                || (!application.isEmpty() && current.applications.contains(application))
+                || (!username.isEmpty() && current.users.contains(username))
+                || current.isIpBlocked(ipAddress);
+        if (blocked) {
+            blockedCount.incrementAndGet();
+        }
+        return blocked;
+    }
+
+    /**
+     * @return true if there is any condition, so that requests need to be checked at all
+     */
+    public boolean hasConditions() {
+        return !snapshot.isEmpty();
+    }
+
+    /**
+     * Adds a condition, replacing the condition with the same id if there is one.
+     *
+     * @param id        id of the condition
+     * @param type      one of api, application, user, ip, iprange or iplist
+     * @param value     value the requests are blocked by; an IP condition takes an address or a CIDR block, an IP
+     *                  range condition takes the first and the last address separated by a hyphen and an IP list
+     *                  condition takes the name of the list
+     * @param invert    whether an IP condition blocks the addresses outside of its address, range or list instead
+     * @throws IllegalArgumentException if the condition is not valid, or its id is one the conditions file takes
+     */
+    public synchronized void add(String id, String type, String value, boolean invert) {
+        if (id.startsWith(FILE_CONDITION_PREFIX)) {
+            // the condition would be dropped on the next reload of the file
+            throw new IllegalArgumentException("Ids starting with " + FILE_CONDITION_PREFIX
+                    + " are reserved for the conditions of the conditions file");
+        }
+        BlockCondition condition = new BlockCondition(id, type, value, invert);
+        BlockCondition previous = conditionMap.put(id, condition);
+        Set<String> changedTypes = new HashSet<>();
+        changedTypes.add(condition.type);
+        if (previous != null) {
+            changedTypes.add(previous.type);
+        }
+        publish(changedTypes);
+    }
+
+    /**
+     * Sets the Authorization header the admin service which adds and removes conditions at runtime accepts.
+     *
+     * @param authorization expected header value, or an empty string to reject every request
+     */
+    public void setAdminAuthorization(String authorization) {
+        adminAuthorizationDigest = authorization.isEmpty() ? null : digest(authorization);
+    }
+
+    /**
+     * Checks the Authorization header of a request to the admin service. The digests of the headers are compared
+     * in constant time, so that the time taken does not tell how much of the header matched.
+     *
+     * @param authorization Authorization header of the request
+     * @return true if the header is the one set, false if it is not or no header is set
+     */
+    public boolean isAdminAuthorized(String authorization) {
+        byte[] expected = adminAuthorizationDigest;
+        return expected != null && MessageDigest.isEqual(expected, digest(authorization));
+    }
+
+    private static byte[] digest(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Removes a condition.
+     *
+     * @param id id of the condition
+     * @return false if there was no condition with the id
+     */
+    public synchronized boolean remove(String id) {
+        BlockCondition condition = conditionMap.remove(id);
+        if (condition == null) {
+            return false;
+        }
+        publish(Collections.singleton(condition.type));
+        return true;
+    }
+
+    /**
+     * Replaces the conditions read from the conditions file earlier with the conditions in the file. The conditions
+     * added one by one are kept.
+     *
+     * @param path path of the file
+     * @return number of conditions in the file
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if any of the conditions in the file is not valid, in which case the conditions
+     *                                  are left as they were
+     */
+    public synchronized int reload(Path path) throws IOException {
+        List<BlockCondition> conditions = new ArrayList<>();
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                conditions.add(parse(line));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid block condition at line " + (i + 1) + " of " + path
+                        + ": " + e.getMessage(), e);
+            }
+        }
+        Set<String> changedTypes = new HashSet<>();
+        conditionMap.values().removeIf(condition -> {
+            if (condition.id.startsWith(FILE_CONDITION_PREFIX)) {
+                changedTypes.add(condition.type);
+                return true;
+            }
+            return false;
+        });
+        for (BlockCondition condition : conditions) {
+            conditionMap.put(condition.id, condition);
+            changedTypes.add(condition.type);
+        }
+        publish(changedTypes);
+        reloadCount.incrementAndGet();
+        return conditions.size();
+    }
+
+    /**
+     * Parses a line of the conditions file, made of the type and the value of the condition separated by white
+     * space, followed by {@code invert} for an inverted IP condition.
+     */
+    private static BlockCondition parse(String line) {
+        String[] parts = line.split("\\s+", 2);
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Expected the type and the value of the condition");
+        }
+        String type = parts[0].toLowerCase(Locale.ENGLISH);
+        String value = parts[1];
+        boolean invert = false;
+        if (IP.equals(type) || IP_RANGE.equals(type) || IP_LIST.equals(type)) {
+            String[] valueParts = value.split("\\s+");
+            if (valueParts.length > 2 || (valueParts.length == 2 && !INVERT.equalsIgnoreCase(valueParts[1]))) {
+                throw new IllegalArgumentException("Unexpected " + value.substring(valueParts[0].length()).trim());
+            }
+            value = valueParts[0];
+            invert = valueParts.length == 2;
+        }
+        return new BlockCondition(FILE_CONDITION_PREFIX + type + " " + value + (invert ? " " + INVERT : ""), type,
+                value, invert);
+    }
+
+    /**
+     * Builds and swaps in a new snapshot, rebuilding the parts of the given condition types.
+     */
+    private void publish(Set<String> changedTypes) {
+        if (conditionMap.isEmpty()) {
+            snapshot = Snapshot.empty(ipListRegistry);
+            return;
+        }
+        Snapshot current = snapshot;
+        Set<String> apiContexts = changedTypes.contains(API) ? collect(API) : current.apiContexts;
+        Set<String> applications = changedTypes.contains(APPLICATION) ? collect(APPLICATION) : current.applications;
+        Set<String> users = changedTypes.contains(USER) ? collect(USER) : current.users;
+        IpPrefixTrie blockedIps = current.blockedIps;
+        IpPrefixTrie[] allowedIps = current.allowedIps;
+        if (changedTypes.contains(IP) || changedTypes.contains(IP_RANGE)) {
+            blockedIps = new IpPrefixTrie();
+            List<IpPrefixTrie> allowedIpList = new ArrayList<>();
+            for (BlockCondition condition : conditionMap.values()) {
+                if (condition.isIpCondition()) {
+                    if (condition.invert) {
+                        allowedIpList.add(condition.toTrie(new IpPrefixTrie()));
+                    } else {
+                        condition.toTrie(blockedIps);
+                    }
+                }
+            }
+            allowedIps = allowedIpList.toArray(new IpPrefixTrie[0]);
+        }
+        String[] blockedLists = current.blockedLists;
+        String[] allowedLists = current.allowedLists;
+        if (changedTypes.contains(IP_LIST)) {
+            Set<String> blockedListSet = new HashSet<>();
+            Set<String> allowedListSet = new HashSet<>();
+            for (BlockCondition condition : conditionMap.values()) {
+                if (IP_LIST.equals(condition.type)) {
+                    (condition.invert ? allowedListSet : blockedListSet).add(condition.value);
+                }
+            }
+            blockedLists = blockedListSet.toArray(new String[0]);
+            allowedLists = allowedListSet.toArray(new String[0]);
+        }
+        snapshot = new Snapshot(ipListRegistry, apiContexts, applications, users, blockedIps, allowedIps,
+                blockedLists, allowedLists);
+    }
+
+    private Set<String> collect(String type) {
+        Set<String> values = new HashSet<>();
+        for (BlockCondition condition : conditionMap.values()) {
+            if (condition.type.equals(type)) {
+                values.add(condition.value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * (Re)schedules reloading the conditions file whenever it is modified.
+     *
+     * @param path     path of the file
+     * @param interval interval in milliseconds at which the file is checked for modifications
+     */
+    public synchronized void startReloader(Path path, long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Reload interval of the block conditions should be positive, "
+                    + "but found " + interval);
+        }
+        if (reloader == null) {
+            reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "block-condition-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+        }
+        lastModifiedTime = 0;
+        reloadTask = reloader.scheduleWithFixedDelay(() -> reloadIfModified(path), 0, interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReloader() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+            reloadTask = null;
+        }
+    }
+
+    synchronized void reloadIfModified(Path path) {
+        try {
+            long modifiedTime = Files.getLastModifiedTime(path).toMillis();
+            if (modifiedTime == lastModifiedTime) {
+                return;
+            }
+            lastModifiedTime = modifiedTime;
+            int count = reload(path);
+            log.info("Loaded " + count + " block conditions from " + path);
+        } catch (NoSuchFileException e) {
+            log.debug("Block conditions file " + path + " does not exist");
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Could not load the block conditions from " + path + ", keeping the earlier conditions", e);
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the block condition store MBean", e);
+        }
+    }
+
+    @Override
+    public synchronized int getConditionCount() {
+        return conditionMap.size();
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return blockedCount.get();
+    }
+
+    @Override
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * A single block condition.
+     */
+    private static final class BlockCondition {
+        private final String id;
+        private final String type;
+        private final String value;
+        private final boolean invert;
+
+        BlockCondition(String id, String type, String value, boolean invert) {
+            if (id == null || id.isEmpty() || value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Block condition should have an id and a value");
+            }
+            if (!API.equals(type) && !APPLICATION.equals(type) && !USER.equals(type) && !IP.equals(type)
+                    && !IP_RANGE.equals(type) && !IP_LIST.equals(type)) {
+                throw new IllegalArgumentException("Unknown block condition type: " + type);
+            }
+            if (invert && !IP.equals(type) && !IP_RANGE.equals(type) && !IP_LIST.equals(type)) {
+                throw new IllegalArgumentException("Only IP conditions can be inverted");
+            }
+            this.id = id;
+            this.type = type;
+            this.value = value;
+            this.invert = invert;
+            if (isIpCondition()) {
+                // validates the address or range
+                toTrie(new IpPrefixTrie());
+            }
+        }
+
+        boolean isIpCondition() {
+            return IP.equals(type) || IP_RANGE.equals(type);
+        }
+
+        IpPrefixTrie toTrie(IpPrefixTrie trie) {
+            if (IP.equals(type)) {
+                trie.add(value);
+            } else {
+                int separator = value.indexOf('-');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Expected the first and the last address of the IP range "
+                            + "separated by a hyphen, but found " + value);
+                }
+                trie.addRange(value.substring(0, separator).trim(), value.substring(separator + 1).trim());
+            }
+            return trie;
+        }
+    }
+
+    /**
+     * The conditions as checked by requests, never modified once published.
+     */
+    private static final class Snapshot {
+        private final IpListRegistry ipListRegistry;
+        private final Set<String> apiContexts;
+        private final Set<String> applications;
+        private final Set<String> users;
+        private final IpPrefixTrie blockedIps;
+        // ranges of the inverted IP conditions, each of which blocks the addresses outside of it
+        private final IpPrefixTrie[] allowedIps;
+        // names of the IP lists of the IP list conditions, looked up in the registry on each request
+        private final String[] blockedLists;
+        private final String[] allowedLists;
+        private final boolean ipConditions;
+
+        Snapshot(IpListRegistry ipListRegistry, Set<String> apiContexts, Set<String> applications, Set<String> users,
+                 IpPrefixTrie blockedIps, IpPrefixTrie[] allowedIps, String[] blockedLists, String[] allowedLists) {
+            this.ipListRegistry = ipListRegistry;
+            this.apiContexts = apiContexts;
+            this.applications = applications;
+            this.users = users;
+            this.blockedIps = blockedIps;
+            this.allowedIps = allowedIps;
+            this.blockedLists = blockedLists;
+            this.allowedLists = allowedLists;
+            this.ipConditions = blockedIps.size() > 0 || allowedIps.length > 0 || blockedLists.length > 0
+                    || allowedLists.length > 0;
+        }
+
+        static Snapshot empty(IpListRegistry ipListRegistry) {
+            return new Snapshot(ipListRegistry, Collections.emptySet(), Collections.emptySet(),
+                    Collections.emptySet(), new IpPrefixTrie(), new IpPrefixTrie[0], new String[0], new String[0]);
+        }
+
+        boolean isEmpty() {
+            return apiContexts.isEmpty() && applications.isEmpty() && users.isEmpty() && !ipConditions;
+        }
+
+        /**
+         * Addresses which cannot be parsed are not blocked, as it is not known which range they would fall into.
+         */
+        boolean isIpBlocked(String ipAddress) {
+            if (!ipConditions) {
+                return false;
+            }
+            IpAddress address = ipAddressHolder.get();
+            if (!address.parse(ipAddress)) {
+                // an unknown address cannot be told to be within the ranges of the inverted conditions
+                return allowedIps.length > 0 || allowedLists.length > 0;
+            }
+            if (blockedIps.contains(address)) {
+                return true;
+            }
+            for (IpPrefixTrie allowed : allowedIps) {
+                if (!allowed.contains(address)) {
+                    return true;
+                }
+            }
+            for (String listName : blockedLists) {
+                if (ipListRegistry.contains(listName, address)) {
+                    return true;
+                }
+            }
+            for (String listName : allowedLists) {
+                if (!ipListRegistry.contains(listName, address)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerina.gateway.throttle;
+
+/**
+ * Resolves the client address of a request, which the IP block conditions, the throttle streams and analytics use.
+ * <p/>
+ * The address the request was received from is the client address, unless it is one of the trusted proxies. Only
+ * then is the X-Forwarded-For header read, from its last entry, which the proxy appended, back to the first entry
+ * which is not a trusted proxy, so that the entries a client puts in the header itself are never taken for its
+ * address. An entry which is not a valid address leaves the client address unknown.
+ */
+public class ClientIpResolver {
+
+    private static final ThreadLocal<IpAddress> ipAddressHolder = ThreadLocal.withInitial(IpAddress::new);
+
+    private static volatile ClientIpResolver instance = new ClientIpResolver(new IpPrefixTrie());
+
+    private final IpPrefixTrie trustedProxies;
+
+    ClientIpResolver(IpPrefixTrie trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    /**
+     * Sets the trusted proxies of the gateway.
+     *
+     * @param trustedProxies comma separated addresses or CIDR blocks of the proxies, none if empty
+     * @throws IllegalArgumentException if any of the blocks is not valid
+     */
+    public static synchronized void init(String trustedProxies) {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        for (String cidr : trustedProxies.split(",")) {
+            if (!cidr.trim().isEmpty()) {
+                trie.add(cidr.trim());
+            }
+        }
+        instance = new ClientIpResolver(trie);
+    }
+
+    public static ClientIpResolver getInstance() {
+        return instance;
+    }
+
+    /**
+     * Resolves the client address of a request.
+     *
+     * @param remoteAddress address the request was received from
+     * @param forwardedFor  X-Forwarded-For header of the request, or an empty string if there is none
+     * @return the client address, or an empty string if it is not known
+     */
+    public String resolve(String remoteAddress, String forwardedFor) {
+        IpAddress address = ipAddressHolder.get();
+        if (forwardedFor.isEmpty() || trustedProxies.size() == 0 || !address.parse(remoteAddress)
+                || !trustedProxies.contains(address)) {
+            return remoteAddress;
+        }
+        String clientIp = remoteAddress;
+        int end = forwardedFor.length();
+        while (end >= 0) {
+            int start = forwardedFor.lastIndexOf(',', end - 1) + 1;
+            String entry = forwardedFor.substring(start, end).trim();
+            if (!address.parse(entry)) {
+                return "";
+            }
+            clientIp = entry;
+            if (!trustedProxies.contains(address)) {
+                break;
+            }
+            end = start - 1;
+        }
+        // the first entry is the client if all of the others are trusted proxies
+        return clientIp;
+    }
+}
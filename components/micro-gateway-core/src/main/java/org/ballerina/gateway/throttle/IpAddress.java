@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+/**
+ * An IPv4 or IPv6 address as a 128 bit number, parsed without allocating.
+ * <p/>
+ * IPv4 addresses are kept as IPv4-mapped IPv6 addresses, {@code ::ffff:a.b.c.d}, so that both kinds of addresses are
+ * matched by the same {@link IpPrefixTrie}. An instance is meant to be reused for parsing one address after another by
+ * a single thread.
+ */
+public final class IpAddress {
+
+    static final long IPV4_MAPPED_PREFIX = 0xffff00000000L;
+    private static final int GROUP_COUNT = 8;
+
+    private final int[] groups = new int[GROUP_COUNT];
+    private long high;
+    private long low;
+
+    /**
+     * Parses an IPv4 address in dotted decimal notation or an IPv6 address in the notations of RFC 4291, including
+     * compressed zeros and a trailing IPv4 address. A zone id of an IPv6 address is ignored.
+     *
+     * @param address address to parse
+     * @return true if the address is valid, in which case this instance holds it
+     */
+    public boolean parse(CharSequence address) {
+        int end = address.length();
+        boolean ipv6 = false;
+        for (int i = 0; i < end; i++) {
+            char c = address.charAt(i);
+            if (c == ':') {
+                ipv6 = true;
+            } else if (c == '%' && ipv6) {
+                end = i;
+                break;
+            }
+        }
+        if (!ipv6) {
+            long ipv4 = parseIpv4(address, 0, end);
+            if (ipv4 < 0) {
+                return false;
+            }
+            high = 0;
+            low = IPV4_MAPPED_PREFIX | ipv4;
+            return true;
+        }
+        return parseIpv6(address, end);
+    }
+
+    /**
+     * @return the first 64 bits of the address
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return the last 64 bits of the address
+     */
+    public long getLow() {
+        return low;
+    }
+
+    public boolean isIpv4() {
+        return high == 0 && (low & 0xffffffff00000000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    /**
+     * Parses an IPv4 address in dotted decimal notation.
+     *
+     * @param address address to parse
+     * @return the address as an unsigned 32 bit number, or -1 if it is not a valid IPv4 address
+     */
+    public static long parseIpv4(CharSequence address) {
+        return parseIpv4(address, 0, address.length());
+    }
+
+    static long parseIpv4(CharSequence address, int start, int end) {
+        long result = 0;
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && octets < 3) {
+                result = result << 8 | value;
+                octets++;
+                value = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || octets != 3) {
+            return -1;
+        }
+        return result << 8 | value;
+    }
+
+    private boolean parseIpv6(CharSequence address, int end) {
+        int count = 0;
+        // index of the group the compressed zeros stand before, -1 if the zeros are not compressed
+        int compressAt = -1;
+        int i = 0;
+        if (end >= 2 && address.charAt(0) == ':' && address.charAt(1) == ':') {
+            compressAt = 0;
+            i = 2;
+        }
+        while (i < end) {
+            int groupStart = i;
+            int value = 0;
+            int digits = 0;
+            int digit;
+            while (i < end && (digit = hexDigit(address.charAt(i))) >= 0) {
+                if (++digits > 4) {
+                    return false;
+                }
+                value = value << 4 | digit;
+                i++;
+            }
+            if (i < end && address.charAt(i) == '.') {
+                // a trailing IPv4 address takes the last two groups
+                long ipv4 = parseIpv4(address, groupStart, end);
+                if (ipv4 < 0 || count > GROUP_COUNT - 2) {
+                    return false;
+                }
+                groups[count++] = (int) (ipv4 >>> 16);
+                groups[count++] = (int) (ipv4 & 0xffff);
+                break;
+            }
+            if (digits == 0 || count == GROUP_COUNT) {
+                return false;
+            }
+            groups[count++] = value;
+            if (i == end) {
+                break;
+            }
+            if (address.charAt(i++) != ':' || i == end) {
+                return false;
+            }
+            if (address.charAt(i) == ':') {
+                if (compressAt >= 0) {
+                    return false;
+                }
+                compressAt = count;
+                i++;
+            }
+        }
+        if (compressAt < 0) {
+            if (count != GROUP_COUNT) {
+                return false;
+            }
+        } else {
+            // compressed zeros stand for at least one group
+            if (count == GROUP_COUNT) {
+                return false;
+            }
+            int shift = GROUP_COUNT - count;
+            for (int j = count - 1; j >= compressAt; j--) {
+                groups[j + shift] = groups[j];
+            }
+            for (int j = compressAt; j < compressAt + shift; j++) {
+                groups[j] = 0;
+            }
+        }
+        high = (long) groups[0] << 48 | (long) groups[1] << 32 | (long) groups[2] << 16 | groups[3];
+        low = (long) groups[4] << 48 | (long) groups[5] << 32 | (long) groups[6] << 16 | groups[7];
+        return true;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
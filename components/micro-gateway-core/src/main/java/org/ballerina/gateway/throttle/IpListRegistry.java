@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named lists of CIDR blocks, such as the IP block and allow lists, checked against the client address of requests.
+ * A list is built apart and swapped in as a whole, so requests checked while a list is updated see either the old or
+ * the new list. The lists are matched by the {@code iplist} conditions of the {@link BlockConditionStore}, which look
+ * them up by name on each request, so a list can be updated without touching the conditions.
+ */
+public class IpListRegistry {
+
+    private static IpListRegistry instance;
+    private static final ThreadLocal<IpAddress> ipAddressHolder = ThreadLocal.withInitial(IpAddress::new);
+
+    private final ConcurrentHashMap<String, IpPrefixTrie> listMap = new ConcurrentHashMap<>();
+
+    IpListRegistry() {
+    }
+
+    public static IpListRegistry getInstance() {
+        synchronized (IpListRegistry.class) {
+            if (instance == null) {
+                instance = new IpListRegistry();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces a list.
+     *
+     * @param listName name of the list
+     * @param cidrs    CIDR blocks or single addresses of the list, empty entries are skipped
+     * @throws IllegalArgumentException if any of the blocks is not valid, in which case the list is left as it was
+     */
+    public void setList(String listName, List<String> cidrs) {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        for (String cidr : cidrs) {
+            String block = cidr.trim();
+            if (!block.isEmpty()) {
+                trie.add(block);
+            }
+        }
+        listMap.put(listName, trie);
+    }
+
+    public void removeList(String listName) {
+        listMap.remove(listName);
+    }
+
+    /**
+     * Checks whether an address falls within a list.
+     *
+     * @param listName  name of the list
+     * @param ipAddress IPv4 or IPv6 address
+     * @return true if the list contains the address, false if it does not, if there is no such list or if the address
+     * is not valid
+     */
+    public boolean contains(String listName, String ipAddress) {
+        IpPrefixTrie trie = listMap.get(listName);
+        if (trie == null) {
+            return false;
+        }
+        IpAddress address = ipAddressHolder.get();
+        return address.parse(ipAddress) && trie.contains(address);
+    }
+
+    /**
+     * Checks whether a parsed address falls within a list.
+     *
+     * @param listName name of the list
+     * @param address  parsed address
+     * @return true if the list contains the address, false if it does not or if there is no such list
+     */
+    public boolean contains(String listName, IpAddress address) {
+        IpPrefixTrie trie = listMap.get(listName);
+        return trie != null && trie.contains(address);
+    }
+
+    /**
+     * @return number of blocks in a list, or -1 if there is no such list
+     */
+    public int getListSize(String listName) {
+        IpPrefixTrie trie = listMap.get(listName);
+        return trie == null ? -1 : trie.size();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import java.math.BigInteger;
+
+/**
+ * Set of IPv4 and IPv6 CIDR blocks, held in a path compressed binary trie over the 128 bits of the addresses.
+ * <p/>
+ * A node is kept only where blocks branch off, so checking an address takes at most one step per block on its path
+ * and does not depend on the prefix lengths. IPv4 blocks are kept as IPv4-mapped IPv6 blocks, see {@link IpAddress}.
+ * Blocks are added while the trie is built; a trie which has been handed over to other threads is only read, and is
+ * replaced as a whole to be changed.
+ */
+public final class IpPrefixTrie {
+
+    private static final int ADDRESS_LENGTH = 128;
+    private static final int IPV4_MAPPED_LENGTH = 96;
+    private static final BigInteger UNSIGNED_LONG_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    private static final BigInteger ADDRESS_MASK = BigInteger.ONE.shiftLeft(ADDRESS_LENGTH).subtract(BigInteger.ONE);
+
+    private final Node root = new Node(0, 0, 0);
+    private int size;
+
+    /**
+     * Adds a CIDR block.
+     *
+     * @param cidr IPv4 or IPv6 block such as {@code 10.0.0.0/8} or {@code 2001:db8::/32}, or a single address
+     * @throws IllegalArgumentException if the block is not valid
+     */
+    public void add(String cidr) {
+        int slash = cidr.indexOf('/');
+        String address = slash < 0 ? cidr : cidr.substring(0, slash);
+        IpAddress ipAddress = new IpAddress();
+        if (!ipAddress.parse(address)) {
+            throw new IllegalArgumentException("Invalid IP address in CIDR block: " + cidr);
+        }
+        boolean ipv4 = address.indexOf(':') < 0;
+        int maxLength = ipv4 ? ADDRESS_LENGTH - IPV4_MAPPED_LENGTH : ADDRESS_LENGTH;
+        int length = maxLength;
+        if (slash >= 0) {
+            try {
+                length = Integer.parseInt(cidr.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length in CIDR block: " + cidr, e);
+            }
+            if (length < 0 || length > maxLength) {
+                throw new IllegalArgumentException("Invalid prefix length in CIDR block: " + cidr);
+            }
+        }
+        add(ipAddress.getHigh(), ipAddress.getLow(), ipv4 ? IPV4_MAPPED_LENGTH + length : length);
+    }
+
+    /**
+     * Adds a range of addresses, as the fewest CIDR blocks covering it.
+     *
+     * @param start first address of the range
+     * @param end   last address of the range, of the same kind as the first
+     * @throws IllegalArgumentException if the addresses are not valid or the range is empty
+     */
+    public void addRange(String start, String end) {
+        IpAddress ipAddress = new IpAddress();
+        if (!ipAddress.parse(start)) {
+            throw new IllegalArgumentException("Invalid first IP address of range: " + start);
+        }
+        boolean ipv4 = ipAddress.isIpv4();
+        BigInteger first = toBigInteger(ipAddress.getHigh(), ipAddress.getLow());
+        if (!ipAddress.parse(end) || ipAddress.isIpv4() != ipv4) {
+            throw new IllegalArgumentException("Invalid last IP address of range: " + end);
+        }
+        BigInteger last = toBigInteger(ipAddress.getHigh(), ipAddress.getLow());
+        if (first.compareTo(last) > 0) {
+            throw new IllegalArgumentException("Empty IP address range: " + start + "-" + end);
+        }
+        while (first.compareTo(last) <= 0) {
+            // the largest block starting at the first address which does not go past the last address
+            int alignment = first.signum() == 0 ? ADDRESS_LENGTH : first.getLowestSetBit();
+            int bits = Math.min(alignment, last.subtract(first).add(BigInteger.ONE).bitLength() - 1);
+            add(first.shiftRight(64).longValue(), first.longValue(), ADDRESS_LENGTH - bits);
+            first = first.add(BigInteger.ONE.shiftLeft(bits));
+        }
+    }
+
+    /**
+     * Adds a block of addresses sharing their first bits.
+     *
+     * @param high   first 64 bits of the block
+     * @param low    last 64 bits of the block
+     * @param length prefix length of the block, from 0 to 128
+     */
+    public void add(long high, long low, int length) {
+        high &= mask(length);
+        low &= mask(length - 64);
+        Node node = root;
+        while (true) {
+            if (node.length == length) {
+                if (!node.block) {
+                    node.block = true;
+                    size++;
+                }
+                return;
+            }
+            int bit = bit(high, low, node.length);
+            Node child = node.getChild(bit);
+            if (child == null) {
+                node.setChild(bit, new Node(high, low, length, true));
+                size++;
+                return;
+            }
+            int common = commonLength(child, high, low, Math.min(child.length, length));
+            if (common == child.length) {
+                node = child;
+                continue;
+            }
+            // the new block branches off within the compressed path of the child
+            Node split = new Node(high & mask(common), low & mask(common - 64), common);
+            split.setChild(bit(child.high, child.low, common), child);
+            if (common == length) {
+                split.block = true;
+            } else {
+                split.setChild(bit(high, low, common), new Node(high, low, length, true));
+            }
+            node.setChild(bit, split);
+            size++;
+            return;
+        }
+    }
+
+    /**
+     * Checks whether an address falls within any of the blocks.
+     *
+     * @param high first 64 bits of the address
+     * @param low  last 64 bits of the address
+     * @return true if a block contains the address
+     */
+    public boolean contains(long high, long low) {
+        Node node = root;
+        while (node != null) {
+            if ((high & mask(node.length)) != node.high || (low & mask(node.length - 64)) != node.low) {
+                return false;
+            }
+            if (node.block) {
+                return true;
+            }
+            if (node.length == ADDRESS_LENGTH) {
+                return false;
+            }
+            node = node.getChild(bit(high, low, node.length));
+        }
+        return false;
+    }
+
+    public boolean contains(IpAddress address) {
+        return contains(address.getHigh(), address.getLow());
+    }
+
+    /**
+     * @return number of blocks added, not counting the ones added more than once
+     */
+    public int size() {
+        return size;
+    }
+
+    private static BigInteger toBigInteger(long high, long low) {
+        return BigInteger.valueOf(high).shiftLeft(64).or(BigInteger.valueOf(low).and(UNSIGNED_LONG_MASK))
+                .and(ADDRESS_MASK);
+    }
+
+    /**
+     * @return mask of the first {@code length} bits of a 64 bit half of an address
+     */
+    private static long mask(int length) {
+        if (length <= 0) {
+            return 0;
+        }
+        return length >= 64 ? -1L : -1L << (64 - length);
+    }
+
+    private static int bit(long high, long low, int index) {
+        return index < 64 ? (int) (high >>> (63 - index)) & 1 : (int) (low >>> (127 - index)) & 1;
+    }
+
+    private static int commonLength(Node node, long high, long low, int maxLength) {
+        long highDiff = node.high ^ high;
+        int common = highDiff != 0 ? Long.numberOfLeadingZeros(highDiff)
+                : 64 + Long.numberOfLeadingZeros(node.low ^ low);
+        return Math.min(common, maxLength);
+    }
+
+    /**
+     * A node of the trie, standing for the first {@code length} bits of its addresses.
+     */
+    private static final class Node {
+        private final long high;
+        private final long low;
+        private final int length;
+        private boolean block;
+        private Node zero;
+        private Node one;
+
+        Node(long high, long low, int length) {
+            this(high, low, length, false);
+        }
+
+        Node(long high, long low, int length, boolean block) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+            this.block = block;
+        }
+
+        Node getChild(int bit) {
+            return bit == 0 ? zero : one;
+        }
+
+        void setChild(int bit, Node child) {
+            if (bit == 0) {
+                zero = child;
+            } else {
+                one = child;
+            }
+        }
+    }
+}
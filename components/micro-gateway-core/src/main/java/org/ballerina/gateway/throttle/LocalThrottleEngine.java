@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Holds the throttle policies which are evaluated on the request thread instead of the Siddhi pipeline. Only plain
+ * request count policies without conditions are registered here; all other policies stay with the generated
+ * stream functions.
+ */
+public class LocalThrottleEngine {
+
+    private static LocalThrottleEngine instance;
+    private final ConcurrentHashMap<String, LocalThrottlePolicy> policyMap = new ConcurrentHashMap<>();
+
+    LocalThrottleEngine() {
+    }
+
+    public static LocalThrottleEngine getInstance() {
+        synchronized (LocalThrottleEngine.class) {
+            if (instance == null) {
+                instance = new LocalThrottleEngine();
+            }
+        }
+        return instance;
+    }
+
+    public void registerPolicy(String policyType, LocalThrottlePolicy policy) {
+        policyMap.put(getPolicyKey(policyType, policy.getName()), policy);
+    }
+
+    /**
+     * Returns the local policy of the given type and name.
+     *
+     * @param policyType type of the policy, ex: application or subscription
+     * @param policyName name of the policy
+     * @return the policy, or null if the policy is not evaluated locally
+     */
+    public LocalThrottlePolicy getPolicy(String policyType, String policyName) {
+        return policyMap.get(getPolicyKey(policyType, policyName));
+    }
+
+    public void removePolicy(String policyType, String policyName) {
+        policyMap.remove(getPolicyKey(policyType, policyName));
+    }
+
+    /**
+     * Performs an action for each of the policies.
+     *
+     * @param action action taking the type and the policy
+     */
+    public void forEachPolicy(BiConsumer<String, LocalThrottlePolicy> action) {
+        for (Map.Entry<String, LocalThrottlePolicy> entry : policyMap.entrySet()) {
+            String policyKey = entry.getKey();
+            action.accept(policyKey.substring(0, policyKey.indexOf(':')), entry.getValue());
+        }
+    }
+
+    public void clear() {
+        policyMap.clear();
+    }
+
+    private static String getPolicyKey(String policyType, String policyName) {
+        return policyType + ":" + policyName;
+    }
+}
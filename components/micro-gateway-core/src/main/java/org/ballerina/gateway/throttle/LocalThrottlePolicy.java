@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Request count policy evaluated in process, counting the requests of each throttle key in fixed windows aligned
+ * to the epoch, the same way throttler:counterBatch does.
+ * <p/>
+ * When the gateway runs as one of several replicas, the requests counted by the other replicas within the current
+ * window are added as remote counts, see {@link ThrottleCounterSync}, and count towards the request count of the
+ * policy along with the requests counted here.
+ */
+public class LocalThrottlePolicy {
+
+    private final String name;
+    private final long requestCount;
+    private final long unitTime;
+    private final boolean stopOnQuotaReach;
+    private final AtomicLong windowEndTime = new AtomicLong(-1);
+    private final ConcurrentHashMap<String, AtomicReference<WindowCounter>> counterMap = new ConcurrentHashMap<>();
+
+    public LocalThrottlePolicy(String name, long requestCount, long unitTime, boolean stopOnQuotaReach) {
+        if (requestCount <= 0 || unitTime <= 0) {
+            throw new IllegalArgumentException("Request count and unit time of throttle policy " + name
+                    + " should be positive, but found " + requestCount + " and " + unitTime);
+        }
+        this.name = name;
+        this.requestCount = requestCount;
+        this.unitTime = unitTime;
+        this.stopOnQuotaReach = stopOnQuotaReach;
+    }
+
+    /**
+     * Checks whether the key has used up the request count of the current window.
+     *
+     * @param throttleKey throttle key of the request
+     * @param currentTime current time in milliseconds
+     * @return true if the request should be throttled
+     */
+    public boolean isThrottled(String throttleKey, long currentTime) {
+        long windowEnd = currentWindowEnd(currentTime);
+        AtomicReference<WindowCounter> counterRef = counterMap.get(throttleKey);
+        if (counterRef == null) {
+            return false;
+        }
+        WindowCounter counter = counterRef.get();
+        return counter.windowEndTime >= windowEnd && counter.getTotalCount() >= requestCount;
+    }
+
+    /**
+     * Counts a request of the key against the current window.
+     *
+     * @param throttleKey throttle key of the request
+     * @param currentTime current time in milliseconds
+     * @return the number of requests of the key within the current window, including the remote counts
+     */
+    public long increment(String throttleKey, long currentTime) {
+        WindowCounter counter = getCounter(throttleKey, currentWindowEnd(currentTime));
+        return counter.count.incrementAndGet() + counter.remoteCount.get();
+    }
+
+    /**
+     * Adds the requests of the key counted by another replica. Counts of any window but the current one are dropped,
+     * as are counts which are not positive or exceed the request count of the policy, which a replica never sends.
+     *
+     * @param throttleKey   throttle key of the requests
+     * @param windowEndTime end time of the window the requests were counted in
+     * @param count         number of requests
+     * @param currentTime   current time in milliseconds
+     * @return false if the count was dropped
+     */
+    public boolean addRemoteCount(String throttleKey, long windowEndTime, long count, long currentTime) {
+        if (count <= 0 || count > requestCount) {
+            return false;
+        }
+        long windowEnd = currentWindowEnd(currentTime);
+        if (windowEndTime != windowEnd) {
+            return false;
+        }
+        getCounter(throttleKey, windowEnd).remoteCount.addAndGet(count);
+        return true;
+    }
+
+    /**
+     * Hands over the number of requests counted here within the current window since the last call, for each key
+     * which has been counted since. A count is handed over up to the request count of the policy, as requests
+     * beyond it are throttled anyway. Only a single thread may collect the counts of a policy.
+     *
+     * @param currentTime current time in milliseconds
+     * @param consumer    consumer of the counts
+     */
+    public void collectCounts(long currentTime, CountConsumer consumer) {
+        long windowEnd = currentWindowEnd(currentTime);
+        for (Map.Entry<String, AtomicReference<WindowCounter>> entry : counterMap.entrySet()) {
+            WindowCounter counter = entry.getValue().get();
+            if (counter.windowEndTime != windowEnd) {
+                continue;
+            }
+            long count = counter.count.get();
+            long delta = count - counter.collectedCount;
+            if (delta > 0) {
+                counter.collectedCount = count;
+                consumer.accept(entry.getKey(), windowEnd, Math.min(delta, requestCount));
+            }
+        }
+    }
+
+    private WindowCounter getCounter(String throttleKey, long windowEnd) {
+        AtomicReference<WindowCounter> counterRef = counterMap.get(throttleKey);
+        if (counterRef == null) {
+            counterRef = counterMap.computeIfAbsent(throttleKey,
+                    k -> new AtomicReference<>(new WindowCounter(windowEnd)));
+        }
+        while (true) {
+            WindowCounter counter = counterRef.get();
+            if (counter.windowEndTime >= windowEnd) {
+                return counter;
+            }
+            counterRef.compareAndSet(counter, new WindowCounter(windowEnd));
+        }
+    }
+
+    /**
+     * Returns the time the current window of the policy ends, which is when throttled keys are released.
+     *
+     * @param currentTime current time in milliseconds
+     * @return end time of the current window
+     */
+    public long currentWindowEnd(long currentTime) {
+        long windowEnd = windowEndTime.get();
+        if (currentTime < windowEnd) {
+            return windowEnd;
+        }
+        long newWindowEnd = currentTime + (unitTime - currentTime % unitTime);
+        if (windowEndTime.compareAndSet(windowEnd, newWindowEnd)) {
+            Iterator<AtomicReference<WindowCounter>> iterator = counterMap.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().get().windowEndTime < newWindowEnd) {
+                    iterator.remove();
+                }
+            }
+        }
+        return windowEndTime.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getUnitTime() {
+        return unitTime;
+    }
+
+    public boolean isStopOnQuotaReach() {
+        return stopOnQuotaReach;
+    }
+
+    public int getKeyCount() {
+        return counterMap.size();
+    }
+
+    /**
+     * Consumer of the request counts collected from a policy.
+     */
+    public interface CountConsumer {
+
+        void accept(String throttleKey, long windowEndTime, long count);
+    }
+
+    /**
+     * Request count of a single key within the window ending at {@code windowEndTime}.
+     */
+    private static class WindowCounter {
+        private final long windowEndTime;
+        private final AtomicLong count = new AtomicLong();
+        // requests counted by the other replicas
+        private final AtomicLong remoteCount = new AtomicLong();
+        // part of the count already collected, only accessed by the collecting thread
+        private long collectedCount;
+
+        WindowCounter(long windowEndTime) {
+            this.windowEndTime = windowEndTime;
+        }
+
+        long getTotalCount() {
+            return count.get() + remoteCount.get();
+        }
+    }
+}
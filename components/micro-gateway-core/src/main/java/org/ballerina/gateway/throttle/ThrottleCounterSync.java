@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.ballerina.gateway.throttle.ThrottleKeyRegistry.ThrottleKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Synchronizes the counts of the policies evaluated in process across the replicas of a gateway, so that a policy
+ * allows its request count over all the replicas rather than on each of them.
+ * <p/>
+ * At each sync interval the requests counted since the previous sync are sent to the other replicas over a
+ * {@link ThrottleSyncTransport}, in a compact binary format signed with an HMAC over a secret shared by the replicas.
+ * Messages which do not carry a valid signature are dropped. The counts received from the other replicas are added to
+ * the remote counts of the policies. Throttle keys are sent by name, since their ids are local to each replica, and
+ * windows by their end time, so the clocks of the replicas need to be synchronized; counts arriving after their
+ * window has ended on the receiving replica are dropped. Counts of a key the receiving replica has not seen a request
+ * of yet are kept until the key is registered there, so that a key showing up on a replica partway through a window
+ * starts with what the other replicas counted. Up to {@value #DEFAULT_MAX_PENDING_COUNTS} such counts are kept, and
+ * a count is dropped once its window ends. A replica may therefore allow up to the requests the other replicas
+ * received within the last sync interval beyond the request count of a policy, or more if the counts of unknown keys
+ * overflow. The policies evaluated by the throttle streams are not synchronized. The counters are
+ * registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class ThrottleCounterSync implements ThrottleCounterSyncMBean {
+
+    public static final String UDP = "udp";
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=ThrottleCounterSync";
+    public static final int DEFAULT_MAX_PENDING_COUNTS = 10000;
+    // policy types whose keys are synchronized, as named by the throttle filter
+    static final String APPLICATION_POLICY = "application";
+    static final String SUBSCRIPTION_POLICY = "subscription";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final Logger log = LoggerFactory.getLogger(ThrottleCounterSync.class);
+
+    private static volatile ThrottleCounterSync instance;
+
+    private final String nodeId;
+    private final LocalThrottleEngine engine;
+    private final ThrottleKeyRegistry keyRegistry;
+    private final ThrottleSyncTransport transport;
+    private final SecretKeySpec secretKey;
+    private final AtomicLong sentMessageCount = new AtomicLong();
+    private final AtomicLong sentCountCount = new AtomicLong();
+    private final AtomicLong receivedMessageCount = new AtomicLong();
+    private final AtomicLong receivedCountCount = new AtomicLong();
+    private final AtomicLong droppedCountCount = new AtomicLong();
+    private final AtomicLong failedMessageCount = new AtomicLong();
+    // counts of keys not registered on this replica yet, by key name
+    private final ConcurrentHashMap<String, List<ThrottleSyncCodec.Count>> pendingApplicationCounts =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, List<ThrottleSyncCodec.Count>> pendingSubscriptionCounts =
+            new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCountCount = new AtomicInteger();
+    private volatile int maxPendingCounts = DEFAULT_MAX_PENDING_COUNTS;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param nodeId      id of this replica, unique among the replicas
+     * @param engine      policies evaluated in process
+     * @param keyRegistry registry the throttle keys of the policies are interned in
+     * @param transport   transport to the other replicas
+     * @param secret      secret shared by the replicas, which the messages are signed with
+     * @throws IllegalArgumentException if the secret is empty
+     */
+    public ThrottleCounterSync(String nodeId, LocalThrottleEngine engine, ThrottleKeyRegistry keyRegistry,
+                               ThrottleSyncTransport transport, String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A secret shared by the replicas is required to synchronize the "
+                    + "throttle counts");
+        }
+        this.nodeId = nodeId;
+        this.engine = engine;
+        this.keyRegistry = keyRegistry;
+        this.transport = transport;
+        this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        keyRegistry.setRegistrationListener(this::applyPendingCounts);
+    }
+
+    /**
+     * Starts synchronizing the counts of the gateway. Subsequent calls return the already started sync.
+     *
+     * @param transportName  {@value #UDP} or the class name of a {@link ThrottleSyncTransport}
+     * @param localAddress   address of this replica
+     * @param peerAddresses  addresses of the other replicas, separated by commas
+     * @param secret         secret shared by the replicas, which the messages are signed with
+     * @param syncInterval   interval in milliseconds at which the counts are sent
+     * @throws IllegalArgumentException if the configuration is not valid
+     * @throws UncheckedIOException     if the transport cannot be started
+     */
+    public static synchronized ThrottleCounterSync init(String transportName, String localAddress,
+                                                        String peerAddresses, String secret,
+                                                        long syncInterval) {
+        if (instance == null) {
+            if (secret == null || secret.isEmpty()) {
+                throw new IllegalArgumentException("A secret shared by the replicas is required to synchronize the "
+                        + "throttle counts");
+            }
+            ThrottleSyncTransport transport = createTransport(transportName, localAddress,
+                    splitAddresses(peerAddresses));
+            ThrottleCounterSync sync = new ThrottleCounterSync(UUID.randomUUID().toString(),
+                    LocalThrottleEngine.getInstance(), ThrottleKeyRegistry.getInstance(), transport, secret);
+            try {
+                sync.start(syncInterval);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start the throttle counter sync on " + localAddress, e);
+            }
+            sync.registerMBean();
+            instance = sync;
+        }
+        return instance;
+    }
+
+    public static ThrottleCounterSync getInstance() {
+        return instance;
+    }
+
+    static List<String> splitAddresses(String addresses) {
+        List<String> addressList = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            if (!address.trim().isEmpty()) {
+                addressList.add(address.trim());
+            }
+        }
+        return addressList;
+    }
+
+    static ThrottleSyncTransport createTransport(String name, String localAddress, List<String> peerAddresses) {
+        if (UDP.equals(name)) {
+            return new UdpThrottleSyncTransport(localAddress, peerAddresses);
+        }
+        try {
+            return Class.forName(name).asSubclass(ThrottleSyncTransport.class).getConstructor(String.class,
+                    List.class).newInstance(localAddress, peerAddresses);
+        } catch (ClassNotFoundException | ClassCastException | NoSuchMethodException | InstantiationException
+                | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException("Invalid throttle sync transport: " + name, e);
+        }
+    }
+
+    /**
+     * Starts receiving the counts of the other replicas and sending the counts of this replica.
+     *
+     * @param syncInterval interval in milliseconds at which the counts are sent
+     * @throws IOException if the transport cannot be started
+     */
+    public synchronized void start(long syncInterval) throws IOException {
+        if (syncInterval <= 0) {
+            throw new IllegalArgumentException("Throttle sync interval should be positive, but found "
+                    + syncInterval);
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Throttle counter sync has already been started");
+        }
+        transport.start(this::receive);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "throttle-counter-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sync(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                // an exception would cancel the task
+                log.error("Could not send the throttle counts", e);
+            }
+        }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        try {
+            transport.close();
+        } catch (IOException e) {
+            log.warn("Could not close the throttle sync transport", e);
+        }
+    }
+
+    /**
+     * Sends the requests counted since the previous sync. Called by a single thread at a time.
+     *
+     * @param currentTime current time in milliseconds
+     * @return number of counts sent
+     */
+    int sync(long currentTime) {
+        dropEndedPendingCounts(pendingApplicationCounts, currentTime);
+        dropEndedPendingCounts(pendingSubscriptionCounts, currentTime);
+        List<ThrottleSyncCodec.Count> counts = new ArrayList<>();
+        engine.forEachPolicy((policyType, policy) -> policy.collectCounts(currentTime,
+                (throttleKey, windowEndTime, count) -> {
+                    ThrottleKey key = keyRegistry.getKeyById(throttleKey);
+                    // ids are local to each replica, so keys are sent by name, and evicted keys are not known by
+                    // name anymore
+                    if (key != null) {
+                        counts.add(new ThrottleSyncCodec.Count(policyType, policy.getName(), windowEndTime,
+                                key.getName(), count));
+                    }
+                }));
+        if (counts.isEmpty()) {
+            return 0;
+        }
+        for (byte[] message : ThrottleSyncCodec.encode(nodeId, counts, transport.getMaxMessageSize() - MAC_LENGTH)) {
+            try {
+                transport.send(sign(message));
+                sentMessageCount.incrementAndGet();
+            } catch (IOException e) {
+                failedMessageCount.incrementAndGet();
+                log.warn("Could not send the throttle counts to the other replicas", e);
+            }
+        }
+        sentCountCount.addAndGet(counts.size());
+        return counts.size();
+    }
+
+    void receive(byte[] message) {
+        receive(message, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds the counts of another replica to the remote counts of the policies.
+     *
+     * @param message     message of the other replica
+     * @param currentTime current time in milliseconds
+     */
+    void receive(byte[] message, long currentTime) {
+        byte[] payload = verify(message);
+        if (payload == null) {
+            failedMessageCount.incrementAndGet();
+            log.debug("Throttle counts without a valid signature received");
+            return;
+        }
+        List<ThrottleSyncCodec.Count> counts = new ArrayList<>();
+        String senderId;
+        try {
+            senderId = ThrottleSyncCodec.decode(payload, counts);
+        } catch (IllegalArgumentException e) {
+            failedMessageCount.incrementAndGet();
+            log.warn("Invalid throttle counts received. " + e.getMessage());
+            return;
+        }
+        // a transport may deliver the messages of this replica back to it
+        if (nodeId.equals(senderId)) {
+            return;
+        }
+        receivedMessageCount.incrementAndGet();
+        for (ThrottleSyncCodec.Count count : counts) {
+            LocalThrottlePolicy policy = engine.getPolicy(count.policyType, count.policyName);
+            if (policy == null) {
+                droppedCountCount.incrementAndGet();
+                continue;
+            }
+            ThrottleKey key = findKey(count.policyType, count.throttleKey);
+            if (key == null) {
+                if (!addPendingCount(count, currentTime)) {
+                    droppedCountCount.incrementAndGet();
+                }
+            } else {
+                addRemoteCount(policy, key, count, currentTime);
+            }
+        }
+    }
+
+    private void addRemoteCount(LocalThrottlePolicy policy, ThrottleKey key, ThrottleSyncCodec.Count count,
+                                long currentTime) {
+        if (policy.addRemoteCount(key.getId(), count.windowEndTime, count.count, currentTime)) {
+            receivedCountCount.incrementAndGet();
+        } else {
+            droppedCountCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Looks up a throttle key received by name without registering it, so that the keys of a replica cannot evict
+     * the keys of this one.
+     */
+    private ThrottleKey findKey(String policyType, String keyName) {
+        if (APPLICATION_POLICY.equals(policyType)) {
+            return keyRegistry.findApplicationKey(keyName);
+        }
+        if (SUBSCRIPTION_POLICY.equals(policyType)) {
+            return keyRegistry.findSubscriptionKey(keyName);
+        }
+        return null;
+    }
+
+    private ConcurrentHashMap<String, List<ThrottleSyncCodec.Count>> getPendingCounts(String policyType) {
+        if (APPLICATION_POLICY.equals(policyType)) {
+            return pendingApplicationCounts;
+        }
+        if (SUBSCRIPTION_POLICY.equals(policyType)) {
+            return pendingSubscriptionCounts;
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the count of a key this replica has not seen a request of yet, until the key is registered here.
+     *
+     * @return false if the count cannot be kept, as its window has ended or too many counts are kept already
+     */
+    private boolean addPendingCount(ThrottleSyncCodec.Count count, long currentTime) {
+        ConcurrentHashMap<String, List<ThrottleSyncCodec.Count>> pendingCounts = getPendingCounts(count.policyType);
+        if (pendingCounts == null || count.windowEndTime <= currentTime) {
+            return false;
+        }
+        if (pendingCountCount.incrementAndGet() > maxPendingCounts) {
+            pendingCountCount.decrementAndGet();
+            return false;
+        }
+        pendingCounts.compute(count.throttleKey, (name, keyCounts) -> {
+            List<ThrottleSyncCodec.Count> countList = keyCounts == null ? new ArrayList<>(2) : keyCounts;
+            countList.add(count);
+            return countList;
+        });
+        // the key may have been registered since it was looked up, after its pending counts were applied
+        ThrottleKey key = findKey(count.policyType, count.throttleKey);
+        if (key != null) {
+            applyPendingCounts(pendingCounts, key, currentTime);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the counts kept for a key to the remote counts of the policies, once the key is registered. Called on the
+     * thread registering the key.
+     */
+    private void applyPendingCounts(boolean subscriptionKey, ThrottleKey key, long currentTime) {
+        ConcurrentHashMap<String, List<ThrottleSyncCodec.Count>> pendingCounts = subscriptionKey
+                ? pendingSubscriptionCounts : pendingApplicationCounts;
+        // keys are registered far more often than counts are kept, so do not build the name of the key for nothing
+        if (!pendingCounts.isEmpty()) {
+            applyPendingCounts(pendingCounts, key, currentTime);
+        }
+    }
+
+    private void applyPendingCounts(ConcurrentHashMap<String, List<ThrottleSyncCodec.Count>> pendingCounts,
+                                    ThrottleKey key, long currentTime) {
+        List<ThrottleSyncCodec.Count> keyCounts = pendingCounts.remove(key.getName());
+        if (keyCounts == null) {
+            return;
+        }
+        pendingCountCount.addAndGet(-keyCounts.size());
+        for (ThrottleSyncCodec.Count count : keyCounts) {
+            LocalThrottlePolicy policy = engine.getPolicy(count.policyType, count.policyName);
+            if (policy == null) {
+                droppedCountCount.incrementAndGet();
+            } else {
+                addRemoteCount(policy, key, count, currentTime);
+            }
+        }
+    }
+
+    private void dropEndedPendingCounts(ConcurrentHashMap<String, List<ThrottleSyncCodec.Count>> pendingCounts,
+                                        long currentTime) {
+        for (String keyName : pendingCounts.keySet()) {
+            pendingCounts.computeIfPresent(keyName, (name, keyCounts) -> {
+                int size = keyCounts.size();
+                keyCounts.removeIf(count -> count.windowEndTime <= currentTime);
+                int dropped = size - keyCounts.size();
+                pendingCountCount.addAndGet(-dropped);
+                droppedCountCount.addAndGet(dropped);
+                return keyCounts.isEmpty() ? null : keyCounts;
+            });
+        }
+    }
+
+    void setMaxPendingCounts(int maxPendingCounts) {
+        this.maxPendingCounts = maxPendingCounts;
+    }
+
+    /**
+     * Appends the signature of a message to it.
+     */
+    byte[] sign(byte[] message) {
+        byte[] signedMessage = Arrays.copyOf(message, message.length + MAC_LENGTH);
+        System.arraycopy(computeMac(message, message.length), 0, signedMessage, message.length, MAC_LENGTH);
+        return signedMessage;
+    }
+
+    /**
+     * Checks the signature of a message.
+     *
+     * @return the message without its signature, or null if the signature is not valid
+     */
+    byte[] verify(byte[] signedMessage) {
+        int length = signedMessage.length - MAC_LENGTH;
+        if (length <= 0) {
+            return null;
+        }
+        byte[] mac = Arrays.copyOfRange(signedMessage, length, signedMessage.length);
+        if (!MessageDigest.isEqual(mac, computeMac(signedMessage, length))) {
+            return null;
+        }
+        return Arrays.copyOf(signedMessage, length);
+    }
+
+    private byte[] computeMac(byte[] message, int length) {
+        try {
+            // sent by the sync thread and received by the transport, so each call takes a Mac of its own
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secretKey);
+            mac.update(message, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the throttle counter sync MBean", e);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public long getSentMessageCount() {
+        return sentMessageCount.get();
+    }
+
+    /**
+     * @return number of per key counts sent
+     */
+    @Override
+    public long getSentCountCount() {
+        return sentCountCount.get();
+    }
+
+    @Override
+    public long getReceivedMessageCount() {
+        return receivedMessageCount.get();
+    }
+
+    @Override
+    public long getReceivedCountCount() {
+        return receivedCountCount.get();
+    }
+
+    /**
+     * @return number of per key counts kept until their keys are registered on this replica
+     */
+    @Override
+    public int getPendingCountCount() {
+        return pendingCountCount.get();
+    }
+
+    /**
+     * @return number of per key counts received for unknown policies or ended windows, or which could not be kept
+     * until their keys are registered
+     */
+    @Override
+    public long getDroppedCountCount() {
+        return droppedCountCount.get();
+    }
+
+    @Override
+    public long getFailedMessageCount() {
+        return failedMessageCount.get();
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Keys throttled by the throttle streams, as received from the global throttle stream.
+ * <p/>
+ * Entries are removed by a background sweeper once they expire, so keys of clients which stop calling do not stay
+ * in memory. The number of entries is bounded by a capacity; when it is exceeded the least recently used entries are
+ * evicted by the sweeper thread, so that a request crossing the capacity does not wait for the store to be scanned.
+ * The store may hence hold a few more entries than its capacity until the eviction is done. The gauges of the store
+ * are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class ThrottleDataStore implements ThrottleDataStoreMBean {
+
+    public static final int DEFAULT_CAPACITY = 100000;
+    public static final long DEFAULT_SWEEP_INTERVAL = 60000;
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=ThrottleDataStore";
+    private static final float EVICTION_FACTOR = 0.25f;
+    private static final Logger log = LoggerFactory.getLogger(ThrottleDataStore.class);
+
+    private static ThrottleDataStore instance;
+
+    private final ConcurrentHashMap<String, ThrottleData> dataMap = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong sweptCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private volatile int capacity;
+    private volatile long sweepInterval;
+    private volatile long lastSweepDuration;
+    private volatile long lastEvictionDuration;
+    private ScheduledExecutorService sweeper;
+    private ScheduledFuture<?> sweepTask;
+
+    public ThrottleDataStore(int capacity) {
+        setCapacity(capacity);
+    }
+
+    public static ThrottleDataStore getInstance() {
+        synchronized (ThrottleDataStore.class) {
+            if (instance == null) {
+                instance = new ThrottleDataStore(DEFAULT_CAPACITY);
+                instance.registerMBean();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the data of a throttled key.
+     *
+     * @param key         throttle key
+     * @param currentTime current time in milliseconds
+     * @return the data of the key, or null if the key is not throttled or its throttling has expired
+     */
+    public ThrottleData get(String key, long currentTime) {
+        ThrottleData data = dataMap.get(key);
+        if (data == null) {
+            return null;
+        }
+        if (data.expiryTimeStamp < currentTime) {
+            dataMap.remove(key, data);
+            return null;
+        }
+        data.lastAccessTime = currentTime;
+        return data;
+    }
+
+    public void put(String key, boolean stopOnQuotaReach, long expiryTimeStamp, long currentTime) {
+        dataMap.put(key, new ThrottleData(stopOnQuotaReach, expiryTimeStamp, currentTime));
+        if (dataMap.size() > capacity && evicting.compareAndSet(false, true)) {
+            try {
+                getSweeper().execute(() -> {
+                    try {
+                        evict(currentTime);
+                    } catch (RuntimeException e) {
+                        log.error("Error while evicting throttle keys", e);
+                    } finally {
+                        evicting.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the sweeper was stopped meanwhile, the next put over the capacity tries again
+                evicting.set(false);
+            }
+        }
+    }
+
+    public void remove(String key) {
+        dataMap.remove(key);
+    }
+
+    /**
+     * Removes the expired entries.
+     *
+     * @param currentTime current time in milliseconds
+     * @return number of entries removed
+     */
+    public int sweep(long currentTime) {
+        long startTime = System.nanoTime();
+        int removed = 0;
+        Iterator<ThrottleData> iterator = dataMap.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiryTimeStamp < currentTime) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        sweptCount.addAndGet(removed);
+        lastSweepDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        return removed;
+    }
+
+    /**
+     * Drops the expired entries and, if that is not enough, the least recently used entries until the store is
+     * filled up to {@code 1 - EVICTION_FACTOR} of its capacity. Run on the sweeper thread, one eviction at a time.
+     *
+     * @param currentTime current time in milliseconds
+     */
+    void evict(long currentTime) {
+        long startTime = System.nanoTime();
+        List<Map.Entry<String, ThrottleData>> entries = new ArrayList<>(dataMap.size());
+        for (Map.Entry<String, ThrottleData> entry : dataMap.entrySet()) {
+            if (entry.getValue().expiryTimeStamp < currentTime) {
+                if (dataMap.remove(entry.getKey(), entry.getValue())) {
+                    sweptCount.incrementAndGet();
+                }
+            } else {
+                entries.add(entry);
+            }
+        }
+        int target = (int) (capacity * (1 - EVICTION_FACTOR));
+        int excess = dataMap.size() - target;
+        if (dataMap.size() > capacity && excess > 0) {
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessTime));
+            for (int i = 0; i < excess && i < entries.size(); i++) {
+                Map.Entry<String, ThrottleData> entry = entries.get(i);
+                if (dataMap.remove(entry.getKey(), entry.getValue())) {
+                    evictionCount.incrementAndGet();
+                }
+            }
+        }
+        lastEvictionDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    private synchronized ScheduledExecutorService getSweeper() {
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "throttle-data-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sweeper;
+    }
+
+    /**
+     * (Re)schedules the background sweeper.
+     *
+     * @param interval sweep interval in milliseconds
+     */
+    public synchronized void startSweeper(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Sweep interval of the throttle data store should be positive, "
+                    + "but found " + interval);
+        }
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+        }
+        sweepInterval = interval;
+        sweepTask = getSweeper().scheduleWithFixedDelay(() -> {
+            try {
+                int removed = sweep(System.currentTimeMillis());
+                if (log.isDebugEnabled()) {
+                    log.debug("Removed " + removed + " expired throttle keys in " + lastSweepDuration + "ms, "
+                            + dataMap.size() + " keys remaining.");
+                }
+            } catch (RuntimeException e) {
+                log.error("Error while sweeping expired throttle keys", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+            sweepTask = null;
+        }
+    }
+
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity of the throttle data store should be positive, but found "
+                    + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the throttle data store MBean", e);
+        }
+    }
+
+    @Override
+    public int getEntryCount() {
+        return dataMap.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    @Override
+    public long getLastSweepDuration() {
+        return lastSweepDuration;
+    }
+
+    /**
+     * @return time in milliseconds the last eviction took
+     */
+    @Override
+    public long getLastEvictionDuration() {
+        return lastEvictionDuration;
+    }
+
+    @Override
+    public long getSweptCount() {
+        return sweptCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Throttle data of a single key.
+     */
+    public static final class ThrottleData {
+        private final boolean stopOnQuotaReach;
+        private final long expiryTimeStamp;
+        private volatile long lastAccessTime;
+
+        ThrottleData(boolean stopOnQuotaReach, long expiryTimeStamp, long lastAccessTime) {
+            this.stopOnQuotaReach = stopOnQuotaReach;
+            this.expiryTimeStamp = expiryTimeStamp;
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        public boolean isStopOnQuotaReach() {
+            return stopOnQuotaReach;
+        }
+
+        public long getExpiryTimeStamp() {
+            return expiryTimeStamp;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Interned application and subscription throttle keys, each identified by a compact numeric id.
+ * <p/>
+ * The throttle filter used to build the application key {@code applicationId:username} and the subscription key
+ * {@code applicationId:context:version} by concatenation several times per request. Here the keys are looked up by
+ * their parts in nested maps, so a known key is found without building a string, and the id of the key is what the
+ * throttled key store, the local policies and the throttle streams count and match requests by. Ids increase
+ * monotonically and are never reused, so a key which is evicted and used again gets a fresh id and starts with fresh
+ * counts, and can never inherit the counts of another key. Keys which have not been used for the longest time are
+ * evicted above the capacity, by a background thread, so that a request crossing the capacity does not wait for the
+ * registry to be scanned. The registry may hence hold a few more keys than its capacity until the eviction is done.
+ * The gauges of the registry are registered over JMX as {@value #MBEAN_NAME}.
+ */
+public class ThrottleKeyRegistry implements ThrottleKeyRegistryMBean {
+
+    public static final int DEFAULT_CAPACITY = 100000;
+    public static final String MBEAN_NAME = "org.ballerina.gateway:type=ThrottleKeyRegistry";
+    private static final float EVICTION_FACTOR = 0.25f;
+    private static final Logger log = LoggerFactory.getLogger(ThrottleKeyRegistry.class);
+
+    private static volatile ThrottleKeyRegistry instance;
+
+    // application keys by application id and then user name
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ThrottleKey>> applicationKeys =
+            new ConcurrentHashMap<>();
+    // subscription keys by application id and then API key, the context and version of the API
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ThrottleKey>> subscriptionKeys =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ThrottleKey> keysById = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile int capacity;
+    private volatile long lastEvictionDuration;
+    private volatile RegistrationListener registrationListener;
+    private ExecutorService evictor;
+
+    public ThrottleKeyRegistry(int capacity) {
+        setCapacity(capacity);
+    }
+
+    public static ThrottleKeyRegistry getInstance() {
+        ThrottleKeyRegistry registry = instance;
+        if (registry == null) {
+            synchronized (ThrottleKeyRegistry.class) {
+                registry = instance;
+                if (registry == null) {
+                    registry = new ThrottleKeyRegistry(DEFAULT_CAPACITY);
+                    registry.registerMBean();
+                    instance = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Returns the application throttle key of a user, registering it if it is used for the first time.
+     *
+     * @param applicationId id of the application
+     * @param username      name of the user
+     * @param currentTime   current time in milliseconds
+     * @return the interned key
+     */
+    public ThrottleKey getApplicationKey(String applicationId, String username, long currentTime) {
+        return getKey(applicationKeys, applicationId, username, currentTime);
+    }
+
+    /**
+     * Returns the subscription throttle key of an application to an API, registering it if it is used for the first
+     * time.
+     *
+     * @param applicationId id of the application
+     * @param apiKey        context and version of the API, separated by a colon
+     * @param currentTime   current time in milliseconds
+     * @return the interned key
+     */
+    public ThrottleKey getSubscriptionKey(String applicationId, String apiKey, long currentTime) {
+        return getKey(subscriptionKeys, applicationId, apiKey, currentTime);
+    }
+
+    /**
+     * Returns a registered key by its id.
+     *
+     * @param id id of the key, as handed to the throttle streams
+     * @return the key, or null if no key has the id or the key has been evicted
+     */
+    public ThrottleKey getKeyById(String id) {
+        return keysById.get(id);
+    }
+
+    /**
+     * Looks up a registered application key by its canonical string, without registering it.
+     *
+     * @param name application id and user name, separated by a colon
+     * @return the key, or null if the key is not registered
+     */
+    public ThrottleKey findApplicationKey(String name) {
+        return findKey(applicationKeys, name);
+    }
+
+    /**
+     * Looks up a registered subscription key by its canonical string, without registering it.
+     *
+     * @param name application id and API key, separated by a colon
+     * @return the key, or null if the key is not registered
+     */
+    public ThrottleKey findSubscriptionKey(String name) {
+        return findKey(subscriptionKeys, name);
+    }
+
+    private static ThrottleKey findKey(ConcurrentHashMap<String, ConcurrentHashMap<String, ThrottleKey>> keys,
+                                       String name) {
+        int separator = name.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        ConcurrentHashMap<String, ThrottleKey> applicationKeyMap = keys.get(name.substring(0, separator));
+        return applicationKeyMap == null ? null : applicationKeyMap.get(name.substring(separator + 1));
+    }
+
+    private ThrottleKey getKey(ConcurrentHashMap<String, ConcurrentHashMap<String, ThrottleKey>> keys,
+                               String applicationId, String suffix, long currentTime) {
+        ConcurrentHashMap<String, ThrottleKey> applicationKeyMap = keys.get(applicationId);
+        ThrottleKey key = applicationKeyMap == null ? null : applicationKeyMap.get(suffix);
+        if (key == null) {
+            // keys are added and evicted under the lock of their application, so that an application map emptied
+            // by the eviction is never dropped while a key is being added to it
+            ThrottleKey[] registeredKey = new ThrottleKey[2];
+            keys.compute(applicationId, (k, keyMap) -> {
+                ConcurrentHashMap<String, ThrottleKey> applicationMap = keyMap == null
+                        ? new ConcurrentHashMap<>(4) : keyMap;
+                registeredKey[0] = applicationMap.computeIfAbsent(suffix, s -> {
+                    ThrottleKey newKey = new ThrottleKey(nextId.incrementAndGet(), applicationId, suffix, keys,
+                            currentTime);
+                    keysById.put(newKey.id, newKey);
+                    registeredKey[1] = newKey;
+                    return newKey;
+                });
+                return applicationMap;
+            });
+            key = registeredKey[0];
+            RegistrationListener listener = registrationListener;
+            if (registeredKey[1] != null && listener != null) {
+                listener.onRegistration(keys == subscriptionKeys, key, currentTime);
+            }
+            if (keysById.size() > capacity) {
+                scheduleEviction();
+            }
+        }
+        key.lastAccessTime = currentTime;
+        return key;
+    }
+
+    private void scheduleEviction() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            getEvictor().execute(() -> {
+                try {
+                    evict();
+                } catch (RuntimeException e) {
+                    log.error("Error while evicting throttle keys", e);
+                } finally {
+                    evicting.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the evictor was stopped meanwhile, the next key over the capacity tries again
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Drops the least recently used keys until the registry is filled up to {@code 1 - EVICTION_FACTOR} of its
+     * capacity, along with the maps of the applications left without keys. Run on the evictor thread, one eviction
+     * at a time.
+     */
+    void evict() {
+        long startTime = System.nanoTime();
+        int excess = keysById.size() - (int) (capacity * (1 - EVICTION_FACTOR));
+        if (keysById.size() > capacity && excess > 0) {
+            List<ThrottleKey> keys = new ArrayList<>(keysById.values());
+            keys.sort(Comparator.comparingLong(key -> key.lastAccessTime));
+            for (int i = 0; i < excess && i < keys.size(); i++) {
+                ThrottleKey key = keys.get(i);
+                key.keys.computeIfPresent(key.applicationId, (k, keyMap) -> {
+                    if (keyMap.remove(key.suffix, key)) {
+                        keysById.remove(key.id, key);
+                        evictionCount.incrementAndGet();
+                    }
+                    return keyMap.isEmpty() ? null : keyMap;
+                });
+            }
+        }
+        lastEvictionDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    private synchronized ExecutorService getEvictor() {
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "throttle-key-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return evictor;
+    }
+
+    public synchronized void stopEvictor() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+    }
+
+    /**
+     * Sets the listener notified of each key registered from now on, on the thread registering the key, before the
+     * key is handed out.
+     *
+     * @param registrationListener the listener, or null to stop notifying
+     */
+    public void setRegistrationListener(RegistrationListener registrationListener) {
+        this.registrationListener = registrationListener;
+    }
+
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity of the throttle key registry should be positive, but found "
+                    + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the throttle key registry MBean", e);
+        }
+    }
+
+    @Override
+    public int getKeyCount() {
+        return keysById.size();
+    }
+
+    /**
+     * @return number of applications having at least one registered key, of either kind
+     */
+    int getApplicationMapCount() {
+        return applicationKeys.size() + subscriptionKeys.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of keys registered since the gateway started, including the evicted ones
+     */
+    @Override
+    public long getRegistrationCount() {
+        return nextId.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public long getLastEvictionDuration() {
+        return lastEvictionDuration;
+    }
+
+    /**
+     * Listener of the keys registered in a registry.
+     */
+    public interface RegistrationListener {
+
+        /**
+         * @param subscriptionKey true if the key is a subscription key, false if it is an application key
+         * @param key             the registered key
+         * @param currentTime     current time in milliseconds
+         */
+        void onRegistration(boolean subscriptionKey, ThrottleKey key, long currentTime);
+    }
+
+    /**
+     * An interned throttle key. Its id is kept as a string, as that is how the throttle streams and the throttled key
+     * store take it.
+     */
+    public static final class ThrottleKey {
+        private final String id;
+        private final String applicationId;
+        private final String suffix;
+        private final ConcurrentHashMap<String, ConcurrentHashMap<String, ThrottleKey>> keys;
+        private volatile String name;
+        private volatile long lastAccessTime;
+
+        ThrottleKey(long id, String applicationId, String suffix,
+                    ConcurrentHashMap<String, ConcurrentHashMap<String, ThrottleKey>> keys, long lastAccessTime) {
+            this.id = Long.toString(id);
+            this.applicationId = applicationId;
+            this.suffix = suffix;
+            this.keys = keys;
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the canonical string of the key, as it was built before keys were interned, which is how the key is
+         * known across the replicas
+         */
+        public String getName() {
+            String keyName = name;
+            if (keyName == null) {
+                keyName = applicationId + ":" + suffix;
+                name = keyName;
+            }
+            return keyName;
+        }
+    }
+}
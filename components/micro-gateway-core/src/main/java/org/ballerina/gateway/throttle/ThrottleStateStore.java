@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, concurrent store of the last throttle decision taken for each throttle key.
+ * <p/>
+ * A decision is kept only until the window it was taken for has passed. When the number of keys exceeds the
+ * capacity, expired decisions are dropped first and then not throttled decisions, since losing those only results
+ * in the next decision of the key being emitted again.
+ */
+public class ThrottleStateStore {
+
+    public static final int DEFAULT_CAPACITY = 100000;
+    // decisions without a known window never expire by time, only by capacity
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+    private static final float EVICTION_FACTOR = 0.25f;
+    private static final Logger log = LoggerFactory.getLogger(ThrottleStateStore.class);
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, ThrottleState> stateMap = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public ThrottleStateStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ThrottleStateStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity of the throttle state store should be positive, but found "
+                    + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the last decision taken for the key within its window.
+     *
+     * @param key         throttle key
+     * @param currentTime current time in milliseconds
+     * @return the state of the key, or null if the key is unknown or its window has passed
+     */
+    public ThrottleState get(String key, long currentTime) {
+        ThrottleState state = stateMap.get(key);
+        if (state == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (state.getExpiryTimeStamp() < currentTime) {
+            if (stateMap.remove(key, state)) {
+                expiredCount.incrementAndGet();
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return state;
+    }
+
+    /**
+     * Records the decision taken for the key.
+     *
+     * @param key             throttle key
+     * @param throttled       throttle decision
+     * @param expiryTimeStamp time the decision is valid until
+     * @param currentTime     current time in milliseconds
+     */
+    public void put(String key, boolean throttled, long expiryTimeStamp, long currentTime) {
+        if (stateMap.put(key, new ThrottleState(throttled, expiryTimeStamp)) == null
+                && stateMap.size() > capacity) {
+            evict(currentTime);
+        }
+    }
+
+    /**
+     * Drops the decisions of which the window has passed.
+     *
+     * @param currentTime current time in milliseconds
+     * @return number of removed decisions
+     */
+    public int removeExpired(long currentTime) {
+        int removed = 0;
+        Iterator<ThrottleState> iterator = stateMap.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getExpiryTimeStamp() < currentTime) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        expiredCount.addAndGet(removed);
+        return removed;
+    }
+
+    private void evict(long currentTime) {
+        // a single thread evicts at a time, others keep going while the store is briefly above the capacity
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            removeExpired(currentTime);
+            int target = capacity - (int) (capacity * EVICTION_FACTOR);
+            evictUntil(target, false);
+            evictUntil(target, true);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void evictUntil(int target, boolean includeThrottled) {
+        Iterator<ThrottleState> iterator = stateMap.values().iterator();
+        while (stateMap.size() > target && iterator.hasNext()) {
+            ThrottleState state = iterator.next();
+            if (includeThrottled || !state.isThrottled()) {
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        stateMap.clear();
+    }
+
+    public int size() {
+        return stateMap.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * Copies the stored decisions in to a map of key to {throttled, expiryTimeStamp} pairs for snapshots.
+     *
+     * @return snapshot of the store
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<String, Object>();
+        for (Map.Entry<String, ThrottleState> entry : stateMap.entrySet()) {
+            ThrottleState state = entry.getValue();
+            snapshot.put(entry.getKey(), new long[] { state.isThrottled() ? 1 : 0, state.getExpiryTimeStamp() });
+        }
+        return snapshot;
+    }
+
+    /**
+     * Replaces the stored decisions with the ones of a snapshot taken with {@link #snapshot()}. Snapshots taken
+     * before decisions had an expiry hold only whether the key was throttled, and those decisions are restored
+     * without an expiry. Entries of any other type are skipped.
+     *
+     * @param snapshot snapshot of the store
+     */
+    public void restore(Map<String, Object> snapshot) {
+        stateMap.clear();
+        for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof long[] && ((long[]) value).length == 2) {
+                long[] state = (long[]) value;
+                stateMap.put(entry.getKey(), new ThrottleState(state[0] == 1, state[1]));
+            } else if (value instanceof Boolean) {
+                stateMap.put(entry.getKey(), new ThrottleState((Boolean) value, NO_EXPIRY));
+            } else {
+                log.warn("Skipping invalid throttle state of key " + entry.getKey() + " in snapshot: " + value);
+            }
+        }
+    }
+
+    /**
+     * Throttle decision of a key.
+     */
+    public static final class ThrottleState {
+        private final boolean throttled;
+        private final long expiryTimeStamp;
+
+        ThrottleState(boolean throttled, long expiryTimeStamp) {
+            this.throttled = throttled;
+            this.expiryTimeStamp = expiryTimeStamp;
+        }
+
+        public boolean isThrottled() {
+            return throttled;
+        }
+
+        public long getExpiryTimeStamp() {
+            return expiryTimeStamp;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Binary format of the messages the replicas of a gateway exchange their throttle counts in.
+ * <p/>
+ * A message carries only the counts of the keys which have been counted since the previous message, grouped by
+ * policy and window. Within a group the keys are sorted and each key is written as the length of the prefix it shares
+ * with the previous key followed by the rest of it, since the keys of an application share their application id. All
+ * numbers are written as variable length integers, so that a count takes a byte or two.
+ * <pre>
+ * message: version nodeId group*
+ * group:   policyType policyName windowEndTime keyCount (sharedPrefixLength keySuffix count)*
+ * string:  length UTF-8 bytes
+ * </pre>
+ */
+final class ThrottleSyncCodec {
+
+    static final int VERSION = 1;
+    private static final Comparator<Count> COUNT_ORDER = Comparator.comparing((Count count) -> count.policyType)
+            .thenComparing(count -> count.policyName).thenComparingLong(count -> count.windowEndTime)
+            .thenComparing(count -> count.throttleKey);
+
+    private ThrottleSyncCodec() {
+    }
+
+    /**
+     * Writes counts into as many messages as needed to keep each of them within the maximum size, unless a single
+     * count does not fit.
+     *
+     * @param nodeId         id of the replica sending the counts
+     * @param counts         counts to write, which are sorted in place
+     * @param maxMessageSize maximum size of a message in bytes
+     * @return the messages
+     */
+    static List<byte[]> encode(String nodeId, List<Count> counts, int maxMessageSize) {
+        counts.sort(COUNT_ORDER);
+        List<byte[]> messages = new ArrayList<>();
+        Buffer message = new Buffer();
+        Buffer group = new Buffer();
+        Buffer entry = new Buffer();
+        int groupSize = 0;
+        Count groupStart = null;
+        String previousKey = "";
+        for (Count count : counts) {
+            if (groupStart == null || !groupStart.isSameGroup(count)) {
+                writeGroup(message, groupStart, groupSize, group);
+                groupStart = count;
+                groupSize = 0;
+                previousKey = "";
+            }
+            writeEntry(entry, previousKey, count);
+            int size = (message.size == 0 ? headerSize(nodeId) : message.size) + groupHeaderSize(groupStart)
+                    + group.size + entry.size;
+            if (size > maxMessageSize && (message.size > 0 || groupSize > 0)) {
+                writeGroup(message, groupStart, groupSize, group);
+                messages.add(message.toByteArray());
+                message.reset();
+                groupStart = count;
+                groupSize = 0;
+                writeEntry(entry, "", count);
+            }
+            if (message.size == 0) {
+                message.writeVarLong(VERSION);
+                message.writeString(nodeId);
+            }
+            group.write(entry);
+            groupSize++;
+            previousKey = count.throttleKey;
+        }
+        writeGroup(message, groupStart, groupSize, group);
+        if (message.size > 0) {
+            messages.add(message.toByteArray());
+        }
+        return messages;
+    }
+
+    private static void writeEntry(Buffer entry, String previousKey, Count count) {
+        entry.reset();
+        String key = count.throttleKey;
+        int prefixLength = 0;
+        int maxPrefixLength = Math.min(previousKey.length(), key.length());
+        while (prefixLength < maxPrefixLength && previousKey.charAt(prefixLength) == key.charAt(prefixLength)) {
+            prefixLength++;
+        }
+        // a surrogate pair is not split, as its halves cannot be encoded separately
+        if (prefixLength > 0 && Character.isHighSurrogate(key.charAt(prefixLength - 1))) {
+            prefixLength--;
+        }
+        entry.writeVarLong(prefixLength);
+        entry.writeString(key.substring(prefixLength));
+        entry.writeVarLong(count.count);
+    }
+
+    private static void writeGroup(Buffer message, Count groupStart, int groupSize, Buffer group) {
+        if (groupSize == 0) {
+            return;
+        }
+        message.writeString(groupStart.policyType);
+        message.writeString(groupStart.policyName);
+        message.writeVarLong(groupStart.windowEndTime);
+        message.writeVarLong(groupSize);
+        message.write(group);
+        group.reset();
+    }
+
+    private static int headerSize(String nodeId) {
+        return 1 + stringSize(nodeId);
+    }
+
+    // the key count is assumed to take the largest size a message allows, 3 bytes
+    private static int groupHeaderSize(Count groupStart) {
+        return stringSize(groupStart.policyType) + stringSize(groupStart.policyName)
+                + varLongSize(groupStart.windowEndTime) + 3;
+    }
+
+    private static int stringSize(String value) {
+        int length = value.getBytes(StandardCharsets.UTF_8).length;
+        return varLongSize(length) + length;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the counts of a message.
+     *
+     * @param message message to read
+     * @param counts  list the counts are added to
+     * @return id of the replica which sent the counts
+     * @throws IllegalArgumentException if the message is not valid
+     */
+    static String decode(byte[] message, List<Count> counts) {
+        Reader reader = new Reader(message);
+        long version = reader.readVarLong();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported throttle sync message version: " + version);
+        }
+        String nodeId = reader.readString();
+        while (reader.position < message.length) {
+            String policyType = reader.readString();
+            String policyName = reader.readString();
+            long windowEndTime = reader.readVarLong();
+            long groupSize = reader.readVarLong();
+            String previousKey = "";
+            for (long i = 0; i < groupSize; i++) {
+                long prefixLength = reader.readVarLong();
+                if (prefixLength > previousKey.length()) {
+                    throw new IllegalArgumentException("Invalid shared prefix length: " + prefixLength);
+                }
+                String key = previousKey.substring(0, (int) prefixLength) + reader.readString();
+                long count = reader.readVarLong();
+                if (count <= 0) {
+                    throw new IllegalArgumentException("Invalid count: " + count);
+                }
+                counts.add(new Count(policyType, policyName, windowEndTime, key, count));
+                previousKey = key;
+            }
+        }
+        return nodeId;
+    }
+
+    /**
+     * Requests of a throttle key counted within a window of a policy.
+     */
+    static final class Count {
+        final String policyType;
+        final String policyName;
+        final long windowEndTime;
+        final String throttleKey;
+        final long count;
+
+        Count(String policyType, String policyName, long windowEndTime, String throttleKey, long count) {
+            this.policyType = policyType;
+            this.policyName = policyName;
+            this.windowEndTime = windowEndTime;
+            this.throttleKey = throttleKey;
+            this.count = count;
+        }
+
+        boolean isSameGroup(Count other) {
+            return policyType.equals(other.policyType) && policyName.equals(other.policyName)
+                    && windowEndTime == other.windowEndTime;
+        }
+    }
+
+    private static final class Buffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void writeByte(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(valueBytes.length);
+            for (byte valueByte : valueBytes) {
+                writeByte(valueByte);
+            }
+        }
+
+        void write(Buffer other) {
+            for (int i = 0; i < other.size; i++) {
+                writeByte(other.bytes[i]);
+            }
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated throttle sync message");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Invalid variable length integer in throttle sync message");
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("Truncated throttle sync message");
+            }
+            String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Transport the replicas of a gateway exchange their throttle counts over. Messages may be lost, duplicated messages
+ * count the requests in them twice, so a transport should not retry a message the other replicas may have received.
+ * <p/>
+ * Transports other than the ones of {@link ThrottleCounterSync} are plugged in by class name, and need a public
+ * constructor taking the address of this replica and the addresses of the other replicas.
+ */
+public interface ThrottleSyncTransport extends Closeable {
+
+    /**
+     * @return maximum size of a message in bytes
+     */
+    int getMaxMessageSize();
+
+    /**
+     * Starts receiving the messages of the other replicas.
+     *
+     * @param receiver receiver of the messages, called on a thread of the transport
+     * @throws IOException if the transport cannot listen on the address of this replica
+     */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    /**
+     * Sends a message to all the other replicas.
+     *
+     * @param message message, not larger than {@link #getMaxMessageSize()}
+     * @throws IOException if the message could not be sent to any of the replicas
+     */
+    void send(byte[] message) throws IOException;
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Sends the throttle counts to each of the other replicas in a UDP datagram. Several gateways on a single host
+ * synchronize over the loopback address, each of them listening on a port of its own. Datagrams are sent from the
+ * address a replica listens on, and datagrams from any other address than those of the other replicas are dropped.
+ */
+public class UdpThrottleSyncTransport implements ThrottleSyncTransport {
+
+    // fits an Ethernet frame, so that a message is lost as a whole rather than in fragments
+    public static final int MAX_MESSAGE_SIZE = 1400;
+    private static final Logger log = LoggerFactory.getLogger(UdpThrottleSyncTransport.class);
+
+    private final InetSocketAddress localAddress;
+    private final List<InetSocketAddress> peerAddresses = new ArrayList<>();
+    private final Set<InetSocketAddress> peerAddressSet;
+    private volatile DatagramSocket socket;
+
+    /**
+     * @param localAddress  host and port this replica listens on, separated by a colon
+     * @param peerAddresses hosts and ports of the other replicas
+     */
+    public UdpThrottleSyncTransport(String localAddress, List<String> peerAddresses) {
+        this.localAddress = parseAddress(localAddress);
+        for (String peerAddress : peerAddresses) {
+            this.peerAddresses.add(parseAddress(peerAddress));
+        }
+        this.peerAddressSet = new HashSet<>(this.peerAddresses);
+    }
+
+    static InetSocketAddress parseAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Expected the host and the port of the address, separated by a "
+                    + "colon, but found " + address);
+        }
+        String host = address.substring(0, separator);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        try {
+            return new InetSocketAddress(host, Integer.parseInt(address.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid address: " + address, e);
+        }
+    }
+
+    @Override
+    public int getMaxMessageSize() {
+        return MAX_MESSAGE_SIZE;
+    }
+
+    @Override
+    public synchronized void start(Consumer<byte[]> receiver) throws IOException {
+        if (socket != null) {
+            throw new IllegalStateException("Transport has already been started");
+        }
+        DatagramSocket datagramSocket = new DatagramSocket(localAddress);
+        socket = datagramSocket;
+        Thread thread = new Thread(() -> receive(datagramSocket, receiver), "throttle-sync-receiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void receive(DatagramSocket datagramSocket, Consumer<byte[]> receiver) {
+        DatagramPacket packet = new DatagramPacket(new byte[MAX_MESSAGE_SIZE], MAX_MESSAGE_SIZE);
+        while (!datagramSocket.isClosed()) {
+            try {
+                datagramSocket.receive(packet);
+                if (!peerAddressSet.contains(packet.getSocketAddress())) {
+                    log.debug("Dropped throttle counts from " + packet.getSocketAddress() + ", which is not a peer");
+                    continue;
+                }
+                receiver.accept(Arrays.copyOfRange(packet.getData(), packet.getOffset(),
+                        packet.getOffset() + packet.getLength()));
+            } catch (SocketException e) {
+                // closed
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not receive throttle counts", e);
+            }
+        }
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException {
+        DatagramSocket datagramSocket = socket;
+        if (datagramSocket == null) {
+            throw new IllegalStateException("Transport has not been started");
+        }
+        IOException failure = null;
+        int sentCount = 0;
+        for (InetSocketAddress peerAddress : peerAddresses) {
+            try {
+                datagramSocket.send(new DatagramPacket(message, message.length, peerAddress));
+                sentCount++;
+            } catch (IOException e) {
+                failure = e;
+                log.debug("Could not send throttle counts to " + peerAddress, e);
+            }
+        }
+        if (sentCount == 0 && failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return port this replica listens on, which is picked by the system if the configured port was 0
+     */
+    public int getLocalPort() {
+        DatagramSocket datagramSocket = socket;
+        return datagramSocket == null ? localAddress.getPort() : datagramSocket.getLocalPort();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
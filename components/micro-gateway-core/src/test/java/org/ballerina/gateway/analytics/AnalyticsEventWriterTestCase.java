@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+public class AnalyticsEventWriterTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void batchWriteTest() throws IOException, InterruptedException {
+        File file = new File(folder.getRoot(), "api-usage-data.dat");
+        AnalyticsEventWriter writer = new AnalyticsEventWriter(file.getPath(), 1000, 10, 100, 600000, 0, 0);
+        writer.start();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(writer.write(createEvent(i)));
+        }
+        writer.stop();
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            AnalyticsRecordReader reader = new AnalyticsRecordReader(in);
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals("correlation" + i, reader.read().getString(AnalyticsField.CORRELATION_ID));
+            }
+            Assert.assertNull(reader.read());
+        }
+        Assert.assertEquals(100, writer.getWrittenCount());
+        Assert.assertTrue(writer.getFlushCount() > 0);
+        Assert.assertEquals(0, writer.getDroppedCount());
+    }
+
+    @Test
+    public void dropOnFullBufferTest() {
+        File file = new File(folder.getRoot(), "api-usage-data.dat");
+        // the writer is not started, hence nothing drains the buffer
+        AnalyticsEventWriter writer = new AnalyticsEventWriter(file.getPath(), 2, 10, 100, 600000, 0, 0);
+        Assert.assertTrue(writer.write(createEvent(1)));
+        Assert.assertTrue(writer.write(createEvent(2)));
+        Assert.assertFalse(writer.write(createEvent(3)));
+        Assert.assertEquals(2, writer.getQueuedCount());
+        Assert.assertEquals(1, writer.getDroppedCount());
+    }
+
+    @Test
+    public void rotationTest() throws IOException, InterruptedException {
+        File file = new File(folder.getRoot(), "api-usage-data.dat");
+        AnalyticsEventWriter writer = new AnalyticsEventWriter(file.getPath(), 1000, 10, 50, 200, 0, 0);
+        writer.start();
+        writer.write(createEvent(1));
+        Thread.sleep(1000);
+        writer.stop();
+        File[] segments = folder.getRoot().listFiles(
+                (dir, name) -> name.endsWith(AnalyticsEventWriter.SEGMENT_SUFFIX));
+        Assert.assertNotNull(segments);
+        Assert.assertEquals(1, segments.length);
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void sizeRotationTest() throws IOException, InterruptedException {
+        File file = new File(folder.getRoot(), "api-usage-data.dat");
+        AnalyticsEventWriter writer = new AnalyticsEventWriter(file.getPath(), 1000, 1, 50, 600000, 64, 0);
+        writer.start();
+        for (int i = 0; i < 3; i++) {
+            writer.write(createEvent(i));
+            Thread.sleep(200);
+        }
+        writer.stop();
+        File[] segments = folder.getRoot().listFiles(
+                (dir, name) -> name.endsWith(AnalyticsEventWriter.SEGMENT_SUFFIX));
+        Assert.assertNotNull(segments);
+        Assert.assertEquals(3, segments.length);
+        long count = 0;
+        for (File segment : segments) {
+            try (InputStream in = AnalyticsFileConverter.open(segment)) {
+                count += AnalyticsFileConverter.convert(in, new StringWriter());
+            }
+        }
+        Assert.assertEquals(3, count);
+    }
+
+    @Test
+    public void flushedRecordsReadableTest() throws IOException, InterruptedException {
+        File file = new File(folder.getRoot(), "api-usage-data.dat");
+        AnalyticsEventWriter writer = new AnalyticsEventWriter(file.getPath(), 1000, 10, 50, 600000, 0, 0);
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            writer.write(createEvent(i));
+        }
+        Thread.sleep(500);
+        // the gzip stream is still open, yet every flushed batch can be read back
+        try (InputStream in = AnalyticsFileConverter.open(file)) {
+            Assert.assertEquals(5, AnalyticsFileConverter.convert(in, new StringWriter()));
+        }
+        writer.stop();
+    }
+
+    @Test
+    public void textFileConversionTest() throws IOException, InterruptedException {
+        File file = new File(folder.getRoot(), "api-usage-data.dat");
+        AnalyticsEventWriter writer = new AnalyticsEventWriter(file.getPath(), 1000, 10, 50, 600000, 0, 0);
+        writer.start();
+        for (int i = 0; i < 3; i++) {
+            writer.write(createEvent(i));
+        }
+        writer.stop();
+        File textFile = new File(folder.getRoot(), "api-usage-data.txt");
+        Assert.assertTrue(AnalyticsFileConverter.convertToText(file, textFile));
+        String text = new String(Files.readAllBytes(textFile.toPath()), StandardCharsets.UTF_8);
+        Assert.assertEquals(3, text.split("\n").length);
+        Assert.assertFalse(AnalyticsFileConverter.convertToText(new File(folder.getRoot(), "missing.bin.gz"),
+                textFile));
+    }
+
+    private static AnalyticsEvent createEvent(int index) {
+        AnalyticsEvent event = new AnalyticsEvent();
+        event.setString(AnalyticsField.CORRELATION_ID, "correlation" + index);
+        event.setString(AnalyticsField.API, "PizzaShackAPI");
+        event.setLong(AnalyticsField.REQUEST_TIME, 1530000000000L + index);
+        return event;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class AnalyticsRecordTestCase {
+
+    @Test
+    public void roundTripTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnalyticsRecordWriter writer = new AnalyticsRecordWriter(out);
+        for (int i = 0; i < 10; i++) {
+            writer.write(createEvent(i));
+        }
+        writer.close();
+        AnalyticsRecordReader reader = new AnalyticsRecordReader(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(AnalyticsRecordWriter.VERSION, reader.getVersion());
+        for (int i = 0; i < 10; i++) {
+            AnalyticsEvent event = reader.read();
+            AnalyticsEvent expected = createEvent(i);
+            for (AnalyticsField field : AnalyticsField.values()) {
+                Assert.assertEquals(field.getFieldName(), expected.getString(field), event.getString(field));
+                Assert.assertEquals(field.getFieldName(), expected.getLong(field), event.getLong(field));
+            }
+        }
+        Assert.assertNull(reader.read());
+    }
+
+    @Test
+    public void dictionaryCapacityTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnalyticsRecordWriter writer = new AnalyticsRecordWriter(out, 4);
+        for (int i = 0; i < 10; i++) {
+            AnalyticsEvent event = createEvent(i);
+            event.setString(AnalyticsField.USERNAME, "user" + i + "\u00e9\ud83d\ude00");
+            writer.write(event);
+        }
+        Assert.assertEquals(4, writer.getDictionarySize());
+        AnalyticsRecordReader reader = new AnalyticsRecordReader(new ByteArrayInputStream(out.toByteArray()));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("user" + i + "\u00e9\ud83d\ude00", reader.read().getString(AnalyticsField.USERNAME));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidMagicTest() throws IOException {
+        new AnalyticsRecordReader(new ByteArrayInputStream("streamId--KVS--".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void textConversionTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnalyticsRecordWriter writer = new AnalyticsRecordWriter(out);
+        int count = 1000;
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            AnalyticsEvent event = createEvent(i);
+            writer.write(event);
+            AnalyticsFileConverter.appendEvent(event, expected);
+        }
+        writer.close();
+        StringWriter text = new StringWriter();
+        Assert.assertEquals(count, AnalyticsFileConverter.convert(new ByteArrayInputStream(out.toByteArray()), text));
+        Assert.assertEquals(expected.toString(), text.toString());
+        Assert.assertTrue(text.toString().startsWith("streamId--KVS--org.wso2.apimgt.statistics.request:1.1.0"
+                + "--EVT--timestamp--KVS--1530000000000--EVT--metadata--KVS--{\"keyType\":\"PRODUCTION\","
+                + "\"correlationID\":\"71c60dbd-0\"}--EVT--correlationData--KVS--71c60dbd-0--EVT--payLoadData--KVS--"
+                + "consumerKey1--OBJ--/pizzashack/1.0.0--OBJ--1.0.0--OBJ--PizzaShackAPI--OBJ--/menu"));
+        // binary records are several times smaller than the text events
+        Assert.assertTrue(out.size() * 3 < text.toString().length());
+    }
+
+    private static AnalyticsEvent createEvent(int index) {
+        AnalyticsEvent event = new AnalyticsEvent();
+        event.setLong(AnalyticsField.TIME_STAMP, 1530000000000L + index * 10);
+        event.setString(AnalyticsField.KEY_TYPE, "PRODUCTION");
+        event.setString(AnalyticsField.CORRELATION_ID, "71c60dbd-" + index);
+        event.setString(AnalyticsField.CONSUMER_KEY, "consumerKey" + (index % 5 + 1));
+        event.setString(AnalyticsField.CONTEXT, "/pizzashack/1.0.0");
+        event.setString(AnalyticsField.API_VERSION, "1.0.0");
+        event.setString(AnalyticsField.API, "PizzaShackAPI");
+        event.setString(AnalyticsField.RESOURCE_PATH, "/menu");
+        event.setString(AnalyticsField.RESOURCE_TEMPLATE, "resourcePath");
+        event.setString(AnalyticsField.METHOD, "GET");
+        event.setLong(AnalyticsField.REQUEST_COUNT, 1);
+        event.setLong(AnalyticsField.REQUEST_TIME, 1530000000000L + index * 10 - 3);
+        event.setString(AnalyticsField.USERNAME, "admin");
+        event.setString(AnalyticsField.TENANT_DOMAIN, "carbon.super");
+        event.setString(AnalyticsField.HOST_NAME, "localhost");
+        event.setString(AnalyticsField.API_PUBLISHER, "admin");
+        event.setString(AnalyticsField.APPLICATION_NAME, "DefaultApplication");
+        event.setString(AnalyticsField.APPLICATION_ID, "1");
+        event.setString(AnalyticsField.USER_AGENT, "curl/7.58.0");
+        event.setString(AnalyticsField.TIER, "Gold");
+        event.setBoolean(AnalyticsField.CONTINUED_ON_THROTTLE_OUT, index % 2 == 0);
+        event.setString(AnalyticsField.CLIENT_IP, "10.100.1." + (index % 255));
+        event.setString(AnalyticsField.APPLICATION_OWNER, "admin");
+        return event;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.analytics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class AnalyticsUploadSchedulerTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parallelismTest() throws IOException {
+        createFile("segment1.zip", 10, 1000);
+        createFile("segment2.zip", 10, 2000);
+        createFile("segment3.zip", 10, 3000);
+        createFile("api-usage-data.dat", 10, 4000);
+        AnalyticsUploadScheduler scheduler = createScheduler(2, 0);
+        Assert.assertEquals(3, scheduler.scan());
+        Assert.assertEquals("segment1.zip", scheduler.acquire(0));
+        Assert.assertEquals("segment2.zip", scheduler.acquire(0));
+        Assert.assertNull(scheduler.acquire(0));
+        scheduler.complete("segment1.zip", true, 10);
+        Assert.assertFalse(new File(folder.getRoot(), "segment1.zip").exists());
+        Assert.assertEquals("segment3.zip", scheduler.acquire(10));
+        Assert.assertEquals(1, scheduler.getUploadedCount());
+        Assert.assertEquals(10, scheduler.getUploadedBytes());
+        Assert.assertEquals(2, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void retryBackoffTest() throws IOException {
+        createFile("segment1.zip", 10, 1000);
+        AnalyticsUploadScheduler scheduler = createScheduler(1, 0);
+        scheduler.scan();
+        Assert.assertEquals("segment1.zip", scheduler.acquire(0));
+        scheduler.complete("segment1.zip", false, 0);
+        Assert.assertNull(scheduler.acquire(499));
+        Assert.assertEquals("segment1.zip", scheduler.acquire(1000));
+        Assert.assertEquals(1, scheduler.getFailedCount());
+        for (int attempts = 1; attempts < 40; attempts++) {
+            long backoff = Math.min(60000, attempts <= 32 ? 1000L << (attempts - 1) : 60000);
+            long interval = scheduler.getRetryInterval(attempts);
+            Assert.assertTrue(interval >= backoff / 2 && interval <= backoff);
+        }
+    }
+
+    @Test
+    public void backlogLimitTest() throws IOException {
+        createFile("segment1.zip", 100, 1000);
+        createFile("segment2.zip", 100, 2000);
+        createFile("segment3.zip", 100, 3000);
+        AnalyticsUploadScheduler scheduler = createScheduler(1, 250);
+        Assert.assertEquals(2, scheduler.scan());
+        Assert.assertFalse(new File(folder.getRoot(), "segment1.zip").exists());
+        Assert.assertEquals(1, scheduler.getDroppedCount());
+        Assert.assertEquals(200, scheduler.getBacklogSize());
+    }
+
+    @Test
+    public void segmentBacklogLimitTest() throws IOException {
+        createFile("api-usage-data.dat.1000.bin.gz", 100, 1000);
+        createFile("api-usage-data.dat.1000.bin.gz.zip", 100, 1500);
+        createFile("api-usage-data.dat.2000.bin.gz", 100, 2000);
+        createFile("segment3.zip", 100, 3000);
+        AnalyticsUploadScheduler scheduler = createScheduler(1, 250);
+        // the zip file of a segment is counted along with the segment, and dropped with it
+        Assert.assertEquals(2, scheduler.scan());
+        Assert.assertFalse(new File(folder.getRoot(), "api-usage-data.dat.1000.bin.gz").exists());
+        Assert.assertFalse(new File(folder.getRoot(), "api-usage-data.dat.1000.bin.gz.zip").exists());
+        Assert.assertEquals(1, scheduler.getDroppedCount());
+        Assert.assertEquals(200, scheduler.getBacklogSize());
+        Assert.assertEquals("api-usage-data.dat.2000.bin.gz", scheduler.acquire(0));
+    }
+
+    @Test
+    public void restartTest() throws IOException {
+        createFile("segment1.zip", 10, 1000);
+        createFile("segment2.zip", 10, 2000);
+        AnalyticsUploadScheduler scheduler = createScheduler(2, 0);
+        scheduler.scan();
+        Assert.assertEquals("segment1.zip", scheduler.acquire(0));
+        Assert.assertEquals("segment2.zip", scheduler.acquire(0));
+        scheduler.complete("segment2.zip", false, 0);
+
+        AnalyticsUploadScheduler restarted = createScheduler(2, 0);
+        restarted.load();
+        Assert.assertEquals(2, restarted.scan());
+        // the upload in flight is resumed right away, the failed one waits for its retry
+        Assert.assertEquals("segment1.zip", restarted.acquire(0));
+        Assert.assertNull(restarted.acquire(0));
+        Assert.assertEquals("segment2.zip", restarted.acquire(System.currentTimeMillis() + 1000));
+    }
+
+    @Test
+    public void segmentConversionTest() throws IOException {
+        File segment = new File(folder.getRoot(), "api-usage-data.dat.1000.bin.gz");
+        try (AnalyticsRecordWriter writer = new AnalyticsRecordWriter(
+                new GZIPOutputStream(new FileOutputStream(segment)))) {
+            AnalyticsEvent event = new AnalyticsEvent();
+            event.setString(AnalyticsField.API, "PizzaShackAPI");
+            writer.write(event);
+        }
+        createFile("segment2.zip", 10, System.currentTimeMillis() + 1000);
+        AnalyticsUploadScheduler scheduler = createScheduler(2, 0);
+        Assert.assertEquals(2, scheduler.scan());
+        // segments are only converted by the uploader which takes them
+        Assert.assertFalse(new File(folder.getRoot(), segment.getName() + ".zip").exists());
+        Assert.assertEquals(segment.getName(), scheduler.acquire(0));
+        Assert.assertEquals("segment2.zip", scheduler.acquire(0));
+        Assert.assertEquals("segment2.zip", scheduler.prepare("segment2.zip"));
+        Assert.assertEquals(segment.getName() + ".zip", scheduler.prepare(segment.getName()));
+        File uploadFile = new File(folder.getRoot(), segment.getName() + ".zip");
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(uploadFile))) {
+            ZipEntry entry = in.getNextEntry();
+            Assert.assertEquals(AnalyticsFileConverter.UPLOAD_ENTRY_NAME, entry.getName());
+        }
+        scheduler.complete(segment.getName(), false, 0);
+        // the zip file of a failed upload is neither converted again nor taken as a file of its own
+        long lastModified = uploadFile.lastModified();
+        Assert.assertEquals(2, scheduler.scan());
+        Assert.assertEquals(segment.length() + uploadFile.length() + 10, scheduler.getBacklogSize());
+        Assert.assertEquals(segment.getName(), scheduler.acquire(System.currentTimeMillis() + 60000));
+        Assert.assertEquals(segment.getName() + ".zip", scheduler.prepare(segment.getName()));
+        Assert.assertEquals(lastModified, uploadFile.lastModified());
+        scheduler.complete(segment.getName(), true, 10);
+        Assert.assertFalse(segment.exists());
+        Assert.assertFalse(uploadFile.exists());
+    }
+
+    private AnalyticsUploadScheduler createScheduler(int parallelism, long maxBacklogSize) {
+        return new AnalyticsUploadScheduler(folder.getRoot(), new File(folder.getRoot(), "upload.manifest"),
+                parallelism, 1000, 60000, maxBacklogSize);
+    }
+
+    private void createFile(String name, int size, long lastModified) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        Assert.assertTrue(file.setLastModified(lastModified));
+    }
+}
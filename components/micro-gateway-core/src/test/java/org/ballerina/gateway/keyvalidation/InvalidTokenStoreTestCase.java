@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvalidTokenStoreTestCase {
+
+    @Test
+    public void bloomFilterTest() {
+        DigestBloomFilter filter = new DigestBloomFilter(1000);
+        Assert.assertEquals(16384, filter.getBitCount());
+        for (int i = 0; i < 1000; i++) {
+            filter.add(CacheKeyDigest.digest("token" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(filter.mightContain(CacheKeyDigest.digest("token" + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain(CacheKeyDigest.digest("token" + i))) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("False positives: " + falsePositives, falsePositives < 100);
+    }
+
+    @Test
+    public void invalidTokenTest() {
+        InvalidTokenStore store = new InvalidTokenStore(100, 1000, 0);
+        store.put("token1", 0);
+        Assert.assertTrue(store.isInvalid("token1", 10));
+        // tokens which were never rejected are answered by the bloom filters
+        Assert.assertFalse(store.isInvalid("token2", 10));
+        Assert.assertEquals(1, store.getFilteredCount());
+        Assert.assertFalse(store.isInvalid("token1", 1000));
+        store.put("token3", 1500);
+        // the key of token1 is kept in the previous filter, but no longer in the map
+        Assert.assertEquals(1, store.getEntryCount());
+        Assert.assertFalse(store.isInvalid("token1", 1500));
+        Assert.assertTrue(store.isInvalid("token3", 1500));
+        store.remove("token3");
+        Assert.assertFalse(store.isInvalid("token3", 1500));
+        Assert.assertEquals(2, store.getHitCount());
+        Assert.assertEquals(3, store.getMissCount());
+    }
+
+    @Test
+    public void capacityTest() {
+        InvalidTokenStore store = new InvalidTokenStore(4, 1000, 0);
+        for (int i = 0; i < 6; i++) {
+            store.put("token" + i, i);
+        }
+        // the tokens rejected first are evicted
+        Assert.assertEquals(4, store.getEntryCount());
+        Assert.assertEquals(2, store.getEvictionCount());
+        Assert.assertFalse(store.isInvalid("token1", 10));
+        Assert.assertTrue(store.isInvalid("token2", 10));
+        // a token rejected again is kept from the later rejection
+        store.put("token2", 500);
+        store.put("token6", 1004);
+        Assert.assertTrue(store.isInvalid("token2", 1004));
+        Assert.assertFalse(store.isInvalid("token3", 1004));
+        Assert.assertEquals(3, store.getEntryCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidConfigurationTest() {
+        new InvalidTokenStore(0, 1000, 0);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyManagerCircuitBreakerTestCase {
+
+    @Test
+    public void openTest() {
+        KeyManagerCircuitBreaker breaker = new KeyManagerCircuitBreaker(0.5, 4, 1000, 500);
+        record(breaker, true, 0);
+        record(breaker, false, 100);
+        record(breaker, true, 200);
+        Assert.assertEquals("CLOSED", breaker.getState());
+        record(breaker, false, 300);
+        Assert.assertEquals("OPEN", breaker.getState());
+        // calls fail fast until the reset time has passed
+        Assert.assertFalse(breaker.isAvailable(400));
+        Assert.assertFalse(breaker.allowRequest(400));
+        Assert.assertEquals(1, breaker.getRejectedCount());
+        Assert.assertEquals(1, breaker.getOpenCount());
+    }
+
+    @Test
+    public void requestVolumeTest() {
+        KeyManagerCircuitBreaker breaker = new KeyManagerCircuitBreaker(0.5, 4, 1000, 500);
+        for (int i = 3; i < 6; i++) {
+            record(breaker, false, i * 100);
+        }
+        Assert.assertEquals("CLOSED", breaker.getState());
+        // the failure which left the rolling window is not counted
+        record(breaker, false, 1350);
+        Assert.assertEquals("CLOSED", breaker.getState());
+        record(breaker, false, 1380);
+        Assert.assertEquals("OPEN", breaker.getState());
+    }
+
+    @Test
+    public void halfOpenTest() {
+        KeyManagerCircuitBreaker breaker = new KeyManagerCircuitBreaker(0.5, 2, 1000, 500);
+        record(breaker, false, 0);
+        record(breaker, false, 0);
+        Assert.assertEquals("OPEN", breaker.getState());
+        Assert.assertTrue(breaker.isAvailable(500));
+        // a single trial call is let through
+        Assert.assertTrue(breaker.allowRequest(500));
+        Assert.assertEquals("HALF_OPEN", breaker.getState());
+        Assert.assertFalse(breaker.isAvailable(510));
+        Assert.assertFalse(breaker.allowRequest(510));
+        breaker.recordResult(false, 520);
+        Assert.assertEquals("OPEN", breaker.getState());
+        Assert.assertFalse(breaker.allowRequest(1000));
+        Assert.assertTrue(breaker.allowRequest(1020));
+        breaker.recordResult(true, 1030);
+        Assert.assertEquals("CLOSED", breaker.getState());
+        Assert.assertTrue(breaker.allowRequest(1040));
+        Assert.assertEquals(2, breaker.getOpenCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidConfigurationTest() {
+        new KeyManagerCircuitBreaker(1.5, 10, 60000, 30000);
+    }
+
+    private static void record(KeyManagerCircuitBreaker breaker, boolean success, long currentTime) {
+        Assert.assertTrue(breaker.allowRequest(currentTime));
+        breaker.recordResult(success, currentTime);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class KeyValidationCoalescerTestCase {
+
+    @Test
+    public void coalesceTest() throws Exception {
+        KeyValidationCoalescer coalescer = new KeyValidationCoalescer();
+        Assert.assertTrue(coalescer.acquire("token1:/pizzashack/1.0.0/menu:GET", 10000));
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executorService.submit(() -> coalescer.acquire("token1:/pizzashack/1.0.0/menu:GET", 10000)));
+        }
+        // a different key is not held back by the validation in flight
+        Assert.assertTrue(coalescer.acquire("token2:/pizzashack/1.0.0/menu:GET", 10000));
+        Thread.sleep(200);
+        Assert.assertEquals(2, coalescer.getInFlightCount());
+        coalescer.release("token1:/pizzashack/1.0.0/menu:GET");
+        for (Future<Boolean> result : results) {
+            Assert.assertFalse(result.get(5, TimeUnit.SECONDS));
+        }
+        executorService.shutdown();
+        Assert.assertEquals(2, coalescer.getValidationCount());
+        Assert.assertEquals(8, coalescer.getCoalescedCount());
+        Assert.assertEquals(8, coalescer.getMaxWaiterCount());
+        Assert.assertEquals(0, coalescer.getTimeoutCount());
+        // the key can be validated again once released
+        Assert.assertTrue(coalescer.acquire("token1:/pizzashack/1.0.0/menu:GET", 10000));
+    }
+
+    @Test
+    public void timeoutTest() {
+        KeyValidationCoalescer coalescer = new KeyValidationCoalescer();
+        Assert.assertTrue(coalescer.acquire("token1", 100));
+        long startTime = System.currentTimeMillis();
+        Assert.assertFalse(coalescer.acquire("token1", 100));
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= 100);
+        Assert.assertEquals(1, coalescer.getTimeoutCount());
+    }
+
+    @Test
+    public void takeOverTest() throws InterruptedException {
+        KeyValidationCoalescer coalescer = new KeyValidationCoalescer();
+        Assert.assertTrue(coalescer.acquire("token1", 50));
+        // the first request never releases the key
+        Thread.sleep(100);
+        Assert.assertTrue(coalescer.acquire("token1", 50));
+        Assert.assertEquals(1, coalescer.getInFlightCount());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class KeyValidationProtocolTestCase {
+
+    private static final String APIM_RESPONSE = "<soapenv:Envelope "
+            + "xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body>"
+            + "<ns:validateKeyResponse xmlns:ns=\"http://org.apache.axis2/xsd\">"
+            + "<ns:return xmlns:ax2133=\"http://dto.impl.apimgt.carbon.wso2.org/xsd\" "
+            + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:type=\"ax2133:APIKeyValidationInfoDTO\">"
+            + "<ax2133:apiName>PizzaShackAPI</ax2133:apiName><ax2133:apiTier xsi:nil=\"true\" />"
+            + "<ax2133:authorized>true</ax2133:authorized><ax2133:endUserName>admin@carbon.super</ax2133:endUserName>"
+            + "<ax2133:scopes>default</ax2133:scopes><ax2133:scopes>am_application_scope</ax2133:scopes>"
+            + "<ax2133:throttlingDataList>api_level_throttling_key</ax2133:throttlingDataList>"
+            + "<ax2133:throttlingDataList>resource_level_throttling_key</ax2133:throttlingDataList>"
+            + "<ax2133:type>PRODUCTION</ax2133:type><ax2133:validityPeriod>3600</ax2133:validityPeriod>"
+            + "</ns:return></ns:validateKeyResponse></soapenv:Body></soapenv:Envelope>";
+
+    private StubKeyManager keyManager;
+    private String keyManagerUrl;
+
+    @Before
+    public void startKeyManager() throws IOException {
+        keyManager = new StubKeyManager();
+        keyManagerUrl = keyManager.start();
+    }
+
+    @After
+    public void stopKeyManager() {
+        keyManager.stop();
+    }
+
+    @Test
+    public void soapResponseTest() throws KeyValidationException {
+        String[] values = parse(new SoapKeyValidationProtocol(SoapKeyValidationProtocol.DEFAULT_PATH), APIM_RESPONSE);
+        Assert.assertEquals("PizzaShackAPI", values[KeyValidationField.API_NAME.ordinal()]);
+        Assert.assertEquals("", values[KeyValidationField.API_TIER.ordinal()]);
+        Assert.assertEquals("true", values[KeyValidationField.AUTHORIZED.ordinal()]);
+        Assert.assertEquals("PRODUCTION", values[KeyValidationField.KEY_TYPE.ordinal()]);
+        Assert.assertEquals("api_level_throttling_key,resource_level_throttling_key",
+                values[KeyValidationField.THROTTLING_DATA_LIST.ordinal()]);
+        Assert.assertEquals("", values[KeyValidationField.CONSUMER_KEY.ordinal()]);
+    }
+
+    @Test
+    public void soapFaultTest() {
+        String fault = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body>"
+                + "<soapenv:Fault><faultcode>soapenv:Server</faultcode><faultstring>Access Denied</faultstring>"
+                + "</soapenv:Fault></soapenv:Body></soapenv:Envelope>";
+        try {
+            parse(new SoapKeyValidationProtocol(SoapKeyValidationProtocol.DEFAULT_PATH), fault);
+            Assert.fail("A fault was read as a key validation result");
+        } catch (KeyValidationException e) {
+            Assert.assertTrue(e.getMessage().contains("Access Denied"));
+        }
+    }
+
+    @Test(expected = KeyValidationException.class)
+    public void soapDoctypeTest() throws KeyValidationException {
+        parse(new SoapKeyValidationProtocol(SoapKeyValidationProtocol.DEFAULT_PATH),
+                "<!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>" + APIM_RESPONSE.replace(
+                        "PizzaShackAPI", "&xxe;"));
+    }
+
+    @Test
+    public void jsonResponseTest() throws KeyValidationException {
+        String[] values = parse(new JsonKeyValidationProtocol(JsonKeyValidationProtocol.DEFAULT_PATH),
+                "{\"apiName\" : \"Pizza\\u0020\\\"Shack\\\"\", \"authorized\": true, \"type\":\"SANDBOX\", "
+                        + "\"scopes\": [\"default\"], \"throttlingDataList\": [\"a\", \"b\"], \"issuedTime\": "
+                        + "1528825112163, \"endUserToken\": null, \"subscriberInfo\": {\"name\": [1, {}]}}");
+        Assert.assertEquals("Pizza \"Shack\"", values[KeyValidationField.API_NAME.ordinal()]);
+        Assert.assertEquals("true", values[KeyValidationField.AUTHORIZED.ordinal()]);
+        Assert.assertEquals("SANDBOX", values[KeyValidationField.KEY_TYPE.ordinal()]);
+        Assert.assertEquals("a,b", values[KeyValidationField.THROTTLING_DATA_LIST.ordinal()]);
+        Assert.assertEquals("1528825112163", values[KeyValidationField.ISSUED_TIME.ordinal()]);
+        Assert.assertEquals("", values[KeyValidationField.END_USER_TOKEN.ordinal()]);
+    }
+
+    @Test
+    public void invalidResponseTest() {
+        KeyValidationProtocol soap = new SoapKeyValidationProtocol(SoapKeyValidationProtocol.DEFAULT_PATH);
+        KeyValidationProtocol json = new JsonKeyValidationProtocol(JsonKeyValidationProtocol.DEFAULT_PATH);
+        for (String payload : new String[]{"", "<html>Bad Gateway</html>", "{\"error\": \"server_error\"}",
+                "{\"authorized\": true", "{\"authorized\" true}"}) {
+            for (KeyValidationProtocol protocol : new KeyValidationProtocol[]{soap, json}) {
+                try {
+                    parse(protocol, payload);
+                    Assert.fail(payload + " was read as a key validation result");
+                } catch (KeyValidationException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stubKeyManagerTest() throws IOException, KeyValidationException {
+        String[] result = KeyValidationResultStoreTestCase.createResult(1);
+        result[KeyValidationField.API_TIER.ordinal()] = "";
+        keyManager.addToken("4f9a3c1e-7d2b-3a5f-8e6d-1c0b9a8f7e6d", result);
+        for (KeyValidationProtocol protocol : new KeyValidationProtocol[]{
+                KeyValidationProtocols.create(KeyValidationProtocols.SOAP, ""),
+                KeyValidationProtocols.create(KeyValidationProtocols.JSON, "")}) {
+            Assert.assertArrayEquals(result, validate(protocol, "4f9a3c1e-7d2b-3a5f-8e6d-1c0b9a8f7e6d"));
+            String[] invalid = validate(protocol, "<&\"unknown\">");
+            Assert.assertEquals("false", invalid[KeyValidationField.AUTHORIZED.ordinal()]);
+            Assert.assertEquals(StubKeyManager.INVALID_CREDENTIALS,
+                    invalid[KeyValidationField.VALIDATION_STATUS.ordinal()]);
+        }
+        Assert.assertEquals(4, keyManager.getRequestCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownProtocolTest() {
+        KeyValidationProtocols.create("org.ballerina.gateway.keyvalidation.UnknownProtocol", "/validate");
+    }
+
+    private String[] validate(KeyValidationProtocol protocol, String accessToken)
+            throws IOException, KeyValidationException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(keyManagerUrl + protocol.getPath())
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        for (Map.Entry<String, String> header : protocol.getHeaders().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(protocol.createRequest(new KeyValidationRequest("/pizzashack", "1.0.0", accessToken, "Any",
+                    "*", "/menu", "GET")).getBytes(StandardCharsets.UTF_8));
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return protocol.parseResponse(in);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String[] parse(KeyValidationProtocol protocol, String payload) throws KeyValidationException {
+        return protocol.parseResponse(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+}
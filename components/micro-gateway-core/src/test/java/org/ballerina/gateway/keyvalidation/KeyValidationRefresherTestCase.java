@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyValidationRefresherTestCase {
+
+    @Test
+    public void refreshAheadTest() {
+        KeyValidationRefresher refresher = new KeyValidationRefresher(0.75, 1000);
+        refresher.validated("token1", 0);
+        Assert.assertFalse(refresher.claimRefresh("token1", 749));
+        Assert.assertTrue(refresher.claimRefresh("token1", 750));
+        // a single refresh of a key runs at a time
+        Assert.assertFalse(refresher.claimRefresh("token1", 760));
+        refresher.validated("token1", 800);
+        refresher.refreshed("token1", true, 800);
+        Assert.assertFalse(refresher.claimRefresh("token1", 900));
+        Assert.assertTrue(refresher.claimRefresh("token1", 1550));
+        Assert.assertEquals(1, refresher.getRefreshCount());
+        Assert.assertEquals(50, refresher.getMaxRefreshLatency());
+    }
+
+    @Test
+    public void failedRefreshTest() {
+        KeyValidationRefresher refresher = new KeyValidationRefresher(0.5, 1000);
+        refresher.validated("token1", 0);
+        Assert.assertTrue(refresher.claimRefresh("token1", 500));
+        refresher.refreshed("token1", false, 600);
+        // the next request tries again
+        Assert.assertTrue(refresher.claimRefresh("token1", 610));
+        Assert.assertEquals(1, refresher.getRefreshFailureCount());
+    }
+
+    @Test
+    public void sweepTest() {
+        KeyValidationRefresher refresher = new KeyValidationRefresher(0.5, 1000);
+        refresher.validated("token1", 1000);
+        refresher.validated("token2", 1500);
+        Assert.assertEquals(2, refresher.getTrackedCount());
+        refresher.validated("token3", 2200);
+        Assert.assertEquals(2, refresher.getTrackedCount());
+        refresher.remove("token2");
+        Assert.assertEquals(1, refresher.getTrackedCount());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Memory footprint benchmark of the {@link KeyValidationResultStore}, comparing the heap taken per cached result by
+ * a map of full access tokens to plain field values, as kept by the Ballerina cache, with the compact store on and
+ * off heap. It is not part of the default test run, as its name does not match the test includes; run it with the
+ * benchmark profile, optionally setting the number of entries:
+ * <pre>
+ * mvn test -Pbenchmark -Dbenchmark.entries=100000
+ * </pre>
+ */
+public class KeyValidationResultStoreBenchmark {
+
+    private static final int DEFAULT_ENTRIES = 100000;
+    private static final int APPLICATIONS = 100;
+    // a typical signed JWT passed to the back end
+    private static final int END_USER_TOKEN_LENGTH = 1200;
+
+    @Test
+    public void footprintBenchmark() {
+        int entries = Integer.getInteger("benchmark.entries", DEFAULT_ENTRIES);
+        String[] tokens = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            tokens[i] = UUID.randomUUID().toString();
+        }
+
+        long baseline = usedHeap();
+        Map<String, String[]> plainCache = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            plainCache.put(tokens[i] + ":/pizzashack/1.0.0", createResult(i));
+        }
+        // sizes are read after measuring, so that the maps stay reachable until then
+        long plainHeap = usedHeap() - baseline;
+        report("plain", plainCache.size(), plainHeap, 0);
+        plainCache = null;
+
+        for (boolean offHeap : new boolean[]{false, true}) {
+            baseline = usedHeap();
+            long baselineDirect = usedDirectMemory();
+            KeyValidationResultStore store = new KeyValidationResultStore(entries, Long.MAX_VALUE, 0.25f, offHeap);
+            for (int i = 0; i < entries; i++) {
+                store.put(CacheKeyDigest.digest(tokens[i] + ":/pizzashack/1.0.0").toString(), createResult(i), 0);
+            }
+            long heap = usedHeap() - baseline;
+            report(offHeap ? "compact off heap" : "compact on heap", store.getEntryCount(), heap,
+                    usedDirectMemory() - baselineDirect);
+            Assert.assertEquals(entries, store.getEntryCount());
+            Assert.assertTrue("The compact store should take less heap than the plain map", heap < plainHeap);
+        }
+    }
+
+    private static String[] createResult(int index) {
+        // every field is a separate string, as when a result is read from the key manager response
+        String[] values = new String[KeyValidationField.values().length];
+        int application = index % APPLICATIONS;
+        values[KeyValidationField.API_NAME.ordinal()] = new String("PizzaShackAPI");
+        values[KeyValidationField.API_PUBLISHER.ordinal()] = new String("admin");
+        values[KeyValidationField.API_TIER.ordinal()] = new String("Unlimited");
+        values[KeyValidationField.APPLICATION_ID.ordinal()] = String.valueOf(application);
+        values[KeyValidationField.APPLICATION_NAME.ordinal()] = "Application" + application;
+        values[KeyValidationField.APPLICATION_TIER.ordinal()] = new String("Unlimited");
+        values[KeyValidationField.AUTHORIZED.ordinal()] = new String("true");
+        values[KeyValidationField.AUTHORIZED_DOMAINS.ordinal()] = new String("ALL");
+        values[KeyValidationField.CONSUMER_KEY.ordinal()] = "Ow8nWhBQ4hPtbZ3ACNgkuGlNc" + application;
+        values[KeyValidationField.CONTENT_AWARE.ordinal()] = new String("false");
+        values[KeyValidationField.END_USER_NAME.ordinal()] = "user" + index + "@carbon.super";
+        StringBuilder endUserToken = new StringBuilder("eyJ0eXAiOiJKV1QiLCJhbGciOiJSUzI1NiJ9.");
+        while (endUserToken.length() < END_USER_TOKEN_LENGTH) {
+            endUserToken.append(Integer.toHexString(index * 31 + endUserToken.length()));
+        }
+        values[KeyValidationField.END_USER_TOKEN.ordinal()] = endUserToken.toString();
+        values[KeyValidationField.ISSUED_TIME.ordinal()] = String.valueOf(1530000000000L + index);
+        values[KeyValidationField.SPIKE_ARREST_LIMIT.ordinal()] = new String("0");
+        values[KeyValidationField.SPIKE_ARREST_UNIT.ordinal()] = new String("");
+        values[KeyValidationField.STOP_ON_QUOTA_REACH.ordinal()] = new String("true");
+        values[KeyValidationField.SUBSCRIBER.ordinal()] = "subscriber" + application;
+        values[KeyValidationField.SUBSCRIBER_TENANT_DOMAIN.ordinal()] = new String("carbon.super");
+        values[KeyValidationField.THROTTLING_DATA_LIST.ordinal()] = new String("[\"api_level_throttling_key\"]");
+        values[KeyValidationField.TIER.ordinal()] = new String("Gold");
+        values[KeyValidationField.KEY_TYPE.ordinal()] = new String("PRODUCTION");
+        values[KeyValidationField.USER_TYPE.ordinal()] = new String("APPLICATION");
+        values[KeyValidationField.VALIDATION_STATUS.ordinal()] = new String("0");
+        values[KeyValidationField.VALIDITY_PERIOD.ordinal()] = new String("3600");
+        return values;
+    }
+
+    private static void report(String name, int entries, long heap, long direct) {
+        System.out.printf("%-18s heap: %8d KB (%5d bytes per result), direct: %8d KB%n", name, heap / 1024,
+                heap / entries, direct / 1024);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirectMemory() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyValidationResultStoreTestCase {
+
+    @Test
+    public void cacheKeyDigestTest() {
+        CacheKeyDigest digest = CacheKeyDigest.digest("4f9a3c1e-7d2b-3a5f-8e6d-1c0b9a8f7e6d:/pizzashack/1.0.0");
+        String cacheKey = digest.toString();
+        Assert.assertEquals(CacheKeyDigest.ENCODED_LENGTH, cacheKey.length());
+        Assert.assertEquals(digest, CacheKeyDigest.fromCacheKey(cacheKey));
+        Assert.assertEquals(digest, CacheKeyDigest.digest("4f9a3c1e-7d2b-3a5f-8e6d-1c0b9a8f7e6d:/pizzashack/1.0.0"));
+        Assert.assertNotEquals(digest, CacheKeyDigest.digest("4f9a3c1e-7d2b-3a5f-8e6d-1c0b9a8f7e6d:/pizzashack/2.0.0"));
+        Assert.assertEquals(CacheKeyDigest.digest("token1"), CacheKeyDigest.fromCacheKey("token1"));
+    }
+
+    @Test
+    public void roundTripTest() {
+        roundTrip(false);
+        roundTrip(true);
+    }
+
+    private void roundTrip(boolean offHeap) {
+        KeyValidationResultStore store = new KeyValidationResultStore(100, 1000, 0.25f, offHeap);
+        String[] values = createResult(1);
+        values[KeyValidationField.END_USER_NAME.ordinal()] = "\u0645\u0633\u062a\u062e\u062f\u0645@carbon.super";
+        values[KeyValidationField.AUTHORIZED_DOMAINS.ordinal()] = "";
+        store.put("token1", values, 0);
+        Assert.assertArrayEquals(values, store.get("token1", 10));
+        Assert.assertNull(store.get("token2", 10));
+        Assert.assertEquals(1, store.getHitCount());
+        Assert.assertEquals(1, store.getMissCount());
+        store.remove("token1");
+        Assert.assertNull(store.get("token1", 10));
+        Assert.assertEquals(0, store.getValueBytes());
+    }
+
+    @Test
+    public void internTest() {
+        KeyValidationResultStore store = new KeyValidationResultStore(100, 1000, 0.25f, false);
+        store.put("token1", createResult(1), 0);
+        int dictionarySize = store.getDictionarySize();
+        long valueBytes = store.getValueBytes();
+        store.put("token2", createResult(2), 0);
+        // the second result only adds its own consumer key, user and token
+        Assert.assertEquals(dictionarySize, store.getDictionarySize());
+        Assert.assertEquals(2 * valueBytes, store.getValueBytes());
+        String[] first = store.get("token1", 0);
+        String[] second = store.get("token2", 0);
+        int tier = KeyValidationField.TIER.ordinal();
+        Assert.assertSame(first[tier], second[tier]);
+        Assert.assertEquals("consumerKey2", second[KeyValidationField.CONSUMER_KEY.ordinal()]);
+    }
+
+    @Test
+    public void expiryTest() {
+        KeyValidationResultStore store = new KeyValidationResultStore(4, 1000, 0.5f, false);
+        for (int i = 0; i < 5; i++) {
+            store.put("token" + i, createResult(i), i);
+        }
+        // the least recently used half of the capacity is evicted
+        Assert.assertEquals(2, store.getEntryCount());
+        Assert.assertNull(store.get("token0", 10));
+        Assert.assertNotNull(store.get("token4", 600));
+        Assert.assertNull(store.get("token3", 1500));
+        Assert.assertNotNull(store.get("token4", 1500));
+    }
+
+    @Test
+    public void staleTest() {
+        KeyValidationResultStore store = new KeyValidationResultStore(100, 1000, 0.25f, false, 10, 500);
+        store.put("token1", createResult(1), 0);
+        Assert.assertNull(store.get("token1", 1200));
+        Assert.assertEquals(0, store.getEntryCount());
+        Assert.assertEquals(1, store.getStaleEntryCount());
+        // the expired result is served stale up to the maximum staleness after its expiry
+        Assert.assertArrayEquals(createResult(1), store.getStale("token1", 1200));
+        Assert.assertNotNull(store.getStale("token1", 1499));
+        Assert.assertEquals(2, store.getStaleHitCount());
+        Assert.assertNull(store.getStale("token1", 1500));
+        Assert.assertEquals(0, store.getStaleEntryCount());
+        Assert.assertEquals(0, store.getValueBytes());
+    }
+
+    @Test
+    public void staleEvictionTest() {
+        KeyValidationResultStore store = new KeyValidationResultStore(4, 1000, 0.5f, false, 2, 500);
+        for (int i = 0; i < 5; i++) {
+            store.put("token" + i, createResult(i), i);
+        }
+        // of the evicted results, the shadow tier keeps the ones which left the cache last
+        Assert.assertEquals(2, store.getStaleEntryCount());
+        Assert.assertNull(store.getStale("token0", 10));
+        Assert.assertArrayEquals(createResult(2), store.getStale("token2", 10));
+        // a result which is still cached is not a stale hit
+        Assert.assertNotNull(store.getStale("token4", 10));
+        Assert.assertEquals(1, store.getStaleHitCount());
+        // a result cached again leaves the shadow tier
+        store.put("token2", createResult(2), 20);
+        Assert.assertEquals(1, store.getStaleEntryCount());
+        store.remove("token1");
+        Assert.assertEquals(0, store.getStaleEntryCount());
+        Assert.assertNull(store.getStale("token1", 20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidResultTest() {
+        new KeyValidationResultStore(100, 1000, 0.25f, false).put("token1", new String[3], 0);
+    }
+
+    static String[] createResult(int index) {
+        String[] values = new String[KeyValidationField.values().length];
+        for (KeyValidationField field : KeyValidationField.values()) {
+            values[field.ordinal()] = field.getFieldName();
+        }
+        values[KeyValidationField.API_NAME.ordinal()] = "PizzaShackAPI";
+        values[KeyValidationField.API_TIER.ordinal()] = "Unlimited";
+        values[KeyValidationField.TIER.ordinal()] = "Gold";
+        values[KeyValidationField.AUTHORIZED.ordinal()] = "true";
+        values[KeyValidationField.CONSUMER_KEY.ordinal()] = "consumerKey" + index;
+        values[KeyValidationField.END_USER_NAME.ordinal()] = "user" + index + "@carbon.super";
+        values[KeyValidationField.END_USER_TOKEN.ordinal()] = "eyJ0eXAiOiJKV1QiLCJhbGciOiJSUzI1NiJ9." + index;
+        values[KeyValidationField.ISSUED_TIME.ordinal()] = "153000000000" + index;
+        return values;
+    }
+}
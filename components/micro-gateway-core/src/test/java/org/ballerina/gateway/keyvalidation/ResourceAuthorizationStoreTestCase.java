@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResourceAuthorizationStoreTestCase {
+
+    @Test
+    public void resourceIndexTest() {
+        int menuIndex = ResourceAuthorizationStore.getResourceIndex("/index/1.0.0", "/menu:GET");
+        int orderIndex = ResourceAuthorizationStore.getResourceIndex("/index/1.0.0", "/order:POST");
+        Assert.assertNotEquals(menuIndex, orderIndex);
+        Assert.assertEquals(menuIndex, ResourceAuthorizationStore.getResourceIndex("/index/1.0.0", "/menu:GET"));
+        // resources of each API are numbered from 0
+        Assert.assertEquals(0, ResourceAuthorizationStore.getResourceIndex("/index/2.0.0", "/order:POST"));
+    }
+
+    @Test
+    public void authorizeTest() {
+        ResourceAuthorizationStore store = new ResourceAuthorizationStore(100, 1000);
+        Assert.assertFalse(store.isAuthorized("token1", 0, 0));
+        store.authorize("token1", 0, true, 0);
+        store.authorize("token1", 70, false, 0);
+        Assert.assertTrue(store.isAuthorized("token1", 0, 0));
+        Assert.assertTrue(store.isAuthorized("token1", 70, 0));
+        Assert.assertFalse(store.isAuthorized("token1", 6, 0));
+        Assert.assertFalse(store.isAuthorized("token1", 134, 0));
+        Assert.assertFalse(store.isAuthorized("token2", 0, 0));
+        // a reset forgets the resources authorized earlier
+        store.authorize("token1", 6, true, 0);
+        Assert.assertTrue(store.isAuthorized("token1", 6, 0));
+        Assert.assertFalse(store.isAuthorized("token1", 0, 0));
+        store.remove("token1");
+        Assert.assertFalse(store.isAuthorized("token1", 6, 0));
+        Assert.assertEquals(3, store.getHitCount());
+    }
+
+    @Test
+    public void evictionTest() {
+        ResourceAuthorizationStore store = new ResourceAuthorizationStore(4, 1000);
+        for (int i = 0; i < 5; i++) {
+            store.authorize("token" + i, 0, true, i);
+        }
+        Assert.assertEquals(3, store.getTokenCount());
+        Assert.assertFalse(store.isAuthorized("token0", 0, 10));
+        Assert.assertTrue(store.isAuthorized("token4", 0, 600));
+        // unused tokens are swept after the expiry time
+        store.authorize("token5", 0, true, 1500);
+        Assert.assertEquals(2, store.getTokenCount());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local key manager serving the key validation service in the SOAP and JSON protocols, for tests. Registered tokens
+ * are validated with their result, any other token is reported as invalid credentials.
+ */
+public class StubKeyManager {
+
+    static final String INVALID_CREDENTIALS = "900901";
+    private static final Pattern SOAP_TOKEN = Pattern.compile("<xsd:accessToken>(.*?)</xsd:accessToken>");
+    private static final Pattern JSON_TOKEN = Pattern.compile("\"accessToken\":\"(.*?)\"");
+
+    private final Map<String, String[]> tokenMap = new ConcurrentHashMap<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private HttpServer server;
+
+    /**
+     * Starts the key manager on a free port of the loop back interface.
+     *
+     * @return URL of the key manager
+     */
+    public String start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(SoapKeyValidationProtocol.DEFAULT_PATH,
+                exchange -> respond(exchange, "text/xml", createSoapResponse(getResult(exchange, SOAP_TOKEN))));
+        server.createContext(JsonKeyValidationProtocol.DEFAULT_PATH,
+                exchange -> respond(exchange, "application/json",
+                        createJsonResponse(getResult(exchange, JSON_TOKEN))));
+        server.start();
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Registers a valid token.
+     *
+     * @param accessToken access token
+     * @param result      values of the key validation result of the token in the order of {@link KeyValidationField}
+     */
+    public void addToken(String accessToken, String[] result) {
+        tokenMap.put(accessToken, result);
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    private String[] getResult(HttpExchange exchange, Pattern tokenPattern) throws IOException {
+        requestCount.incrementAndGet();
+        Matcher matcher = tokenPattern.matcher(readRequest(exchange.getRequestBody()));
+        String[] result = matcher.find() ? tokenMap.get(matcher.group(1)) : null;
+        if (result == null) {
+            result = new String[KeyValidationField.values().length];
+            result[KeyValidationField.AUTHORIZED.ordinal()] = "false";
+            result[KeyValidationField.VALIDATION_STATUS.ordinal()] = INVALID_CREDENTIALS;
+        }
+        return result;
+    }
+
+    private static String createSoapResponse(String[] result) {
+        StringBuilder builder = new StringBuilder("<soapenv:Envelope "
+                + "xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body>"
+                + "<ns:validateKeyResponse xmlns:ns=\"http://org.apache.axis2/xsd\"><ns:return "
+                + "xmlns:ax2133=\"http://dto.impl.apimgt.carbon.wso2.org/xsd\" "
+                + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+                + "xsi:type=\"ax2133:APIKeyValidationInfoDTO\">");
+        for (KeyValidationField field : KeyValidationField.values()) {
+            String value = result[field.ordinal()];
+            if (value == null || value.isEmpty()) {
+                builder.append("<ax2133:").append(field.getElementName()).append(" xsi:nil=\"true\"/>");
+            } else {
+                builder.append("<ax2133:").append(field.getElementName()).append('>').append(value)
+                        .append("</ax2133:").append(field.getElementName()).append('>');
+            }
+        }
+        return builder.append("</ns:return></ns:validateKeyResponse></soapenv:Body></soapenv:Envelope>").toString();
+    }
+
+    private static String createJsonResponse(String[] result) {
+        StringBuilder builder = new StringBuilder("{");
+        for (KeyValidationField field : KeyValidationField.values()) {
+            String value = result[field.ordinal()];
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append('"').append(field.getElementName()).append("\":");
+            if (value == null) {
+                builder.append("null");
+            } else if (field == KeyValidationField.AUTHORIZED) {
+                builder.append(value);
+            } else {
+                builder.append('"').append(value).append('"');
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String readRequest(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.keyvalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class VerifiedJwtStoreTestCase {
+
+    @Test
+    public void parseTest() {
+        VerifiedJwt jwt = VerifiedJwt.parse(createJwt("{\"sub\":\"admin\",\"iss\":\"https://localhost:8243/token\","
+                + "\"exp\":1000,\"scope\":\"read write\",\"keytype\":\"PRODUCTION\",\"nested\":{\"a\":1},"
+                + "\"application\":{\"owner\":\"admin\",\"tier\":\"Unlimited\",\"name\":\"App1\",\"id\":2},"
+                + "\"tierInfo\":{\"Gold\":{\"stopOnQuotaReach\":true}},\"endUser\":\"admin@carbon.super\","
+                + "\"subscribedAPIs\":[{\"subscriberTenantDomain\":\"carbon.super\",\"name\":\"PizzaShack\","
+                + "\"context\":\"/pizzashack/1.0.0\",\"publisher\":\"admin\",\"version\":\"1.0.0\","
+                + "\"subscriptionTier\":\"Gold\",\"subscriber\":\"admin\"}],\"consumerKey\":\"key1\"}"));
+        Assert.assertEquals(1000000, jwt.getExpiryTime());
+        String[] values = jwt.getValues();
+        Assert.assertEquals("admin", values[JwtField.SUBJECT.ordinal()]);
+        Assert.assertEquals("admin@carbon.super", values[JwtField.END_USER.ordinal()]);
+        Assert.assertEquals("2", values[JwtField.APPLICATION_ID.ordinal()]);
+        Assert.assertEquals("App1", values[JwtField.APPLICATION_NAME.ordinal()]);
+        Assert.assertEquals("key1", values[JwtField.CONSUMER_KEY.ordinal()]);
+        Assert.assertEquals("", values[JwtField.PUBLISHER.ordinal()]);
+        Assert.assertArrayEquals(new String[]{"read", "write"}, jwt.getScopes());
+        // registered and nested claims are not custom claims of the user principal
+        Assert.assertEquals("PRODUCTION", jwt.getClaims().get("keytype"));
+        Assert.assertNull(jwt.getClaims().get("sub"));
+        Assert.assertNull(jwt.getClaims().get("nested"));
+        VerifiedJwt.Subscription subscription = jwt.getSubscription("PizzaShack", "1.0.0");
+        Assert.assertEquals("Gold", subscription.getSubscriptionTier());
+        Assert.assertEquals("admin", subscription.getSubscriber());
+        Assert.assertNull(jwt.getSubscription("PizzaShack", "2.0.0"));
+    }
+
+    @Test
+    public void subscriptionIndexTest() {
+        StringBuilder payload = new StringBuilder("{\"exp\":1000,\"subscribedAPIs\":[");
+        for (int i = 0; i < 200; i++) {
+            payload.append("{\"name\":\"API").append(i % 100).append("\",\"version\":\"").append(i / 100)
+                    .append(".0\",\"subscriptionTier\":\"Tier").append(i).append("\",\"subscriber\":\"admin\"},");
+        }
+        // a repeated subscription does not replace the first one
+        payload.append("{\"name\":\"API0\",\"version\":\"0.0\",\"subscriptionTier\":\"Other\"}]}");
+        VerifiedJwt jwt = VerifiedJwt.parse(createJwt(payload.toString()));
+        Assert.assertEquals(200, jwt.getSubscriptionCount());
+        Assert.assertEquals("Tier0", jwt.getSubscription("API0", "0.0").getSubscriptionTier());
+        Assert.assertEquals("Tier142", jwt.getSubscription("API42", "1.0").getSubscriptionTier());
+        Assert.assertNull(jwt.getSubscription("API42", "2.0"));
+        Assert.assertNull(jwt.getSubscription("API100", "0.0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noExpiryTest() {
+        VerifiedJwt.parse(createJwt("{\"sub\":\"admin\"}"));
+    }
+
+    @Test
+    public void subscriptionValuesTest() {
+        // tokens which are not cached are parsed without requiring an expiry
+        VerifiedJwt jwt = VerifiedJwt.parse(createJwt("{\"endUser\":\"admin\",\"subscribedAPIs\":[{\"name\":"
+                + "\"PizzaShackAPI\",\"version\":\"1.0.0\",\"subscriptionTier\":\"Gold\",\"subscriber\":"
+                + "\"owner\"}]}"), false);
+        Assert.assertEquals(Long.MAX_VALUE, jwt.getExpiryTime());
+        String[] values = jwt.getSubscriptionValues("PizzaShackAPI", "1.0.0");
+        Assert.assertEquals(JwtField.values().length + 2, values.length);
+        Assert.assertEquals("admin", values[JwtField.END_USER.ordinal()]);
+        Assert.assertEquals("Gold", values[JwtField.values().length]);
+        Assert.assertEquals("owner", values[JwtField.values().length + 1]);
+        Assert.assertEquals(JwtField.values().length, jwt.getSubscriptionValues("PizzaShackAPI", "2.0.0").length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedTest() {
+        VerifiedJwt.parse("header.payload");
+    }
+
+    @Test
+    public void expiryTest() {
+        VerifiedJwtStore store = new VerifiedJwtStore(100);
+        String jwt = createJwt("{\"sub\":\"admin\",\"exp\":10}");
+        Assert.assertNotNull(store.put("jwt1", jwt, 0));
+        Assert.assertNotNull(store.get("jwt1", 9999));
+        Assert.assertNull(store.get("jwt1", 10000));
+        // a token which has already expired is not cached
+        Assert.assertNull(store.put("jwt1", jwt, 10000));
+        Assert.assertEquals(0, store.getEntryCount());
+        Assert.assertEquals(1, store.getHitCount());
+        Assert.assertEquals(1, store.getMissCount());
+    }
+
+    @Test
+    public void notBeforeTest() {
+        VerifiedJwtStore store = new VerifiedJwtStore(100, 1000);
+        String jwt = createJwt("{\"sub\":\"admin\",\"nbf\":10,\"exp\":20}");
+        // a token which is not valid yet, even allowing for the clock skew, is not cached
+        Assert.assertNull(store.put("jwt1", jwt, 8999));
+        Assert.assertNotNull(store.put("jwt1", jwt, 9000));
+        Assert.assertNotNull(store.get("jwt1", 9000));
+        Assert.assertNull(store.get("jwt1", 8000));
+        Assert.assertNotNull(store.get("jwt1", 10000));
+        Assert.assertEquals(10000, store.get("jwt1", 10000).getNotBeforeTime());
+    }
+
+    @Test
+    public void evictionTest() {
+        VerifiedJwtStore store = new VerifiedJwtStore(4);
+        for (int i = 0; i < 5; i++) {
+            store.put("jwt" + i, createJwt("{\"sub\":\"admin\",\"exp\":" + (10 - i) + "}"), 0);
+        }
+        // the tokens closest to their expiry are evicted
+        Assert.assertEquals(3, store.getEntryCount());
+        Assert.assertNotNull(store.lookup("jwt0", 0));
+        Assert.assertNull(store.lookup("jwt4", 0));
+        Assert.assertNull(store.lookup("jwt3", 0));
+        Assert.assertEquals(0, store.getHitCount());
+    }
+
+    @Test
+    public void claimIndexTest() {
+        // indexes of the JWT_CLAIM_ constants of constants.bal
+        Assert.assertEquals(0, JwtField.SUBJECT.ordinal());
+        Assert.assertEquals(1, JwtField.ISSUER.ordinal());
+        Assert.assertEquals(2, JwtField.END_USER.ordinal());
+        Assert.assertEquals(3, JwtField.CONSUMER_KEY.ordinal());
+        Assert.assertEquals(4, JwtField.API_TIER.ordinal());
+        Assert.assertEquals(5, JwtField.PUBLISHER.ordinal());
+        Assert.assertEquals(6, JwtField.SUBSCRIBER_TENANT_DOMAIN.ordinal());
+        Assert.assertEquals(7, JwtField.APPLICATION_ID.ordinal());
+        Assert.assertEquals(8, JwtField.APPLICATION_NAME.ordinal());
+        Assert.assertEquals(9, JwtField.APPLICATION_TIER.ordinal());
+        Assert.assertEquals(10, JwtField.values().length);
+    }
+
+    private static String createJwt(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+}
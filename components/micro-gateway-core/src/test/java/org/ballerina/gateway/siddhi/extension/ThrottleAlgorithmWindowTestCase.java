@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.siddhi.extension;
+
+import org.ballerinalang.siddhi.core.SiddhiAppRuntime;
+import org.ballerinalang.siddhi.core.SiddhiManager;
+import org.ballerinalang.siddhi.core.event.Event;
+import org.ballerinalang.siddhi.core.query.output.callback.QueryCallback;
+import org.ballerinalang.siddhi.core.stream.input.InputHandler;
+import org.ballerinalang.siddhi.core.util.EventPrinter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThrottleAlgorithmWindowTestCase {
+    private int inEventCount;
+    private Event lastCurrentEvent;
+
+    @Before
+    public void init() {
+        inEventCount = 0;
+        lastCurrentEvent = null;
+    }
+
+    @Test
+    public void slidingCounterTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = createRuntime("throttler:slidingCounter(2 sec, throttleKey, 3)", 3);
+        InputHandler inputHandler = executionPlanRuntime.getInputHandler("eligibilityStream");
+        executionPlanRuntime.start();
+        inputHandler.send(new Object[] { "app1:admin", true });
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(0, inEventCount);
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(1, inEventCount);
+        Assert.assertTrue("Event expiry time is not within the window",
+                (Long) (lastCurrentEvent.getData()[2]) <= System.currentTimeMillis() + 2000);
+        // the earlier events are still within the sliding window, hence a fixed window flip does not reset the count
+        Thread.sleep(1000);
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(2, inEventCount);
+        // once the window has fully slid past the earlier events the key can be served again
+        Thread.sleep(2500);
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(2, inEventCount);
+        executionPlanRuntime.shutdown();
+    }
+
+    @Test
+    public void tokenBucketTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = createRuntime("throttler:tokenBucket(1 sec, throttleKey, 5)", 5);
+        InputHandler inputHandler = executionPlanRuntime.getInputHandler("eligibilityStream");
+        executionPlanRuntime.start();
+        for (int i = 0; i < 4; i++) {
+            inputHandler.send(new Object[] { "app1:admin", true });
+        }
+        inputHandler.send(new Object[] { "app2:admin", true });
+        Assert.assertEquals(0, inEventCount);
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(1, inEventCount);
+        Assert.assertEquals("app1:admin", lastCurrentEvent.getData()[0]);
+        Assert.assertEquals(true, lastCurrentEvent.getData()[1]);
+        Assert.assertTrue("Throttled key should be released once a token is available",
+                (Long) (lastCurrentEvent.getData()[2]) <= System.currentTimeMillis() + 200);
+        // a full window refills the bucket to its capacity
+        Thread.sleep(1100);
+        for (int i = 0; i < 4; i++) {
+            inputHandler.send(new Object[] { "app1:admin", true });
+        }
+        Assert.assertEquals(1, inEventCount);
+        executionPlanRuntime.shutdown();
+    }
+
+    @Test
+    public void tokenBucketBurstTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = createRuntime("throttler:tokenBucket(1 sec, throttleKey, 5)", 5);
+        InputHandler inputHandler = executionPlanRuntime.getInputHandler("eligibilityStream");
+        executionPlanRuntime.start();
+        // keys which continue on throttle out keep sending well past the limit
+        for (int i = 0; i < 100; i++) {
+            inputHandler.send(new Object[] { "app1:admin", true });
+        }
+        Assert.assertEquals(96, inEventCount);
+        Assert.assertTrue("A long burst should not keep the key throttled beyond the next token",
+                (Long) (lastCurrentEvent.getData()[2]) <= System.currentTimeMillis() + 200);
+        Thread.sleep(300);
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(97, inEventCount);
+        Assert.assertTrue((Long) (lastCurrentEvent.getData()[2]) <= System.currentTimeMillis() + 200);
+        executionPlanRuntime.shutdown();
+    }
+
+    private SiddhiAppRuntime createRuntime(String window, int limit) {
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String eligibilityStream = "define stream eligibilityStream (throttleKey string, isEligible bool);";
+        String query = "@info(name = 'query1') from eligibilityStream[isEligible == true]#" + window + " "
+                + "select throttleKey, eventCount >= " + limit + " as isThrottled, expiryTimeStamp "
+                + "insert into resultStream ;";
+
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(eligibilityStream + query);
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                if (inEvents != null) {
+                    inEventCount = inEventCount + inEvents.length;
+                    lastCurrentEvent = inEvents[inEvents.length - 1];
+                }
+            }
+        });
+        return executionPlanRuntime;
+    }
+}
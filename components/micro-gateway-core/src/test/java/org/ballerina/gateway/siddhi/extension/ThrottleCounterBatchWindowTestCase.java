@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.siddhi.extension;
+
+import org.ballerinalang.siddhi.core.SiddhiAppRuntime;
+import org.ballerinalang.siddhi.core.SiddhiManager;
+import org.ballerinalang.siddhi.core.event.Event;
+import org.ballerinalang.siddhi.core.query.output.callback.QueryCallback;
+import org.ballerinalang.siddhi.core.stream.input.InputHandler;
+import org.ballerinalang.siddhi.core.util.EventPrinter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThrottleCounterBatchWindowTestCase {
+    private AtomicInteger inEventCount;
+    private Event lastCurrentEvent;
+
+    @Before
+    public void init() {
+        inEventCount = new AtomicInteger();
+        lastCurrentEvent = null;
+    }
+
+    @Test
+    public void throttleCounterBatchTest1() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = createRuntime("5 sec", 3);
+        InputHandler inputHandler = executionPlanRuntime.getInputHandler("eligibilityStream");
+        executionPlanRuntime.start();
+        for (int i = 0; i < 5; i++) {
+            inputHandler.send(new Object[] { "app1:admin", true });
+        }
+        inputHandler.send(new Object[] { "app2:admin", true });
+        inputHandler.send(new Object[] { "app2:admin", false });
+        Thread.sleep(500);
+        Assert.assertEquals(1, inEventCount.get());
+        Assert.assertEquals("app1:admin", lastCurrentEvent.getData()[0]);
+        Assert.assertEquals(true, lastCurrentEvent.getData()[1]);
+        Assert.assertTrue("Event expiry time is not valid for the current batch",
+                (Long) (lastCurrentEvent.getData()[2]) >= System.currentTimeMillis());
+        executionPlanRuntime.shutdown();
+    }
+
+    @Test
+    public void throttleCounterBatchTest2() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = createRuntime("2 sec", 2);
+        InputHandler inputHandler = executionPlanRuntime.getInputHandler("eligibilityStream");
+        executionPlanRuntime.start();
+        inputHandler.send(new Object[] { "app1:admin", true });
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Thread.sleep(2500);
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(1, inEventCount.get());
+        inputHandler.send(new Object[] { "app1:admin", true });
+        Assert.assertEquals(2, inEventCount.get());
+        executionPlanRuntime.shutdown();
+    }
+
+    @Test
+    public void throttleCounterBatchIdleKeyPurgeTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = createRuntime("1 sec", 2);
+        InputHandler inputHandler = executionPlanRuntime.getInputHandler("eligibilityStream");
+        executionPlanRuntime.start();
+        for (int i = 0; i < 100; i++) {
+            inputHandler.send(new Object[] { "app" + i + ":admin", true });
+        }
+        // let the keys stay idle for a whole window so that their counters get purged
+        Thread.sleep(2200);
+        inEventCount.set(0);
+        for (int i = 0; i < 100; i++) {
+            inputHandler.send(new Object[] { "app" + i + ":admin", true });
+            inputHandler.send(new Object[] { "app" + i + ":admin", true });
+        }
+        Thread.sleep(200);
+        Assert.assertEquals(100, inEventCount.get());
+        executionPlanRuntime.shutdown();
+    }
+
+    @Test
+    public void throttleCounterBatchConcurrentTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = createRuntime("1 min", 1000);
+        final InputHandler inputHandler = executionPlanRuntime.getInputHandler("eligibilityStream");
+        executionPlanRuntime.start();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executorService.submit(() -> {
+                try {
+                    for (int i = 0; i < 250; i++) {
+                        inputHandler.send(new Object[] { "app1:admin", true });
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+        Assert.assertEquals(1, inEventCount.get());
+        executionPlanRuntime.shutdown();
+    }
+
+    private SiddhiAppRuntime createRuntime(String windowTime, int limit) {
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String eligibilityStream = "define stream eligibilityStream (throttleKey string, isEligible bool);";
+        String query = "@info(name = 'query1') from eligibilityStream[isEligible == true]#throttler:counterBatch("
+                + windowTime + ", 0, throttleKey, " + limit + ") "
+                + "select throttleKey, eventCount >= " + limit + " as isThrottled, expiryTimeStamp "
+                + "insert into resultStream ;";
+
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(eligibilityStream + query);
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                if (inEvents != null) {
+                    inEventCount.addAndGet(inEvents.length);
+                    lastCurrentEvent = inEvents[inEvents.length - 1];
+                }
+            }
+        });
+        return executionPlanRuntime;
+    }
+}
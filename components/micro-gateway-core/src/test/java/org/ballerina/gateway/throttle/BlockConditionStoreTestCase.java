@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class BlockConditionStoreTestCase {
+
+    @Test
+    public void conditionTypeTest() {
+        BlockConditionStore store = new BlockConditionStore(new IpListRegistry());
+        Assert.assertFalse(store.hasConditions());
+        Assert.assertFalse(store.isBlocked("/pizzashack/1.0.0", "admin:DefaultApplication", "admin", "10.0.0.1"));
+
+        store.add("1", BlockConditionStore.API, "/pizzashack/1.0.0", false);
+        store.add("2", BlockConditionStore.APPLICATION, "admin:Default Application", false);
+        store.add("3", BlockConditionStore.USER, "bob", false);
+        store.add("4", BlockConditionStore.IP, "10.0.0.0/8", false);
+        store.add("5", BlockConditionStore.IP_RANGE, "192.168.0.10-192.168.0.20", false);
+        Assert.assertTrue(store.hasConditions());
+        Assert.assertEquals(5, store.getConditionCount());
+
+        Assert.assertTrue(store.isBlocked("/pizzashack/1.0.0", "", "", ""));
+        Assert.assertFalse(store.isBlocked("/pizzashack/2.0.0", "", "", ""));
+        Assert.assertTrue(store.isBlocked("", "admin:Default Application", "", ""));
+        Assert.assertFalse(store.isBlocked("", "bob:Default Application", "", ""));
+        Assert.assertTrue(store.isBlocked("", "", "bob", ""));
+        Assert.assertFalse(store.isBlocked("", "", "alice", ""));
+        Assert.assertTrue(store.isBlocked("", "", "", "10.1.2.3"));
+        Assert.assertTrue(store.isBlocked("", "", "", "192.168.0.15"));
+        Assert.assertFalse(store.isBlocked("", "", "", "192.168.0.21"));
+        Assert.assertFalse(store.isBlocked("", "", "", "not an address"));
+        Assert.assertFalse(store.isBlocked("/pizzashack/2.0.0", "admin:App", "alice", "11.0.0.1"));
+        Assert.assertEquals(5, store.getBlockedCount());
+    }
+
+    @Test
+    public void invertedConditionTest() {
+        BlockConditionStore store = new BlockConditionStore(new IpListRegistry());
+        // only the addresses within the range are let through
+        store.add("1", BlockConditionStore.IP_RANGE, "10.0.0.1-10.0.0.100", true);
+        Assert.assertFalse(store.isBlocked("", "", "", "10.0.0.50"));
+        Assert.assertTrue(store.isBlocked("", "", "", "10.0.0.101"));
+        Assert.assertTrue(store.isBlocked("", "", "", "2001:db8::1"));
+        // requests whose address is not known or not valid cannot be let through
+        Assert.assertTrue(store.isBlocked("/pizzashack/1.0.0", "", "", ""));
+        Assert.assertTrue(store.isBlocked("", "", "", "not an address"));
+
+        store.add("2", BlockConditionStore.IP, "10.0.0.0/24", true);
+        Assert.assertTrue(store.isBlocked("", "", "", "10.0.0.101"));
+        store.remove("1");
+        Assert.assertFalse(store.isBlocked("", "", "", "10.0.0.101"));
+        Assert.assertTrue(store.isBlocked("", "", "", "10.0.1.1"));
+    }
+
+    @Test
+    public void incrementalUpdateTest() {
+        BlockConditionStore store = new BlockConditionStore(new IpListRegistry());
+        store.add("1", BlockConditionStore.USER, "bob", false);
+        store.add("2", BlockConditionStore.USER, "bob", false);
+        store.add("3", BlockConditionStore.IP, "10.0.0.1", false);
+        // a value stays blocked while any of its conditions is left
+        Assert.assertTrue(store.remove("1"));
+        Assert.assertTrue(store.isBlocked("", "", "bob", ""));
+        Assert.assertTrue(store.remove("2"));
+        Assert.assertFalse(store.isBlocked("", "", "bob", ""));
+        Assert.assertFalse(store.remove("2"));
+        Assert.assertTrue(store.isBlocked("", "", "", "10.0.0.1"));
+
+        // replacing a condition with another type
+        store.add("3", BlockConditionStore.USER, "alice", false);
+        Assert.assertFalse(store.isBlocked("", "", "", "10.0.0.1"));
+        Assert.assertTrue(store.isBlocked("", "", "alice", ""));
+        Assert.assertTrue(store.remove("3"));
+        Assert.assertFalse(store.hasConditions());
+    }
+
+    @Test
+    public void ipListConditionTest() throws IOException {
+        IpListRegistry registry = new IpListRegistry();
+        BlockConditionStore store = new BlockConditionStore(registry);
+        store.add("1", BlockConditionStore.IP_LIST, "blocked", false);
+        Assert.assertTrue(store.hasConditions());
+        // a list which is not set yet blocks nothing
+        Assert.assertFalse(store.isBlocked("", "", "", "2001:db8::1"));
+
+        // the list is looked up on each request, so updating it takes effect without touching the condition
+        registry.setList("blocked", Arrays.asList("2001:db8::/32", "10.0.0.0/8"));
+        Assert.assertTrue(store.isBlocked("", "", "", "2001:db8:ffff::1"));
+        Assert.assertTrue(store.isBlocked("", "", "", "10.1.1.1"));
+        Assert.assertFalse(store.isBlocked("", "", "", "2001:db9::1"));
+        registry.setList("blocked", Arrays.asList("2001:db8:0:1::/64"));
+        Assert.assertTrue(store.isBlocked("", "", "", "2001:db8:0:1:ffff::1"));
+        Assert.assertFalse(store.isBlocked("", "", "", "2001:db8::1"));
+
+        // only the addresses of the allow list are let through, unless they are in the block list too
+        store.add("2", BlockConditionStore.IP_LIST, "allowed", true);
+        Assert.assertTrue(store.isBlocked("", "", "", "2001:db8::1"));
+        registry.setList("allowed", Arrays.asList("2001:db8::/48", "::ffff:192.168.0.0/112"));
+        Assert.assertFalse(store.isBlocked("", "", "", "2001:db8::1"));
+        Assert.assertFalse(store.isBlocked("", "", "", "192.168.3.4"));
+        Assert.assertTrue(store.isBlocked("", "", "", "2001:db8:0:1:ffff::1"));
+        Assert.assertTrue(store.isBlocked("", "", "", "2001:db8:1::1"));
+        Assert.assertTrue(store.isBlocked("", "", "", ""));
+
+        Path file = Files.createTempFile("block-conditions", ".conf");
+        try {
+            write(file, "iplist partners invert");
+            Assert.assertEquals(1, store.reload(file));
+            registry.setList("partners", Arrays.asList("2001:db8::/32"));
+            Assert.assertTrue(store.isBlocked("", "", "", "192.168.3.4"));
+            Assert.assertFalse(store.isBlocked("", "", "", "2001:db8::1"));
+        } finally {
+            Files.delete(file);
+        }
+        Assert.assertTrue(store.remove("1"));
+        Assert.assertTrue(store.remove("2"));
+        Assert.assertTrue(store.remove("file:iplist partners invert"));
+        Assert.assertFalse(store.hasConditions());
+    }
+
+    @Test
+    public void invalidConditionTest() {
+        BlockConditionStore store = new BlockConditionStore(new IpListRegistry());
+        store.add("1", BlockConditionStore.IP, "10.0.0.1", false);
+        String[][] conditions = {{"", BlockConditionStore.USER, "bob"}, {"2", "tenant", "carbon.super"},
+                {"2", BlockConditionStore.USER, ""}, {"1", BlockConditionStore.IP, "10.0.0.0/33"},
+                {"1", BlockConditionStore.IP_RANGE, "10.0.0.1"},
+                {"1", BlockConditionStore.IP_RANGE, "10.0.0.9-10.0.0.1"},
+                {"file:user bob", BlockConditionStore.USER, "bob"}};
+        for (String[] condition : conditions) {
+            try {
+                store.add(condition[0], condition[1], condition[2], false);
+                Assert.fail(Arrays.toString(condition));
+            } catch (IllegalArgumentException e) {
+                // the conditions are left as they were
+                Assert.assertEquals(1, store.getConditionCount());
+                Assert.assertTrue(store.isBlocked("", "", "", "10.0.0.1"));
+            }
+        }
+        try {
+            store.add("2", BlockConditionStore.USER, "bob", true);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // only IP conditions can be inverted
+        }
+    }
+
+    @Test
+    public void adminAuthorizationTest() {
+        BlockConditionStore store = new BlockConditionStore(new IpListRegistry());
+        Assert.assertFalse(store.isAdminAuthorized(""));
+        store.setAdminAuthorization("Basic YWRtaW46YWRtaW4=");
+        Assert.assertTrue(store.isAdminAuthorized("Basic YWRtaW46YWRtaW4="));
+        Assert.assertFalse(store.isAdminAuthorized("Basic YWRtaW46YWRtaW5="));
+        Assert.assertFalse(store.isAdminAuthorized("Basic YWRtaW46YWRtaW4=="));
+        Assert.assertFalse(store.isAdminAuthorized(""));
+        store.setAdminAuthorization("");
+        Assert.assertFalse(store.isAdminAuthorized("Basic YWRtaW46YWRtaW4="));
+    }
+
+    @Test
+    public void reloadTest() throws IOException {
+        Path file = Files.createTempFile("block-conditions", ".conf");
+        try {
+            BlockConditionStore store = new BlockConditionStore(new IpListRegistry());
+            store.add("admin", BlockConditionStore.USER, "alice", false);
+            write(file, "# blocked by the operator", "", "api /pizzashack/1.0.0",
+                    "application admin:Default Application", "USER bob", "ip 10.0.0.0/8",
+                    "iprange 192.168.0.1-192.168.0.9 invert");
+            Assert.assertEquals(5, store.reload(file));
+            Assert.assertEquals(6, store.getConditionCount());
+            Assert.assertTrue(store.isBlocked("/pizzashack/1.0.0", "", "", ""));
+            Assert.assertTrue(store.isBlocked("", "admin:Default Application", "", ""));
+            Assert.assertTrue(store.isBlocked("", "", "bob", ""));
+            Assert.assertTrue(store.isBlocked("", "", "", "192.168.0.10"));
+            Assert.assertFalse(store.isBlocked("", "", "", "192.168.0.5"));
+
+            // the conditions of the earlier file are replaced and the ones added one by one are kept
+            write(file, "user carol");
+            Assert.assertEquals(1, store.reload(file));
+            Assert.assertFalse(store.isBlocked("/pizzashack/1.0.0", "", "bob", "192.168.0.10"));
+            Assert.assertTrue(store.isBlocked("", "", "carol", ""));
+            Assert.assertTrue(store.isBlocked("", "", "alice", ""));
+
+            // an invalid file leaves the conditions as they were
+            write(file, "user dave", "ip 10.0.0.1 allow");
+            try {
+                store.reload(file);
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("line 2"));
+            }
+            Assert.assertFalse(store.isBlocked("", "", "dave", ""));
+            Assert.assertTrue(store.isBlocked("", "", "carol", ""));
+            Assert.assertEquals(2, store.getReloadCount());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void reloadIfModifiedTest() throws IOException {
+        Path file = Files.createTempFile("block-conditions", ".conf");
+        try {
+            BlockConditionStore store = new BlockConditionStore(new IpListRegistry());
+            write(file, "user bob");
+            store.reloadIfModified(file);
+            store.reloadIfModified(file);
+            Assert.assertEquals(1, store.getReloadCount());
+            Assert.assertTrue(store.isBlocked("", "", "bob", ""));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClientIpResolverTestCase {
+
+    @Test
+    public void resolveTest() {
+        IpPrefixTrie trustedProxies = new IpPrefixTrie();
+        trustedProxies.add("10.0.0.0/8");
+        trustedProxies.add("2001:db8::1");
+        ClientIpResolver resolver = new ClientIpResolver(trustedProxies);
+        // the header is only read if the request came through a trusted proxy
+        Assert.assertEquals("192.168.0.1", resolver.resolve("192.168.0.1", "172.16.0.1"));
+        Assert.assertEquals("10.0.0.1", resolver.resolve("10.0.0.1", ""));
+        Assert.assertEquals("172.16.0.1", resolver.resolve("10.0.0.1", "172.16.0.1"));
+        // entries put in the header by the client are skipped
+        Assert.assertEquals("172.16.0.1", resolver.resolve("10.0.0.1", "1.2.3.4, 172.16.0.1, 10.0.0.2"));
+        Assert.assertEquals("172.16.0.1", resolver.resolve("2001:db8::1", "1.2.3.4,172.16.0.1"));
+        Assert.assertEquals("10.0.0.3", resolver.resolve("10.0.0.1", "10.0.0.3, 10.0.0.2"));
+        // the client is not known if the entry of the proxy is not valid
+        Assert.assertEquals("", resolver.resolve("10.0.0.1", "172.16.0.1, unknown"));
+        Assert.assertEquals("", resolver.resolve("10.0.0.1", "172.16.0.1,"));
+        Assert.assertEquals("1.2.3.4", resolver.resolve("1.2.3.4", "unknown"));
+    }
+
+    @Test
+    public void noTrustedProxyTest() {
+        ClientIpResolver resolver = new ClientIpResolver(new IpPrefixTrie());
+        Assert.assertEquals("10.0.0.1", resolver.resolve("10.0.0.1", "172.16.0.1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTrustedProxyTest() {
+        ClientIpResolver.init("10.0.0.0/8, 10.0.0.0/33");
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IpAddressTestCase {
+
+    @Test
+    public void ipv4Test() {
+        Assert.assertEquals(3232235778L, IpAddress.parseIpv4("192.168.1.2"));
+        Assert.assertEquals(0, IpAddress.parseIpv4("0.0.0.0"));
+        Assert.assertEquals(4294967295L, IpAddress.parseIpv4("255.255.255.255"));
+        IpAddress address = new IpAddress();
+        Assert.assertTrue(address.parse("10.0.0.1"));
+        Assert.assertTrue(address.isIpv4());
+        Assert.assertEquals(0, address.getHigh());
+        Assert.assertEquals(0xffff0a000001L, address.getLow());
+    }
+
+    @Test
+    public void invalidIpv4Test() {
+        String[] addresses = {"", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", ".1.2.3", "1.2.3.", "1.2.3.a",
+                "1234.1.1.1", "-1.2.3.4"};
+        for (String address : addresses) {
+            Assert.assertEquals(address, -1, IpAddress.parseIpv4(address));
+            Assert.assertFalse(address, new IpAddress().parse(address));
+        }
+    }
+
+    @Test
+    public void ipv6Test() {
+        IpAddress address = new IpAddress();
+        Assert.assertTrue(address.parse("2001:db8:85a3:0:0:8a2e:370:7334"));
+        Assert.assertEquals(0x20010db885a30000L, address.getHigh());
+        Assert.assertEquals(0x00008a2e03707334L, address.getLow());
+        Assert.assertFalse(address.isIpv4());
+
+        Assert.assertTrue(address.parse("2001:DB8::8A2E:370:7334"));
+        Assert.assertEquals(0x20010db800000000L, address.getHigh());
+        Assert.assertEquals(0x00008a2e03707334L, address.getLow());
+
+        Assert.assertTrue(address.parse("::1"));
+        Assert.assertEquals(0, address.getHigh());
+        Assert.assertEquals(1, address.getLow());
+
+        Assert.assertTrue(address.parse("::"));
+        Assert.assertEquals(0, address.getHigh());
+        Assert.assertEquals(0, address.getLow());
+
+        Assert.assertTrue(address.parse("fe80::%eth0"));
+        Assert.assertEquals(0xfe80000000000000L, address.getHigh());
+        Assert.assertEquals(0, address.getLow());
+
+        Assert.assertTrue(address.parse("1::"));
+        Assert.assertEquals(0x0001000000000000L, address.getHigh());
+    }
+
+    @Test
+    public void ipv4MappedTest() {
+        IpAddress address = new IpAddress();
+        Assert.assertTrue(address.parse("::ffff:192.168.1.2"));
+        Assert.assertTrue(address.isIpv4());
+        Assert.assertEquals(0xffffc0a80102L, address.getLow());
+    }
+
+    @Test
+    public void invalidIpv6Test() {
+        String[] addresses = {":", ":::", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1::2::3", "12345::", "1:2:3:4:5:6:7:",
+                ":1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8::", "g::1", "::1.2.3", "1:2:3:4:5:6:7:1.2.3.4"};
+        IpAddress address = new IpAddress();
+        for (String invalid : addresses) {
+            Assert.assertFalse(invalid, address.parse(invalid));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class IpPrefixTrieTestCase {
+
+    @Test
+    public void ipv4BlockTest() {
+        IpPrefixTrie trie = create("10.0.0.0/8", "192.168.1.0/24", "172.16.5.4");
+        Assert.assertTrue(contains(trie, "10.255.1.1"));
+        Assert.assertTrue(contains(trie, "192.168.1.200"));
+        Assert.assertFalse(contains(trie, "192.168.2.1"));
+        Assert.assertTrue(contains(trie, "172.16.5.4"));
+        Assert.assertFalse(contains(trie, "172.16.5.5"));
+        Assert.assertFalse(contains(trie, "11.0.0.1"));
+        // IPv4 blocks only hold IPv4 addresses
+        Assert.assertTrue(contains(trie, "::ffff:10.1.2.3"));
+        Assert.assertFalse(contains(trie, "a00::1"));
+        Assert.assertEquals(3, trie.size());
+    }
+
+    @Test
+    public void ipv6BlockTest() {
+        IpPrefixTrie trie = create("2001:db8::/32", "fe80::/10", "::1");
+        Assert.assertTrue(contains(trie, "2001:db8:1234::1"));
+        Assert.assertFalse(contains(trie, "2001:db9::1"));
+        Assert.assertTrue(contains(trie, "febf:ffff::1"));
+        Assert.assertFalse(contains(trie, "fec0::1"));
+        Assert.assertTrue(contains(trie, "::1"));
+        Assert.assertFalse(contains(trie, "::2"));
+        Assert.assertFalse(contains(trie, "127.0.0.1"));
+    }
+
+    @Test
+    public void nestedBlockTest() {
+        // blocks added in an order which splits compressed paths, and blocks within other blocks
+        IpPrefixTrie trie = create("10.1.2.0/24", "10.1.3.0/24", "10.1.0.0/16", "10.1.2.128/25", "10.1.2.0/24");
+        Assert.assertEquals(4, trie.size());
+        Assert.assertTrue(contains(trie, "10.1.200.1"));
+        Assert.assertTrue(contains(trie, "10.1.2.1"));
+        Assert.assertFalse(contains(trie, "10.2.0.1"));
+
+        trie = create("10.1.2.0/24", "10.1.3.0/24");
+        Assert.assertTrue(contains(trie, "10.1.3.4"));
+        Assert.assertFalse(contains(trie, "10.1.4.4"));
+        Assert.assertFalse(contains(trie, "10.1.1.4"));
+    }
+
+    @Test
+    public void everythingTest() {
+        IpPrefixTrie trie = create("0.0.0.0/0");
+        Assert.assertTrue(contains(trie, "1.2.3.4"));
+        Assert.assertFalse(contains(trie, "2001:db8::1"));
+        trie = create("::/0");
+        Assert.assertTrue(contains(trie, "2001:db8::1"));
+        Assert.assertTrue(contains(trie, "1.2.3.4"));
+        Assert.assertFalse(contains(new IpPrefixTrie(), "1.2.3.4"));
+    }
+
+    @Test
+    public void invalidBlockTest() {
+        String[] blocks = {"10.0.0.0/33", "2001:db8::/129", "10.0.0.0/-1", "10.0.0.0/", "10.0.0/8", "10.0.0.0/a"};
+        for (String block : blocks) {
+            try {
+                new IpPrefixTrie().add(block);
+                Assert.fail(block);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void rangeTest() {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        // decomposed into 10.0.0.5/32, 10.0.0.6/31, 10.0.0.8/29, 10.0.0.16/30 and 10.0.0.20/32
+        trie.addRange("10.0.0.5", "10.0.0.20");
+        Assert.assertEquals(5, trie.size());
+        Assert.assertFalse(contains(trie, "10.0.0.4"));
+        for (int i = 5; i <= 20; i++) {
+            Assert.assertTrue(contains(trie, "10.0.0." + i));
+        }
+        Assert.assertFalse(contains(trie, "10.0.0.21"));
+
+        trie = new IpPrefixTrie();
+        trie.addRange("192.168.0.0", "192.168.255.255");
+        Assert.assertEquals(1, trie.size());
+        trie.addRange("2001:db8::", "2001:db8::ffff");
+        Assert.assertTrue(contains(trie, "2001:db8::1234"));
+        Assert.assertFalse(contains(trie, "2001:db8::1:0"));
+        trie.addRange("::", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+        Assert.assertTrue(contains(trie, "2001:db9::1"));
+    }
+
+    @Test
+    public void invalidRangeTest() {
+        String[][] ranges = {{"10.0.0.2", "10.0.0.1"}, {"10.0.0.1", "2001:db8::1"}, {"10.0.0.1", "10.0.0.256"},
+                {"10.0.0.0/8", "10.0.0.1"}};
+        for (String[] range : ranges) {
+            try {
+                new IpPrefixTrie().addRange(range[0], range[1]);
+                Assert.fail(range[0] + "-" + range[1]);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void ipListRegistryTest() {
+        IpListRegistry registry = new IpListRegistry();
+        registry.setList("blocked", Arrays.asList("10.0.0.0/8", " 2001:db8::/32 ", "", "fe80::1:0:0/96"));
+        Assert.assertEquals(3, registry.getListSize("blocked"));
+        Assert.assertTrue(registry.contains("blocked", "10.1.1.1"));
+        Assert.assertTrue(registry.contains("blocked", "2001:db8::5"));
+        Assert.assertTrue(registry.contains("blocked", "fe80::1:ffff:1"));
+        Assert.assertFalse(registry.contains("blocked", "fe80::2:0:1"));
+        Assert.assertFalse(registry.contains("blocked", "2001:db9::5"));
+        Assert.assertFalse(registry.contains("blocked", "not an address"));
+        Assert.assertFalse(registry.contains("allowed", "10.1.1.1"));
+        IpAddress address = new IpAddress();
+        Assert.assertTrue(address.parse("2001:db8:ffff::1"));
+        Assert.assertTrue(registry.contains("blocked", address));
+        Assert.assertFalse(registry.contains("allowed", address));
+        try {
+            registry.setList("blocked", Arrays.asList("11.0.0.0/8", "2001:db8::/129"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // the list is left as it was
+            Assert.assertTrue(registry.contains("blocked", "10.1.1.1"));
+            Assert.assertFalse(registry.contains("blocked", "11.1.1.1"));
+        }
+        registry.setList("blocked", Collections.emptyList());
+        Assert.assertEquals(0, registry.getListSize("blocked"));
+        Assert.assertFalse(registry.contains("blocked", "10.1.1.1"));
+        registry.removeList("blocked");
+        Assert.assertEquals(-1, registry.getListSize("blocked"));
+    }
+
+    private static IpPrefixTrie create(String... blocks) {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        for (String block : blocks) {
+            trie.add(block);
+        }
+        return trie;
+    }
+
+    private static boolean contains(IpPrefixTrie trie, String address) {
+        IpAddress ipAddress = new IpAddress();
+        Assert.assertTrue(address, ipAddress.parse(address));
+        return trie.contains(ipAddress);
+    }
+}
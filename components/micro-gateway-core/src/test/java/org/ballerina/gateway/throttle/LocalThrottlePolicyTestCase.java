@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class LocalThrottlePolicyTestCase {
+
+    @Test
+    public void testThrottleWithinWindow() {
+        LocalThrottlePolicy policy = new LocalThrottlePolicy("Gold", 3, 1000, true);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertFalse(policy.isThrottled("app1:admin", 100));
+            policy.increment("app1:admin", 100);
+        }
+        Assert.assertTrue(policy.isThrottled("app1:admin", 200));
+        Assert.assertFalse(policy.isThrottled("app2:admin", 200));
+        Assert.assertEquals(1000, policy.currentWindowEnd(999));
+    }
+
+    @Test
+    public void testReleaseOnNextWindow() {
+        LocalThrottlePolicy policy = new LocalThrottlePolicy("Gold", 2, 1000, false);
+        policy.increment("app1:admin", 100);
+        policy.increment("app1:admin", 900);
+        Assert.assertTrue(policy.isThrottled("app1:admin", 950));
+        Assert.assertFalse(policy.isThrottled("app1:admin", 1000));
+        Assert.assertEquals(1, policy.increment("app1:admin", 1001));
+        // counters of elapsed windows are dropped when the window flips
+        policy.increment("app2:admin", 1500);
+        policy.currentWindowEnd(3000);
+        Assert.assertEquals(0, policy.getKeyCount());
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws InterruptedException {
+        final LocalThrottlePolicy policy = new LocalThrottlePolicy("Gold", 1000, TimeUnit.HOURS.toMillis(1), true);
+        final long currentTime = System.currentTimeMillis();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executorService.submit(() -> {
+                for (int i = 0; i < 125; i++) {
+                    policy.increment("app1:admin", currentTime);
+                }
+                latch.countDown();
+            });
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+        Assert.assertTrue(policy.isThrottled("app1:admin", currentTime));
+        Assert.assertEquals(1001, policy.increment("app1:admin", currentTime));
+    }
+
+    @Test
+    public void testRemoteCounts() {
+        LocalThrottlePolicy policy = new LocalThrottlePolicy("Gold", 5, 1000, true);
+        policy.increment("app1:admin", 100);
+        Assert.assertTrue(policy.addRemoteCount("app1:admin", 1000, 3, 200));
+        Assert.assertEquals(5, policy.increment("app1:admin", 300));
+        Assert.assertTrue(policy.isThrottled("app1:admin", 400));
+        // counts of other windows are dropped
+        Assert.assertFalse(policy.addRemoteCount("app2:admin", 2000, 5, 400));
+        Assert.assertFalse(policy.isThrottled("app2:admin", 400));
+        Assert.assertTrue(policy.addRemoteCount("app2:admin", 1000, 5, 400));
+        Assert.assertTrue(policy.isThrottled("app2:admin", 400));
+        Assert.assertFalse(policy.isThrottled("app1:admin", 1000));
+        // as are counts a replica never sends
+        Assert.assertFalse(policy.addRemoteCount("app3:admin", 2000, -5, 1000));
+        Assert.assertFalse(policy.addRemoteCount("app3:admin", 2000, 0, 1000));
+        Assert.assertFalse(policy.addRemoteCount("app3:admin", 2000, 6, 1000));
+        Assert.assertEquals(1, policy.increment("app3:admin", 1000));
+    }
+
+    @Test
+    public void testCollectCounts() {
+        LocalThrottlePolicy policy = new LocalThrottlePolicy("Gold", 100, 1000, true);
+        policy.increment("app1:admin", 100);
+        policy.increment("app1:admin", 100);
+        policy.increment("app2:admin", 100);
+        policy.addRemoteCount("app3:admin", 1000, 10, 100);
+        Map<String, Long> counts = collect(policy, 200);
+        Assert.assertEquals(2, counts.size());
+        Assert.assertEquals(Long.valueOf(2), counts.get("app1:admin"));
+        Assert.assertEquals(Long.valueOf(1), counts.get("app2:admin"));
+        // only the requests counted since the previous collection are handed over
+        policy.increment("app1:admin", 300);
+        counts = collect(policy, 400);
+        Assert.assertEquals(1, counts.size());
+        Assert.assertEquals(Long.valueOf(1), counts.get("app1:admin"));
+        Assert.assertTrue(collect(policy, 500).isEmpty());
+        // as are the requests of the current window only
+        policy.increment("app1:admin", 900);
+        Assert.assertTrue(collect(policy, 1100).isEmpty());
+        // a count is handed over up to the request count of the policy
+        for (int i = 0; i < 150; i++) {
+            policy.increment("app1:admin", 1200);
+        }
+        Assert.assertEquals(Long.valueOf(100), collect(policy, 1300).get("app1:admin"));
+    }
+
+    @Test
+    public void testEngineRegistry() {
+        LocalThrottleEngine engine = LocalThrottleEngine.getInstance();
+        engine.registerPolicy("subscription", new LocalThrottlePolicy("Silver", 10, 60000, false));
+        Assert.assertNotNull(engine.getPolicy("subscription", "Silver"));
+        Assert.assertNull(engine.getPolicy("application", "Silver"));
+        engine.removePolicy("subscription", "Silver");
+        Assert.assertNull(engine.getPolicy("subscription", "Silver"));
+    }
+
+    private static Map<String, Long> collect(LocalThrottlePolicy policy, long currentTime) {
+        Map<String, Long> counts = new HashMap<>();
+        policy.collectCounts(currentTime, (throttleKey, windowEndTime, count) -> {
+            Assert.assertEquals(policy.currentWindowEnd(currentTime), windowEndTime);
+            counts.put(throttleKey, count);
+        });
+        return counts;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.ballerina.gateway.throttle.ThrottleKeyRegistry.ThrottleKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class ThrottleCounterSyncTestCase {
+
+    private static final long WINDOW_END = 60000;
+
+    @Test
+    public void codecTest() {
+        List<ThrottleSyncCodec.Count> counts = new ArrayList<>();
+        counts.add(new ThrottleSyncCodec.Count("subscription", "Gold", WINDOW_END, "12:/pizzashack:1.0.0", 3));
+        counts.add(new ThrottleSyncCodec.Count("application", "10PerMin", WINDOW_END, "12:admin", 1));
+        counts.add(new ThrottleSyncCodec.Count("subscription", "Gold", WINDOW_END, "12:/pizzashack:2.0.0", 300));
+        counts.add(new ThrottleSyncCodec.Count("subscription", "Gold", WINDOW_END, "3:/pizzashack:1.0.0", 1));
+        counts.add(new ThrottleSyncCodec.Count("application", "10PerMin", WINDOW_END, "12:\uD83D\uDE00", 2));
+        counts.add(new ThrottleSyncCodec.Count("application", "10PerMin", WINDOW_END, "12:\uD83D\uDE01", 2));
+        List<byte[]> messages = ThrottleSyncCodec.encode("node1", new ArrayList<>(counts), 1400);
+        Assert.assertEquals(1, messages.size());
+
+        List<ThrottleSyncCodec.Count> decoded = new ArrayList<>();
+        Assert.assertEquals("node1", ThrottleSyncCodec.decode(messages.get(0), decoded));
+        assertCounts(counts, decoded);
+        // policies are written once per group and keys sharing a prefix only take the rest of their names, so that
+        // the message is smaller than the names alone
+        int nameSize = 0;
+        for (ThrottleSyncCodec.Count count : counts) {
+            String names = count.policyType + count.policyName + count.throttleKey;
+            nameSize += names.getBytes(StandardCharsets.UTF_8).length;
+        }
+        Assert.assertTrue(messages.get(0).length < nameSize);
+    }
+
+    @Test
+    public void splitTest() {
+        List<ThrottleSyncCodec.Count> counts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            counts.add(new ThrottleSyncCodec.Count(i % 2 == 0 ? "application" : "subscription", "Gold",
+                    WINDOW_END + (i % 3), "application-" + i + ":user", (i + 1) * 1000L));
+        }
+        List<byte[]> messages = ThrottleSyncCodec.encode("node1", new ArrayList<>(counts), 200);
+        Assert.assertTrue(messages.size() > 1);
+        List<ThrottleSyncCodec.Count> decoded = new ArrayList<>();
+        for (byte[] message : messages) {
+            Assert.assertTrue(message.length <= 200);
+            Assert.assertEquals("node1", ThrottleSyncCodec.decode(message, decoded));
+        }
+        assertCounts(counts, decoded);
+
+        // a count larger than a message is sent on its own
+        counts = Collections.singletonList(new ThrottleSyncCodec.Count("application", "Gold", WINDOW_END,
+                String.join("", Collections.nCopies(300, "a")), 1));
+        messages = ThrottleSyncCodec.encode("node1", new ArrayList<>(counts), 200);
+        Assert.assertEquals(1, messages.size());
+        Assert.assertTrue(ThrottleSyncCodec.encode("node1", new ArrayList<>(), 200).isEmpty());
+    }
+
+    @Test
+    public void invalidMessageTest() {
+        List<ThrottleSyncCodec.Count> counts = Collections.singletonList(
+                new ThrottleSyncCodec.Count("application", "Gold", WINDOW_END, "12:admin", 1));
+        byte[] message = ThrottleSyncCodec.encode("node1", new ArrayList<>(counts), 1400).get(0);
+        // counts are written last, so that a count of 0 is the message without its last byte followed by 0
+        byte[] zeroCountMessage = Arrays.copyOf(message, message.length);
+        zeroCountMessage[message.length - 1] = 0;
+        byte[][] invalidMessages = {Arrays.copyOf(message, message.length - 1), new byte[]{2}, new byte[]{1, 100},
+                new byte[]{(byte) 0xFF, (byte) 0xFF}, zeroCountMessage};
+        for (byte[] invalidMessage : invalidMessages) {
+            try {
+                ThrottleSyncCodec.decode(invalidMessage, new ArrayList<>());
+                Assert.fail(Arrays.toString(invalidMessage));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void syncTest() {
+        long currentTime = 1000;
+        Node node1 = new Node("node1");
+        Node node2 = new Node("node2");
+        ThrottleKey key1 = node1.keyRegistry.getSubscriptionKey("12", "/pizzashack:1.0.0", currentTime);
+        // ids are local to each replica
+        node2.keyRegistry.getApplicationKey("12", "admin", currentTime);
+        ThrottleKey key2 = node2.keyRegistry.getSubscriptionKey("12", "/pizzashack:1.0.0", currentTime);
+        Assert.assertNotEquals(key1.getId(), key2.getId());
+
+        for (int i = 0; i < 6; i++) {
+            node1.policy.increment(key1.getId(), currentTime);
+        }
+        Assert.assertEquals(1, node1.sync.sync(currentTime));
+        node1.deliverTo(node2, currentTime);
+        for (int i = 0; i < 3; i++) {
+            node2.policy.increment(key2.getId(), currentTime);
+        }
+        Assert.assertFalse(node2.policy.isThrottled(key2.getId(), currentTime));
+        node2.policy.increment(key2.getId(), currentTime);
+        Assert.assertTrue(node2.policy.isThrottled(key2.getId(), currentTime));
+        Assert.assertFalse(node1.policy.isThrottled(key1.getId(), currentTime));
+
+        // only the requests counted by the replica itself are sent on
+        Assert.assertEquals(1, node2.sync.sync(currentTime));
+        node2.deliverTo(node1, currentTime);
+        Assert.assertTrue(node1.policy.isThrottled(key1.getId(), currentTime));
+        Assert.assertEquals(0, node1.sync.sync(currentTime));
+        Assert.assertEquals(1, node1.sync.getReceivedCountCount());
+        Assert.assertEquals(1, node2.sync.getReceivedCountCount());
+
+        // messages of the replica itself are ignored
+        node1.policy.increment(key1.getId(), currentTime);
+        node1.sync.sync(currentTime);
+        node1.deliverTo(node1, currentTime);
+        Assert.assertEquals(1, node1.sync.getReceivedMessageCount());
+        Assert.assertEquals(12, node1.policy.increment(key1.getId(), currentTime));
+
+        // counts of unknown keys are kept without registering the keys, and counts of unknown policies and ended
+        // windows are dropped
+        ThrottleKey unknownKey = node1.keyRegistry.getSubscriptionKey("13", "/pizzashack:1.0.0", currentTime);
+        node1.policy.increment(unknownKey.getId(), currentTime);
+        node1.sync.sync(currentTime);
+        node1.deliverTo(node2, currentTime);
+        Assert.assertNull(node2.keyRegistry.findSubscriptionKey(unknownKey.getName()));
+        Assert.assertEquals(1, node2.sync.getPendingCountCount());
+        Assert.assertEquals(0, node2.sync.getDroppedCountCount());
+        node1.engine.registerPolicy("application", new LocalThrottlePolicy("10PerMin", 10, WINDOW_END, true));
+        ThrottleKey applicationKey = node1.keyRegistry.getApplicationKey("12", "admin", currentTime);
+        node1.engine.getPolicy("application", "10PerMin").increment(applicationKey.getId(), currentTime);
+        node1.sync.sync(currentTime);
+        node1.deliverTo(node2, currentTime);
+        node1.policy.increment(key1.getId(), currentTime);
+        node1.sync.sync(currentTime);
+        node1.deliverTo(node2, WINDOW_END + 1);
+        Assert.assertEquals(2, node2.sync.getDroppedCountCount());
+    }
+
+    @Test
+    public void pendingCountTest() {
+        long currentTime = 1000;
+        Node node1 = new Node("node1");
+        Node node2 = new Node("node2");
+        node2.sync.setMaxPendingCounts(2);
+        ThrottleKey key1 = node1.keyRegistry.getSubscriptionKey("12", "/pizzashack:1.0.0", currentTime);
+        for (int i = 0; i < 6; i++) {
+            node1.policy.increment(key1.getId(), currentTime);
+        }
+        for (int i = 0; i < 2; i++) {
+            ThrottleKey otherKey = node1.keyRegistry.getSubscriptionKey("2" + i, "/pizzashack:1.0.0", currentTime);
+            node1.policy.increment(otherKey.getId(), currentTime);
+        }
+        node1.sync.sync(currentTime);
+        node1.deliverTo(node2, currentTime);
+        // counts beyond the maximum are dropped
+        Assert.assertEquals(2, node2.sync.getPendingCountCount());
+        Assert.assertEquals(1, node2.sync.getDroppedCountCount());
+
+        // a key showing up on the replica partway through the window starts with what the other replica counted
+        ThrottleKey key2 = node2.keyRegistry.getSubscriptionKey("12", "/pizzashack:1.0.0", currentTime + 1);
+        Assert.assertEquals(1, node2.sync.getPendingCountCount());
+        Assert.assertEquals(1, node2.sync.getReceivedCountCount());
+        for (int i = 0; i < 3; i++) {
+            node2.policy.increment(key2.getId(), currentTime + 1);
+        }
+        Assert.assertFalse(node2.policy.isThrottled(key2.getId(), currentTime + 1));
+        node2.policy.increment(key2.getId(), currentTime + 1);
+        Assert.assertTrue(node2.policy.isThrottled(key2.getId(), currentTime + 1));
+
+        // counts kept until their window ends are dropped
+        node2.sync.sync(WINDOW_END + 1);
+        Assert.assertEquals(0, node2.sync.getPendingCountCount());
+        Assert.assertEquals(2, node2.sync.getDroppedCountCount());
+    }
+
+    @Test
+    public void signatureTest() {
+        long currentTime = 1000;
+        Node node1 = new Node("node1");
+        Node node2 = new Node("node2");
+        ThrottleKey key1 = node1.keyRegistry.getSubscriptionKey("12", "/pizzashack:1.0.0", currentTime);
+        ThrottleKey key2 = node2.keyRegistry.getSubscriptionKey("12", "/pizzashack:1.0.0", currentTime);
+        node1.policy.increment(key1.getId(), currentTime);
+        node1.sync.sync(currentTime);
+        byte[] message = node1.transport.messages.get(0);
+        Assert.assertEquals(1400, node1.transport.getMaxMessageSize());
+
+        // messages which are altered, cut short or signed with another secret are dropped
+        byte[] alteredMessage = Arrays.copyOf(message, message.length);
+        alteredMessage[message.length - 33]++;
+        ThrottleCounterSync otherSync = new ThrottleCounterSync("node3", new LocalThrottleEngine(),
+                new ThrottleKeyRegistry(10), new MessageCollector("127.0.0.1:0", Collections.emptyList()), "other");
+        byte[][] invalidMessages = {alteredMessage, Arrays.copyOf(message, 32), new byte[0],
+                otherSync.sign(Arrays.copyOf(message, message.length - 32))};
+        for (byte[] invalidMessage : invalidMessages) {
+            node2.sync.receive(invalidMessage, currentTime);
+        }
+        Assert.assertEquals(4, node2.sync.getFailedMessageCount());
+        Assert.assertEquals(0, node2.sync.getReceivedMessageCount());
+        Assert.assertEquals(1, node2.policy.increment(key2.getId(), currentTime));
+
+        node1.deliverTo(node2, currentTime);
+        Assert.assertEquals(1, node2.sync.getReceivedCountCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingSecretTest() {
+        new ThrottleCounterSync("node1", new LocalThrottleEngine(), new ThrottleKeyRegistry(10),
+                new MessageCollector("127.0.0.1:0", Collections.emptyList()), "");
+    }
+
+    @Test
+    public void udpTransportTest() throws IOException, InterruptedException {
+        int senderPort;
+        try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            senderPort = socket.getLocalPort();
+        }
+        BlockingQueue<byte[]> received = new ArrayBlockingQueue<>(10);
+        UdpThrottleSyncTransport receiver = new UdpThrottleSyncTransport("127.0.0.1:0",
+                Collections.singletonList("127.0.0.1:" + senderPort));
+        UdpThrottleSyncTransport sender = null;
+        try (DatagramSocket stranger = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            receiver.start(received::add);
+            sender = (UdpThrottleSyncTransport) ThrottleCounterSync.createTransport(ThrottleCounterSync.UDP,
+                    "127.0.0.1:" + senderPort,
+                    ThrottleCounterSync.splitAddresses(" 127.0.0.1:" + receiver.getLocalPort() + ","));
+            sender.start(message -> { });
+            // datagrams from other addresses than the peers are dropped
+            stranger.send(new DatagramPacket(new byte[]{4}, 1, InetAddress.getLoopbackAddress(),
+                    receiver.getLocalPort()));
+            sender.send(new byte[]{1, 2, 3});
+            Assert.assertArrayEquals(new byte[]{1, 2, 3}, received.poll(10, TimeUnit.SECONDS));
+            Assert.assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            receiver.close();
+            if (sender != null) {
+                sender.close();
+            }
+        }
+    }
+
+    @Test
+    public void transportConfigurationTest() {
+        ThrottleSyncTransport transport = ThrottleCounterSync.createTransport(MessageCollector.class.getName(),
+                "127.0.0.1:9097", Collections.emptyList());
+        Assert.assertTrue(transport instanceof MessageCollector);
+        String[][] configurations = {{"java.lang.String", "127.0.0.1:9097"}, {"org.example.Missing", "127.0.0.1:9097"},
+                {ThrottleCounterSync.UDP, "9097"}, {ThrottleCounterSync.UDP, "127.0.0.1:port"}};
+        for (String[] configuration : configurations) {
+            try {
+                ThrottleCounterSync.createTransport(configuration[0], configuration[1], Collections.emptyList());
+                Assert.fail(Arrays.toString(configuration));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertCounts(List<ThrottleSyncCodec.Count> expected, List<ThrottleSyncCodec.Count> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        List<String> expectedCounts = new ArrayList<>();
+        List<String> actualCounts = new ArrayList<>();
+        for (int i = 0; i < expected.size(); i++) {
+            expectedCounts.add(toString(expected.get(i)));
+            actualCounts.add(toString(actual.get(i)));
+        }
+        Collections.sort(expectedCounts);
+        Collections.sort(actualCounts);
+        Assert.assertEquals(expectedCounts, actualCounts);
+    }
+
+    private static String toString(ThrottleSyncCodec.Count count) {
+        return count.policyType + "|" + count.policyName + "|" + count.windowEndTime + "|" + count.throttleKey + "|"
+                + count.count;
+    }
+
+    /**
+     * A replica, whose messages are delivered by the test.
+     */
+    private static final class Node {
+        private final LocalThrottleEngine engine = new LocalThrottleEngine();
+        private final ThrottleKeyRegistry keyRegistry = new ThrottleKeyRegistry(100);
+        private final LocalThrottlePolicy policy = new LocalThrottlePolicy("Gold", 10, WINDOW_END, true);
+        private final MessageCollector transport = new MessageCollector("127.0.0.1:0", Collections.emptyList());
+        private final ThrottleCounterSync sync;
+
+        Node(String nodeId) {
+            engine.registerPolicy("subscription", policy);
+            sync = new ThrottleCounterSync(nodeId, engine, keyRegistry, transport, "secret");
+        }
+
+        void deliverTo(Node node, long currentTime) {
+            for (byte[] message : transport.messages) {
+                node.sync.receive(message, currentTime);
+            }
+            transport.messages.clear();
+        }
+    }
+
+    /**
+     * Transport keeping the messages sent.
+     */
+    public static final class MessageCollector implements ThrottleSyncTransport {
+        private final List<byte[]> messages = new ArrayList<>();
+
+        public MessageCollector(String localAddress, List<String> peerAddresses) {
+        }
+
+        @Override
+        public int getMaxMessageSize() {
+            return 1400;
+        }
+
+        @Override
+        public void start(Consumer<byte[]> receiver) {
+        }
+
+        @Override
+        public void send(byte[] message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThrottleDataStoreTestCase {
+
+    @Test
+    public void expiryTest() {
+        ThrottleDataStore store = new ThrottleDataStore(10);
+        store.put("app1:admin", false, 1000, 0);
+        Assert.assertFalse(store.get("app1:admin", 500).isStopOnQuotaReach());
+        Assert.assertNull(store.get("app1:admin", 1001));
+        Assert.assertEquals(0, store.getEntryCount());
+    }
+
+    @Test
+    public void sweepTest() {
+        ThrottleDataStore store = new ThrottleDataStore(10);
+        store.put("app1:admin", true, 1000, 0);
+        store.put("app2:admin", true, 5000, 0);
+        Assert.assertEquals(1, store.sweep(2000));
+        Assert.assertEquals(1, store.getEntryCount());
+        Assert.assertEquals(1, store.getSweptCount());
+        Assert.assertNotNull(store.get("app2:admin", 2000));
+    }
+
+    @Test
+    public void leastRecentlyUsedEvictionTest() throws InterruptedException {
+        ThrottleDataStore store = new ThrottleDataStore(4);
+        for (int i = 0; i < 4; i++) {
+            store.put("app" + i + ":admin", true, 10000, i);
+        }
+        // keep the first key in use so that the next oldest keys get evicted
+        store.get("app0:admin", 10);
+        store.put("app4:admin", true, 10000, 11);
+        // the store is scanned on the sweeper thread rather than by the request crossing the capacity
+        awaitEviction(store, 2);
+        store.stopSweeper();
+        Assert.assertEquals(3, store.getEntryCount());
+        Assert.assertEquals(2, store.getEvictionCount());
+        Assert.assertNotNull(store.get("app0:admin", 12));
+        Assert.assertNull(store.get("app1:admin", 12));
+        Assert.assertNull(store.get("app2:admin", 12));
+        Assert.assertNotNull(store.get("app4:admin", 12));
+    }
+
+    @Test
+    public void evictionDropsExpiredFirstTest() {
+        ThrottleDataStore store = new ThrottleDataStore(4);
+        for (int i = 0; i < 4; i++) {
+            store.put("app" + i + ":admin", true, i < 2 ? 100 : 10000, i);
+        }
+        store.sweep(0);
+        long lastSweepDuration = store.getLastSweepDuration();
+        store.evict(200);
+        Assert.assertEquals(2, store.getEntryCount());
+        Assert.assertEquals(2, store.getSweptCount());
+        Assert.assertEquals(0, store.getEvictionCount());
+        // eviction keeps a gauge of its own
+        Assert.assertEquals(lastSweepDuration, store.getLastSweepDuration());
+    }
+
+    @Test
+    public void sweeperTest() throws InterruptedException {
+        ThrottleDataStore store = new ThrottleDataStore(10);
+        store.put("app1:admin", true, System.currentTimeMillis() - 1, 0);
+        store.startSweeper(50);
+        Thread.sleep(500);
+        store.stopSweeper();
+        Assert.assertEquals(0, store.getEntryCount());
+    }
+
+    private static void awaitEviction(ThrottleDataStore store, long evictionCount) throws InterruptedException {
+        for (int i = 0; i < 100 && store.getEvictionCount() < evictionCount; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
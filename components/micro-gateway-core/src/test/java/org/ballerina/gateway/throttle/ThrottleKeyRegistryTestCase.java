@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThrottleKeyRegistryTestCase {
+
+    @Test
+    public void internTest() {
+        ThrottleKeyRegistry registry = new ThrottleKeyRegistry(10);
+        ThrottleKeyRegistry.ThrottleKey applicationKey = registry.getApplicationKey("1", "admin", 0);
+        ThrottleKeyRegistry.ThrottleKey subscriptionKey = registry.getSubscriptionKey("1", "/pizzashack:1.0.0", 0);
+        Assert.assertSame(applicationKey, registry.getApplicationKey("1", new String("admin"), 1));
+        Assert.assertSame(subscriptionKey, registry.getSubscriptionKey("1", "/pizzashack:1.0.0", 1));
+        Assert.assertEquals("1", applicationKey.getId());
+        Assert.assertEquals("2", subscriptionKey.getId());
+        Assert.assertEquals("3", registry.getApplicationKey("2", "admin", 1).getId());
+        Assert.assertSame(applicationKey, registry.getKeyById("1"));
+        Assert.assertNull(registry.getKeyById("4"));
+        Assert.assertEquals("1:admin", applicationKey.getName());
+        Assert.assertEquals("1:/pizzashack:1.0.0", subscriptionKey.getName());
+        Assert.assertSame(subscriptionKey, registry.findSubscriptionKey("1:/pizzashack:1.0.0"));
+        // looking a key up does not register it
+        Assert.assertNull(registry.findApplicationKey("1:/pizzashack:1.0.0"));
+        Assert.assertNull(registry.findApplicationKey("3:admin"));
+        Assert.assertNull(registry.findApplicationKey("unknown"));
+        Assert.assertEquals(3, registry.getKeyCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEvictionTest() throws InterruptedException {
+        ThrottleKeyRegistry registry = new ThrottleKeyRegistry(4);
+        String[] ids = new String[4];
+        for (int i = 0; i < 4; i++) {
+            ids[i] = registry.getApplicationKey("app" + i, "admin", i).getId();
+        }
+        // keep the first key in use so that the next oldest keys get evicted
+        registry.getApplicationKey("app0", "admin", 10);
+        registry.getApplicationKey("app4", "admin", 11);
+        awaitEviction(registry, 2);
+        Assert.assertEquals(3, registry.getKeyCount());
+        Assert.assertEquals(ids[0], registry.getApplicationKey("app0", "admin", 12).getId());
+        Assert.assertNull(registry.getKeyById(ids[1]));
+        Assert.assertNull(registry.findApplicationKey("app1:admin"));
+        // the maps of the applications left without keys are dropped along with their keys
+        Assert.assertEquals(3, registry.getApplicationMapCount());
+        // ids are never reused, so an evicted key which is used again gets a fresh id
+        Assert.assertEquals("6", registry.getApplicationKey("app1", "admin", 12).getId());
+        Assert.assertEquals(6, registry.getRegistrationCount());
+        registry.stopEvictor();
+    }
+
+    @Test
+    public void applicationMapEvictionTest() throws InterruptedException {
+        ThrottleKeyRegistry registry = new ThrottleKeyRegistry(4);
+        registry.getApplicationKey("app0", "admin", 0);
+        registry.getApplicationKey("app0", "user", 1);
+        registry.getApplicationKey("app1", "admin", 2);
+        registry.getSubscriptionKey("app0", "/pizzashack:1.0.0", 3);
+        registry.getApplicationKey("app2", "admin", 4);
+        awaitEviction(registry, 2);
+        Assert.assertNull(registry.findApplicationKey("app0:user"));
+        // the subscription keys of the application are kept apart from its application keys
+        Assert.assertNotNull(registry.findSubscriptionKey("app0:/pizzashack:1.0.0"));
+        Assert.assertEquals(3, registry.getApplicationMapCount());
+        // an application whose map was dropped gets a new one
+        ThrottleKeyRegistry.ThrottleKey key = registry.getApplicationKey("app0", "admin", 5);
+        Assert.assertSame(key, registry.findApplicationKey("app0:admin"));
+        Assert.assertEquals(4, registry.getApplicationMapCount());
+        registry.stopEvictor();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacityTest() {
+        new ThrottleKeyRegistry(0);
+    }
+
+    private static void awaitEviction(ThrottleKeyRegistry registry, long evictionCount) throws InterruptedException {
+        for (int i = 0; i < 100 && registry.getEvictionCount() < evictionCount; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(evictionCount, registry.getEvictionCount());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ballerina.gateway.throttle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ThrottleStateStoreTestCase {
+
+    @Test
+    public void expiredStateTest() {
+        ThrottleStateStore store = new ThrottleStateStore(10);
+        store.put("app1:admin", true, 1000, 0);
+        Assert.assertTrue(store.get("app1:admin", 500).isThrottled());
+        Assert.assertNull(store.get("app1:admin", 1001));
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals(1, store.getHitCount());
+        Assert.assertEquals(1, store.getMissCount());
+        Assert.assertEquals(1, store.getExpiredCount());
+    }
+
+    @Test
+    public void capacityTest() {
+        ThrottleStateStore store = new ThrottleStateStore(100);
+        store.put("throttled", true, ThrottleStateStore.NO_EXPIRY, 0);
+        for (int i = 0; i < 1000; i++) {
+            store.put("key" + i, false, ThrottleStateStore.NO_EXPIRY, 0);
+        }
+        Assert.assertTrue(store.size() <= store.getCapacity());
+        Assert.assertTrue(store.getEvictionCount() > 0);
+        // throttled decisions are evicted only when there is nothing else to evict
+        Assert.assertTrue(store.get("throttled", 0).isThrottled());
+    }
+
+    @Test
+    public void snapshotTest() {
+        ThrottleStateStore store = new ThrottleStateStore();
+        store.put("app1:admin", true, 1000, 0);
+        store.put("app2:admin", false, 2000, 0);
+        ThrottleStateStore restoredStore = new ThrottleStateStore();
+        restoredStore.restore(store.snapshot());
+        Assert.assertEquals(2, restoredStore.size());
+        Assert.assertTrue(restoredStore.get("app1:admin", 0).isThrottled());
+        Assert.assertEquals(2000, restoredStore.get("app2:admin", 0).getExpiryTimeStamp());
+    }
+
+    @Test
+    public void legacySnapshotTest() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("app1:admin", Boolean.TRUE);
+        snapshot.put("app2:admin", Boolean.FALSE);
+        snapshot.put("app3:admin", "invalid");
+        ThrottleStateStore store = new ThrottleStateStore();
+        store.restore(snapshot);
+        Assert.assertEquals(2, store.size());
+        Assert.assertTrue(store.get("app1:admin", 0).isThrottled());
+        Assert.assertFalse(store.get("app2:admin", 0).isThrottled());
+        Assert.assertEquals(ThrottleStateStore.NO_EXPIRY, store.get("app1:admin", 0).getExpiryTimeStamp());
+        Assert.assertNull(store.get("app3:admin", 0));
+    }
+}